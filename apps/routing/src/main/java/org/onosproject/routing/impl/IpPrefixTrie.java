@@ -0,0 +1,345 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.routing.impl;
+
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Path-compressed binary trie mapping IP prefixes of a single address
+ * family to values, supporting exact and longest-prefix-match lookups.
+ * <p>
+ * Prefix bits are held in a pair of primitive longs per node, with IPv4
+ * addresses occupying the 32 most significant bits, so neither updates nor
+ * lookups need to materialize the prefix as a string of bits.
+ * </p>
+ * <p>
+ * Updates are serialized by the trie itself, whereas lookups proceed without
+ * locking alongside a concurrent update. New nodes are fully initialized
+ * before they are linked into the trie and unlinked nodes are left intact,
+ * so that a concurrent lookup observes the trie either before or after each
+ * structural change.
+ * </p>
+ *
+ * @param <V> type of the values
+ */
+final class IpPrefixTrie<V> {
+
+    private final IpAddress.Version version;
+    private final int maxLength;
+
+    // Root covers the zero-length prefix and is never unlinked
+    private final Node<V> root = new Node<>(0L, 0L, 0, null);
+
+    private volatile int size;
+
+    /**
+     * Creates an empty trie for prefixes of the given address family.
+     *
+     * @param version IP address version
+     */
+    IpPrefixTrie(IpAddress.Version version) {
+        this.version = checkNotNull(version);
+        this.maxLength = version == IpAddress.Version.INET ?
+                IpAddress.INET_BIT_LENGTH : IpAddress.INET6_BIT_LENGTH;
+    }
+
+    /**
+     * Returns the number of prefixes in the trie.
+     *
+     * @return number of prefixes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value stored for exactly the given prefix.
+     *
+     * @param prefix IP prefix
+     * @return value or null if the prefix is not in the trie
+     */
+    V get(IpPrefix prefix) {
+        checkVersion(prefix.version());
+        long hi = high(prefix.address());
+        long lo = low(prefix.address());
+        int length = prefix.prefixLength();
+
+        Node<V> node = root;
+        while (node != null && node.length <= length) {
+            if (commonLength(node.hi, node.lo, hi, lo, node.length) < node.length) {
+                return null;
+            }
+            if (node.length == length) {
+                return node.value;
+            }
+            node = node.child(bit(hi, lo, node.length));
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value stored for the longest prefix containing the given
+     * address.
+     *
+     * @param address IP address
+     * @return value or null if no prefix contains the address
+     */
+    V longestMatch(IpAddress address) {
+        checkVersion(address.version());
+        long hi = high(address);
+        long lo = low(address);
+
+        V match = null;
+        Node<V> node = root;
+        while (node != null &&
+                commonLength(node.hi, node.lo, hi, lo, node.length) == node.length) {
+            V value = node.value;
+            if (value != null) {
+                match = value;
+            }
+            if (node.length == maxLength) {
+                break;
+            }
+            node = node.child(bit(hi, lo, node.length));
+        }
+        return match;
+    }
+
+    /**
+     * Stores the value for the given prefix, replacing any existing value.
+     *
+     * @param prefix IP prefix
+     * @param value  value to store
+     * @return previous value or null if the prefix was not in the trie
+     */
+    synchronized V put(IpPrefix prefix, V value) {
+        checkVersion(prefix.version());
+        checkNotNull(value);
+        long hi = high(prefix.address());
+        long lo = low(prefix.address());
+        int length = prefix.prefixLength();
+
+        Node<V> node = root;
+        while (true) {
+            if (node.length == length) {
+                V previous = node.value;
+                node.value = value;
+                if (previous == null) {
+                    size++;
+                }
+                return previous;
+            }
+
+            boolean right = bit(hi, lo, node.length);
+            Node<V> child = node.child(right);
+            if (child == null) {
+                node.setChild(right, new Node<>(hi, lo, length, value));
+                size++;
+                return null;
+            }
+
+            int common = commonLength(child.hi, child.lo, hi, lo,
+                                      Math.min(child.length, length));
+            if (common == child.length) {
+                node = child;
+                continue;
+            }
+
+            // The new prefix diverges from the child, or is a proper prefix
+            // of it, so a node must be spliced in between
+            Node<V> splice;
+            if (common == length) {
+                splice = new Node<>(hi, lo, length, value);
+            } else {
+                splice = new Node<>(hi, lo, common, null);
+                splice.setChild(bit(hi, lo, common), new Node<>(hi, lo, length, value));
+            }
+            splice.setChild(bit(child.hi, child.lo, common), child);
+            node.setChild(right, splice);
+            size++;
+            return null;
+        }
+    }
+
+    /**
+     * Removes the value stored for exactly the given prefix.
+     *
+     * @param prefix IP prefix
+     * @return true if the prefix was found and removed
+     */
+    synchronized boolean remove(IpPrefix prefix) {
+        checkVersion(prefix.version());
+        long hi = high(prefix.address());
+        long lo = low(prefix.address());
+        int length = prefix.prefixLength();
+
+        Node<V> parent = null;
+        Node<V> node = root;
+        while (node != null && node.length < length &&
+                commonLength(node.hi, node.lo, hi, lo, node.length) == node.length) {
+            parent = node;
+            node = node.child(bit(hi, lo, node.length));
+        }
+        if (node == null || node.length != length || node.value == null ||
+                commonLength(node.hi, node.lo, hi, lo, length) < length) {
+            return false;
+        }
+
+        node.value = null;
+        size--;
+        if (parent != null) {
+            prune(parent, node);
+        }
+        return true;
+    }
+
+    /**
+     * Returns a snapshot of all values in the trie, in prefix order.
+     *
+     * @return collection of values
+     */
+    Collection<V> values() {
+        List<V> values = new ArrayList<>(size);
+        Deque<Node<V>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node<V> node = stack.pop();
+            V value = node.value;
+            if (value != null) {
+                values.add(value);
+            }
+            Node<V> right = node.right;
+            if (right != null) {
+                stack.push(right);
+            }
+            Node<V> left = node.left;
+            if (left != null) {
+                stack.push(left);
+            }
+        }
+        return values;
+    }
+
+    // Unlinks a node left without a value if it no longer needs to
+    // distinguish between two subtrees, together with its parent if that
+    // was merely a branching node itself.
+    private void prune(Node<V> parent, Node<V> node) {
+        boolean right = parent.right == node;
+        if (node.left != null && node.right != null) {
+            return;
+        }
+        Node<V> only = node.left != null ? node.left : node.right;
+        parent.setChild(right, only);
+        if (only != null || parent == root || parent.value != null) {
+            return;
+        }
+
+        // Parent was a branching node and now has a single child; look it
+        // up again from the root to find the grandparent.
+        Node<V> grandparent = root;
+        while (true) {
+            Node<V> next = grandparent.child(bit(parent.hi, parent.lo, grandparent.length));
+            if (next == parent) {
+                break;
+            }
+            grandparent = next;
+        }
+        Node<V> sibling = parent.left != null ? parent.left : parent.right;
+        grandparent.setChild(bit(parent.hi, parent.lo, grandparent.length), sibling);
+    }
+
+    private void checkVersion(IpAddress.Version other) {
+        checkArgument(version == other, "Expected %s prefix", version);
+    }
+
+    private long high(IpAddress address) {
+        if (address.isIp4()) {
+            return ((long) address.getIp4Address().toInt()) << Integer.SIZE;
+        }
+        return toLong(address.toOctets(), 0);
+    }
+
+    private long low(IpAddress address) {
+        if (address.isIp4()) {
+            return 0L;
+        }
+        return toLong(address.toOctets(), Long.BYTES);
+    }
+
+    private static long toLong(byte[] octets, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + Long.BYTES; i++) {
+            value = (value << Byte.SIZE) | (octets[i] & 0xff);
+        }
+        return value;
+    }
+
+    // Returns the bit at the given position, counting from the most
+    // significant bit of the high word.
+    private static boolean bit(long hi, long lo, int position) {
+        return position < Long.SIZE ?
+                (hi << position) < 0 : (lo << (position - Long.SIZE)) < 0;
+    }
+
+    // Returns the number of leading bits, up to the given limit, which the
+    // two keys have in common.
+    private static int commonLength(long hi1, long lo1, long hi2, long lo2,
+                                    int limit) {
+        long diff = hi1 ^ hi2;
+        int common = diff != 0 ? Long.numberOfLeadingZeros(diff) :
+                Long.SIZE + Long.numberOfLeadingZeros(lo1 ^ lo2);
+        return Math.min(common, limit);
+    }
+
+    // Trie node; bits of the key past the node length are irrelevant.
+    private static final class Node<V> {
+        private final long hi;
+        private final long lo;
+        private final int length;
+        private volatile V value;
+        private volatile Node<V> left;
+        private volatile Node<V> right;
+
+        private Node(long hi, long lo, int length, V value) {
+            this.hi = hi;
+            this.lo = lo;
+            this.length = length;
+            this.value = value;
+        }
+
+        private Node<V> child(boolean right) {
+            return right ? this.right : this.left;
+        }
+
+        private void setChild(boolean right, Node<V> child) {
+            if (right) {
+                this.right = child;
+            } else {
+                this.left = child;
+            }
+        }
+    }
+}
@@ -17,9 +17,10 @@ package org.onosproject.routing.impl;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -36,6 +38,9 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.packet.Ip4Address;
 import org.onlab.packet.Ip6Address;
 import org.onlab.packet.IpAddress;
@@ -60,16 +65,14 @@ import org.onosproject.routing.config.RoutingConfigurationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.googlecode.concurrenttrees.common.KeyValuePair;
-import com.googlecode.concurrenttrees.radix.node.concrete.DefaultByteArrayNodeFactory;
-import com.googlecode.concurrenttrees.radixinverted.ConcurrentInvertedRadixTree;
-import com.googlecode.concurrenttrees.radixinverted.InvertedRadixTree;
-
-import static org.onosproject.routing.RouteEntry.createBinaryString;
 
 /**
  * This class processes route updates and maintains a Routing Information Base
@@ -82,14 +85,14 @@ public class Router implements RoutingService {
 
     private static final Logger log = LoggerFactory.getLogger(Router.class);
 
-    // Route entries are stored in a radix tree.
-    // The key in this tree is the binary string of prefix of the route.
-    private InvertedRadixTree<RouteEntry> ribTable4;
-    private InvertedRadixTree<RouteEntry> ribTable6;
+    // Route entries are stored in a binary trie keyed by the route prefix.
+    private IpPrefixTrie<RouteEntry> ribTable4;
+    private IpPrefixTrie<RouteEntry> ribTable6;
 
     // Stores all incoming route updates in a queue.
     private final BlockingQueue<Collection<RouteUpdate>> routeUpdatesQueue =
             new LinkedBlockingQueue<>();
+    private final AtomicInteger pendingRouteUpdates = new AtomicInteger();
 
     // Next-hop IP address to route entry mapping for next hops pending MAC
     // resolution
@@ -110,15 +113,25 @@ public class Router implements RoutingService {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected RoutingConfigurationService routingConfigurationService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    private MetricsComponent metricsComponent;
+    private MetricsFeature routeUpdatesFeature;
+    private MetricsFeature fibUpdatesFeature;
+    private Meter routeUpdatesReceived;
+    private Meter routeUpdatesProcessed;
+    private Histogram routeUpdatesBatchSize;
+    private Timer fibUpdatesTimer;
+    private Histogram fibUpdatesBatchSize;
+
     private ExecutorService bgpUpdatesExecutor;
     private final HostListener hostListener = new InternalHostListener();
 
     @Activate
     public void activate() {
-        ribTable4 = new ConcurrentInvertedRadixTree<>(
-                new DefaultByteArrayNodeFactory());
-        ribTable6 = new ConcurrentInvertedRadixTree<>(
-                new DefaultByteArrayNodeFactory());
+        ribTable4 = new IpPrefixTrie<>(IpAddress.Version.INET);
+        ribTable6 = new IpPrefixTrie<>(IpAddress.Version.INET6);
 
         routesWaitingOnArp = Multimaps.synchronizedSetMultimap(
                 HashMultimap.<IpAddress, RouteEntry>create());
@@ -126,10 +139,14 @@ public class Router implements RoutingService {
         bgpUpdatesExecutor = Executors.newSingleThreadExecutor(
                 new ThreadFactoryBuilder()
                 .setNameFormat("sdnip-bgp-updates-%d").build());
+
+        registerMetrics();
     }
 
     @Deactivate
     public void deactivate() {
+        metricsService.removeMetric(metricsComponent, routeUpdatesFeature,
+                                    "queueDepth");
         log.debug("Stopped");
     }
 
@@ -169,16 +186,35 @@ public class Router implements RoutingService {
 
         synchronized (this) {
             // Cleanup all local state
-            ribTable4 = new ConcurrentInvertedRadixTree<>(
-                    new DefaultByteArrayNodeFactory());
-            ribTable6 = new ConcurrentInvertedRadixTree<>(
-                    new DefaultByteArrayNodeFactory());
+            ribTable4 = new IpPrefixTrie<>(IpAddress.Version.INET);
+            ribTable6 = new IpPrefixTrie<>(IpAddress.Version.INET6);
             routeUpdatesQueue.clear();
+            pendingRouteUpdates.set(0);
             routesWaitingOnArp.clear();
             ip2Mac.clear();
         }
     }
 
+    private void registerMetrics() {
+        metricsComponent = metricsService.registerComponent("Router");
+        routeUpdatesFeature = metricsComponent.registerFeature("routeUpdates");
+        fibUpdatesFeature = metricsComponent.registerFeature("fibUpdates");
+
+        routeUpdatesReceived = metricsService.createMeter(
+                metricsComponent, routeUpdatesFeature, "received");
+        routeUpdatesProcessed = metricsService.createMeter(
+                metricsComponent, routeUpdatesFeature, "processed");
+        routeUpdatesBatchSize = metricsService.createHistogram(
+                metricsComponent, routeUpdatesFeature, "batchSize");
+        metricsService.registerMetric(metricsComponent, routeUpdatesFeature,
+                "queueDepth", (Gauge<Integer>) pendingRouteUpdates::get);
+
+        fibUpdatesTimer = metricsService.createTimer(
+                metricsComponent, fibUpdatesFeature, "latency");
+        fibUpdatesBatchSize = metricsService.createHistogram(
+                metricsComponent, fibUpdatesFeature, "batchSize");
+    }
+
     /**
      * Entry point for route updates.
      *
@@ -186,6 +222,8 @@ public class Router implements RoutingService {
      */
     private void update(Collection<RouteUpdate> routeUpdates) {
         try {
+            routeUpdatesReceived.mark(routeUpdates.size());
+            pendingRouteUpdates.addAndGet(routeUpdates.size());
             routeUpdatesQueue.put(routeUpdates);
         } catch (InterruptedException e) {
             log.error("Interrupted while putting on routeUpdatesQueue", e);
@@ -201,9 +239,22 @@ public class Router implements RoutingService {
         try {
             while (!interrupted) {
                 try {
-                    Collection<RouteUpdate> routeUpdates =
-                            routeUpdatesQueue.take();
+                    // Process whatever has queued up behind the first batch
+                    // in one go, collapsing updates to the same prefix
+                    List<Collection<RouteUpdate>> batches = new ArrayList<>();
+                    batches.add(routeUpdatesQueue.take());
+                    routeUpdatesQueue.drainTo(batches);
+
+                    int received = 0;
+                    for (Collection<RouteUpdate> batch : batches) {
+                        received += batch.size();
+                    }
+                    pendingRouteUpdates.addAndGet(-received);
+
+                    Collection<RouteUpdate> routeUpdates = coalesce(batches);
+                    routeUpdatesBatchSize.update(routeUpdates.size());
                     processRouteUpdates(routeUpdates);
+                    routeUpdatesProcessed.mark(routeUpdates.size());
                 } catch (InterruptedException e) {
                     log.error("Interrupted while taking from updates queue", e);
                     interrupted = true;
@@ -225,17 +276,7 @@ public class Router implements RoutingService {
      */
     @Override
     public Collection<RouteEntry> getRoutes4() {
-        Iterator<KeyValuePair<RouteEntry>> it =
-                ribTable4.getKeyValuePairsForKeysStartingWith("").iterator();
-
-        List<RouteEntry> routes = new LinkedList<>();
-
-        while (it.hasNext()) {
-            KeyValuePair<RouteEntry> entry = it.next();
-            routes.add(entry.getValue());
-        }
-
-        return routes;
+        return ribTable4.values();
     }
 
     /**
@@ -245,17 +286,7 @@ public class Router implements RoutingService {
      */
     @Override
     public Collection<RouteEntry> getRoutes6() {
-        Iterator<KeyValuePair<RouteEntry>> it =
-                ribTable6.getKeyValuePairsForKeysStartingWith("").iterator();
-
-        List<RouteEntry> routes = new LinkedList<>();
-
-        while (it.hasNext()) {
-            KeyValuePair<RouteEntry> entry = it.next();
-            routes.add(entry.getValue());
-        }
-
-        return routes;
+        return ribTable6.values();
     }
 
     /**
@@ -266,13 +297,12 @@ public class Router implements RoutingService {
      * @return the route if found, otherwise null
      */
     RouteEntry findRibRoute(IpPrefix prefix) {
-        String binaryString = createBinaryString(prefix);
         if (prefix.isIp4()) {
             // IPv4
-            return ribTable4.getValueForExactKey(binaryString);
+            return ribTable4.get(prefix);
         }
         // IPv6
-        return ribTable6.getValueForExactKey(binaryString);
+        return ribTable6.get(prefix);
     }
 
     /**
@@ -283,12 +313,10 @@ public class Router implements RoutingService {
     void addRibRoute(RouteEntry routeEntry) {
         if (routeEntry.isIp4()) {
             // IPv4
-            ribTable4.put(createBinaryString(routeEntry.prefix()),
-                    routeEntry);
+            ribTable4.put(routeEntry.prefix(), routeEntry);
         } else {
             // IPv6
-            ribTable6.put(createBinaryString(routeEntry.prefix()),
-                    routeEntry);
+            ribTable6.put(routeEntry.prefix(), routeEntry);
         }
     }
 
@@ -302,10 +330,29 @@ public class Router implements RoutingService {
     boolean removeRibRoute(IpPrefix prefix) {
         if (prefix.isIp4()) {
             // IPv4
-            return ribTable4.remove(createBinaryString(prefix));
+            return ribTable4.remove(prefix);
         }
         // IPv6
-        return ribTable6.remove(createBinaryString(prefix));
+        return ribTable6.remove(prefix);
+    }
+
+    /**
+     * Collapses consecutive batches of route updates such that only the last
+     * update for each prefix remains, since it alone determines the final
+     * state of the RIB for that prefix.
+     *
+     * @param batches batches of route updates in order of arrival
+     * @return route updates with at most one update per prefix
+     */
+    static Collection<RouteUpdate> coalesce(
+            Collection<Collection<RouteUpdate>> batches) {
+        Map<IpPrefix, RouteUpdate> updates = new LinkedHashMap<>();
+        for (Collection<RouteUpdate> batch : batches) {
+            for (RouteUpdate update : batch) {
+                updates.put(update.routeEntry().prefix(), update);
+            }
+        }
+        return updates.values();
     }
 
     /**
@@ -344,7 +391,13 @@ public class Router implements RoutingService {
                     FibUpdate.Type.DELETE, new FibEntry(p, null, null))));
 
             if (!fibUpdates.isEmpty() || !fibWithdraws.isEmpty()) {
-                fibComponent.update(fibUpdates, fibWithdraws);
+                fibUpdatesBatchSize.update(fibUpdates.size() + fibWithdraws.size());
+                final Timer.Context context = fibUpdatesTimer.time();
+                try {
+                    fibComponent.update(fibUpdates, fibWithdraws);
+                } finally {
+                    context.stop();
+                }
             }
         }
     }
@@ -561,26 +614,10 @@ public class Router implements RoutingService {
 
     @Override
     public RouteEntry getLongestMatchableRouteEntry(IpAddress ipAddress) {
-        RouteEntry routeEntry = null;
-        Iterable<RouteEntry> routeEntries;
-
         if (ipAddress.isIp4()) {
-            routeEntries = ribTable4.getValuesForKeysPrefixing(
-                    createBinaryString(
-                    IpPrefix.valueOf(ipAddress, Ip4Address.BIT_LENGTH)));
-        } else {
-            routeEntries = ribTable6.getValuesForKeysPrefixing(
-                    createBinaryString(
-                    IpPrefix.valueOf(ipAddress, Ip6Address.BIT_LENGTH)));
-        }
-        if (routeEntries == null) {
-            return null;
-        }
-        Iterator<RouteEntry> it = routeEntries.iterator();
-        while (it.hasNext()) {
-            routeEntry = it.next();
+            return ribTable4.longestMatch(ipAddress);
         }
-        return routeEntry;
+        return ribTable6.longestMatch(ipAddress);
     }
 
     @Override
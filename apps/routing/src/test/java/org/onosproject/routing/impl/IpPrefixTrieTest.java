@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.routing.impl;
+
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for the IpPrefixTrie class.
+ */
+public class IpPrefixTrieTest {
+
+    private static IpPrefix prefix(String prefix) {
+        return IpPrefix.valueOf(prefix);
+    }
+
+    private static IpAddress address(String address) {
+        return IpAddress.valueOf(address);
+    }
+
+    /**
+     * Tests exact lookups, replacement and removal of IPv4 prefixes.
+     */
+    @Test
+    public void testPutGetRemove() {
+        IpPrefixTrie<String> trie = new IpPrefixTrie<>(IpAddress.Version.INET);
+
+        assertNull(trie.put(prefix("10.0.0.0/8"), "a"));
+        assertNull(trie.put(prefix("10.1.0.0/16"), "b"));
+        assertNull(trie.put(prefix("10.2.0.0/16"), "c"));
+        assertNull(trie.put(prefix("0.0.0.0/0"), "d"));
+        assertEquals("a", trie.put(prefix("10.0.0.0/8"), "e"));
+        assertEquals(4, trie.size());
+
+        assertEquals("e", trie.get(prefix("10.0.0.0/8")));
+        assertEquals("b", trie.get(prefix("10.1.0.0/16")));
+        assertEquals("d", trie.get(prefix("0.0.0.0/0")));
+        assertNull(trie.get(prefix("10.0.0.0/16")));
+        assertNull(trie.get(prefix("10.0.0.0/9")));
+        assertNull(trie.get(prefix("11.0.0.0/8")));
+
+        assertTrue(trie.remove(prefix("10.0.0.0/8")));
+        assertFalse(trie.remove(prefix("10.0.0.0/8")));
+        assertFalse(trie.remove(prefix("10.3.0.0/16")));
+        assertNull(trie.get(prefix("10.0.0.0/8")));
+        assertEquals("b", trie.get(prefix("10.1.0.0/16")));
+        assertEquals(3, trie.size());
+        assertThat(trie.values(), containsInAnyOrder("b", "c", "d"));
+    }
+
+    /**
+     * Tests longest prefix matching of IPv4 addresses.
+     */
+    @Test
+    public void testLongestMatch4() {
+        IpPrefixTrie<String> trie = new IpPrefixTrie<>(IpAddress.Version.INET);
+        assertNull(trie.longestMatch(address("10.1.1.1")));
+
+        trie.put(prefix("10.0.0.0/8"), "a");
+        trie.put(prefix("10.1.0.0/16"), "b");
+        trie.put(prefix("10.1.1.1/32"), "c");
+
+        assertEquals("c", trie.longestMatch(address("10.1.1.1")));
+        assertEquals("b", trie.longestMatch(address("10.1.1.2")));
+        assertEquals("a", trie.longestMatch(address("10.2.0.1")));
+        assertNull(trie.longestMatch(address("192.168.0.1")));
+
+        trie.put(prefix("0.0.0.0/0"), "d");
+        assertEquals("d", trie.longestMatch(address("192.168.0.1")));
+
+        trie.remove(prefix("10.1.0.0/16"));
+        assertEquals("a", trie.longestMatch(address("10.1.1.2")));
+        assertEquals("c", trie.longestMatch(address("10.1.1.1")));
+    }
+
+    /**
+     * Tests longest prefix matching of IPv6 addresses, across the boundary
+     * between the high and low words of the key.
+     */
+    @Test
+    public void testLongestMatch6() {
+        IpPrefixTrie<String> trie = new IpPrefixTrie<>(IpAddress.Version.INET6);
+
+        trie.put(prefix("2000::/16"), "a");
+        trie.put(prefix("2000:0:0:1::/64"), "b");
+        trie.put(prefix("2000:0:0:1:8000::/65"), "c");
+        trie.put(prefix("2000:0:0:1:8000::1/128"), "d");
+
+        assertEquals("d", trie.longestMatch(address("2000:0:0:1:8000::1")));
+        assertEquals("c", trie.longestMatch(address("2000:0:0:1:8000::2")));
+        assertEquals("b", trie.longestMatch(address("2000:0:0:1::1")));
+        assertEquals("a", trie.longestMatch(address("2000::1")));
+        assertNull(trie.longestMatch(address("2001::1")));
+        assertEquals("c", trie.get(prefix("2000:0:0:1:8000::/65")));
+    }
+
+    /**
+     * Tests that prefixes of the wrong address family are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongVersion() {
+        IpPrefixTrie<String> trie = new IpPrefixTrie<>(IpAddress.Version.INET);
+        trie.put(prefix("2000::/16"), "a");
+    }
+
+    /**
+     * Tests random inserts and removals against a brute-force reference.
+     */
+    @Test
+    public void testRandomized() {
+        Random random = new Random(42);
+        IpPrefixTrie<IpPrefix> trie = new IpPrefixTrie<>(IpAddress.Version.INET);
+        Map<IpPrefix, IpPrefix> reference = new HashMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            // Keep prefixes within 10.0.0.0/8 so that they overlap often
+            int address = 0x0a000000 | (random.nextInt() >>> 8);
+            IpPrefix prefix = IpPrefix.valueOf(address, 8 + random.nextInt(25));
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(prefix) != null, trie.remove(prefix));
+            } else {
+                assertEquals(reference.put(prefix, prefix), trie.put(prefix, prefix));
+            }
+        }
+        assertEquals(reference.size(), trie.size());
+        assertThat(trie.values(), containsInAnyOrder(reference.values().toArray()));
+
+        for (int i = 0; i < 5000; i++) {
+            IpAddress address = IpAddress.valueOf(0x0a000000 | (random.nextInt() >>> 8));
+            IpPrefix expected = null;
+            for (IpPrefix prefix : reference.keySet()) {
+                if (prefix.contains(address) && (expected == null ||
+                        prefix.prefixLength() > expected.prefixLength())) {
+                    expected = prefix;
+                }
+            }
+            assertEquals(expected, trie.longestMatch(address));
+        }
+    }
+}
@@ -20,6 +20,7 @@ import com.google.common.collect.Sets;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
 import org.onlab.packet.Ip4Address;
 import org.onlab.packet.Ip4Prefix;
 import org.onlab.packet.IpAddress;
@@ -93,6 +94,7 @@ public class RouterAsyncArpTest {
         router.hostService = hostService;
         router.routingConfigurationService = routingConfigurationService;
         router.bgpService = bgpService;
+        router.metricsService = new MetricsManager();
         router.activate();
 
         router.addFibListener(fibListener);
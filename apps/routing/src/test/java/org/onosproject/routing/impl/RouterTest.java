@@ -20,6 +20,7 @@ import com.google.common.collect.Sets;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
 import org.onlab.packet.Ip4Address;
 import org.onlab.packet.Ip4Prefix;
 import org.onlab.packet.IpAddress;
@@ -45,6 +46,8 @@ import org.onosproject.routing.RouteListener;
 import org.onosproject.routing.RouteUpdate;
 import org.onosproject.routing.config.RoutingConfigurationService;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 
 import static org.easymock.EasyMock.*;
@@ -99,6 +102,7 @@ public class RouterTest {
         router.hostService = hostService;
         router.routingConfigurationService = routingConfigurationService;
         router.bgpService = bgpService;
+        router.metricsService = new MetricsManager();
         router.activate();
 
         router.addFibListener(fibListener);
@@ -282,4 +286,34 @@ public class RouterTest {
         assertTrue(router.getRoutes4().contains(routeEntry));
         verify(fibListener);
     }
+
+    /**
+     * Tests that route updates for the same prefix are coalesced across
+     * batches, keeping only the latest update for each prefix.
+     */
+    @Test
+    public void testCoalesceRouteUpdates() {
+        RouteEntry routeEntry1 = new RouteEntry(
+                Ip4Prefix.valueOf("1.1.1.0/24"),
+                Ip4Address.valueOf("192.168.10.1"));
+        RouteEntry routeEntry2 = new RouteEntry(
+                Ip4Prefix.valueOf("1.1.1.0/24"),
+                Ip4Address.valueOf("192.168.20.1"));
+        RouteEntry routeEntry3 = new RouteEntry(
+                Ip4Prefix.valueOf("2.2.2.0/24"),
+                Ip4Address.valueOf("192.168.10.1"));
+
+        RouteUpdate add1 = new RouteUpdate(RouteUpdate.Type.UPDATE, routeEntry1);
+        RouteUpdate delete1 = new RouteUpdate(RouteUpdate.Type.DELETE, routeEntry1);
+        RouteUpdate add2 = new RouteUpdate(RouteUpdate.Type.UPDATE, routeEntry2);
+        RouteUpdate add3 = new RouteUpdate(RouteUpdate.Type.UPDATE, routeEntry3);
+
+        Collection<RouteUpdate> updates = Router.coalesce(Arrays.asList(
+                Arrays.asList(add1, add3), Arrays.asList(delete1),
+                Arrays.asList(add2)));
+
+        assertEquals(2, updates.size());
+        assertTrue(updates.contains(add2));
+        assertTrue(updates.contains(add3));
+    }
 }
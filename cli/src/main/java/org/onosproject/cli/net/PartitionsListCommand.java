@@ -18,6 +18,7 @@ package org.onosproject.cli.net;
 import java.util.List;
 
 import org.apache.karaf.shell.commands.Command;
+import org.apache.karaf.shell.commands.Option;
 import org.onosproject.cli.AbstractShellCommand;
 import org.onosproject.store.service.PartitionInfo;
 import org.onosproject.store.service.StorageAdminService;
@@ -34,6 +35,11 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
         description = "Lists information about partitions in the system")
 public class PartitionsListCommand extends AbstractShellCommand {
 
+    @Option(name = "-r", aliases = "--rebalance",
+            description = "Move entries stored outside of their assigned partitions",
+            required = false, multiValued = false)
+    private boolean rebalance = false;
+
     private static final String FMT = "%-20s %8s %25s %s";
 
     /**
@@ -98,6 +104,12 @@ public class PartitionsListCommand extends AbstractShellCommand {
     @Override
     protected void execute() {
         StorageAdminService storageAdminService = get(StorageAdminService.class);
+
+        if (rebalance) {
+            storageAdminService.rebalancePartitions();
+            return;
+        }
+
         List<PartitionInfo> partitionInfo = storageAdminService.getPartitionInfo();
 
         if (outputJson()) {
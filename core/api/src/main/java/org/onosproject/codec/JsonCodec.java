@@ -15,10 +15,12 @@
  */
 package org.onosproject.codec;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -40,6 +42,28 @@ public abstract class JsonCodec<T> {
         throw new UnsupportedOperationException("encode() not supported");
     }
 
+    /**
+     * Encodes the specified entity directly onto the given JSON generator,
+     * without building an intermediate JSON tree.
+     * <p>
+     * The default implementation writes the tree produced by
+     * {@link #encode(Object, CodecContext)}, using the object codec of the
+     * generator; codecs of entities returned in bulk should override it to
+     * write their fields directly.
+     * </p>
+     *
+     * @param entity    entity to encode
+     * @param context   encoding context
+     * @param generator JSON generator to write to
+     * @throws java.io.IOException if unable to write to the generator
+     * @throws java.lang.UnsupportedOperationException if the codec does not
+     *                                                 support encode operations
+     */
+    public void encode(T entity, CodecContext context, JsonGenerator generator)
+            throws IOException {
+        generator.writeTree(encode(entity, context));
+    }
+
     /**
      * Decodes the specified entity from JSON.
      *
@@ -32,14 +32,34 @@ public interface PacketService {
      * It will be added into the list in the order of priority. The higher
      * numbers will be processing the packets after the lower numbers.
      *
+     * Processors of the same priority are invoked in the order in which they
+     * were added.
+     *
      * @param processor processor to be added
      * @param priority  priority in the reverse natural order
-     * @throws java.lang.IllegalArgumentException if a processor with the
-     *                                            given priority already exists
      */
     void addProcessor(PacketProcessor processor, int priority);
 
-    // TODO allow processors to register for particular types of packets
+    /**
+     * Adds the specified processor to the list of packet processors, such
+     * that it is invoked only with the packets matching the given selector.
+     * It will be added into the list in the order of priority. The higher
+     * numbers will be processing the packets after the lower numbers.
+     * Processors of the same priority are invoked in the order in which they
+     * were added.
+     * <p>
+     * Only the layer 2 to layer 4 header fields of IPv4 packets, plus the
+     * ingress port, are inspected; criteria on any other fields are assumed
+     * to match, so processors must still check the packets they receive.
+     * </p>
+     *
+     * @param processor processor to be added
+     * @param priority  priority in the reverse natural order
+     * @param selector  selector the packets must match
+     */
+    void addProcessor(PacketProcessor processor, int priority,
+                      TrafficSelector selector);
+
 
     /**
      * Removes the specified processor from the processing pipeline.
@@ -17,6 +17,7 @@
 package org.onosproject.store.service;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -82,6 +83,15 @@ public interface ConsistentMap<K, V> {
      */
     Versioned<V> get(K key);
 
+    /**
+     * Returns the values (and versions) to which the specified keys are mapped.
+     *
+     * @param keys the keys whose associated values (and versions) are to be returned
+     * @return map of the keys present in this map to their values (and versions);
+     * keys for which this map contains no mapping are absent from the returned map
+     */
+    Map<K, Versioned<V>> getAll(Set<K> keys);
+
     /**
      * Associates the specified value with the specified key in this map (optional operation).
      * If the map previously contained a mapping for the key, the old value is replaced by the
@@ -94,6 +104,15 @@ public interface ConsistentMap<K, V> {
      */
     Versioned<V> put(K key, V value);
 
+    /**
+     * Associates each of the specified values with its key in this map, replacing
+     * any previous values. The entries are applied independently of one another;
+     * use a transaction if they must be updated atomically.
+     *
+     * @param entries map of keys to the values to be associated with them
+     */
+    void putAll(Map<K, V> entries);
+
     /**
      * Removes the mapping for a key from this map if it is present (optional operation).
      *
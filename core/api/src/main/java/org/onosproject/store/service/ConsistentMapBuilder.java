@@ -55,6 +55,24 @@ public interface ConsistentMapBuilder<K, V> {
      */
     public ConsistentMapBuilder<K, V> withPartitionsDisabled();
 
+    /**
+     * Enables a near cache of map entries local to this instance.
+     * <p>
+     * Reads of cached keys are then served locally, without consulting the
+     * database. Cached entries are invalidated whenever they are updated
+     * through any map of the same name in the cluster, and in any case expire
+     * after a short period; reads may therefore return values that have been
+     * superseded very recently. A near cache is best suited to read-mostly
+     * maps that can tolerate such staleness.
+     * </p>
+     * <p>
+     * Note: By default the near cache is disabled.
+     * </p>
+     *
+     * @return this ConsistentMapBuilder
+     */
+    public ConsistentMapBuilder<K, V> withNearCache();
+
     /**
      * Builds an consistent map based on the configuration options
      * supplied to this builder.
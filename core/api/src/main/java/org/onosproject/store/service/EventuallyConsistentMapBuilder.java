@@ -175,6 +175,44 @@ public interface EventuallyConsistentMapBuilder<K, V> {
      */
     public EventuallyConsistentMapBuilder<K, V> withPersistence();
 
+    /**
+     * Configures the maximum number of updates of a persistent map that are
+     * written to disk at once.
+     * <p>
+     * The default batch size is 1000 updates.
+     * </p>
+     *
+     * @param maxBatchSize maximum number of updates per disk write
+     * @return this EventuallyConsistentMapBuilder
+     */
+    public EventuallyConsistentMapBuilder<K, V> withPersistenceBatchSize(int maxBatchSize);
+
+    /**
+     * Configures how long an update of a persistent map may be held back
+     * before it is written to disk along with the updates that follow it.
+     * <p>
+     * The default is 100 milliseconds.
+     * </p>
+     *
+     * @param maxBatchMillis maximum age in millis of a batched update
+     * @return this EventuallyConsistentMapBuilder
+     */
+    public EventuallyConsistentMapBuilder<K, V> withPersistenceBatchMillis(int maxBatchMillis);
+
+    /**
+     * Configure anti-entropy to exchange compact digests of the map contents
+     * first and advertise timestamps only for the portions of the map that
+     * differ between the peers. Suited to large maps that are mostly in sync,
+     * where sending a full advertisement each cycle is wasteful.
+     * <p>
+     * The default behavior is to advertise the timestamps of all entries
+     * in each anti-entropy cycle.
+     * </p>
+     *
+     * @return this EventuallyConsistentMapBuilder
+     */
+    public EventuallyConsistentMapBuilder<K, V> withDigestAntiEntropy();
+
     /**
      * Builds an eventually consistent map based on the configuration options
      * supplied to this builder.
@@ -56,4 +56,11 @@ public interface StorageAdminService {
      * Redrives stuck transactions while removing those that are done.
      */
     void redriveTransactions();
+
+    /**
+     * Starts moving database entries that are not stored in the partitions
+     * assigned to them by the current partition layout, such as after
+     * partitions have been added, to those partitions in the background.
+     */
+    void rebalancePartitions();
 }
@@ -15,12 +15,15 @@
  */
 package org.onosproject.codec;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.List;
 import java.util.Objects;
 
@@ -79,6 +82,16 @@ public class JsonCodecTest {
         assertEquals("incorrect encode/decode", entities, foos);
     }
 
+    @Test
+    public void encodeToGenerator() throws IOException {
+        TestContext context = new TestContext();
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = new ObjectMapper().getFactory().createGenerator(writer)) {
+            new FooCodec().encode(new Foo("foo"), context, generator);
+        }
+        assertEquals("incorrect encoding", "{\"name\":\"foo\"}", writer.toString());
+    }
+
     private class TestContext implements CodecContext {
         private ObjectMapper mapper = new ObjectMapper();
         @Override
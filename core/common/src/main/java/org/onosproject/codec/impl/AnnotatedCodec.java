@@ -15,6 +15,7 @@
  */
 package org.onosproject.codec.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.onosproject.codec.CodecContext;
@@ -23,6 +24,8 @@ import org.onosproject.net.Annotated;
 import org.onosproject.net.Annotations;
 import org.onosproject.net.DefaultAnnotations;
 
+import java.io.IOException;
+
 /**
  * Base JSON codec for annotated entities.
  */
@@ -44,6 +47,24 @@ public abstract class AnnotatedCodec<T extends Annotated> extends JsonCodec<T> {
         return node;
     }
 
+    /**
+     * Writes JSON encoding of the given item annotations to the specified
+     * generator, which must be positioned within an object.
+     *
+     * @param generator JSON generator to write annotations to
+     * @param entity    annotated entity
+     * @param context   encode context
+     * @throws IOException if unable to write to the generator
+     */
+    protected void annotate(JsonGenerator generator, T entity, CodecContext context)
+            throws IOException {
+        if (!entity.annotations().keys().isEmpty()) {
+            JsonCodec<Annotations> codec = context.codec(Annotations.class);
+            generator.writeFieldName("annotations");
+            codec.encode(entity.annotations(), context, generator);
+        }
+    }
+
     /**
      * Extracts annotations of given Object.
      *
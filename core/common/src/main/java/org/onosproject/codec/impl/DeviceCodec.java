@@ -15,6 +15,7 @@
  */
 package org.onosproject.codec.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.onlab.packet.ChassisId;
@@ -27,6 +28,8 @@ import org.onosproject.net.DeviceId;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.provider.ProviderId;
 
+import java.io.IOException;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.onosproject.net.DeviceId.deviceId;
 
@@ -62,6 +65,25 @@ public final class DeviceCodec extends AnnotatedCodec<Device> {
         return annotate(result, device, context);
     }
 
+    @Override
+    public void encode(Device device, CodecContext context, JsonGenerator generator)
+            throws IOException {
+        checkNotNull(device, "Device cannot be null");
+        DeviceService service = context.get(DeviceService.class);
+        generator.writeStartObject();
+        generator.writeStringField(ID, device.id().toString());
+        generator.writeStringField(TYPE, device.type().name());
+        generator.writeBooleanField("available", service.isAvailable(device.id()));
+        generator.writeStringField("role", service.getRole(device.id()).toString());
+        generator.writeStringField(MFR, device.manufacturer());
+        generator.writeStringField(HW, device.hwVersion());
+        generator.writeStringField(SW, device.swVersion());
+        generator.writeStringField(SERIAL, device.serialNumber());
+        generator.writeStringField(CHASSIS_ID, device.chassisId().toString());
+        annotate(generator, device, context);
+        generator.writeEndObject();
+    }
+
 
     /**
      * {@inheritDoc}
@@ -21,8 +21,11 @@ import org.onosproject.net.flow.FlowEntry;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -63,5 +66,41 @@ public final class FlowEntryCodec extends JsonCodec<FlowEntry> {
         return result;
     }
 
+    @Override
+    public void encode(FlowEntry flowEntry, CodecContext context,
+                       JsonGenerator generator) throws IOException {
+        checkNotNull(flowEntry, "Flow entry cannot be null");
+
+        generator.writeStartObject();
+        generator.writeStringField("id", Long.toString(flowEntry.id().value()));
+        generator.writeNumberField("appId", flowEntry.appId());
+        generator.writeNumberField("groupId", flowEntry.groupId().id());
+        generator.writeNumberField("priority", flowEntry.priority());
+        generator.writeNumberField("timeout", flowEntry.timeout());
+        generator.writeBooleanField("isPermanent", flowEntry.isPermanent());
+        generator.writeStringField("deviceId", flowEntry.deviceId().toString());
+        generator.writeStringField("state", flowEntry.state().toString());
+        generator.writeNumberField("life", flowEntry.life());
+        generator.writeNumberField("packets", flowEntry.packets());
+        generator.writeNumberField("bytes", flowEntry.bytes());
+        generator.writeNumberField("lastSeen", flowEntry.lastSeen());
+
+        if (flowEntry.treatment() != null) {
+            final JsonCodec<TrafficTreatment> treatmentCodec =
+                    context.codec(TrafficTreatment.class);
+            generator.writeFieldName("treatment");
+            treatmentCodec.encode(flowEntry.treatment(), context, generator);
+        }
+
+        if (flowEntry.selector() != null) {
+            final JsonCodec<TrafficSelector> selectorCodec =
+                    context.codec(TrafficSelector.class);
+            generator.writeFieldName("selector");
+            selectorCodec.encode(flowEntry.selector(), context, generator);
+        }
+
+        generator.writeEndObject();
+    }
+
 }
 
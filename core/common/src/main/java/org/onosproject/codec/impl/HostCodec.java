@@ -21,9 +21,12 @@ import org.onosproject.codec.JsonCodec;
 import org.onosproject.net.Host;
 import org.onosproject.net.HostLocation;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -51,5 +54,28 @@ public final class HostCodec extends AnnotatedCodec<Host> {
         return annotate(result, host, context);
     }
 
+    @Override
+    public void encode(Host host, CodecContext context, JsonGenerator generator)
+            throws IOException {
+        checkNotNull(host, "Host cannot be null");
+        final JsonCodec<HostLocation> locationCodec =
+                context.codec(HostLocation.class);
+        generator.writeStartObject();
+        generator.writeStringField("id", host.id().toString());
+        generator.writeStringField("mac", host.mac().toString());
+        generator.writeStringField("vlan", host.vlan().toString());
+
+        generator.writeArrayFieldStart("ipAddresses");
+        for (final IpAddress ipAddress : host.ipAddresses()) {
+            generator.writeString(ipAddress.toString());
+        }
+        generator.writeEndArray();
+        generator.writeFieldName("location");
+        locationCodec.encode(host.location(), context, generator);
+
+        annotate(generator, host, context);
+        generator.writeEndObject();
+    }
+
 }
 
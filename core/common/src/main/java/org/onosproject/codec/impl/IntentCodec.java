@@ -20,9 +20,12 @@ import org.onosproject.codec.JsonCodec;
 import org.onosproject.net.NetworkResource;
 import org.onosproject.net.intent.Intent;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -46,4 +49,22 @@ public final class IntentCodec extends JsonCodec<Intent> {
         }
         return result;
     }
+
+    @Override
+    public void encode(Intent intent, CodecContext context, JsonGenerator generator)
+            throws IOException {
+        checkNotNull(intent, "Intent cannot be null");
+        generator.writeStartObject();
+        generator.writeStringField("type", intent.getClass().getSimpleName());
+        generator.writeStringField("id", intent.id().toString());
+        generator.writeStringField("appId", intent.appId().toString());
+        generator.writeStringField("details", intent.toString());
+
+        generator.writeArrayFieldStart("resources");
+        for (final NetworkResource resource : intent.resources()) {
+            generator.writeString(resource.toString());
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
 }
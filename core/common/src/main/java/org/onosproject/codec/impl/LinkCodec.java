@@ -15,6 +15,7 @@
  */
 package org.onosproject.codec.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.onosproject.codec.CodecContext;
@@ -26,6 +27,8 @@ import org.onosproject.net.Link;
 import org.onosproject.net.Link.Type;
 import org.onosproject.net.provider.ProviderId;
 
+import java.io.IOException;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -49,6 +52,21 @@ public final class LinkCodec extends AnnotatedCodec<Link> {
         return annotate(result, link, context);
     }
 
+    @Override
+    public void encode(Link link, CodecContext context, JsonGenerator generator)
+            throws IOException {
+        checkNotNull(link, "Link cannot be null");
+        JsonCodec<ConnectPoint> codec = context.codec(ConnectPoint.class);
+        generator.writeStartObject();
+        generator.writeFieldName(SRC);
+        codec.encode(link.src(), context, generator);
+        generator.writeFieldName(DST);
+        codec.encode(link.dst(), context, generator);
+        generator.writeStringField(TYPE, link.type().toString());
+        annotate(generator, link, context);
+        generator.writeEndObject();
+    }
+
 
     /**
      * {@inheritDoc}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.common.host;
+
+import com.google.common.collect.ImmutableSet;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Sets.newConcurrentHashSet;
+
+/**
+ * Secondary indexes of hosts by device, MAC address, VLAN and IP address,
+ * shared by host store implementations.
+ * <p>
+ * The indexes hold only host identifiers; lookups resolve them through the
+ * owning store's host inventory. Callers are expected to serialize
+ * {@link #index(Host)} and {@link #unindex(Host)} with their own updates to
+ * that inventory. Lookups may run concurrently with updates; hosts which
+ * no longer carry the requested attribute are filtered out.
+ * </p>
+ */
+public final class HostIndex {
+
+    private final Function<HostId, ? extends Host> hosts;
+
+    private final ConcurrentMap<DeviceId, Set<HostId>> devices = new ConcurrentHashMap<>();
+    private final ConcurrentMap<MacAddress, Set<HostId>> macs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<VlanId, Set<HostId>> vlans = new ConcurrentHashMap<>();
+    private final ConcurrentMap<IpAddress, Set<HostId>> ips = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new host index.
+     *
+     * @param hosts function resolving a host identifier to the stored host,
+     *              or null if the host is no longer present
+     */
+    public HostIndex(Function<HostId, ? extends Host> hosts) {
+        this.hosts = checkNotNull(hosts);
+    }
+
+    /**
+     * Adds the given host to the indexes.
+     *
+     * @param host host to index
+     */
+    public void index(Host host) {
+        put(devices, host.location().deviceId(), host.id());
+        put(macs, host.mac(), host.id());
+        put(vlans, host.vlan(), host.id());
+        for (IpAddress ip : host.ipAddresses()) {
+            put(ips, ip, host.id());
+        }
+    }
+
+    /**
+     * Removes the given host from the indexes.
+     *
+     * @param host host to unindex, as it was when last indexed
+     */
+    public void unindex(Host host) {
+        remove(devices, host.location().deviceId(), host.id());
+        remove(macs, host.mac(), host.id());
+        remove(vlans, host.vlan(), host.id());
+        for (IpAddress ip : host.ipAddresses()) {
+            remove(ips, ip, host.id());
+        }
+    }
+
+    /**
+     * Removes all entries from the indexes.
+     */
+    public void clear() {
+        devices.clear();
+        macs.clear();
+        vlans.clear();
+        ips.clear();
+    }
+
+    /**
+     * Returns the hosts in the given VLAN.
+     *
+     * @param vlanId vlan identifier
+     * @return set of hosts
+     */
+    public Set<Host> getHosts(VlanId vlanId) {
+        return resolve(vlans.get(vlanId), h -> h.vlan().equals(vlanId));
+    }
+
+    /**
+     * Returns the hosts with the given MAC address.
+     *
+     * @param mac mac address
+     * @return set of hosts
+     */
+    public Set<Host> getHosts(MacAddress mac) {
+        return resolve(macs.get(mac), h -> h.mac().equals(mac));
+    }
+
+    /**
+     * Returns the hosts with the given IP address.
+     *
+     * @param ip ip address
+     * @return set of hosts
+     */
+    public Set<Host> getHosts(IpAddress ip) {
+        return resolve(ips.get(ip), h -> h.ipAddresses().contains(ip));
+    }
+
+    /**
+     * Returns the hosts attached to the given device.
+     *
+     * @param deviceId device identifier
+     * @return set of hosts
+     */
+    public Set<Host> getConnectedHosts(DeviceId deviceId) {
+        return resolve(devices.get(deviceId),
+                       h -> h.location().deviceId().equals(deviceId));
+    }
+
+    // Resolves the identifiers found in an index to hosts, skipping any
+    // which have been removed or no longer match in the meantime.
+    private Set<Host> resolve(Set<HostId> hostIds, Predicate<Host> matches) {
+        if (hostIds == null) {
+            return ImmutableSet.of();
+        }
+        ImmutableSet.Builder<Host> builder = ImmutableSet.builder();
+        for (HostId hostId : hostIds) {
+            Host host = hosts.apply(hostId);
+            if (host != null && matches.test(host)) {
+                builder.add(host);
+            }
+        }
+        return builder.build();
+    }
+
+    private static <K> void put(ConcurrentMap<K, Set<HostId>> index,
+                                K key, HostId hostId) {
+        index.compute(key, (k, ids) -> {
+            Set<HostId> set = ids != null ? ids : newConcurrentHashSet();
+            set.add(hostId);
+            return set;
+        });
+    }
+
+    // Drops the set once it empties; compute keeps this atomic with respect
+    // to a concurrent put under the same key.
+    private static <K> void remove(ConcurrentMap<K, Set<HostId>> index,
+                                   K key, HostId hostId) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(hostId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
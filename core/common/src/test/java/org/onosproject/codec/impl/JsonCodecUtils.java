@@ -32,15 +32,20 @@ import org.onosproject.net.PortNumber;
 import org.onosproject.net.SparseAnnotations;
 import org.onosproject.net.provider.ProviderId;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 /**
  * JsonCodec test utilities.
  */
 public abstract class JsonCodecUtils {
 
     /**
-     * Checks if given Object can be encoded to JSON and back.
+     * Checks if given Object can be encoded to JSON and back, and that the
+     * streamed encoding yields the same JSON as the tree encoding.
      *
      * @param context CodecContext
      * @param codec JsonCodec
@@ -58,6 +63,18 @@ public abstract class JsonCodecUtils {
         assertThat(pojoOut, is(notNullValue()));
 
         assertEquals(pojoIn, pojoOut);
+
+        final StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = context.mapper().getFactory().createGenerator(writer)) {
+            codec.encode(pojoIn, context, generator);
+        } catch (IOException e) {
+            throw new AssertionError("Unable to stream JSON", e);
+        }
+        try {
+            assertEquals(json, context.mapper().readTree(writer.toString()));
+        } catch (IOException e) {
+            throw new AssertionError("Unable to parse streamed JSON", e);
+        }
     }
 
     static final ProviderId PID = new ProviderId("of", "foo");
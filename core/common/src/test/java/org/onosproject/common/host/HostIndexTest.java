@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.common.host;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.DefaultHost;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.provider.ProviderId;
+
+import java.text.DecimalFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of the host index.
+ */
+public class HostIndexTest {
+
+    private static final ProviderId PID = new ProviderId("of", "foo");
+    private static final MacAddress MAC = MacAddress.valueOf("00:00:11:00:00:01");
+    private static final VlanId VLAN = VlanId.vlanId((short) 10);
+    private static final IpAddress IP1 = IpAddress.valueOf("10.0.0.1");
+    private static final IpAddress IP2 = IpAddress.valueOf("10.0.0.2");
+    private static final DeviceId D1 = DeviceId.deviceId("of:foo");
+    private static final DeviceId D2 = DeviceId.deviceId("of:bar");
+    private static final HostId HID = HostId.hostId(MAC, VLAN);
+
+    private static final int PERF_HOSTS = 20000;
+    private static final int PERF_LOOKUPS = 100;
+
+    private final Map<HostId, Host> hosts = new HashMap<>();
+    private final HostIndex index = new HostIndex(hosts::get);
+
+    private Host host(DeviceId deviceId, IpAddress... ips) {
+        HostLocation loc = new HostLocation(deviceId, PortNumber.portNumber(1), 0L);
+        return new DefaultHost(PID, HID, MAC, VLAN, loc, ImmutableSet.copyOf(ips));
+    }
+
+    private void add(Host host) {
+        hosts.put(host.id(), host);
+        index.index(host);
+    }
+
+    @Test
+    public void indexed() {
+        Host host = host(D1, IP1, IP2);
+        add(host);
+        assertEquals(ImmutableSet.of(host), index.getHosts(MAC));
+        assertEquals(ImmutableSet.of(host), index.getHosts(VLAN));
+        assertEquals(ImmutableSet.of(host), index.getHosts(IP1));
+        assertEquals(ImmutableSet.of(host), index.getHosts(IP2));
+        assertEquals(ImmutableSet.of(host), index.getConnectedHosts(D1));
+        assertTrue(index.getConnectedHosts(D2).isEmpty());
+    }
+
+    @Test
+    public void reindexed() {
+        Host old = host(D1, IP1);
+        add(old);
+        Host moved = host(D2, IP2);
+        hosts.put(moved.id(), moved);
+        index.unindex(old);
+        index.index(moved);
+        assertTrue(index.getConnectedHosts(D1).isEmpty());
+        assertTrue(index.getHosts(IP1).isEmpty());
+        assertEquals(ImmutableSet.of(moved), index.getConnectedHosts(D2));
+        assertEquals(ImmutableSet.of(moved), index.getHosts(IP2));
+    }
+
+    @Test
+    public void removedHostsSkipped() {
+        add(host(D1, IP1));
+        hosts.clear();
+        assertTrue(index.getHosts(MAC).isEmpty());
+        index.clear();
+        hosts.put(HID, host(D1, IP1));
+        assertTrue(index.getConnectedHosts(D1).isEmpty());
+    }
+
+    @Test
+    public void staleEntriesSkipped() {
+        Host old = host(D1, IP1);
+        add(old);
+        // Inventory updated, but the old entry not yet unindexed.
+        Host moved = host(D2, IP2);
+        hosts.put(moved.id(), moved);
+        assertTrue(index.getConnectedHosts(D1).isEmpty());
+        assertTrue(index.getHosts(IP1).isEmpty());
+        assertEquals(ImmutableSet.of(moved), index.getHosts(MAC));
+    }
+
+    @Test
+    public void comparativePerf() {
+        for (int i = 0; i < PERF_HOSTS; i++) {
+            MacAddress mac = MacAddress.valueOf(i + 1);
+            IpAddress ip = IpAddress.valueOf(0x0a000000 + i);
+            HostLocation loc = new HostLocation(D1, PortNumber.portNumber(1), 0L);
+            add(new DefaultHost(PID, HostId.hostId(mac, VLAN), mac, VLAN,
+                                loc, ImmutableSet.of(ip)));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < PERF_LOOKUPS; i++) {
+            IpAddress ip = IpAddress.valueOf(0x0a000000 + i * (PERF_HOSTS / PERF_LOOKUPS));
+            assertEquals(1, scan(ip).size());
+        }
+        long scanCost = (System.nanoTime() - start) / PERF_LOOKUPS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < PERF_LOOKUPS; i++) {
+            IpAddress ip = IpAddress.valueOf(0x0a000000 + i * (PERF_HOSTS / PERF_LOOKUPS));
+            assertEquals(1, index.getHosts(ip).size());
+        }
+        long indexedCost = (System.nanoTime() - start) / PERF_LOOKUPS;
+
+        DecimalFormat fmt = new DecimalFormat("#,###");
+        System.out.println("Lookup cost for " + PERF_HOSTS + " hosts is " +
+                                   fmt.format(scanCost) + " nanos scanned and " +
+                                   fmt.format(indexedCost) + " nanos indexed");
+    }
+
+    // Linear scan, as the host stores did before they were indexed.
+    private Set<Host> scan(IpAddress ip) {
+        ImmutableSet.Builder<Host> builder = ImmutableSet.builder();
+        for (Host host : hosts.values()) {
+            if (host.ipAddresses().contains(ip)) {
+                builder.add(host);
+            }
+        }
+        return builder.build();
+    }
+}
@@ -15,71 +15,373 @@
  */
 package org.onosproject.event.impl;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Timer;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.event.AbstractEvent;
 import org.onosproject.event.DefaultEventSinkRegistry;
 import org.onosproject.event.Event;
 import org.onosproject.event.EventDeliveryService;
 import org.onosproject.event.EventSink;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Dictionary;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static org.onlab.metrics.MetricsUtil.startTimer;
+import static org.onlab.metrics.MetricsUtil.stopTimer;
+import static org.onlab.util.Tools.get;
 import static org.onlab.util.Tools.groupedThreads;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Simple implementation of an event dispatching service.
+ * <p>
+ * Events are dispatched by one or more workers. When more than one worker
+ * is configured, events are sharded across the workers by their subject,
+ * which preserves the order of events that pertain to the same subject, but
+ * allows listeners to be notified of unrelated events concurrently.
+ * </p>
  */
 @Component(immediate = true)
 @Service
 public class CoreEventDispatcher extends DefaultEventSinkRegistry
         implements EventDeliveryService {
 
+    private static final int DEFAULT_DISPATCH_WORKERS = 1;
+    private static final int DEFAULT_MAX_EXECUTE_MS = 2000;
+    private static final long WATCHDOG_PERIOD_MS = 500;
+    private static final long DRAIN_TIMEOUT_MS = 5000;
+
+    private static final String COMPONENT = "EventDispatcher";
+    private static final String DISPATCH = "Dispatch";
+
     private final Logger log = getLogger(getClass());
 
-    private final ExecutorService executor =
-            newSingleThreadExecutor(groupedThreads("onos/event", "dispatch-%d"));
+    @Property(name = "dispatchWorkers", intValue = DEFAULT_DISPATCH_WORKERS,
+            label = "Number of event dispatch workers; events are sharded " +
+                    "across workers by subject, so listeners must be thread-safe " +
+                    "when more than one worker is used")
+    private int dispatchWorkers = DEFAULT_DISPATCH_WORKERS;
+
+    @Property(name = "maxExecuteMs", intValue = DEFAULT_MAX_EXECUTE_MS,
+            label = "Maximum number of millis a sink may spend processing " +
+                    "a single event before it is reported as blocked")
+    private int maxExecuteMs = DEFAULT_MAX_EXECUTE_MS;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
 
     @SuppressWarnings("unchecked")
     private static final Event KILL_PILL = new AbstractEvent(null, 0) {
     };
 
-    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private final ConcurrentMap<Class, SinkMetrics> sinkMetrics =
+            new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+    private ScheduledExecutorService watchdog;
+    private MetricsComponent metricsComponent;
+    private Counter blockedCounter;
+
+    private volatile DispatchLoop[] loops = createLoops(DEFAULT_DISPATCH_WORKERS);
+
+    // Posting holds the read lock, replacing the loops the write lock, so
+    // that no event lands in a loop after it has been sent the kill-pill.
+    private final ReadWriteLock loopsLock = new ReentrantReadWriteLock();
 
     private volatile boolean stopped = false;
 
     @Override
     public void post(Event event) {
-        events.add(event);
+        metricsFor(event.getClass()).pending.incrementAndGet();
+        loopsLock.readLock().lock();
+        try {
+            loopFor(event).events.add(event);
+        } finally {
+            loopsLock.readLock().unlock();
+        }
     }
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
         stopped = false;
-        executor.execute(new DispatchLoop());
-        log.info("Started");
+        if (metricsService != null) {
+            metricsComponent = metricsService.registerComponent(COMPONENT);
+            blockedCounter = metricsService.createCounter(metricsComponent,
+                    metricsComponent.registerFeature(DISPATCH), "blockedSinks");
+        }
+
+        readComponentConfiguration(context);
+        if (loops.length != dispatchWorkers) {
+            resizeLoops(dispatchWorkers);
+        }
+        startLoops(loops);
+
+        watchdog = newSingleThreadScheduledExecutor(groupedThreads("onos/event", "watchdog"));
+        watchdog.scheduleAtFixedRate(this::checkBlockedSinks, WATCHDOG_PERIOD_MS,
+                                     WATCHDOG_PERIOD_MS, TimeUnit.MILLISECONDS);
+        log.info("Started with {} dispatch workers", loops.length);
     }
 
     @Deactivate
     public void deactivate() {
         stopped = true;
-        post(KILL_PILL);
+        watchdog.shutdownNow();
+        loopsLock.writeLock().lock();
+        try {
+            stopLoops(loops);
+            loops = createLoops(loops.length);
+        } finally {
+            loopsLock.writeLock().unlock();
+        }
+        executor.shutdown();
+        executor = null;
+        if (metricsService != null) {
+            sinkMetrics.keySet().forEach(this::removeMetrics);
+            metricsService.removeMetric(metricsComponent,
+                    metricsComponent.registerFeature(DISPATCH), "blockedSinks");
+        }
+        sinkMetrics.clear();
         log.info("Stopped");
     }
 
-    // Auxiliary event dispatching loop that feeds off the events queue.
+    @Modified
+    public void modified(ComponentContext context) {
+        int oldWorkers = dispatchWorkers;
+        readComponentConfiguration(context);
+        if (oldWorkers != dispatchWorkers) {
+            resizeLoops(dispatchWorkers);
+            log.info("Reconfigured with {} dispatch workers", dispatchWorkers);
+        }
+    }
+
+    /**
+     * Extracts properties from the component configuration context.
+     *
+     * @param context the component context
+     */
+    private void readComponentConfiguration(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+
+        Dictionary<?, ?> properties = context.getProperties();
+        try {
+            String s = get(properties, "dispatchWorkers");
+            int newWorkers = isNullOrEmpty(s) ? dispatchWorkers : Integer.parseInt(s.trim());
+
+            s = get(properties, "maxExecuteMs");
+            int newMaxExecuteMs = isNullOrEmpty(s) ? maxExecuteMs : Integer.parseInt(s.trim());
+
+            dispatchWorkers = newWorkers > 0 ? newWorkers : DEFAULT_DISPATCH_WORKERS;
+            maxExecuteMs = newMaxExecuteMs > 0 ? newMaxExecuteMs : DEFAULT_MAX_EXECUTE_MS;
+        } catch (NumberFormatException | ClassCastException e) {
+            dispatchWorkers = DEFAULT_DISPATCH_WORKERS;
+            maxExecuteMs = DEFAULT_MAX_EXECUTE_MS;
+        }
+    }
+
+    // Replaces the current dispatch loops with the given number of new ones.
+    // New loops are not started until the old ones drain their queues, which
+    // keeps events for the same subject in order across the switch-over.
+    private synchronized void resizeLoops(int count) {
+        DispatchLoop[] oldLoops;
+        ExecutorService oldExecutor = executor;
+        loopsLock.writeLock().lock();
+        try {
+            oldLoops = loops;
+            loops = createLoops(count);
+            if (oldExecutor == null) {
+                // Not yet started; carry over any events posted so far.
+                requeue(oldLoops);
+                return;
+            }
+            stopLoops(oldLoops);
+        } finally {
+            loopsLock.writeLock().unlock();
+        }
+
+        oldExecutor.shutdown();
+        try {
+            if (!oldExecutor.awaitTermination(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("Dispatch workers did not drain within {} ms", DRAIN_TIMEOUT_MS);
+                oldExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            oldExecutor.shutdownNow();
+        }
+
+        // Hand whatever the old loops did not get to over to the new ones
+        loopsLock.writeLock().lock();
+        try {
+            requeue(oldLoops);
+        } finally {
+            loopsLock.writeLock().unlock();
+        }
+        startLoops(loops);
+    }
+
+    // Moves the events left in the given retired loops to the current loops,
+    // ahead of the events posted to the current loops since the switch-over.
+    // Must be called with the write lock held.
+    private void requeue(DispatchLoop[] oldLoops) {
+        DispatchLoop[] current = loops;
+        List<List<Event>> posted = new ArrayList<>(current.length);
+        for (DispatchLoop loop : current) {
+            List<Event> events = new ArrayList<>();
+            loop.events.drainTo(events);
+            posted.add(events);
+        }
+        for (DispatchLoop loop : oldLoops) {
+            List<Event> left = new ArrayList<>();
+            loop.events.drainTo(left);
+            left.stream().filter(e -> e != KILL_PILL).forEach(e -> loopFor(e).events.add(e));
+        }
+        for (int i = 0; i < current.length; i++) {
+            current[i].events.addAll(posted.get(i));
+        }
+        // Retired loops still running must keep finding their kill-pill
+        stopLoops(oldLoops);
+    }
+
+    private DispatchLoop[] createLoops(int count) {
+        DispatchLoop[] newLoops = new DispatchLoop[count];
+        for (int i = 0; i < count; i++) {
+            newLoops[i] = new DispatchLoop();
+        }
+        return newLoops;
+    }
+
+    private void startLoops(DispatchLoop[] newLoops) {
+        executor = newFixedThreadPool(newLoops.length,
+                                      groupedThreads("onos/event", "dispatch-%d"));
+        Arrays.stream(newLoops).forEach(executor::execute);
+    }
+
+    private void stopLoops(DispatchLoop[] oldLoops) {
+        Arrays.stream(oldLoops).forEach(loop -> loop.events.add(KILL_PILL));
+    }
+
+    // Selects the dispatch loop responsible for the subject of the event.
+    private DispatchLoop loopFor(Event event) {
+        DispatchLoop[] current = loops;
+        if (current.length == 1) {
+            return current[0];
+        }
+        Object subject = event.subject();
+        int hash = subject == null ? 0 : subject.hashCode();
+        hash ^= hash >>> 16;
+        return current[(hash & Integer.MAX_VALUE) % current.length];
+    }
+
+    // Returns the metrics tracked for the sink of the given event class;
+    // these are registered with the metrics service on first dispatch.
+    private SinkMetrics metricsFor(Class eventClass) {
+        return sinkMetrics.computeIfAbsent(eventClass, SinkMetrics::new);
+    }
+
+    private void removeMetrics(Class eventClass) {
+        MetricsFeature feature = metricsComponent.registerFeature(eventClass.getSimpleName());
+        metricsService.removeMetric(metricsComponent, feature, "queueDepth");
+        metricsService.removeMetric(metricsComponent, feature, "processingTime");
+    }
+
+    // Reports dispatch loops that have spent too long with a single event.
+    private void checkBlockedSinks() {
+        long now = System.currentTimeMillis();
+        for (DispatchLoop loop : loops) {
+            Event event = loop.current;
+            if (event != null && event != loop.reported &&
+                    now - loop.started > maxExecuteMs) {
+                loop.reported = event;
+                if (blockedCounter != null) {
+                    blockedCounter.inc();
+                }
+                log.warn("Event sink for {} blocked for more than {} ms processing {}",
+                         event.getClass().getName(), maxExecuteMs, event);
+                Thread thread = loop.thread;
+                if (thread != null && log.isDebugEnabled()) {
+                    log.debug("Stack trace of blocked dispatch thread {}: {}",
+                              thread.getName(), Arrays.toString(thread.getStackTrace()));
+                }
+            }
+        }
+    }
+
+    // Queue depth and processing latency tracked per event sink.
+    private final class SinkMetrics {
+        private final Class eventClass;
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean registered;
+        private volatile Timer timer;
+
+        private SinkMetrics(Class eventClass) {
+            this.eventClass = eventClass;
+        }
+
+        // Registers the metrics unless already done; events may be posted
+        // before the dispatcher is activated and the metrics component exists.
+        private void register() {
+            if (registered || metricsService == null || metricsComponent == null) {
+                return;
+            }
+            synchronized (this) {
+                if (registered) {
+                    return;
+                }
+                MetricsFeature feature = metricsComponent.registerFeature(eventClass.getSimpleName());
+                metricsService.registerMetric(metricsComponent, feature, "queueDepth",
+                                              (Gauge<Integer>) pending::get);
+                timer = metricsService.createTimer(metricsComponent, feature, "processingTime");
+                registered = true;
+            }
+        }
+    }
+
+    // Auxiliary event dispatching loop that feeds off its events queue.
     private class DispatchLoop implements Runnable {
+        private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+
+        // State inspected by the watchdog
+        private volatile Thread thread;
+        private volatile Event current;
+        private volatile long started;
+        private volatile Event reported;
+
         @Override
         @SuppressWarnings("unchecked")
         public void run() {
             log.info("Dispatch loop initiated");
+            thread = Thread.currentThread();
             while (!stopped) {
                 try {
                     // Fetch the next event and if it is the kill-pill, bail
@@ -90,17 +392,32 @@ public class CoreEventDispatcher extends DefaultEventSinkRegistry
 
                     // Locate the sink for the event class and use it to
                     // process the event
+                    SinkMetrics metrics = metricsFor(event.getClass());
+                    metrics.register();
                     EventSink sink = getSink(event.getClass());
-                    if (sink != null) {
-                        sink.process(event);
-                    } else {
-                        log.warn("No sink registered for event class {}",
-                                 event.getClass());
+                    started = System.currentTimeMillis();
+                    current = event;
+                    Timer.Context timing = startTimer(metrics.timer);
+                    try {
+                        if (sink != null) {
+                            sink.process(event);
+                        } else {
+                            log.warn("No sink registered for event class {}",
+                                     event.getClass());
+                        }
+                    } finally {
+                        current = null;
+                        stopTimer(timing);
+                        metrics.pending.decrementAndGet();
                     }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
                 } catch (Exception e) {
                     log.warn("Error encountered while dispatching event:", e);
                 }
             }
+            thread = null;
             log.info("Dispatch loop terminated");
         }
     }
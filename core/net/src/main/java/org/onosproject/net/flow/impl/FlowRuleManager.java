@@ -294,10 +294,14 @@ public class FlowRuleManager
 
 
         private void flowAdded(FlowEntry flowEntry) {
+            flowAdded(flowEntry, store.getFlowEntry(flowEntry));
+        }
+
+        private void flowAdded(FlowEntry flowEntry, FlowEntry storedRule) {
             checkNotNull(flowEntry, FLOW_RULE_NULL);
             checkValidity();
 
-            if (checkRuleLiveness(flowEntry, store.getFlowEntry(flowEntry))) {
+            if (checkRuleLiveness(flowEntry, storedRule)) {
 
                 FlowRuleEvent event = store.addOrUpdateFlowRule(flowEntry);
                 if (event == null) {
@@ -354,12 +358,16 @@ public class FlowRuleManager
 
         @Override
         public void pushFlowMetrics(DeviceId deviceId, Iterable<FlowEntry> flowEntries) {
-            Set<FlowEntry> storedRules = Sets.newHashSet(store.getFlowEntries(deviceId));
+            // Look up each reported rule in the store directly, rather than
+            // copying the entire device table, and count those found.
+            int matched = 0;
             for (FlowEntry rule : flowEntries) {
                 try {
-                    if (storedRules.remove(rule)) {
+                    FlowEntry storedRule = store.getFlowEntry(rule);
+                    if (storedRule != null) {
                         // we both have the rule, let's update some info then.
-                        flowAdded(rule);
+                        matched++;
+                        flowAdded(rule, storedRule);
                     } else {
                         // the device has a rule the store does not have
                         extraneousFlow(rule);
@@ -369,7 +377,21 @@ public class FlowRuleManager
                     continue;
                 }
             }
+
+            // Only when the device did not report every stored rule is it
+            // worth looking for the ones it is missing.
+            Iterable<FlowEntry> storedRules = store.getFlowEntries(deviceId);
+            if (matched >= Iterables.size(storedRules)) {
+                return;
+            }
+            Set<FlowEntry> reported = Sets.newHashSet(flowEntries);
+            List<FlowEntry> missing = Lists.newArrayList();
             for (FlowEntry rule : storedRules) {
+                if (!reported.contains(rule)) {
+                    missing.add(rule);
+                }
+            }
+            for (FlowEntry rule : missing) {
                 try {
                     // there are rules in the store that aren't on the switch
                     flowMissing(rule);
@@ -378,7 +400,6 @@ public class FlowRuleManager
                     continue;
                 }
             }
-
         }
 
         @Override
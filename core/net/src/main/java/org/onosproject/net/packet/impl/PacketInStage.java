@@ -0,0 +1,286 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet.impl;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.packet.PacketContext;
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.onlab.util.Tools.groupedThreads;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Packet-in processing stage, which hands inbound packets off from the
+ * provider threads to a set of worker threads.
+ * <p>
+ * Each device is assigned to one of the workers, which preserves the order
+ * of the packets from the same device, and has its own bounded queue. The
+ * workers take turns between the queues of their devices, so a device that
+ * floods the controller only ever delays the other devices sharing its
+ * worker by a small batch of packets. Packets arriving at a full queue, or
+ * above the per-device rate limit, are dropped. Packets already queued
+ * when the stage shuts down are still processed.
+ * </p>
+ */
+final class PacketInStage {
+
+    /**
+     * Policy for packets arriving at a full device queue.
+     */
+    enum OverflowPolicy {
+        /** Drops the arriving packet. */
+        DROP_NEWEST,
+        /** Drops the oldest queued packet to make room for the arriving one. */
+        DROP_OLDEST
+    }
+
+    private static final int BATCH_SIZE = 32;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 1000;
+
+    private final Logger log = getLogger(getClass());
+
+    private final ExecutorService[] workers;
+    private final int queueSize;
+    private final OverflowPolicy policy;
+    private final int rateLimit;
+    private final Consumer<PacketContext> processor;
+
+    private final MetricsService metricsService;
+    private final MetricsComponent metricsComponent;
+
+    private final Map<DeviceId, DeviceQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new packet-in stage.
+     *
+     * @param workers        number of worker threads
+     * @param queueSize      capacity of each per-device queue
+     * @param policy         policy for packets arriving at a full queue
+     * @param rateLimit      maximum number of packets per second accepted
+     *                       from each device; 0 for no limit
+     * @param processor      packet processor invoked by the workers
+     * @param metricsService metrics service; may be null
+     */
+    PacketInStage(int workers, int queueSize, OverflowPolicy policy, int rateLimit,
+                  Consumer<PacketContext> processor, MetricsService metricsService) {
+        checkArgument(workers > 0, "Number of workers must be positive");
+        checkArgument(queueSize > 0, "Queue size must be positive");
+        checkArgument(rateLimit >= 0, "Rate limit cannot be negative");
+        this.queueSize = queueSize;
+        this.policy = checkNotNull(policy);
+        this.rateLimit = rateLimit;
+        this.processor = checkNotNull(processor);
+        this.metricsService = metricsService;
+        this.metricsComponent = metricsService != null ?
+                metricsService.registerComponent("PacketIn") : null;
+
+        this.workers = new ExecutorService[workers];
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = newSingleThreadExecutor(groupedThreads("onos/packet-in", "worker-" + i));
+        }
+    }
+
+    /**
+     * Queues the given packet for processing on the worker of its device.
+     *
+     * @param context packet context
+     * @return true if the packet was queued; false if it was dropped
+     */
+    boolean submit(PacketContext context) {
+        DeviceId deviceId = context.inPacket().receivedFrom().deviceId();
+        DeviceQueue queue = queues.computeIfAbsent(deviceId, DeviceQueue::new);
+        return queue.add(context);
+    }
+
+    /**
+     * Discards the queue and metrics of the given device.
+     *
+     * @param deviceId device identifier
+     */
+    void removeDevice(DeviceId deviceId) {
+        DeviceQueue queue = queues.remove(deviceId);
+        if (queue != null) {
+            queue.removeMetrics();
+        }
+    }
+
+    /**
+     * Stops the workers after they finish processing the queued packets.
+     * Queues no longer owned by a worker are drained on the caller's thread;
+     * workers still busy once the timeout elapses finish their queues in the
+     * background.
+     */
+    void shutdown() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        for (ExecutorService worker : workers) {
+            try {
+                long remaining = deadline - System.currentTimeMillis();
+                if (!worker.awaitTermination(Math.max(remaining, 0), TimeUnit.MILLISECONDS)) {
+                    log.warn("Packet-in worker still busy; finishing in the background");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        queues.values().forEach(DeviceQueue::drain);
+        queues.values().forEach(DeviceQueue::removeMetrics);
+        queues.clear();
+    }
+
+    // Queue of the packets from one device along with its metrics.
+    private final class DeviceQueue implements Runnable {
+
+        private final ExecutorService worker;
+        private final Queue<PacketContext> packets = new ArrayBlockingQueue<>(queueSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private final MetricsFeature feature;
+        private final Meter rate;
+        private final Counter drops;
+
+        // Start and count of the current rate limiting window
+        private long windowStart;
+        private int windowCount;
+
+        private DeviceQueue(DeviceId deviceId) {
+            worker = workers[Math.abs(deviceId.hashCode() % workers.length)];
+            if (metricsComponent != null) {
+                feature = metricsComponent.registerFeature(deviceId.toString());
+                rate = metricsService.createMeter(metricsComponent, feature, "rate");
+                drops = metricsService.createCounter(metricsComponent, feature, "drops");
+                metricsService.removeMetric(metricsComponent, feature, "queued");
+                metricsService.registerMetric(metricsComponent, feature, "queued",
+                                              (Gauge<Integer>) packets::size);
+            } else {
+                feature = null;
+                rate = null;
+                drops = null;
+            }
+        }
+
+        private boolean add(PacketContext context) {
+            if (rate != null) {
+                rate.mark();
+            }
+            if (!admit() || !offer(context)) {
+                if (drops != null) {
+                    drops.inc();
+                }
+                return false;
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    worker.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // Stage is shutting down; finish on the caller's thread
+                    run();
+                }
+            }
+            return true;
+        }
+
+        // Checks the packet against the rate limit of the device.
+        private synchronized boolean admit() {
+            if (rateLimit == 0) {
+                return true;
+            }
+            long now = System.currentTimeMillis();
+            if (now - windowStart >= 1000) {
+                windowStart = now;
+                windowCount = 0;
+            }
+            return ++windowCount <= rateLimit;
+        }
+
+        private boolean offer(PacketContext context) {
+            if (packets.offer(context)) {
+                return true;
+            }
+            if (policy == OverflowPolicy.DROP_OLDEST && packets.poll() != null) {
+                if (drops != null) {
+                    drops.inc();
+                }
+                return packets.offer(context);
+            }
+            return false;
+        }
+
+        // Processes a batch of packets and yields the worker to the other
+        // devices, rescheduling itself if more packets are queued.
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                PacketContext context = packets.poll();
+                if (context == null) {
+                    break;
+                }
+                try {
+                    processor.accept(context);
+                } catch (Exception e) {
+                    log.warn("Unable to process packet", e);
+                }
+            }
+
+            scheduled.set(false);
+            if (!packets.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    worker.execute(this);
+                } catch (RejectedExecutionException e) {
+                    run();
+                }
+            }
+        }
+
+        // Processes the remaining packets on the caller's thread, unless a
+        // worker owns the queue, in which case that worker finishes it.
+        private void drain() {
+            if (scheduled.compareAndSet(false, true)) {
+                run();
+            }
+        }
+
+        private void removeMetrics() {
+            if (feature != null) {
+                metricsService.removeMetric(metricsComponent, feature, "rate");
+                metricsService.removeMetric(metricsComponent, feature, "drops");
+                metricsService.removeMetric(metricsComponent, feature, "queued");
+            }
+        }
+    }
+
+}
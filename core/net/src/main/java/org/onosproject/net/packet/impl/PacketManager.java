@@ -15,12 +15,22 @@
  */
 package org.onosproject.net.packet.impl;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+import com.google.common.collect.ImmutableList;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.net.Device;
 import org.onosproject.net.device.DeviceEvent;
@@ -46,13 +56,21 @@ import org.onosproject.net.packet.PacketService;
 import org.onosproject.net.packet.PacketStore;
 import org.onosproject.net.packet.PacketStoreDelegate;
 import org.onosproject.net.provider.AbstractProviderRegistry;
+import org.onosproject.net.packet.impl.PacketInStage.OverflowPolicy;
 import org.onosproject.net.provider.AbstractProviderService;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Comparator;
+import java.util.Dictionary;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.onlab.metrics.MetricsUtil.startTimer;
+import static org.onlab.metrics.MetricsUtil.stopTimer;
+import static org.onlab.util.Tools.get;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -66,6 +84,30 @@ implements PacketService, PacketProviderRegistry {
 
     private final Logger log = getLogger(getClass());
 
+    private static final int DEFAULT_PACKET_IN_WORKERS = 0;
+    private static final int DEFAULT_PACKET_IN_QUEUE_SIZE = 1000;
+    private static final String DEFAULT_PACKET_IN_OVERFLOW_POLICY = "DROP_NEWEST";
+    private static final int DEFAULT_PACKET_IN_RATE_LIMIT = 0;
+
+    @Property(name = "packetInWorkers", intValue = DEFAULT_PACKET_IN_WORKERS,
+            label = "Number of packet-in worker threads; 0 to process packet-ins " +
+                    "on the provider threads")
+    private int packetInWorkers = DEFAULT_PACKET_IN_WORKERS;
+
+    @Property(name = "packetInQueueSize", intValue = DEFAULT_PACKET_IN_QUEUE_SIZE,
+            label = "Maximum number of packet-ins queued per device")
+    private int packetInQueueSize = DEFAULT_PACKET_IN_QUEUE_SIZE;
+
+    @Property(name = "packetInOverflowPolicy", value = DEFAULT_PACKET_IN_OVERFLOW_POLICY,
+            label = "Packet-in to drop when a device queue is full; " +
+                    "DROP_NEWEST or DROP_OLDEST")
+    private String packetInOverflowPolicy = DEFAULT_PACKET_IN_OVERFLOW_POLICY;
+
+    @Property(name = "packetInRateLimit", intValue = DEFAULT_PACKET_IN_RATE_LIMIT,
+            label = "Maximum number of packet-ins per second accepted from " +
+                    "each device; 0 for no limit")
+    private int packetInRateLimit = DEFAULT_PACKET_IN_RATE_LIMIT;
+
     private final PacketStoreDelegate delegate = new InternalStoreDelegate();
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
@@ -77,12 +119,27 @@ implements PacketService, PacketProviderRegistry {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     private PacketStore store;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
     private final DeviceListener deviceListener = new InternalDeviceListener();
 
-    private final Map<Integer, PacketProcessor> processors = new ConcurrentHashMap<>();
+    // Processors in the order of invocation; replaced on each change
+    private volatile List<ProcessorEntry> processors = ImmutableList.of();
+
+    private MetricsComponent metricsComponent;
+
+    // Stage handing packet-ins off to the workers; null if disabled
+    private volatile PacketInStage packetInStage;
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
+        metricsComponent = metricsService.registerComponent("PacketProcessor");
+        modified(context);
         store.setDelegate(delegate);
         deviceService.addListener(deviceListener);
         log.info("Started");
@@ -90,21 +147,107 @@ implements PacketService, PacketProviderRegistry {
 
     @Deactivate
     public void deactivate() {
+        cfgService.unregisterProperties(getClass(), false);
         store.unsetDelegate(delegate);
         deviceService.removeListener(deviceListener);
+        setPacketInStage(null);
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(ComponentContext context) {
+        int newWorkers = packetInWorkers;
+        int newQueueSize = packetInQueueSize;
+        String newPolicy = packetInOverflowPolicy;
+        int newRateLimit = packetInRateLimit;
+
+        if (context != null) {
+            Dictionary<?, ?> properties = context.getProperties();
+            try {
+                String s = get(properties, "packetInWorkers");
+                newWorkers = isNullOrEmpty(s) ? newWorkers : Integer.parseInt(s.trim());
+
+                s = get(properties, "packetInQueueSize");
+                newQueueSize = isNullOrEmpty(s) ? newQueueSize : Integer.parseInt(s.trim());
+
+                s = get(properties, "packetInOverflowPolicy");
+                newPolicy = isNullOrEmpty(s) ? newPolicy : OverflowPolicy.valueOf(s.trim()).name();
+
+                s = get(properties, "packetInRateLimit");
+                newRateLimit = isNullOrEmpty(s) ? newRateLimit : Integer.parseInt(s.trim());
+            } catch (IllegalArgumentException | ClassCastException e) {
+                newWorkers = DEFAULT_PACKET_IN_WORKERS;
+                newQueueSize = DEFAULT_PACKET_IN_QUEUE_SIZE;
+                newPolicy = DEFAULT_PACKET_IN_OVERFLOW_POLICY;
+                newRateLimit = DEFAULT_PACKET_IN_RATE_LIMIT;
+            }
+        }
+
+        if ((packetInStage == null && newWorkers > 0) || newWorkers != packetInWorkers ||
+                newQueueSize != packetInQueueSize ||
+                !newPolicy.equals(packetInOverflowPolicy) ||
+                newRateLimit != packetInRateLimit) {
+            packetInWorkers = newWorkers;
+            packetInQueueSize = Math.max(newQueueSize, 1);
+            packetInOverflowPolicy = newPolicy;
+            packetInRateLimit = Math.max(newRateLimit, 0);
+            setPacketInStage(packetInWorkers <= 0 ? null :
+                    new PacketInStage(packetInWorkers, packetInQueueSize,
+                                      OverflowPolicy.valueOf(packetInOverflowPolicy),
+                                      packetInRateLimit, this::process, metricsService));
+            log.info("Configured with packetInWorkers = {}, packetInQueueSize = {}, " +
+                             "packetInOverflowPolicy = {}, packetInRateLimit = {}",
+                     packetInWorkers, packetInQueueSize,
+                     packetInOverflowPolicy, packetInRateLimit);
+        }
+    }
+
+    // Swaps in the given packet-in stage and drains the previous one.
+    private synchronized void setPacketInStage(PacketInStage stage) {
+        PacketInStage previous = packetInStage;
+        packetInStage = stage;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
     @Override
     public void addProcessor(PacketProcessor processor, int priority) {
         checkNotNull(processor, "Processor cannot be null");
-        processors.put(priority, processor);
+        addProcessorEntry(new ProcessorEntry(processor, priority, null));
     }
 
     @Override
-    public void removeProcessor(PacketProcessor processor) {
+    public void addProcessor(PacketProcessor processor, int priority,
+                             TrafficSelector selector) {
         checkNotNull(processor, "Processor cannot be null");
-        processors.values().remove(processor);
+        checkNotNull(selector, "Selector cannot be null");
+        addProcessorEntry(new ProcessorEntry(processor, priority, selector));
+    }
+
+    private synchronized void addProcessorEntry(ProcessorEntry entry) {
+        // Stable sort keeps processors of equal priority in the order added
+        processors = ImmutableList.<ProcessorEntry>builder()
+                .addAll(processors).add(entry).build().stream()
+                .sorted(Comparator.comparingInt(e -> e.priority))
+                .collect(Collectors.collectingAndThen(Collectors.toList(),
+                                                      ImmutableList::copyOf));
+    }
+
+    @Override
+    public synchronized void removeProcessor(PacketProcessor processor) {
+        checkNotNull(processor, "Processor cannot be null");
+        List<ProcessorEntry> remaining = processors.stream()
+                .filter(e -> e.processor != processor)
+                .collect(Collectors.collectingAndThen(Collectors.toList(),
+                                                      ImmutableList::copyOf));
+        if (remaining.size() != processors.size()) {
+            String name = processor.getClass().getName();
+            processors = remaining;
+            if (remaining.stream().noneMatch(e -> e.name.equals(name))) {
+                removeMetrics(name);
+            }
+        }
     }
 
     @Override
@@ -213,14 +356,72 @@ implements PacketService, PacketProviderRegistry {
 
         @Override
         public void processPacket(PacketContext context) {
-            // TODO filter packets sent to processors based on registrations
-            for (PacketProcessor processor : processors.values()) {
-                processor.process(context);
+            PacketInStage stage = packetInStage;
+            if (stage != null) {
+                stage.submit(context);
+            } else {
+                process(context);
             }
         }
 
     }
 
+    // Hands the given packet to the processors in the order of priority.
+    private void process(PacketContext context) {
+        for (ProcessorEntry entry : processors) {
+            if (entry.selector != null &&
+                    !PacketSelectorMatcher.matches(entry.selector, context.inPacket())) {
+                continue;
+            }
+            Context timer = startTimer(entry.latency);
+            try {
+                entry.processor.process(context);
+            } catch (Exception e) {
+                // Keep a failing processor from starving the rest
+                log.warn("Packet processor {} failed", entry.name, e);
+                if (entry.drops != null) {
+                    entry.drops.inc();
+                }
+            } finally {
+                stopTimer(timer);
+            }
+        }
+    }
+
+    private void removeMetrics(String name) {
+        if (metricsComponent != null) {
+            MetricsFeature feature = metricsComponent.registerFeature(name);
+            metricsService.removeMetric(metricsComponent, feature, "latency");
+            metricsService.removeMetric(metricsComponent, feature, "drops");
+        }
+    }
+
+    // Registered processor along with its packet filter and metrics.
+    private final class ProcessorEntry {
+        private final PacketProcessor processor;
+        private final int priority;
+        private final TrafficSelector selector;
+        private final String name;
+        private final Timer latency;
+        private final Counter drops;
+
+        private ProcessorEntry(PacketProcessor processor, int priority,
+                               TrafficSelector selector) {
+            this.processor = processor;
+            this.priority = priority;
+            this.selector = selector;
+            this.name = processor.getClass().getName();
+            if (metricsComponent != null) {
+                MetricsFeature feature = metricsComponent.registerFeature(name);
+                this.latency = metricsService.createTimer(metricsComponent, feature, "latency");
+                this.drops = metricsService.createCounter(metricsComponent, feature, "drops");
+            } else {
+                this.latency = null;
+                this.drops = null;
+            }
+        }
+    }
+
     /**
      * Internal callback from the packet store.
      */
@@ -243,6 +444,11 @@ implements PacketService, PacketProviderRegistry {
                 for (PacketRequest request : store.existingRequests()) {
                     pushRule(device, request);
                 }
+            } else if (event.type() == DeviceEvent.Type.DEVICE_REMOVED) {
+                PacketInStage stage = packetInStage;
+                if (stage != null) {
+                    stage.removeDevice(device.id());
+                }
             }
         }
     }
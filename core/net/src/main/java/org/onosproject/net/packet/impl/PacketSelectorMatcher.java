@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet.impl;
+
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.Ip4Address;
+import org.onlab.packet.IpPrefix;
+import org.onlab.packet.TCP;
+import org.onlab.packet.UDP;
+import org.onosproject.net.flow.TrafficSelector;
+import org.onosproject.net.flow.criteria.Criteria.EthCriterion;
+import org.onosproject.net.flow.criteria.Criteria.EthTypeCriterion;
+import org.onosproject.net.flow.criteria.Criteria.IPCriterion;
+import org.onosproject.net.flow.criteria.Criteria.IPProtocolCriterion;
+import org.onosproject.net.flow.criteria.Criteria.PortCriterion;
+import org.onosproject.net.flow.criteria.Criteria.TcpPortCriterion;
+import org.onosproject.net.flow.criteria.Criteria.UdpPortCriterion;
+import org.onosproject.net.flow.criteria.Criteria.VlanIdCriterion;
+import org.onosproject.net.flow.criteria.Criterion;
+import org.onosproject.net.packet.InboundPacket;
+
+/**
+ * Matches inbound packets against the traffic selectors with which packet
+ * processors are registered.
+ * <p>
+ * Only the ingress port and the Ethernet, IPv4, TCP and UDP header fields
+ * are inspected; criteria on any other fields are deemed to match.
+ * </p>
+ */
+final class PacketSelectorMatcher {
+
+    // Non-instantiable.
+    private PacketSelectorMatcher() {
+    }
+
+    /**
+     * Indicates whether the given packet matches all criteria of the given
+     * selector.
+     *
+     * @param selector traffic selector
+     * @param packet   inbound packet
+     * @return true if the packet matches
+     */
+    static boolean matches(TrafficSelector selector, InboundPacket packet) {
+        Ethernet eth = packet.parsed();
+        for (Criterion criterion : selector.criteria()) {
+            if (!matches(criterion, packet, eth)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(Criterion criterion, InboundPacket packet,
+                                   Ethernet eth) {
+        if (criterion.type() == Criterion.Type.IN_PORT) {
+            return packet.receivedFrom().port()
+                    .equals(((PortCriterion) criterion).port());
+        }
+        if (eth == null) {
+            return false;
+        }
+
+        IPv4 ipv4 = eth.getPayload() instanceof IPv4 ? (IPv4) eth.getPayload() : null;
+
+        switch (criterion.type()) {
+            case ETH_TYPE:
+                return (eth.getEtherType() & 0xffff) ==
+                        (((EthTypeCriterion) criterion).ethType() & 0xffff);
+            case ETH_SRC:
+                return eth.getSourceMAC().equals(((EthCriterion) criterion).mac());
+            case ETH_DST:
+                return eth.getDestinationMAC().equals(((EthCriterion) criterion).mac());
+            case VLAN_VID:
+                return eth.getVlanID() == ((VlanIdCriterion) criterion).vlanId().toShort();
+            case IP_PROTO:
+                return ipv4 != null &&
+                        (ipv4.getProtocol() & 0xff) == (((IPProtocolCriterion) criterion).protocol() & 0xff);
+            case IPV4_SRC:
+                return ipv4 != null &&
+                        contains(((IPCriterion) criterion).ip(), ipv4.getSourceAddress());
+            case IPV4_DST:
+                return ipv4 != null &&
+                        contains(((IPCriterion) criterion).ip(), ipv4.getDestinationAddress());
+            case TCP_SRC:
+                return ipv4 != null && ipv4.getPayload() instanceof TCP &&
+                        (((TCP) ipv4.getPayload()).getSourcePort() & 0xffff) ==
+                                (((TcpPortCriterion) criterion).tcpPort() & 0xffff);
+            case TCP_DST:
+                return ipv4 != null && ipv4.getPayload() instanceof TCP &&
+                        (((TCP) ipv4.getPayload()).getDestinationPort() & 0xffff) ==
+                                (((TcpPortCriterion) criterion).tcpPort() & 0xffff);
+            case UDP_SRC:
+                return ipv4 != null && ipv4.getPayload() instanceof UDP &&
+                        (((UDP) ipv4.getPayload()).getSourcePort() & 0xffff) ==
+                                (((UdpPortCriterion) criterion).udpPort() & 0xffff);
+            case UDP_DST:
+                return ipv4 != null && ipv4.getPayload() instanceof UDP &&
+                        (((UDP) ipv4.getPayload()).getDestinationPort() & 0xffff) ==
+                                (((UdpPortCriterion) criterion).udpPort() & 0xffff);
+            default:
+                return true;
+        }
+    }
+
+    private static boolean contains(IpPrefix prefix, int address) {
+        return prefix.contains(Ip4Address.valueOf(address));
+    }
+
+}
@@ -18,15 +18,24 @@ package org.onosproject.event.impl;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.osgi.ComponentContextAdapter;
 import org.onosproject.event.AbstractEvent;
 import org.onosproject.event.EventSink;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test of the even dispatcher mechanism.
@@ -36,16 +45,39 @@ public class CoreEventDispatcherTest {
     private final CoreEventDispatcher dispatcher = new CoreEventDispatcher();
     private final PrickleSink prickleSink = new PrickleSink();
     private final GooSink gooSink = new GooSink();
+    private final TickSink tickSink = new TickSink();
+
+    private static final ComponentContextAdapter CTX_FOR_SHARDING =
+            new ComponentContextAdapter() {
+                @Override
+                public Dictionary getProperties() {
+                    Hashtable<String, String> props = new Hashtable<>();
+                    props.put("dispatchWorkers", "4");
+                    return props;
+                }
+            };
+
+    private static final ComponentContextAdapter CTX_FOR_TWO_WORKERS =
+            new ComponentContextAdapter() {
+                @Override
+                public Dictionary getProperties() {
+                    Hashtable<String, String> props = new Hashtable<>();
+                    props.put("dispatchWorkers", "2");
+                    return props;
+                }
+            };
 
     @Before
     public void setUp() {
-        dispatcher.activate();
+        dispatcher.activate(null);
         dispatcher.addSink(Prickle.class, prickleSink);
         dispatcher.addSink(Goo.class, gooSink);
+        dispatcher.addSink(Tick.class, tickSink);
     }
 
     @After
     public void tearDown() {
+        dispatcher.removeSink(Tick.class);
         dispatcher.removeSink(Goo.class);
         dispatcher.removeSink(Prickle.class);
         dispatcher.deactivate();
@@ -76,6 +108,77 @@ public class CoreEventDispatcherTest {
         validate(prickleSink);
     }
 
+    @Test
+    public void postShardedKeepsSubjectOrder() throws Exception {
+        dispatcher.modified(CTX_FOR_SHARDING);
+        int count = 100;
+        String[] subjects = {"foo", "bar", "baz", "qux"};
+        tickSink.latch = new CountDownLatch(count * subjects.length);
+        for (int i = 0; i < count; i++) {
+            for (String subject : subjects) {
+                dispatcher.post(new Tick(subject, i));
+            }
+        }
+        assertTrue("events not delivered",
+                   tickSink.latch.await(1000, TimeUnit.MILLISECONDS));
+        for (String subject : subjects) {
+            List<Integer> ticks = tickSink.ticks.get(subject);
+            assertEquals("incorrect event count", count, ticks.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals("incorrect event order", i, (int) ticks.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void resizeWhilePosting() throws Exception {
+        int count = 2000;
+        String[] subjects = {"foo", "bar", "baz", "qux"};
+        tickSink.latch = new CountDownLatch(count * subjects.length);
+        Thread poster = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                for (String subject : subjects) {
+                    dispatcher.post(new Tick(subject, i));
+                }
+            }
+        });
+        poster.start();
+        dispatcher.modified(CTX_FOR_SHARDING);
+        dispatcher.modified(CTX_FOR_TWO_WORKERS);
+        poster.join();
+
+        assertTrue("events lost while resizing",
+                   tickSink.latch.await(5000, TimeUnit.MILLISECONDS));
+        for (String subject : subjects) {
+            List<Integer> ticks = tickSink.ticks.get(subject);
+            assertEquals("incorrect event count", count, ticks.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals("incorrect event order", i, (int) ticks.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void metricsOfEventPostedBeforeActivation() throws Exception {
+        CoreEventDispatcher early = new CoreEventDispatcher();
+        MetricsManager metricsService = new MetricsManager();
+        early.metricsService = metricsService;
+        PrickleSink sink = new PrickleSink();
+        sink.latch = new CountDownLatch(1);
+        early.addSink(Prickle.class, sink);
+        early.post(new Prickle("early"));
+
+        early.activate(null);
+        try {
+            assertTrue("event not delivered", sink.latch.await(1000, TimeUnit.MILLISECONDS));
+            assertFalse("sink metrics not registered",
+                        metricsService.getGauges((name, metric) -> name.endsWith("Prickle.queueDepth"))
+                                .isEmpty());
+        } finally {
+            early.deactivate();
+        }
+    }
+
     private void validate(Sink sink, String... strings) {
         int i = 0;
         assertEquals("incorrect event count", strings.length, sink.subjects.size());
@@ -104,6 +207,15 @@ public class CoreEventDispatcherTest {
         }
     }
 
+    private static class Tick extends Thing {
+        private final int seq;
+
+        protected Tick(String subject, int seq) {
+            super(subject);
+            this.seq = seq;
+        }
+    }
+
     private static class Sink {
         final List<String> subjects = new ArrayList<>();
         CountDownLatch latch;
@@ -129,4 +241,17 @@ public class CoreEventDispatcherTest {
         }
     }
 
+    private static class TickSink implements EventSink<Tick> {
+        final Map<String, List<Integer>> ticks = new ConcurrentHashMap<>();
+        CountDownLatch latch;
+
+        @Override
+        public void process(Tick event) {
+            ticks.computeIfAbsent(event.subject(),
+                                  s -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(event.seq);
+            latch.countDown();
+        }
+    }
+
 }
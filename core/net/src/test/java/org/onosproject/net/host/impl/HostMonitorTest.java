@@ -254,6 +254,11 @@ public class HostMonitorTest {
         public void addProcessor(PacketProcessor processor, int priority) {
         }
 
+        @Override
+        public void addProcessor(PacketProcessor processor, int priority,
+                                 TrafficSelector selector) {
+        }
+
         @Override
         public void removeProcessor(PacketProcessor processor) {
         }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Test;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.packet.DefaultInboundPacket;
+import org.onosproject.net.packet.DefaultPacketContext;
+import org.onosproject.net.packet.PacketContext;
+import org.onosproject.net.packet.impl.PacketInStage.OverflowPolicy;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.DeviceId.deviceId;
+import static org.onosproject.net.PortNumber.portNumber;
+
+/**
+ * Tests of the packet-in processing stage.
+ */
+public class PacketInStageTest {
+
+    private static final ConnectPoint CP1 = new ConnectPoint(deviceId("of:1"), portNumber(1));
+    private static final ConnectPoint CP2 = new ConnectPoint(deviceId("of:2"), portNumber(1));
+
+    private final List<Long> processed = new CopyOnWriteArrayList<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private PacketInStage stage;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (stage != null) {
+            stage.shutdown();
+        }
+    }
+
+    // Records the packet, holding up the worker on the first one.
+    private void process(PacketContext context) {
+        started.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        processed.add(context.time());
+    }
+
+    private void awaitProcessed(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (processed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void dropNewest() throws InterruptedException {
+        stage = new PacketInStage(1, 2, OverflowPolicy.DROP_NEWEST, 0, this::process, null);
+
+        assertTrue(stage.submit(context(CP1, 1)));
+        assertTrue("worker not started", started.await(5, TimeUnit.SECONDS));
+        assertTrue(stage.submit(context(CP1, 2)));
+        assertTrue(stage.submit(context(CP1, 3)));
+        assertFalse("packet should be dropped", stage.submit(context(CP1, 4)));
+
+        release.countDown();
+        awaitProcessed(3);
+        assertEquals("incorrect packets", ImmutableList.of(1L, 2L, 3L), processed);
+    }
+
+    @Test
+    public void dropOldest() throws InterruptedException {
+        stage = new PacketInStage(1, 2, OverflowPolicy.DROP_OLDEST, 0, this::process, null);
+
+        assertTrue(stage.submit(context(CP1, 1)));
+        assertTrue("worker not started", started.await(5, TimeUnit.SECONDS));
+        assertTrue(stage.submit(context(CP1, 2)));
+        assertTrue(stage.submit(context(CP1, 3)));
+        assertTrue(stage.submit(context(CP1, 4)));
+
+        release.countDown();
+        awaitProcessed(3);
+        assertEquals("incorrect packets", ImmutableList.of(1L, 3L, 4L), processed);
+    }
+
+    @Test
+    public void perDeviceQueues() throws InterruptedException {
+        stage = new PacketInStage(2, 1, OverflowPolicy.DROP_NEWEST, 0, this::process, null);
+
+        assertTrue(stage.submit(context(CP1, 1)));
+        assertTrue("worker not started", started.await(5, TimeUnit.SECONDS));
+        assertTrue(stage.submit(context(CP1, 2)));
+        assertFalse("packet should be dropped", stage.submit(context(CP1, 3)));
+
+        // A full queue of one device does not affect the other device
+        assertTrue(stage.submit(context(CP2, 10)));
+
+        release.countDown();
+        awaitProcessed(3);
+        assertEquals("incorrect packet count", 3, processed.size());
+        assertTrue("device packets reordered", processed.indexOf(1L) < processed.indexOf(2L));
+    }
+
+    @Test
+    public void rateLimit() throws InterruptedException {
+        release.countDown();
+        stage = new PacketInStage(1, 10, OverflowPolicy.DROP_NEWEST, 2, this::process, null);
+
+        assertTrue(stage.submit(context(CP1, 1)));
+        assertTrue(stage.submit(context(CP1, 2)));
+        assertFalse("packet should be rate limited", stage.submit(context(CP1, 3)));
+        assertTrue("other device limited", stage.submit(context(CP2, 4)));
+
+        awaitProcessed(3);
+        assertEquals("incorrect packet count", 3, processed.size());
+    }
+
+    @Test
+    public void shutdownProcessesQueued() throws InterruptedException {
+        stage = new PacketInStage(1, 10, OverflowPolicy.DROP_NEWEST, 0, this::process, null);
+
+        assertTrue(stage.submit(context(CP1, 1)));
+        assertTrue("worker not started", started.await(5, TimeUnit.SECONDS));
+        assertTrue(stage.submit(context(CP1, 2)));
+        assertTrue(stage.submit(context(CP1, 3)));
+
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        }).start();
+        stage.shutdown();
+        stage = null;
+        assertEquals("queued packets dropped", ImmutableList.of(1L, 2L, 3L), processed);
+    }
+
+    @Test
+    public void submitAfterShutdown() {
+        release.countDown();
+        stage = new PacketInStage(1, 10, OverflowPolicy.DROP_NEWEST, 0, this::process, null);
+        stage.shutdown();
+
+        // A provider thread still holding the stage processes the packet itself
+        assertTrue(stage.submit(context(CP1, 1)));
+        assertEquals("packet dropped", ImmutableList.of(1L), processed);
+    }
+
+    private static PacketContext context(ConnectPoint cp, long id) {
+        return new DefaultPacketContext(id, new DefaultInboundPacket(cp, null, null),
+                                        null, false) {
+            @Override
+            public void send() {
+            }
+        };
+    }
+
+}
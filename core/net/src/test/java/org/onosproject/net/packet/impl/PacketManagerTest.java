@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.net.packet.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.ARP;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IPacket;
+import org.onlab.packet.IPv4;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.UDP;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.packet.DefaultInboundPacket;
+import org.onosproject.net.packet.DefaultPacketContext;
+import org.onosproject.net.packet.OutboundPacket;
+import org.onosproject.net.packet.PacketContext;
+import org.onosproject.net.packet.PacketProcessor;
+import org.onosproject.net.packet.PacketProvider;
+import org.onosproject.net.packet.PacketProviderService;
+import org.onosproject.net.provider.AbstractProvider;
+import org.onosproject.net.provider.ProviderId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.onosproject.net.DeviceId.deviceId;
+import static org.onosproject.net.PortNumber.portNumber;
+
+/**
+ * Tests of the packet processor pipeline of the packet manager.
+ */
+public class PacketManagerTest {
+
+    private static final ProviderId PID = new ProviderId("of", "foo");
+    private static final ConnectPoint CP = new ConnectPoint(deviceId("of:1"), portNumber(1));
+
+    private PacketManager mgr;
+    private PacketProviderService providerService;
+    private final List<String> invoked = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mgr = new PacketManager();
+        providerService = mgr.register(new TestProvider());
+    }
+
+    @Test
+    public void priorityOrder() {
+        mgr.addProcessor(new TestProcessor("c"), 3);
+        mgr.addProcessor(new TestProcessor("a"), 1);
+        mgr.addProcessor(new TestProcessor("b1"), 2);
+        mgr.addProcessor(new TestProcessor("b2"), 2);
+
+        providerService.processPacket(context(udp()));
+        assertEquals("incorrect order", ImmutableList.of("a", "b1", "b2", "c"), invoked);
+    }
+
+    @Test
+    public void filtered() {
+        mgr.addProcessor(new TestProcessor("arp"), 1,
+                         DefaultTrafficSelector.builder()
+                                 .matchEthType(Ethernet.TYPE_ARP).build());
+        mgr.addProcessor(new TestProcessor("udp"), 2,
+                         DefaultTrafficSelector.builder()
+                                 .matchEthType(Ethernet.TYPE_IPV4)
+                                 .matchIPProtocol(IPv4.PROTOCOL_UDP)
+                                 .matchUdpDst((short) 53).build());
+        mgr.addProcessor(new TestProcessor("all"), 3);
+
+        providerService.processPacket(context(udp()));
+        assertEquals("incorrect processors", ImmutableList.of("udp", "all"), invoked);
+
+        invoked.clear();
+        providerService.processPacket(context(arp()));
+        assertEquals("incorrect processors", ImmutableList.of("arp", "all"), invoked);
+    }
+
+    @Test
+    public void failureIsolated() {
+        mgr.addProcessor(context -> {
+            throw new IllegalStateException("boom");
+        }, 1);
+        TestProcessor after = new TestProcessor("after");
+        mgr.addProcessor(after, 2);
+
+        providerService.processPacket(context(udp()));
+        assertEquals("processor not invoked", ImmutableList.of("after"), invoked);
+
+        mgr.removeProcessor(after);
+        invoked.clear();
+        providerService.processPacket(context(udp()));
+        assertEquals("processor not removed", ImmutableList.of(), invoked);
+    }
+
+    private static Ethernet udp() {
+        UDP udp = new UDP();
+        udp.setSourcePort((short) 1234);
+        udp.setDestinationPort((short) 53);
+        IPv4 ipv4 = new IPv4();
+        ipv4.setProtocol(IPv4.PROTOCOL_UDP);
+        ipv4.setPayload(udp);
+        return ethernet(Ethernet.TYPE_IPV4, ipv4);
+    }
+
+    private static Ethernet arp() {
+        return ethernet(Ethernet.TYPE_ARP, new ARP());
+    }
+
+    private static Ethernet ethernet(short type, IPacket payload) {
+        Ethernet eth = new Ethernet();
+        eth.setEtherType(type);
+        eth.setSourceMACAddress(MacAddress.valueOf(1L));
+        eth.setDestinationMACAddress(MacAddress.valueOf(2L));
+        eth.setPayload(payload);
+        return eth;
+    }
+
+    private static PacketContext context(Ethernet eth) {
+        return new DefaultPacketContext(0, new DefaultInboundPacket(CP, eth, null),
+                                        null, false) {
+            @Override
+            public void send() {
+            }
+        };
+    }
+
+    private class TestProcessor implements PacketProcessor {
+        private final String name;
+
+        TestProcessor(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void process(PacketContext context) {
+            invoked.add(name);
+        }
+    }
+
+    private static class TestProvider extends AbstractProvider implements PacketProvider {
+        TestProvider() {
+            super(PID);
+        }
+
+        @Override
+        public void emit(OutboundPacket packet) {
+        }
+    }
+
+}
@@ -582,6 +582,11 @@ public class ProxyArpManagerTest {
         public void addProcessor(PacketProcessor processor, int priority) {
         }
 
+        @Override
+        public void addProcessor(PacketProcessor processor, int priority,
+                                 TrafficSelector selector) {
+        }
+
         @Override
         public void removeProcessor(PacketProcessor processor) {
         }
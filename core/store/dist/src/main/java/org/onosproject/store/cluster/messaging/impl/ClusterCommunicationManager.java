@@ -15,18 +15,26 @@
  */
 package org.onosproject.store.cluster.messaging.impl;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.netty.Endpoint;
 import org.onlab.netty.Message;
 import org.onlab.netty.MessageHandler;
 import org.onlab.netty.MessagingService;
 import org.onlab.netty.NettyMessagingService;
+import org.onosproject.cluster.ClusterEvent;
+import org.onosproject.cluster.ClusterEventListener;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.ControllerNode;
 import org.onosproject.cluster.NodeId;
@@ -38,6 +46,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -52,11 +62,23 @@ public class ClusterCommunicationManager
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     private ClusterService clusterService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     // TODO: This probably should not be a OSGi service.
     private MessagingService messagingService;
 
+    // Messages carry only the sender end point; node ids are resolved here.
+    private final ConcurrentMap<Endpoint, NodeId> endpointNodes = new ConcurrentHashMap<>();
+    private final ClusterEventListener clusterEventListener = new InternalClusterEventListener();
+
+    private final ConcurrentMap<MessageSubject, SubjectMetrics> subjectMetrics = new ConcurrentHashMap<>();
+    private MetricsComponent metricsComponent;
+
     @Activate
     public void activate() {
+        metricsComponent = metricsService.registerComponent("ClusterCommunication");
+        clusterService.addListener(clusterEventListener);
         ControllerNode localNode = clusterService.getLocalNode();
         NettyMessagingService netty = new NettyMessagingService(localNode.ip(), localNode.tcpPort());
         // FIXME: workaround until it becomes a service.
@@ -78,6 +100,7 @@ public class ClusterCommunicationManager
         } catch (Exception e) {
             log.error("NettyMessagingService#deactivate", e);
         }
+        clusterService.removeListener(clusterEventListener);
         log.info("Stopped");
     }
 
@@ -85,7 +108,7 @@ public class ClusterCommunicationManager
     public boolean broadcast(ClusterMessage message) {
         boolean ok = true;
         final ControllerNode localNode = clusterService.getLocalNode();
-        byte[] payload = message.getBytes();
+        byte[] payload = message.payload();
         for (ControllerNode node : clusterService.getNodes()) {
             if (!node.equals(localNode)) {
                 ok = unicastUnchecked(message.subject(), payload, node.id()) && ok;
@@ -97,7 +120,7 @@ public class ClusterCommunicationManager
     @Override
     public boolean broadcastIncludeSelf(ClusterMessage message) {
         boolean ok = true;
-        byte[] payload = message.getBytes();
+        byte[] payload = message.payload();
         for (ControllerNode node : clusterService.getNodes()) {
             ok = unicastUnchecked(message.subject(), payload, node.id()) && ok;
         }
@@ -108,7 +131,7 @@ public class ClusterCommunicationManager
     public boolean multicast(ClusterMessage message, Iterable<NodeId> nodes) {
         boolean ok = true;
         final ControllerNode localNode = clusterService.getLocalNode();
-        byte[] payload = message.getBytes();
+        byte[] payload = message.payload();
         for (NodeId nodeId : nodes) {
             if (!nodeId.equals(localNode.id())) {
                 ok = unicastUnchecked(message.subject(), payload, nodeId) && ok;
@@ -119,7 +142,7 @@ public class ClusterCommunicationManager
 
     @Override
     public boolean unicast(ClusterMessage message, NodeId toNodeId) {
-        return unicastUnchecked(message.subject(), message.getBytes(), toNodeId);
+        return unicastUnchecked(message.subject(), message.payload(), toNodeId);
     }
 
     private boolean unicast(MessageSubject subject, byte[] payload, NodeId toNodeId) throws IOException {
@@ -128,6 +151,7 @@ public class ClusterCommunicationManager
         Endpoint nodeEp = new Endpoint(node.ip(), node.tcpPort());
         try {
             messagingService.sendAsync(nodeEp, subject.value(), payload);
+            metrics(subject).sent(payload);
             return true;
         } catch (IOException e) {
             log.debug("Failed to send cluster message to nodeId: " + toNodeId, e);
@@ -149,8 +173,20 @@ public class ClusterCommunicationManager
         checkArgument(node != null, "Unknown nodeId: %s", toNodeId);
         Endpoint nodeEp = new Endpoint(node.ip(), node.tcpPort());
         try {
-            return messagingService.sendAndReceive(nodeEp, message.subject().value(), message.getBytes());
-
+            SubjectMetrics metrics = metrics(message.subject());
+            Timer.Context rpcTimer = metrics.rpcLatency.time();
+            SettableFuture<byte[]> response = SettableFuture.create();
+            messagingService.sendAndReceive(nodeEp, message.subject().value(), message.payload())
+                    .whenComplete((payload, error) -> {
+                        if (error == null) {
+                            rpcTimer.stop();
+                            response.set(payload);
+                        } else {
+                            response.setException(error);
+                        }
+                    });
+            metrics.sent(message.payload());
+            return response;
         } catch (IOException e) {
             log.trace("Failed interaction with remote nodeId: " + toNodeId, e);
             throw e;
@@ -161,14 +197,16 @@ public class ClusterCommunicationManager
     @Deprecated
     public void addSubscriber(MessageSubject subject,
                               ClusterMessageHandler subscriber) {
-        messagingService.registerHandler(subject.value(), new InternalClusterMessageHandler(subscriber));
+        messagingService.registerHandler(subject.value(), new InternalClusterMessageHandler(subject, subscriber));
     }
 
     @Override
     public void addSubscriber(MessageSubject subject,
                               ClusterMessageHandler subscriber,
                               ExecutorService executor) {
-        messagingService.registerHandler(subject.value(), new InternalClusterMessageHandler(subscriber), executor);
+        messagingService.registerHandler(subject.value(),
+                                         new InternalClusterMessageHandler(subject, subscriber),
+                                         executor);
     }
 
     @Override
@@ -176,23 +214,83 @@ public class ClusterCommunicationManager
         messagingService.unregisterHandler(subject.value());
     }
 
+    // Returns the id of the node listening on the given end point.
+    private NodeId nodeId(Endpoint ep) {
+        NodeId nodeId = endpointNodes.get(ep);
+        if (nodeId == null) {
+            for (ControllerNode node : clusterService.getNodes()) {
+                if (node.ip().equals(ep.host()) && node.tcpPort() == ep.port()) {
+                    nodeId = node.id();
+                    endpointNodes.put(ep, nodeId);
+                    break;
+                }
+            }
+        }
+        return nodeId;
+    }
+
+    private class InternalClusterEventListener implements ClusterEventListener {
+        @Override
+        public void event(ClusterEvent event) {
+            if (event.type() == ClusterEvent.Type.INSTANCE_REMOVED) {
+                endpointNodes.values().remove(event.subject().id());
+            }
+        }
+    }
+
+    private SubjectMetrics metrics(MessageSubject subject) {
+        return subjectMetrics.computeIfAbsent(subject, SubjectMetrics::new);
+    }
+
+    // Message and byte rates for a message subject, in both directions, and
+    // round-trip latency of requests that were answered.
+    private final class SubjectMetrics {
+
+        private final Meter sentMessages;
+        private final Meter sentBytes;
+        private final Meter receivedMessages;
+        private final Meter receivedBytes;
+        private final Timer rpcLatency;
+
+        private SubjectMetrics(MessageSubject subject) {
+            MetricsFeature feature = metricsComponent.registerFeature(subject.value());
+            sentMessages = metricsService.createMeter(metricsComponent, feature, "sentMessages");
+            sentBytes = metricsService.createMeter(metricsComponent, feature, "sentBytes");
+            receivedMessages = metricsService.createMeter(metricsComponent, feature, "receivedMessages");
+            receivedBytes = metricsService.createMeter(metricsComponent, feature, "receivedBytes");
+            rpcLatency = metricsService.createTimer(metricsComponent, feature, "rpcLatency");
+        }
+
+        private void sent(byte[] payload) {
+            sentMessages.mark();
+            sentBytes.mark(payload.length);
+        }
+
+        private void received(byte[] payload) {
+            receivedMessages.mark();
+            receivedBytes.mark(payload.length);
+        }
+    }
+
     private final class InternalClusterMessageHandler implements MessageHandler {
 
+        private final MessageSubject subject;
         private final ClusterMessageHandler handler;
 
-        public InternalClusterMessageHandler(ClusterMessageHandler handler) {
+        public InternalClusterMessageHandler(MessageSubject subject, ClusterMessageHandler handler) {
+            this.subject = subject;
             this.handler = handler;
         }
 
         @Override
         public void handle(Message message) {
-            final ClusterMessage clusterMessage;
-            try {
-                clusterMessage = ClusterMessage.fromBytes(message.payload());
-            } catch (Exception e) {
-                log.error("Failed decoding {}", message, e);
-                throw e;
+            NodeId sender = nodeId(message.sender());
+            if (sender == null) {
+                log.warn("Dropping {} message from unknown sender {}", subject, message.sender());
+                return;
             }
+            metrics(subject).received(message.payload());
+            final ClusterMessage clusterMessage = new ClusterMessage(sender, subject, message.payload());
             try {
                 handler.handle(new InternalClusterMessage(clusterMessage, message));
             } catch (Exception e) {
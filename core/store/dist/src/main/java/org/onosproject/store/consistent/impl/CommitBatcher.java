@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.store.consistent.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+
+/**
+ * Gathers concurrently submitted database operations into batches, each of
+ * which is committed as a single command.
+ * <p>
+ * Operations are committed right away while fewer than the maximum number of
+ * batches are in flight, so an idle database adds no latency. Otherwise they
+ * queue up and are committed together as soon as one of the batches in flight
+ * completes. Batches are handed to the database in the order the operations
+ * were submitted.
+ * </p>
+ */
+class CommitBatcher {
+
+    static final int DEFAULT_MAX_BATCH_SIZE = 512;
+    static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    private final Function<List<DatabaseOperation>, CompletableFuture<List<Object>>> committer;
+    private final int maxBatchSize;
+    private final int maxInFlight;
+
+    // Guarded by this
+    private final Queue<PendingOperation> pending = new ArrayDeque<>();
+    private int inFlight = 0;
+
+    private final Timer commitLatency = new Timer();
+    private final Histogram batchSize = new Histogram(new ExponentiallyDecayingReservoir());
+
+    CommitBatcher(Function<List<DatabaseOperation>, CompletableFuture<List<Object>>> committer) {
+        this(committer, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    CommitBatcher(Function<List<DatabaseOperation>, CompletableFuture<List<Object>>> committer,
+                  int maxBatchSize, int maxInFlight) {
+        checkArgument(maxBatchSize > 0, "Batch size must be positive");
+        checkArgument(maxInFlight > 0, "Number of batches in flight must be positive");
+        this.committer = checkNotNull(committer);
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Submits an operation to be committed with the next batch.
+     *
+     * @param operation operation to commit
+     * @param <T> result type of the operation
+     * @return future to be completed with the result of the operation
+     */
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> submit(DatabaseOperation operation) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        synchronized (this) {
+            pending.add(new PendingOperation(operation, future));
+            commitNext();
+        }
+        return (CompletableFuture<T>) future;
+    }
+
+    /**
+     * Returns the timer of batch commits.
+     *
+     * @return commit latency timer
+     */
+    Timer commitLatency() {
+        return commitLatency;
+    }
+
+    /**
+     * Returns the histogram of the number of operations per batch.
+     *
+     * @return batch size histogram
+     */
+    Histogram batchSize() {
+        return batchSize;
+    }
+
+    // Commits the next batch, if any, unless too many are in flight already.
+    // Batches are handed over while holding the lock to keep them in order.
+    private synchronized void commitNext() {
+        if (pending.isEmpty() || inFlight >= maxInFlight) {
+            return;
+        }
+        List<PendingOperation> batch = Lists.newArrayListWithCapacity(Math.min(pending.size(), maxBatchSize));
+        while (!pending.isEmpty() && batch.size() < maxBatchSize) {
+            batch.add(pending.poll());
+        }
+        inFlight++;
+        batchSize.update(batch.size());
+        Timer.Context timer = commitLatency.time();
+
+        CompletableFuture<List<Object>> commit;
+        try {
+            commit = committer.apply(batch.stream()
+                                          .map(PendingOperation::operation)
+                                          .collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            commit = new CompletableFuture<>();
+            commit.completeExceptionally(e);
+        }
+        commit.whenComplete((results, error) -> {
+            timer.stop();
+            synchronized (this) {
+                inFlight--;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (error != null) {
+                    batch.get(i).future().completeExceptionally(error);
+                } else {
+                    batch.get(i).future().complete(results.get(i));
+                }
+            }
+            commitNext();
+        });
+    }
+
+    // Operation awaiting commit, along with the future for its result.
+    private static final class PendingOperation {
+        private final DatabaseOperation operation;
+        private final CompletableFuture<Object> future;
+
+        private PendingOperation(DatabaseOperation operation, CompletableFuture<Object> future) {
+            this.operation = operation;
+            this.future = future;
+        }
+
+        private DatabaseOperation operation() {
+            return operation;
+        }
+
+        private CompletableFuture<Object> future() {
+            return future;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.store.consistent.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * A Partitioner that maps keys to database partitions using a consistent hash
+ * ring with virtual nodes.
+ * <p>
+ * Each partition is placed on the ring at a number of points derived from an
+ * md5 hash of its name, and a key belongs to the partition owning the first
+ * point at or after the hash of the key. Adding or removing a partition thus
+ * only remaps the keys in the ring segments it gains or loses, and with
+ * enough virtual nodes the keys of every table, including a single hot one,
+ * are spread evenly across all partitions.
+ */
+public class ConsistentHashPartitioner extends DatabasePartitioner {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    // Ring points sorted in ascending order, and the partitions owning them
+    private final long[] points;
+    private final Database[] owners;
+
+    public ConsistentHashPartitioner(List<Database> partitions) {
+        this(partitions, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashPartitioner(List<Database> partitions, int virtualNodes) {
+        super(partitions);
+        checkArgument(virtualNodes > 0, "Number of virtual nodes must be positive");
+        int size = this.partitions.size() * virtualNodes;
+        long[][] ring = new long[size][];
+        int i = 0;
+        for (int p = 0; p < this.partitions.size(); p++) {
+            String name = this.partitions.get(p).name();
+            for (int v = 0; v < virtualNodes; v++) {
+                ring[i++] = new long[] {hash64(name + "#" + v), p};
+            }
+        }
+        // Ties, however unlikely, are broken by partition order so that every
+        // instance builds the exact same ring
+        Arrays.sort(ring, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        points = new long[size];
+        owners = new Database[size];
+        for (i = 0; i < size; i++) {
+            points[i] = ring[i][0];
+            owners[i] = this.partitions.get((int) ring[i][1]);
+        }
+    }
+
+    @Override
+    public Database getPartition(String tableName, String key) {
+        int i = Arrays.binarySearch(points, hash64(key));
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    private static long hash64(String key) {
+        return Hashing.md5().newHasher().putBytes(key.getBytes(Charsets.UTF_8)).hash().asLong();
+    }
+}
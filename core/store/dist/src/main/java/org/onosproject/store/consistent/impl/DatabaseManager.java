@@ -42,7 +42,12 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.NodeId;
 import org.onosproject.core.IdGenerator;
 import org.onosproject.store.cluster.impl.DistributedClusterStore;
 import org.onosproject.store.cluster.impl.NodeInfo;
@@ -93,12 +98,16 @@ public class DatabaseManager implements StorageService, StorageAdminService {
     private static final int DATABASE_STARTUP_TIMEOUT_SEC = 60;
     private static final int RAFT_ELECTION_TIMEOUT_MILLIS = 3000;
     private static final int DATABASE_OPERATION_TIMEOUT_MILLIS = 5000;
+    private static final String DATABASE_METRICS = "Database";
+    private static final String COMMIT_LATENCY = "commitLatency";
+    private static final String COMMIT_BATCH_SIZE = "commitBatchSize";
 
     private ClusterCoordinator coordinator;
     private PartitionedDatabase partitionedDatabase;
     private Database inMemoryDatabase;
 
     private TransactionManager transactionManager;
+    private NearCacheInvalidator nearCacheInvalidator;
     private final IdGenerator transactionIdGenerator = () -> RandomUtils.nextLong();
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
@@ -107,6 +116,9 @@ public class DatabaseManager implements StorageService, StorageAdminService {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ClusterCommunicationService clusterCommunicator;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     protected String nodeToUri(NodeInfo node) {
         return String.format("tcp://%s:%d", node.getIp(), COPYCAT_TCP_PORT);
     }
@@ -174,7 +186,8 @@ public class DatabaseManager implements StorageService, StorageAdminService {
             })
             .collect(Collectors.toList());
 
-        partitionedDatabase = new PartitionedDatabase("onos-store", partitions);
+        partitionedDatabase = new PartitionedDatabase("onos-store", partitions, metricsService);
+        registerMetrics();
 
         CountDownLatch latch = new CountDownLatch(1);
 
@@ -198,6 +211,10 @@ public class DatabaseManager implements StorageService, StorageAdminService {
             log.warn("Failed to complete database initialization.");
         }
         transactionManager = new TransactionManager(partitionedDatabase);
+        nearCacheInvalidator = new NearCacheInvalidator(clusterService, clusterCommunicator);
+        if (partitionedDatabase.isOpen() && !partitionedDatabase.isBalanced() && isRebalancer()) {
+            rebalancePartitions();
+        }
         log.info("Started");
     }
 
@@ -214,6 +231,8 @@ public class DatabaseManager implements StorageService, StorageAdminService {
 
     @Deactivate
     public void deactivate() {
+        unregisterMetrics();
+        nearCacheInvalidator.close();
         CompletableFuture.allOf(inMemoryDatabase.close(), partitionedDatabase.close())
             .thenCompose(v -> coordinator.close())
             .whenComplete((result, error) -> {
@@ -228,14 +247,14 @@ public class DatabaseManager implements StorageService, StorageAdminService {
 
     @Override
     public TransactionContext createTransactionContext() {
-        return new DefaultTransactionContext(partitionedDatabase, transactionIdGenerator.getNewId());
+        return new DefaultTransactionContext(partitionedDatabase,
+                                             transactionIdGenerator.getNewId(),
+                                             nearCacheInvalidator);
     }
 
     @Override
     public List<PartitionInfo> getPartitionInfo() {
-        return Lists.asList(
-                    inMemoryDatabase,
-                    partitionedDatabase.getPartitions().toArray(new Database[]{}))
+        return databases()
                 .stream()
                 .map(DatabaseManager::toPartitionInfo)
                 .collect(Collectors.toList());
@@ -289,6 +308,31 @@ public class DatabaseManager implements StorageService, StorageAdminService {
         return electionTimeoutMillis(replicas) / 2;
     }
 
+    private void registerMetrics() {
+        MetricsComponent component = metricsService.registerComponent(DATABASE_METRICS);
+        databases().forEach(database -> {
+            if (database instanceof DefaultDatabase) {
+                DefaultDatabase partition = (DefaultDatabase) database;
+                MetricsFeature feature = component.registerFeature(partition.name());
+                metricsService.registerMetric(component, feature, COMMIT_LATENCY, partition.commitLatency());
+                metricsService.registerMetric(component, feature, COMMIT_BATCH_SIZE, partition.commitBatchSize());
+            }
+        });
+    }
+
+    private void unregisterMetrics() {
+        MetricsComponent component = metricsService.registerComponent(DATABASE_METRICS);
+        databases().forEach(database -> {
+            MetricsFeature feature = component.registerFeature(database.name());
+            metricsService.removeMetric(component, feature, COMMIT_LATENCY);
+            metricsService.removeMetric(component, feature, COMMIT_BATCH_SIZE);
+        });
+    }
+
+    private List<Database> databases() {
+        return Lists.asList(inMemoryDatabase, partitionedDatabase.getPartitions().toArray(new Database[]{}));
+    }
+
     /**
      * Maps a Raft Database object to a PartitionInfo object.
      *
@@ -312,12 +356,16 @@ public class DatabaseManager implements StorageService, StorageAdminService {
     @Override
     public <K, V> EventuallyConsistentMapBuilder<K, V> eventuallyConsistentMapBuilder() {
         return new EventuallyConsistentMapBuilderImpl<>(clusterService,
-                                                        clusterCommunicator);
+                                                        clusterCommunicator,
+                                                        metricsService);
     }
 
     @Override
     public <K, V> ConsistentMapBuilder<K, V> consistentMapBuilder() {
-        return new DefaultConsistentMapBuilder<>(inMemoryDatabase, partitionedDatabase);
+        return new DefaultConsistentMapBuilder<>(inMemoryDatabase,
+                                                 partitionedDatabase,
+                                                 nearCacheInvalidator,
+                                                 metricsService);
     }
 
     @Override
@@ -377,4 +425,31 @@ public class DatabaseManager implements StorageService, StorageAdminService {
     public void redriveTransactions() {
         getTransactions().stream().forEach(transactionManager::execute);
     }
+
+    // Only the instance with the lowest node identifier rebalances the
+    // partitions on startup, so that instances starting together do not
+    // move the same entries; others can still be asked to by hand.
+    private boolean isRebalancer() {
+        NodeId localNodeId = clusterService.getLocalNode().id();
+        return clusterService.getNodes()
+                .stream()
+                .map(ControllerNode::id)
+                .min((id1, id2) -> id1.toString().compareTo(id2.toString()))
+                .map(localNodeId::equals)
+                .orElse(true);
+    }
+
+    @Override
+    public void rebalancePartitions() {
+        partitionedDatabase.rebalance().whenComplete((moved, error) -> {
+            if (error != null) {
+                log.warn("Failed to rebalance database partitions", error);
+            } else if (partitionedDatabase.isBalanced()) {
+                log.info("Rebalanced database partitions; moved {} entries", moved);
+            } else {
+                log.info("Moved {} entries between database partitions; "
+                        + "locked entries will be moved by the next rebalance", moved);
+            }
+        });
+    }
 }
\ No newline at end of file
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.store.consistent.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * A single table or counter update, applied as part of a batch of operations
+ * committed to a database partition as one log entry.
+ */
+public final class DatabaseOperation {
+
+    /**
+     * Operation types; each corresponds to the update of the same name
+     * provided by the database.
+     */
+    public enum Type {
+        PUT,
+        PUT_IF_ABSENT,
+        REMOVE,
+        REMOVE_IF_VALUE_MATCH,
+        REMOVE_IF_VERSION_MATCH,
+        REPLACE_IF_VALUE_MATCH,
+        REPLACE_IF_VERSION_MATCH,
+        NEXT_VALUE,
+    }
+
+    private Type type;
+    private String name;
+    private String key;
+    private byte[] value;
+    private byte[] currentValue;
+    private long currentVersion = -1;
+
+    // For serializer
+    private DatabaseOperation() {
+    }
+
+    private DatabaseOperation(Type type, String name, String key, byte[] value,
+                              byte[] currentValue, long currentVersion) {
+        this.type = type;
+        this.name = checkNotNull(name);
+        this.key = key;
+        this.value = value;
+        this.currentValue = currentValue;
+        this.currentVersion = currentVersion;
+    }
+
+    public static DatabaseOperation put(String tableName, String key, byte[] value) {
+        return new DatabaseOperation(Type.PUT, tableName, checkNotNull(key), checkNotNull(value), null, -1);
+    }
+
+    public static DatabaseOperation putIfAbsent(String tableName, String key, byte[] value) {
+        return new DatabaseOperation(Type.PUT_IF_ABSENT, tableName, checkNotNull(key), checkNotNull(value), null, -1);
+    }
+
+    public static DatabaseOperation remove(String tableName, String key) {
+        return new DatabaseOperation(Type.REMOVE, tableName, checkNotNull(key), null, null, -1);
+    }
+
+    public static DatabaseOperation remove(String tableName, String key, byte[] value) {
+        return new DatabaseOperation(Type.REMOVE_IF_VALUE_MATCH, tableName, checkNotNull(key),
+                                     null, checkNotNull(value), -1);
+    }
+
+    public static DatabaseOperation remove(String tableName, String key, long version) {
+        return new DatabaseOperation(Type.REMOVE_IF_VERSION_MATCH, tableName, checkNotNull(key),
+                                     null, null, version);
+    }
+
+    public static DatabaseOperation replace(String tableName, String key, byte[] oldValue, byte[] newValue) {
+        return new DatabaseOperation(Type.REPLACE_IF_VALUE_MATCH, tableName, checkNotNull(key),
+                                     checkNotNull(newValue), checkNotNull(oldValue), -1);
+    }
+
+    public static DatabaseOperation replace(String tableName, String key, long oldVersion, byte[] newValue) {
+        return new DatabaseOperation(Type.REPLACE_IF_VERSION_MATCH, tableName, checkNotNull(key),
+                                     checkNotNull(newValue), null, oldVersion);
+    }
+
+    public static DatabaseOperation nextValue(String counterName) {
+        return new DatabaseOperation(Type.NEXT_VALUE, counterName, null, null, null, -1);
+    }
+
+    /**
+     * Returns the type of this operation.
+     *
+     * @return operation type
+     */
+    public Type type() {
+        return type;
+    }
+
+    /**
+     * Returns the name of the table, or of the counter, this operation updates.
+     *
+     * @return table or counter name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the key of the table entry this operation updates.
+     *
+     * @return entry key, or null for counter operations
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Returns the new value of the table entry.
+     *
+     * @return new value, or null if not applicable
+     */
+    public byte[] value() {
+        return value;
+    }
+
+    /**
+     * Returns the value the table entry must currently have.
+     *
+     * @return expected current value, or null if not applicable
+     */
+    public byte[] currentValue() {
+        return currentValue;
+    }
+
+    /**
+     * Returns the version the table entry must currently have.
+     *
+     * @return expected current version, or -1 if not applicable
+     */
+    public long currentVersion() {
+        return currentVersion;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("type", type)
+            .add("name", name)
+            .add("key", key)
+            .add("currentVersion", currentVersion)
+            .toString();
+    }
+}
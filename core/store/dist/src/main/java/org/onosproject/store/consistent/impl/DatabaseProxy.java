@@ -17,6 +17,7 @@
 package org.onosproject.store.consistent.impl;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -240,4 +241,15 @@ public interface DatabaseProxy<K, V> {
    * @return A completable future to be completed with the result once complete
    */
   CompletableFuture<Boolean> rollback(Transaction transaction);
+
+  /**
+   * Applies a batch of table and counter updates, in order, as a single command.
+   * Unlike a transaction the updates are independent of one another: each has
+   * the same outcome it would have if it were applied on its own.
+   *
+   * @param operations operations to apply
+   * @return A completable future to be completed with the results of the operations,
+   * in the same order, once complete
+   */
+  CompletableFuture<List<Object>> execute(List<DatabaseOperation> operations);
 }
@@ -73,6 +73,8 @@ public class DatabaseSerializer extends SerializerConfig {
             .register(Result.Status.class)
             .register(DefaultTransaction.class)
             .register(Transaction.State.class)
+            .register(DatabaseOperation.class)
+            .register(DatabaseOperation.Type.class)
             .build();
 
     private static final KryoSerializer SERIALIZER = new KryoSerializer() {
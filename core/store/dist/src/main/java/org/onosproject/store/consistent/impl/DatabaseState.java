@@ -17,6 +17,7 @@
 package org.onosproject.store.consistent.impl;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -114,4 +115,7 @@ public interface DatabaseState<K, V> {
 
   @Command
   boolean rollback(Transaction transaction);
+
+  @Command
+  List<Object> execute(List<DatabaseOperation> operations);
 }
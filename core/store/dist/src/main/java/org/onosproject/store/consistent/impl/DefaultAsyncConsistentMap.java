@@ -35,6 +35,8 @@ import org.onosproject.store.service.Versioned;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 
 /**
  * AsyncConsistentMap implementation that is backed by a Raft consensus
@@ -48,6 +50,7 @@ public class DefaultAsyncConsistentMap<K, V> implements AsyncConsistentMap<K, V>
     private final String name;
     private final Database database;
     private final Serializer serializer;
+    private final NearCacheInvalidator invalidator;
 
     private static final String ERROR_NULL_KEY = "Key cannot be null";
     private static final String ERROR_NULL_VALUE = "Null values are not allowed";
@@ -66,12 +69,43 @@ public class DefaultAsyncConsistentMap<K, V> implements AsyncConsistentMap<K, V>
         return serializer.decode(HexString.fromHexString(key));
     }
 
+    protected String eK(K key) {
+        return keyCache.getUnchecked(key);
+    }
+
     public DefaultAsyncConsistentMap(String name,
             Database database,
             Serializer serializer) {
+        this(name, database, serializer, null);
+    }
+
+    /**
+     * Creates a map whose updates invalidate the entries held by the near
+     * caches of the maps of the same name throughout the cluster.
+     *
+     * @param name        map name
+     * @param database    backing database
+     * @param serializer  serializer for keys and values
+     * @param invalidator near cache invalidator; null if the map is never
+     *                    near cached anywhere in the cluster
+     */
+    DefaultAsyncConsistentMap(String name,
+            Database database,
+            Serializer serializer,
+            NearCacheInvalidator invalidator) {
         this.name = checkNotNull(name, "map name cannot be null");
         this.database = checkNotNull(database, "database cannot be null");
         this.serializer = checkNotNull(serializer, "serializer cannot be null");
+        this.invalidator = invalidator;
+    }
+
+    /**
+     * Returns the name of this map.
+     *
+     * @return map name
+     */
+    public String name() {
+        return name;
     }
 
     @Override
@@ -104,28 +138,59 @@ public class DefaultAsyncConsistentMap<K, V> implements AsyncConsistentMap<K, V>
             ? new Versioned<>(serializer.decode(v.value()), v.version(), v.creationTime()) : null);
     }
 
+    @Override
+    public CompletableFuture<Map<K, Versioned<V>>> getAll(Set<K> keys) {
+        checkNotNull(keys);
+        Map<K, CompletableFuture<Versioned<V>>> futures = Maps.newHashMapWithExpectedSize(keys.size());
+        keys.forEach(key -> futures.put(key, get(key)));
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[futures.size()]))
+                .thenApply(v -> {
+                    Map<K, Versioned<V>> values = Maps.newHashMapWithExpectedSize(futures.size());
+                    futures.forEach((key, future) -> {
+                        Versioned<V> value = future.join();
+                        if (value != null) {
+                            values.put(key, value);
+                        }
+                    });
+                    return values;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> putAll(Map<K, V> entries) {
+        checkNotNull(entries);
+        return CompletableFuture.allOf(entries.entrySet()
+                .stream()
+                .map(e -> put(e.getKey(), e.getValue()))
+                .toArray(CompletableFuture[]::new));
+    }
+
     @Override
     public CompletableFuture<Versioned<V>> put(K key, V value) {
         checkNotNull(key, ERROR_NULL_KEY);
         checkNotNull(value, ERROR_NULL_VALUE);
-        return database.put(name, keyCache.getUnchecked(key), serializer.encode(value))
+        return invalidateOnCompletion(key, database.put(name, keyCache.getUnchecked(key), serializer.encode(value))
                 .thenApply(this::unwrapResult)
                 .thenApply(v -> v != null
-                ? new Versioned<>(serializer.decode(v.value()), v.version(), v.creationTime()) : null);
+                ? new Versioned<>(serializer.decode(v.value()), v.version(), v.creationTime()) : null));
     }
 
     @Override
     public CompletableFuture<Versioned<V>> remove(K key) {
         checkNotNull(key, ERROR_NULL_KEY);
-        return database.remove(name, keyCache.getUnchecked(key))
+        return invalidateOnCompletion(key, database.remove(name, keyCache.getUnchecked(key))
                 .thenApply(this::unwrapResult)
                 .thenApply(v -> v != null
-                ? new Versioned<>(serializer.decode(v.value()), v.version(), v.creationTime()) : null);
+                ? new Versioned<>(serializer.decode(v.value()), v.version(), v.creationTime()) : null));
     }
 
     @Override
     public CompletableFuture<Void> clear() {
-        return database.clear(name).thenApply(this::unwrapResult);
+        CompletableFuture<Void> update = database.clear(name).thenApply(this::unwrapResult);
+        if (invalidator == null) {
+            return update;
+        }
+        return update.whenComplete((result, error) -> invalidator.invalidate(name, ImmutableList.of()));
     }
 
     @Override
@@ -157,27 +222,28 @@ public class DefaultAsyncConsistentMap<K, V> implements AsyncConsistentMap<K, V>
     public CompletableFuture<Versioned<V>> putIfAbsent(K key, V value) {
         checkNotNull(key, ERROR_NULL_KEY);
         checkNotNull(value, ERROR_NULL_VALUE);
-        return database.putIfAbsent(name,
+        return invalidateOnCompletion(key, database.putIfAbsent(name,
                                     keyCache.getUnchecked(key),
                                     serializer.encode(value))
                .thenApply(this::unwrapResult)
                .thenApply(v -> v != null ?
-                       new Versioned<>(serializer.decode(v.value()), v.version(), v.creationTime()) : null);
+                       new Versioned<>(serializer.decode(v.value()), v.version(), v.creationTime()) : null));
     }
 
     @Override
     public CompletableFuture<Boolean> remove(K key, V value) {
         checkNotNull(key, ERROR_NULL_KEY);
         checkNotNull(value, ERROR_NULL_VALUE);
-        return database.remove(name, keyCache.getUnchecked(key), serializer.encode(value))
-                .thenApply(this::unwrapResult);
+        return invalidateOnCompletion(key,
+                database.remove(name, keyCache.getUnchecked(key), serializer.encode(value))
+                .thenApply(this::unwrapResult));
     }
 
     @Override
     public CompletableFuture<Boolean> remove(K key, long version) {
         checkNotNull(key, ERROR_NULL_KEY);
-        return database.remove(name, keyCache.getUnchecked(key), version)
-                .thenApply(this::unwrapResult);
+        return invalidateOnCompletion(key, database.remove(name, keyCache.getUnchecked(key), version)
+                .thenApply(this::unwrapResult));
 
     }
 
@@ -186,16 +252,29 @@ public class DefaultAsyncConsistentMap<K, V> implements AsyncConsistentMap<K, V>
         checkNotNull(key, ERROR_NULL_KEY);
         checkNotNull(newValue, ERROR_NULL_VALUE);
         byte[] existing = oldValue != null ? serializer.encode(oldValue) : null;
-        return database.replace(name, keyCache.getUnchecked(key), existing, serializer.encode(newValue))
-                .thenApply(this::unwrapResult);
+        return invalidateOnCompletion(key,
+                database.replace(name, keyCache.getUnchecked(key), existing, serializer.encode(newValue))
+                .thenApply(this::unwrapResult));
     }
 
     @Override
     public CompletableFuture<Boolean> replace(K key, long oldVersion, V newValue) {
         checkNotNull(key, ERROR_NULL_KEY);
         checkNotNull(newValue, ERROR_NULL_VALUE);
-        return database.replace(name, keyCache.getUnchecked(key), oldVersion, serializer.encode(newValue))
-                .thenApply(this::unwrapResult);
+        return invalidateOnCompletion(key,
+                database.replace(name, keyCache.getUnchecked(key), oldVersion, serializer.encode(newValue))
+                .thenApply(this::unwrapResult));
+    }
+
+    // Invalidates the key in the near caches throughout the cluster once the
+    // update completes, whether successfully or not, as its outcome may be
+    // unknown.
+    private <T> CompletableFuture<T> invalidateOnCompletion(K key, CompletableFuture<T> update) {
+        if (invalidator == null) {
+            return update;
+        }
+        return update.whenComplete((result, error) ->
+                invalidator.invalidate(name, ImmutableList.of(keyCache.getUnchecked(key))));
     }
 
     private Map.Entry<K, Versioned<V>> fromRawEntry(Map.Entry<String, Versioned<byte[]>> e) {
@@ -17,6 +17,7 @@
 package org.onosproject.store.consistent.impl;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -46,7 +47,11 @@ public class DefaultConsistentMap<K, V> implements ConsistentMap<K, V> {
     public DefaultConsistentMap(String name,
             Database database,
             Serializer serializer) {
-        asyncMap = new DefaultAsyncConsistentMap<>(name, database, serializer);
+        this(new DefaultAsyncConsistentMap<>(name, database, serializer));
+    }
+
+    public DefaultConsistentMap(AsyncConsistentMap<K, V> asyncMap) {
+        this.asyncMap = asyncMap;
     }
 
     @Override
@@ -74,11 +79,21 @@ public class DefaultConsistentMap<K, V> implements ConsistentMap<K, V> {
         return complete(asyncMap.get(key));
     }
 
+    @Override
+    public Map<K, Versioned<V>> getAll(Set<K> keys) {
+        return complete(asyncMap.getAll(keys));
+    }
+
     @Override
     public Versioned<V> put(K key, V value) {
         return complete(asyncMap.put(key, value));
     }
 
+    @Override
+    public void putAll(Map<K, V> entries) {
+        complete(asyncMap.putAll(entries));
+    }
+
     @Override
     public Versioned<V> remove(K key) {
         return complete(asyncMap.remove(key));
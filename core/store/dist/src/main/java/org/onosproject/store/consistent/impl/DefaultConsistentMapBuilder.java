@@ -3,6 +3,7 @@ package org.onosproject.store.consistent.impl;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
+import org.onlab.metrics.MetricsService;
 import org.onosproject.store.service.AsyncConsistentMap;
 import org.onosproject.store.service.ConsistentMap;
 import org.onosproject.store.service.ConsistentMapBuilder;
@@ -19,12 +20,20 @@ public class DefaultConsistentMapBuilder<K, V> implements ConsistentMapBuilder<K
     private Serializer serializer;
     private String name;
     private boolean partitionsEnabled = true;
+    private boolean nearCacheEnabled = false;
     private final Database partitionedDatabase;
     private final Database inMemoryDatabase;
+    private final NearCacheInvalidator nearCacheInvalidator;
+    private final MetricsService metricsService;
 
-    public DefaultConsistentMapBuilder(Database inMemoryDatabase, Database partitionedDatabase) {
+    public DefaultConsistentMapBuilder(Database inMemoryDatabase,
+                                       Database partitionedDatabase,
+                                       NearCacheInvalidator nearCacheInvalidator,
+                                       MetricsService metricsService) {
         this.inMemoryDatabase = inMemoryDatabase;
         this.partitionedDatabase = partitionedDatabase;
+        this.nearCacheInvalidator = nearCacheInvalidator;
+        this.metricsService = metricsService;
     }
 
     @Override
@@ -47,6 +56,12 @@ public class DefaultConsistentMapBuilder<K, V> implements ConsistentMapBuilder<K
         return this;
     }
 
+    @Override
+    public ConsistentMapBuilder<K, V> withNearCache() {
+        nearCacheEnabled = true;
+        return this;
+    }
+
     private boolean validInputs() {
         return name != null && serializer != null;
     }
@@ -54,18 +69,25 @@ public class DefaultConsistentMapBuilder<K, V> implements ConsistentMapBuilder<K
     @Override
     public ConsistentMap<K, V> build() {
         checkState(validInputs());
-        return new DefaultConsistentMap<>(
-                name,
-                partitionsEnabled ? partitionedDatabase : inMemoryDatabase,
-                serializer);
+        return new DefaultConsistentMap<>(buildAsyncMap());
     }
 
     @Override
     public AsyncConsistentMap<K, V> buildAsyncMap() {
         checkState(validInputs());
+        if (nearCacheEnabled) {
+            return new NearCachedAsyncConsistentMap<>(
+                    name,
+                    partitionsEnabled ? partitionedDatabase : inMemoryDatabase,
+                    serializer,
+                    nearCacheInvalidator,
+                    metricsService);
+        }
+        // Updates invalidate the near caches of the maps of the same name
         return new DefaultAsyncConsistentMap<>(
                 name,
                 partitionsEnabled ? partitionedDatabase : inMemoryDatabase,
-                serializer);
+                serializer,
+                nearCacheInvalidator);
     }
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ import net.kuujo.copycat.state.internal.DefaultStateMachine;
 import net.kuujo.copycat.util.concurrent.Futures;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -31,12 +32,20 @@ import java.util.function.Supplier;
 import org.onosproject.store.service.Transaction;
 import org.onosproject.store.service.Versioned;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+
 /**
  * Default database.
+ * <p>
+ * Concurrent updates are committed together in batches, so that each takes
+ * up a fraction of a log entry rather than one of its own.
+ * </p>
  */
 public class DefaultDatabase extends AbstractResource<Database> implements Database {
     private final StateMachine<DatabaseState<String, byte[]>> stateMachine;
     private DatabaseProxy<String, byte[]> proxy;
+    private final CommitBatcher batcher = new CommitBatcher(this::execute);
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public DefaultDatabase(ResourceContext context) {
@@ -59,6 +68,24 @@ public class DefaultDatabase extends AbstractResource<Database> implements Datab
         return supplier.get();
     }
 
+    /**
+     * Returns the timer of batched update commits.
+     *
+     * @return commit latency timer
+     */
+    Timer commitLatency() {
+        return batcher.commitLatency();
+    }
+
+    /**
+     * Returns the histogram of the number of updates per batch.
+     *
+     * @return batch size histogram
+     */
+    Histogram commitBatchSize() {
+        return batcher.batchSize();
+    }
+
     @Override
     public CompletableFuture<Set<String>> tableNames() {
         return checkOpen(() -> proxy.tableNames());
@@ -96,12 +123,12 @@ public class DefaultDatabase extends AbstractResource<Database> implements Datab
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> put(String tableName, String key, byte[] value) {
-        return checkOpen(() -> proxy.put(tableName, key, value));
+        return checkOpen(() -> batcher.submit(DatabaseOperation.put(tableName, key, value)));
     }
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> remove(String tableName, String key) {
-        return checkOpen(() -> proxy.remove(tableName, key));
+        return checkOpen(() -> batcher.submit(DatabaseOperation.remove(tableName, key)));
     }
 
     @Override
@@ -126,32 +153,32 @@ public class DefaultDatabase extends AbstractResource<Database> implements Datab
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> putIfAbsent(String tableName, String key, byte[] value) {
-        return checkOpen(() -> proxy.putIfAbsent(tableName, key, value));
+        return checkOpen(() -> batcher.submit(DatabaseOperation.putIfAbsent(tableName, key, value)));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> remove(String tableName, String key, byte[] value) {
-        return checkOpen(() -> proxy.remove(tableName, key, value));
+        return checkOpen(() -> batcher.submit(DatabaseOperation.remove(tableName, key, value)));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> remove(String tableName, String key, long version) {
-        return checkOpen(() -> proxy.remove(tableName, key, version));
+        return checkOpen(() -> batcher.submit(DatabaseOperation.remove(tableName, key, version)));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> replace(String tableName, String key, byte[] oldValue, byte[] newValue) {
-        return checkOpen(() -> proxy.replace(tableName, key, oldValue, newValue));
+        return checkOpen(() -> batcher.submit(DatabaseOperation.replace(tableName, key, oldValue, newValue)));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> replace(String tableName, String key, long oldVersion, byte[] newValue) {
-        return checkOpen(() -> proxy.replace(tableName, key, oldVersion, newValue));
+        return checkOpen(() -> batcher.submit(DatabaseOperation.replace(tableName, key, oldVersion, newValue)));
     }
 
     @Override
     public CompletableFuture<Long> nextValue(String counterName) {
-        return checkOpen(() -> proxy.nextValue(counterName));
+        return checkOpen(() -> batcher.submit(DatabaseOperation.nextValue(counterName)));
     }
 
     @Override
@@ -179,6 +206,11 @@ public class DefaultDatabase extends AbstractResource<Database> implements Datab
         return checkOpen(() -> proxy.rollback(transaction));
     }
 
+    @Override
+    public CompletableFuture<List<Object>> execute(List<DatabaseOperation> operations) {
+        return checkOpen(() -> proxy.execute(operations));
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public synchronized CompletableFuture<Database> open() {
@@ -19,6 +19,7 @@ package org.onosproject.store.consistent.impl;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicLong;
@@ -34,6 +35,7 @@ import org.onosproject.store.service.DatabaseUpdate.Type;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import net.kuujo.copycat.state.Initializer;
@@ -271,6 +273,38 @@ public class DefaultDatabaseState implements DatabaseState<String, byte[]> {
         return true;
     }
 
+    @Override
+    public List<Object> execute(List<DatabaseOperation> operations) {
+        List<Object> results = Lists.newArrayListWithCapacity(operations.size());
+        operations.forEach(operation -> results.add(execute(operation)));
+        return results;
+    }
+
+    private Object execute(DatabaseOperation operation) {
+        String name = operation.name();
+        String key = operation.key();
+        switch (operation.type()) {
+        case PUT:
+            return put(name, key, operation.value());
+        case PUT_IF_ABSENT:
+            return putIfAbsent(name, key, operation.value());
+        case REMOVE:
+            return remove(name, key);
+        case REMOVE_IF_VALUE_MATCH:
+            return remove(name, key, operation.currentValue());
+        case REMOVE_IF_VERSION_MATCH:
+            return remove(name, key, operation.currentVersion());
+        case REPLACE_IF_VALUE_MATCH:
+            return replace(name, key, operation.currentValue(), operation.value());
+        case REPLACE_IF_VERSION_MATCH:
+            return replace(name, key, operation.currentVersion(), operation.value());
+        case NEXT_VALUE:
+            return nextValue(name);
+        default:
+            throw new IllegalStateException("Unsupported type: " + operation.type());
+        }
+    }
+
     private Map<String, Versioned<byte[]>> getTableMap(String tableName) {
         return tables.computeIfAbsent(tableName, name -> Maps.newConcurrentMap());
     }
@@ -316,7 +350,7 @@ public class DefaultDatabaseState implements DatabaseState<String, byte[]> {
         case REMOVE:
         case REMOVE_IF_VERSION_MATCH:
         case REMOVE_IF_VALUE_MATCH:
-            lockMap.put(update.key(), null);
+            lockMap.put(update.key(), Pair.of(transactionId, null));
             break;
         default:
             throw new IllegalStateException("Unsupported type: " + update.type());
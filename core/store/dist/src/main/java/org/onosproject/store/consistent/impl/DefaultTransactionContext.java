@@ -42,10 +42,14 @@ public class DefaultTransactionContext implements TransactionContext {
     private boolean isOpen = false;
     private final Database database;
     private final long transactionId;
+    private final NearCacheInvalidator nearCacheInvalidator;
 
-    public DefaultTransactionContext(Database database, long transactionId) {
+    public DefaultTransactionContext(Database database,
+                                     long transactionId,
+                                     NearCacheInvalidator nearCacheInvalidator) {
         this.database = checkNotNull(database);
         this.transactionId = transactionId;
+        this.nearCacheInvalidator = checkNotNull(nearCacheInvalidator);
     }
 
     @Override
@@ -86,7 +90,12 @@ public class DefaultTransactionContext implements TransactionContext {
             List<DatabaseUpdate> updates = Lists.newLinkedList();
             txMaps.values()
                   .forEach(m -> { updates.addAll(m.prepareDatabaseUpdates()); });
-            database.prepareAndCommit(new DefaultTransaction(transactionId, updates));
+            database.prepareAndCommit(new DefaultTransaction(transactionId, updates))
+                    .thenAccept(committed -> {
+                        if (committed) {
+                            nearCacheInvalidator.invalidate(updates);
+                        }
+                    });
         } catch (Exception e) {
             abort();
             throw new TransactionException(e);
@@ -12,7 +12,12 @@ import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
+import org.onosproject.cluster.ClusterEvent;
+import org.onosproject.cluster.ClusterEventListener;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.ControllerNode;
 import org.onosproject.cluster.ControllerNode.State;
@@ -35,15 +40,21 @@ import org.onosproject.store.service.StorageService;
 import org.onosproject.store.service.Versioned;
 import org.slf4j.Logger;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -56,6 +67,15 @@ import static org.slf4j.LoggerFactory.getLogger;
  * This implementation makes use of cluster manager's failure
  * detection capabilities to detect and purge stale locks.
  * TODO: Ensure lock safety and liveness.
+ * </p>
+ * <p>
+ * Pending leader lock attempts are gathered and run as batches, reading
+ * the state of all topics in a batch at once and then contending for the
+ * individual topics in parallel. Leadership changes are sent to peers in
+ * batches as well, as a list of events per message; the leadership of all
+ * locally led topics is re-sent periodically, in a single message, and
+ * when instances join, to repair any lost updates.
+ * </p>
  */
 @Component(immediate = true, enabled = true)
 @Service
@@ -73,15 +93,21 @@ public class DistributedLeadershipManager implements LeadershipService {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected EventDeliveryService eventDispatcher;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     private static final MessageSubject LEADERSHIP_EVENT_MESSAGE_SUBJECT =
             new MessageSubject("distributed-leadership-manager-events");
 
     private final Logger log = getLogger(getClass());
     private ExecutorService messageHandlingExecutor;
+    private ExecutorService electionExecutor;
     private ScheduledExecutorService retryLeaderLockExecutor;
     private ScheduledExecutorService deadLockDetectionExecutor;
     private ScheduledExecutorService leadershipStatusBroadcaster;
 
+    private final ClusterEventListener clusterEventListener = new InternalClusterEventListener();
+
     private ConsistentMap<String, NodeId> leaderMap;
     private ConsistentMap<String, List<NodeId>> candidateMap;
 
@@ -92,10 +118,26 @@ public class DistributedLeadershipManager implements LeadershipService {
 
     private Set<String> activeTopics = Sets.newConcurrentHashSet();
 
+    // Topics awaiting the next batch of leader lock attempts
+    private final Set<String> pendingElections = Sets.newConcurrentHashSet();
+
+    // Leadership changes awaiting broadcast to peers
+    private final Queue<LeadershipEvent> pendingPeerUpdates = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean peerUpdateScheduled = new AtomicBoolean(false);
+
+    // Times at which topics were last seen to be without a leader
+    private final Map<String, Long> leaderlessSince = Maps.newConcurrentMap();
+
+    private Timer electionLatency;
+    private Timer electionBatchLatency;
+    private Histogram electionBatchSize;
+    private Histogram peerUpdateBatchSize;
+
     private static final int ELECTION_JOIN_ATTEMPT_INTERVAL_SEC = 2;
     private static final int DELAY_BETWEEN_LEADER_LOCK_ATTEMPTS_SEC = 2;
     private static final int DEADLOCK_DETECTION_INTERVAL_SEC = 2;
     private static final int LEADERSHIP_STATUS_UPDATE_INTERVAL_SEC = 2;
+    private static final int ELECTION_THREADS = 8;
 
     private static final int LEADER_CANDIDATE_POS = 0;
 
@@ -115,8 +157,18 @@ public class DistributedLeadershipManager implements LeadershipService {
 
         localNodeId = clusterService.getLocalNode().id();
 
+        MetricsComponent component = metricsService.registerComponent("LeadershipService");
+        MetricsFeature feature = component.registerFeature("elections");
+        electionLatency = metricsService.createTimer(component, feature, "electionLatency");
+        electionBatchLatency = metricsService.createTimer(component, feature, "batchLatency");
+        electionBatchSize = metricsService.createHistogram(component, feature, "batchSize");
+        peerUpdateBatchSize = metricsService.createHistogram(
+                component, component.registerFeature("peerUpdates"), "batchSize");
+
         messageHandlingExecutor = Executors.newSingleThreadExecutor(
                 groupedThreads("onos/store/leadership", "message-handler"));
+        electionExecutor = Executors.newFixedThreadPool(
+                ELECTION_THREADS, groupedThreads("onos/store/leadership", "election-%d"));
         retryLeaderLockExecutor = Executors.newScheduledThreadPool(
                 4, groupedThreads("onos/store/leadership", "election-thread-%d"));
         deadLockDetectionExecutor = Executors.newSingleThreadScheduledExecutor(
@@ -130,8 +182,11 @@ public class DistributedLeadershipManager implements LeadershipService {
 
         deadLockDetectionExecutor.scheduleWithFixedDelay(
                 this::purgeStaleLocks, 0, DEADLOCK_DETECTION_INTERVAL_SEC, TimeUnit.SECONDS);
+        retryLeaderLockExecutor.scheduleWithFixedDelay(
+                this::runElections, 0, DELAY_BETWEEN_LEADER_LOCK_ATTEMPTS_SEC, TimeUnit.SECONDS);
         leadershipStatusBroadcaster.scheduleWithFixedDelay(
                 this::sendLeadershipStatus, 0, LEADERSHIP_STATUS_UPDATE_INTERVAL_SEC, TimeUnit.SECONDS);
+        clusterService.addListener(clusterEventListener);
 
         listenerRegistry = new AbstractListenerRegistry<>();
         eventDispatcher.addSink(LeadershipEvent.class, listenerRegistry);
@@ -147,10 +202,12 @@ public class DistributedLeadershipManager implements LeadershipService {
             }
         });
 
+        clusterService.removeListener(clusterEventListener);
         eventDispatcher.removeSink(LeadershipEvent.class);
         clusterCommunicator.removeSubscriber(LEADERSHIP_EVENT_MESSAGE_SUBJECT);
 
         messageHandlingExecutor.shutdown();
+        electionExecutor.shutdown();
         retryLeaderLockExecutor.shutdown();
         deadLockDetectionExecutor.shutdown();
         leadershipStatusBroadcaster.shutdown();
@@ -220,6 +277,9 @@ public class DistributedLeadershipManager implements LeadershipService {
             }
             log.debug("In the leadership race for topic {} with candidates {}", path, candidates);
             activeTopics.add(path);
+            if (!leaderBoard.containsKey(path)) {
+                leaderlessSince.putIfAbsent(path, System.currentTimeMillis());
+            }
             tryLeaderLock(path);
         } catch (ConsistentMapException e) {
             log.debug("Failed to enter topic leader race for {}. Retrying.", path, e);
@@ -274,14 +334,19 @@ public class DistributedLeadershipManager implements LeadershipService {
         if (!activeTopics.contains(path)) {
             return;
         }
+        tryLeaderLock(path, candidateMap.get(path), null, false);
+    }
 
-        Versioned<List<NodeId>> candidates = candidateMap.get(path);
+    // Attempts to acquire the leader lock for a topic, given its candidates
+    // and, if already known, its current leader.
+    private void tryLeaderLock(String path, Versioned<List<NodeId>> candidates,
+                               Versioned<NodeId> currentLeader, boolean leaderKnown) {
         if (candidates != null) {
             List<NodeId> activeNodes = candidates.value().stream()
                               .filter(n -> clusterService.getState(n) == State.ACTIVE)
                               .collect(Collectors.toList());
             if (localNodeId.equals(activeNodes.get(LEADER_CANDIDATE_POS))) {
-                leaderLockAttempt(path, candidates.value());
+                leaderLockAttempt(path, candidates.value(), currentLeader, leaderKnown);
             } else {
                 retryLock(path);
             }
@@ -290,9 +355,10 @@ public class DistributedLeadershipManager implements LeadershipService {
         }
     }
 
-    private void leaderLockAttempt(String path, List<NodeId> candidates) {
+    private void leaderLockAttempt(String path, List<NodeId> candidates,
+                                   Versioned<NodeId> knownLeader, boolean leaderKnown) {
         try {
-            Versioned<NodeId> currentLeader = leaderMap.get(path);
+            Versioned<NodeId> currentLeader = leaderKnown ? knownLeader : leaderMap.get(path);
             if (currentLeader != null) {
                 if (localNodeId.equals(currentLeader.value())) {
                     log.info("Already has leadership for {}", path);
@@ -324,53 +390,108 @@ public class DistributedLeadershipManager implements LeadershipService {
     private void notifyNewLeader(String path, NodeId leader,
             List<NodeId> candidates, long epoch, long electedTime) {
         Leadership newLeadership = new Leadership(path, leader, candidates, epoch, electedTime);
-        boolean updatedLeader = false;
         log.debug("candidates for new Leadership {}", candidates);
-        synchronized (leaderBoard) {
-            Leadership currentLeader = leaderBoard.get(path);
-            if (currentLeader == null || currentLeader.epoch() < epoch) {
-                log.debug("updating leaderboard with new {}", newLeadership);
-                leaderBoard.put(path, newLeadership);
-                updatedLeader = true;
-            }
-        }
-
-        if (updatedLeader) {
-            LeadershipEvent event = new LeadershipEvent(LeadershipEvent.Type.LEADER_ELECTED, newLeadership);
+        LeadershipEvent event = new LeadershipEvent(LeadershipEvent.Type.LEADER_ELECTED, newLeadership);
+        if (updateLeaderBoard(event)) {
+            log.debug("updated leaderboard with new {}", newLeadership);
             notifyPeers(event);
         }
     }
 
     private void notifyPeers(LeadershipEvent event) {
-        eventDispatcher.post(event);
+        pendingPeerUpdates.add(event);
+        if (peerUpdateScheduled.compareAndSet(false, true)) {
+            leadershipStatusBroadcaster.execute(this::sendPeerUpdates);
+        }
+    }
+
+    // Sends all leadership changes made since the previous call to peers,
+    // in as few messages as possible.
+    private void sendPeerUpdates() {
+        peerUpdateScheduled.set(false);
+        List<LeadershipEvent> events = Lists.newArrayList();
+        LeadershipEvent event;
+        while ((event = pendingPeerUpdates.poll()) != null) {
+            events.add(event);
+        }
+        if (!events.isEmpty()) {
+            peerUpdateBatchSize.update(events.size());
+            broadcast(events);
+        }
+    }
+
+    private void broadcast(List<LeadershipEvent> events) {
         clusterCommunicator.broadcast(
                 new ClusterMessage(
                         clusterService.getLocalNode().id(),
                         LEADERSHIP_EVENT_MESSAGE_SUBJECT,
-                        SERIALIZER.encode(event)));
+                        SERIALIZER.encode(events)));
     }
 
     private void notifyRemovedLeader(String path, NodeId leader, long epoch, long electedTime) {
         Versioned<List<NodeId>> candidates = candidateMap.get(path);
         Leadership oldLeadership = new Leadership(
                 path, leader, candidates.value(), epoch, electedTime);
-        boolean updatedLeader = false;
-        synchronized (leaderBoard) {
-            Leadership currentLeader = leaderBoard.get(path);
-            if (currentLeader != null && currentLeader.epoch() == oldLeadership.epoch()) {
-                leaderBoard.remove(path);
-                updatedLeader = true;
-            }
+        LeadershipEvent event = new LeadershipEvent(LeadershipEvent.Type.LEADER_BOOTED, oldLeadership);
+        if (updateLeaderBoard(event)) {
+            notifyPeers(event);
         }
+    }
 
-        if (updatedLeader) {
-            LeadershipEvent event = new LeadershipEvent(LeadershipEvent.Type.LEADER_BOOTED, oldLeadership);
+    /**
+     * Applies a leadership event to the leader board, unless it is outdated,
+     * and dispatches it locally if it is applied.
+     *
+     * @param event leadership event
+     * @return true if the leader board was updated
+     */
+    private boolean updateLeaderBoard(LeadershipEvent event) {
+        Leadership leadershipUpdate = event.subject();
+        LeadershipEvent.Type eventType = event.type();
+        AtomicBoolean updateAccepted = new AtomicBoolean(false);
+
+        // Updates to the same topic are serialized, while those to
+        // different topics proceed in parallel
+        leaderBoard.compute(leadershipUpdate.topic(), (topic, currentLeadership) -> {
+            if (eventType.equals(LeadershipEvent.Type.LEADER_ELECTED)) {
+                if (currentLeadership == null || currentLeadership.epoch() < leadershipUpdate.epoch()) {
+                    updateAccepted.set(true);
+                    return leadershipUpdate;
+                }
+            } else if (eventType.equals(LeadershipEvent.Type.LEADER_BOOTED)) {
+                if (currentLeadership != null && currentLeadership.epoch() == leadershipUpdate.epoch()) {
+                    updateAccepted.set(true);
+                    return null;
+                }
+            } else if (eventType.equals(LeadershipEvent.Type.CANDIDATES_CHANGED)) {
+                if (currentLeadership != null && currentLeadership.epoch() == leadershipUpdate.epoch()) {
+                    updateAccepted.set(true);
+                    return leadershipUpdate;
+                }
+            } else {
+                throw new IllegalStateException("Unknown event type.");
+            }
+            return currentLeadership;
+        });
+
+        if (updateAccepted.get()) {
+            recordElection(event);
             eventDispatcher.post(event);
-            clusterCommunicator.broadcast(
-                    new ClusterMessage(
-                            clusterService.getLocalNode().id(),
-                            LEADERSHIP_EVENT_MESSAGE_SUBJECT,
-                            SERIALIZER.encode(event)));
+        }
+        return updateAccepted.get();
+    }
+
+    // Tracks how long topics remain without a leader.
+    private void recordElection(LeadershipEvent event) {
+        String topic = event.subject().topic();
+        long now = System.currentTimeMillis();
+        if (event.type().equals(LeadershipEvent.Type.LEADER_ELECTED)) {
+            Long since = leaderlessSince.remove(topic);
+            if (since != null) {
+                electionLatency.update(now - since, TimeUnit.MILLISECONDS);
+            }
+        } else if (event.type().equals(LeadershipEvent.Type.LEADER_BOOTED)) {
+            leaderlessSince.putIfAbsent(topic, now);
         }
     }
 
@@ -378,42 +499,36 @@ public class DistributedLeadershipManager implements LeadershipService {
 
         @Override
         public void handle(ClusterMessage message) {
-            LeadershipEvent leadershipEvent =
-                    SERIALIZER.decode(message.payload());
+            List<LeadershipEvent> leadershipEvents = decodeEvents(message.payload());
 
-            log.trace("Leadership Event: time = {} type = {} event = {}",
-                    leadershipEvent.time(), leadershipEvent.type(),
-                    leadershipEvent);
+            leadershipEvents.forEach(leadershipEvent -> {
+                log.trace("Leadership Event: time = {} type = {} event = {}",
+                        leadershipEvent.time(), leadershipEvent.type(),
+                        leadershipEvent);
+                updateLeaderBoard(leadershipEvent);
+            });
+        }
+    }
 
-            Leadership leadershipUpdate = leadershipEvent.subject();
-            LeadershipEvent.Type eventType = leadershipEvent.type();
-            String topic = leadershipUpdate.topic();
+    // Decodes a list of leadership events, or a single one as sent by
+    // instances that do not batch their updates.
+    @SuppressWarnings("unchecked")
+    private static List<LeadershipEvent> decodeEvents(byte[] payload) {
+        Object decoded = SERIALIZER.decode(payload);
+        return decoded instanceof LeadershipEvent
+                ? ImmutableList.of((LeadershipEvent) decoded)
+                : (List<LeadershipEvent>) decoded;
+    }
 
-            boolean updateAccepted = false;
+    private class InternalClusterEventListener implements ClusterEventListener {
 
-            synchronized (leaderBoard) {
-                Leadership currentLeadership = leaderBoard.get(topic);
-                if (eventType.equals(LeadershipEvent.Type.LEADER_ELECTED)) {
-                    if (currentLeadership == null || currentLeadership.epoch() < leadershipUpdate.epoch()) {
-                        leaderBoard.put(topic, leadershipUpdate);
-                        updateAccepted = true;
-                    }
-                } else if (eventType.equals(LeadershipEvent.Type.LEADER_BOOTED)) {
-                    if (currentLeadership != null && currentLeadership.epoch() == leadershipUpdate.epoch()) {
-                        leaderBoard.remove(topic);
-                        updateAccepted = true;
-                    }
-                } else if (eventType.equals(LeadershipEvent.Type.CANDIDATES_CHANGED)) {
-                    if (currentLeadership != null && currentLeadership.epoch() == leadershipUpdate.epoch()) {
-                        leaderBoard.replace(topic, leadershipUpdate);
-                        updateAccepted = true;
-                    }
-                } else {
-                    throw new IllegalStateException("Unknown event type.");
-                }
-                if (updateAccepted) {
-                    eventDispatcher.post(leadershipEvent);
-                }
+        @Override
+        public void event(ClusterEvent event) {
+            // Bring joining instances up to date without waiting for the
+            // next periodic update
+            if (event.type() == ClusterEvent.Type.INSTANCE_ACTIVATED
+                    || event.type() == ClusterEvent.Type.INSTANCE_ADDED) {
+                leadershipStatusBroadcaster.execute(DistributedLeadershipManager.this::sendLeadershipStatus);
             }
         }
     }
@@ -426,10 +541,46 @@ public class DistributedLeadershipManager implements LeadershipService {
     }
 
     private void retryLock(String path) {
-        retryLeaderLockExecutor.schedule(
-                () -> tryLeaderLock(path),
-                DELAY_BETWEEN_LEADER_LOCK_ATTEMPTS_SEC,
-                TimeUnit.SECONDS);
+        pendingElections.add(path);
+    }
+
+    // Runs leader lock attempts for all topics queued since the previous
+    // batch, fetching their candidates and leaders in bulk.
+    private void runElections() {
+        Set<String> topics = Sets.newHashSet();
+        pendingElections.removeIf(topic -> {
+            if (activeTopics.contains(topic)) {
+                topics.add(topic);
+            }
+            return true;
+        });
+        if (topics.isEmpty()) {
+            return;
+        }
+
+        electionBatchSize.update(topics.size());
+        Timer.Context timer = electionBatchLatency.time();
+        try {
+            Map<String, Versioned<List<NodeId>>> candidates = candidateMap.getAll(topics);
+            Map<String, Versioned<NodeId>> leaders = leaderMap.getAll(topics);
+            topics.forEach(topic -> electionExecutor.execute(() -> {
+                if (candidates.get(topic) == null) {
+                    log.debug("No candidates for topic {}; skipping election", topic);
+                    return;
+                }
+                try {
+                    tryLeaderLock(topic, candidates.get(topic), leaders.get(topic), true);
+                } catch (Exception e) {
+                    log.debug("Attempt to acquire leadership lock for topic {} failed", topic, e);
+                    retryLock(topic);
+                }
+            }));
+        } catch (Exception e) {
+            log.debug("Failed to run leader elections", e);
+            pendingElections.addAll(topics);
+        } finally {
+            timer.stop();
+        }
     }
 
     private void retryWithdraw(String path) {
@@ -466,16 +617,14 @@ public class DistributedLeadershipManager implements LeadershipService {
 
     private void sendLeadershipStatus() {
         try {
-            leaderBoard.forEach((path, leadership) -> {
-                if (leadership.leader().equals(localNodeId)) {
-                    LeadershipEvent event = new LeadershipEvent(LeadershipEvent.Type.LEADER_ELECTED, leadership);
-                    clusterCommunicator.broadcast(
-                            new ClusterMessage(
-                                    clusterService.getLocalNode().id(),
-                                    LEADERSHIP_EVENT_MESSAGE_SUBJECT,
-                                    SERIALIZER.encode(event)));
-                }
-            });
+            List<LeadershipEvent> events = leaderBoard.values()
+                    .stream()
+                    .filter(leadership -> leadership.leader().equals(localNodeId))
+                    .map(leadership -> new LeadershipEvent(LeadershipEvent.Type.LEADER_ELECTED, leadership))
+                    .collect(Collectors.toList());
+            if (!events.isEmpty()) {
+                broadcast(events);
+            }
         } catch (Exception e) {
             log.debug("Failed to send leadership updates", e);
         }
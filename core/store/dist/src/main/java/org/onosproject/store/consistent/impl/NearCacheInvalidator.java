@@ -0,0 +1,315 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.onlab.util.Tools.groupedThreads;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.onlab.util.AbstractAccumulator;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.DatabaseUpdate;
+import org.onosproject.store.service.Serializer;
+import org.slf4j.Logger;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+
+/**
+ * Propagates invalidations of near cached consistent map entries to the
+ * near caches on this and all other instances.
+ * <p>
+ * Keys are identified by their encoded database form; an empty collection of
+ * keys stands for all keys of a map.
+ * </p>
+ * <p>
+ * Instances periodically announce the names of the maps they hold near
+ * caches for, and invalidations are only sent to the instances that
+ * announced the map in question, so that updates of maps nobody near caches
+ * cost no messages. Invalidations are coalesced per map for a few
+ * milliseconds before they are sent. A near cache created moments before an
+ * update may miss its invalidation until its announcement has been received;
+ * such entries go stale until they expire.
+ * </p>
+ */
+class NearCacheInvalidator {
+
+    private static final MessageSubject NEAR_CACHE_INVALIDATION =
+            new MessageSubject("consistent-map-near-cache-invalidation");
+    private static final MessageSubject NEAR_CACHE_ANNOUNCEMENT =
+            new MessageSubject("consistent-map-near-cache-announcement");
+
+    private static final int ANNOUNCEMENT_PERIOD_MILLIS = 5000;
+    // Announcements not refreshed for this long are of instances gone away
+    private static final int ANNOUNCEMENT_EXPIRY_MILLIS = 3 * ANNOUNCEMENT_PERIOD_MILLIS;
+
+    private static final int MAX_BATCH_ITEMS = 1000;
+    private static final int MAX_BATCH_MILLIS = 20;
+    private static final int MAX_IDLE_MILLIS = 5;
+    private static final Timer TIMER = new Timer("onos-near-cache-invalidations", true);
+
+    private static final Serializer SERIALIZER = Serializer.using(
+            new KryoNamespace.Builder()
+                    .register(KryoNamespaces.BASIC)
+                    .register(Invalidation.class)
+                    .build());
+
+    private final Logger log = getLogger(getClass());
+
+    private final ClusterService clusterService;
+    private final ClusterCommunicationService clusterCommunicator;
+    private final ScheduledExecutorService messageHandlingExecutor;
+    private final InvalidationAccumulator accumulator = new InvalidationAccumulator();
+
+    private final Map<String, Set<Consumer<Collection<String>>>> listeners =
+            Maps.newConcurrentMap();
+
+    // Names of the near cached maps announced by other instances
+    private final Map<NodeId, Announcement> announcements = Maps.newConcurrentMap();
+
+    /**
+     * Creates a near cache invalidator and subscribes to invalidations
+     * originating from other instances.
+     *
+     * @param clusterService      cluster service
+     * @param clusterCommunicator cluster communication service
+     */
+    NearCacheInvalidator(ClusterService clusterService,
+                         ClusterCommunicationService clusterCommunicator) {
+        this.clusterService = checkNotNull(clusterService);
+        this.clusterCommunicator = checkNotNull(clusterCommunicator);
+        this.messageHandlingExecutor = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("onos/store/consistent", "near-cache-invalidator"));
+        clusterCommunicator.addSubscriber(NEAR_CACHE_INVALIDATION, message -> {
+            List<Invalidation> invalidations = SERIALIZER.decode(message.payload());
+            invalidations.forEach(invalidation -> notifyListeners(invalidation.mapName, invalidation.keys));
+        }, messageHandlingExecutor);
+        clusterCommunicator.addSubscriber(NEAR_CACHE_ANNOUNCEMENT, message -> {
+            Set<String> mapNames = SERIALIZER.decode(message.payload());
+            announcements.put(message.sender(), new Announcement(mapNames));
+        }, messageHandlingExecutor);
+        messageHandlingExecutor.scheduleAtFixedRate(this::announce, ANNOUNCEMENT_PERIOD_MILLIS,
+                                                    ANNOUNCEMENT_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops propagating invalidations.
+     */
+    void close() {
+        clusterCommunicator.removeSubscriber(NEAR_CACHE_INVALIDATION);
+        clusterCommunicator.removeSubscriber(NEAR_CACHE_ANNOUNCEMENT);
+        messageHandlingExecutor.shutdown();
+        listeners.clear();
+        announcements.clear();
+    }
+
+    /**
+     * Registers a listener for invalidations of the entries of a map. The
+     * listener is only weakly referenced, so that it is dropped along with
+     * the map that holds on to it.
+     *
+     * @param mapName  map name
+     * @param listener listener to be given the encoded keys to invalidate
+     */
+    void addListener(String mapName, Consumer<Collection<String>> listener) {
+        Set<Consumer<Collection<String>>> mapListeners = listeners.computeIfAbsent(mapName,
+                name -> Collections.newSetFromMap(
+                        new MapMaker().weakKeys().<Consumer<Collection<String>>, Boolean>makeMap()));
+        if (mapListeners.add(listener) && mapListeners.size() == 1) {
+            // Let the other instances know right away rather than on the
+            // next periodic announcement
+            messageHandlingExecutor.execute(this::announce);
+        }
+    }
+
+    /**
+     * Unregisters a listener for invalidations of the entries of a map.
+     *
+     * @param mapName  map name
+     * @param listener listener to remove
+     */
+    void removeListener(String mapName, Consumer<Collection<String>> listener) {
+        Set<Consumer<Collection<String>>> mapListeners = listeners.get(mapName);
+        if (mapListeners != null) {
+            mapListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Invalidates the specified entries of a map across the cluster.
+     *
+     * @param mapName map name
+     * @param keys    encoded keys of the entries, or an empty collection to
+     *                invalidate all entries
+     */
+    void invalidate(String mapName, Collection<String> keys) {
+        List<String> keyList = ImmutableList.copyOf(keys);
+        notifyListeners(mapName, keyList);
+        if (!nearCachingNodes(mapName).isEmpty()) {
+            accumulator.add(new Invalidation(mapName, keyList));
+        }
+    }
+
+    /**
+     * Invalidates the entries affected by the updates of a committed
+     * transaction across the cluster.
+     *
+     * @param updates transaction updates
+     */
+    void invalidate(List<DatabaseUpdate> updates) {
+        Map<String, List<String>> keysByMap = Maps.newHashMap();
+        updates.forEach(update -> keysByMap
+                .computeIfAbsent(update.tableName(), name -> new ArrayList<>())
+                .add(update.key()));
+        keysByMap.forEach(this::invalidate);
+    }
+
+    private void notifyListeners(String mapName, Collection<String> keys) {
+        Set<Consumer<Collection<String>>> mapListeners = listeners.get(mapName);
+        if (mapListeners != null) {
+            mapListeners.forEach(listener -> listener.accept(keys));
+        }
+    }
+
+    /**
+     * Returns the other instances known to hold near caches for a map.
+     *
+     * @param mapName map name
+     * @return identifiers of the instances
+     */
+    Set<NodeId> nearCachingNodes(String mapName) {
+        long now = System.currentTimeMillis();
+        return announcements.entrySet()
+                .stream()
+                .filter(e -> now - e.getValue().time < ANNOUNCEMENT_EXPIRY_MILLIS)
+                .filter(e -> e.getValue().mapNames.contains(mapName))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    // Announces the names of the maps near cached on this instance.
+    private void announce() {
+        HashSet<String> mapNames = listeners.entrySet()
+                .stream()
+                .filter(e -> !e.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(HashSet::new));
+        if (!mapNames.isEmpty()) {
+            clusterCommunicator.broadcast(new ClusterMessage(
+                    clusterService.getLocalNode().id(),
+                    NEAR_CACHE_ANNOUNCEMENT,
+                    SERIALIZER.encode(mapNames)));
+        }
+    }
+
+    // Sends each instance one message with the coalesced invalidations of
+    // the maps it near caches.
+    private void send(List<Invalidation> items) {
+        Map<String, Set<String>> keysByMap = Maps.newHashMap();
+        Set<String> invalidateAll = new HashSet<>();
+        for (Invalidation item : items) {
+            if (item.keys.isEmpty()) {
+                invalidateAll.add(item.mapName);
+            } else {
+                keysByMap.computeIfAbsent(item.mapName, name -> new HashSet<>()).addAll(item.keys);
+            }
+        }
+        invalidateAll.forEach(keysByMap::remove);
+
+        Map<NodeId, ArrayList<Invalidation>> byNode = Maps.newHashMap();
+        invalidateAll.forEach(mapName -> nearCachingNodes(mapName).forEach(node -> byNode
+                .computeIfAbsent(node, n -> new ArrayList<>())
+                .add(new Invalidation(mapName, ImmutableList.of()))));
+        keysByMap.forEach((mapName, keys) -> nearCachingNodes(mapName).forEach(node -> byNode
+                .computeIfAbsent(node, n -> new ArrayList<>())
+                .add(new Invalidation(mapName, ImmutableList.copyOf(keys)))));
+
+        byNode.forEach((node, invalidations) -> {
+            boolean sent = clusterCommunicator.unicast(new ClusterMessage(
+                    clusterService.getLocalNode().id(),
+                    NEAR_CACHE_INVALIDATION,
+                    SERIALIZER.encode(invalidations)), node);
+            if (!sent) {
+                // Peer caches will catch up once their entries expire
+                log.debug("Failed to send {} invalidations to {}", invalidations.size(), node);
+            }
+        });
+    }
+
+    // Coalesces invalidations before they are sent.
+    private final class InvalidationAccumulator extends AbstractAccumulator<Invalidation> {
+
+        private InvalidationAccumulator() {
+            super(TIMER, MAX_BATCH_ITEMS, MAX_BATCH_MILLIS, MAX_IDLE_MILLIS);
+        }
+
+        @Override
+        public void processItems(List<Invalidation> items) {
+            if (!messageHandlingExecutor.isShutdown()) {
+                messageHandlingExecutor.execute(() -> send(items));
+            }
+        }
+    }
+
+    // Near cached map names announced by an instance, and when.
+    private static final class Announcement {
+        private final Set<String> mapNames;
+        private final long time = System.currentTimeMillis();
+
+        private Announcement(Set<String> mapNames) {
+            this.mapNames = mapNames;
+        }
+    }
+
+    // Invalidation message exchanged between instances.
+    private static final class Invalidation {
+        private final String mapName;
+        private final List<String> keys;
+
+        // For serializer
+        @SuppressWarnings("unused")
+        private Invalidation() {
+            this.mapName = null;
+            this.keys = null;
+        }
+
+        private Invalidation(String mapName, List<String> keys) {
+            this.mapName = mapName;
+            this.keys = keys;
+        }
+    }
+}
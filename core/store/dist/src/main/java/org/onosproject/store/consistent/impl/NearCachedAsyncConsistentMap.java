@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.store.service.Serializer;
+import org.onosproject.store.service.Versioned;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * AsyncConsistentMap implementation that serves reads from a near cache of
+ * map entries local to this instance, and reads through to the Raft consensus
+ * based database on a cache miss.
+ * <p>
+ * Cached entries are invalidated once they are updated through any map of the
+ * same name built by the storage service, or by a transaction, anywhere in
+ * the cluster; the map itself inherits this from its parent. Entries expire
+ * after a bounded period regardless, in case an invalidation is lost. Cached
+ * values are shared between readers and must not be modified.
+ * </p>
+ * <p>
+ * Maps of the same name share their metrics, so that building a map again
+ * does not register new ones. The invalidator only weakly references the
+ * invalidation listener, which therefore goes away along with the map.
+ * </p>
+ *
+ * @param <K> type of key.
+ * @param <V> type of value.
+ */
+class NearCachedAsyncConsistentMap<K, V> extends DefaultAsyncConsistentMap<K, V> {
+
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+    static final long DEFAULT_MAX_STALENESS_MILLIS = 10000;
+
+    private final Cache<K, CachedValue<V>> cache;
+    private final Consumer<Collection<String>> invalidationListener = this::invalidateLocally;
+
+    // Bumped on every invalidation, so that values read from the database
+    // concurrently with an invalidation are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+    private final Histogram staleness;
+
+    NearCachedAsyncConsistentMap(String name,
+            Database database,
+            Serializer serializer,
+            NearCacheInvalidator invalidator,
+            MetricsService metricsService) {
+        this(name, database, serializer, invalidator, metricsService,
+             DEFAULT_MAX_ENTRIES, DEFAULT_MAX_STALENESS_MILLIS);
+    }
+
+    NearCachedAsyncConsistentMap(String name,
+            Database database,
+            Serializer serializer,
+            NearCacheInvalidator invalidator,
+            MetricsService metricsService,
+            int maxEntries,
+            long maxStalenessMillis) {
+        super(name, database, serializer, checkNotNull(invalidator, "invalidator cannot be null"));
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(maxStalenessMillis, TimeUnit.MILLISECONDS)
+                .build();
+
+        MetricsComponent component = metricsService.registerComponent("ConsistentMap");
+        MetricsFeature feature = component.registerFeature(name);
+        hits = metricsService.createCounter(component, feature, "nearCacheHits");
+        misses = metricsService.createCounter(component, feature, "nearCacheMisses");
+        invalidations = metricsService.createCounter(component, feature, "nearCacheInvalidations");
+        staleness = metricsService.createHistogram(component, feature, "nearCacheStalenessMillis");
+
+        invalidator.addListener(name, invalidationListener);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> containsKey(K key) {
+        checkNotNull(key);
+        CachedValue<V> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.value() != null);
+        }
+        return super.containsKey(key);
+    }
+
+    @Override
+    public CompletableFuture<Versioned<V>> get(K key) {
+        checkNotNull(key);
+        CachedValue<V> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            hits.inc();
+            staleness.update(System.currentTimeMillis() - cached.loadedMillis());
+            return CompletableFuture.completedFuture(cached.value());
+        }
+
+        misses.inc();
+        long observedGeneration = generation.get();
+        return super.get(key).thenApply(value -> {
+            if (generation.get() == observedGeneration) {
+                cache.put(key, new CachedValue<>(value));
+            }
+            return value;
+        });
+    }
+
+    private void invalidateLocally(Collection<String> keys) {
+        generation.incrementAndGet();
+        if (keys.isEmpty()) {
+            invalidations.inc(cache.size());
+            cache.invalidateAll();
+        } else {
+            invalidations.inc(keys.size());
+            keys.forEach(key -> cache.invalidate(dK(key)));
+        }
+    }
+
+    // Cached value, or absence of one, along with the time it was read.
+    private static final class CachedValue<V> {
+        private final Versioned<V> value;
+        private final long loadedMillis;
+
+        private CachedValue(Versioned<V> value) {
+            this.value = value;
+            this.loadedMillis = System.currentTimeMillis();
+        }
+
+        private Versioned<V> value() {
+            return value;
+        }
+
+        private long loadedMillis() {
+            return loadedMillis;
+        }
+    }
+}
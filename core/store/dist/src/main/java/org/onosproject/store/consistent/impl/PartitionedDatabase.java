@@ -16,6 +16,7 @@
 
 package org.onosproject.store.consistent.impl;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -25,12 +26,19 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import org.apache.commons.lang.math.RandomUtils;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.store.service.DatabaseUpdate;
 import org.onosproject.store.service.Transaction;
 import org.onosproject.store.service.Versioned;
 
+import com.codahale.metrics.Meter;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -41,24 +49,56 @@ import static com.google.common.base.Preconditions.checkState;
 
 /**
  * A database that partitions the keys across one or more database partitions.
+ * <p>
+ * Keys are mapped to partitions using a consistent hash ring. Entries that
+ * are not stored in the partition the ring assigns them to, such as those
+ * written under an earlier partition layout, remain readable and are moved
+ * to their partition when first updated, or in bulk by {@link #rebalance()}.
+ * Counters retain their original placement, as their values cannot be moved.
+ * </p>
  */
 public class PartitionedDatabase implements Database {
 
+    private static final String BALANCED_MARKER_PREFIX = "onos-partitions-balanced-";
+
     private final String name;
     private final Partitioner<String> partitioner;
+    private final Partitioner<String> counterPartitioner;
     private final List<Database> partitions;
     private final AtomicBoolean isOpen = new AtomicBoolean(false);
     private static final String DB_NOT_OPEN = "Partitioned Database is not open";
 
+    // Name of the counter marking the current partition layout as balanced
+    private final String balancedMarker;
+    private final AtomicBoolean isBalanced = new AtomicBoolean(false);
+    private CompletableFuture<Integer> rebalancing;
+
+    private final Map<Database, Meter> partitionLoad;
+    private final Meter rebalancedEntries;
+
     public PartitionedDatabase(
             String name,
-            Collection<Database> partitions) {
+            Collection<Database> partitions,
+            MetricsService metricsService) {
         this.name = name;
         this.partitions = partitions
                 .stream()
                 .sorted((db1, db2) -> db1.name().compareTo(db2.name()))
                 .collect(Collectors.toList());
-        this.partitioner = new SimpleKeyHashPartitioner(this.partitions);
+        this.partitioner = new ConsistentHashPartitioner(this.partitions);
+        this.counterPartitioner = new SimpleKeyHashPartitioner(this.partitions);
+        this.balancedMarker = BALANCED_MARKER_PREFIX + this.partitions
+                .stream()
+                .map(Database::name)
+                .collect(Collectors.joining("-"));
+
+        MetricsComponent component = metricsService.registerComponent("PartitionedDatabase");
+        ImmutableMap.Builder<Database, Meter> load = ImmutableMap.builder();
+        this.partitions.forEach(p -> load.put(p, metricsService.createMeter(
+                component, component.registerFeature(p.name()), "operations")));
+        this.partitionLoad = load.build();
+        this.rebalancedEntries = metricsService.createMeter(
+                component, component.registerFeature(name), "rebalancedEntries");
     }
 
     /**
@@ -69,6 +109,38 @@ public class PartitionedDatabase implements Database {
         return partitions;
     }
 
+    /**
+     * Indicates whether all entries are known to be stored in the partitions
+     * assigned to them by the current partition layout.
+     *
+     * @return true if the partitions are balanced
+     */
+    public boolean isBalanced() {
+        return isBalanced.get();
+    }
+
+    /**
+     * Moves all entries that are not stored in the partition assigned to them
+     * by the current partition layout to that partition. Only entries whose
+     * keys fall into ring segments that changed owner are moved, each in a
+     * transaction spanning its old and new partition, so that entries updated
+     * or removed concurrently are left alone.
+     * <p>
+     * Once a pass completes without leaving entries behind, the layout is
+     * marked as balanced and reads no longer need to look for misplaced
+     * entries. Concurrent calls share the same pass.
+     * </p>
+     *
+     * @return future for the number of entries moved by this pass
+     */
+    public synchronized CompletableFuture<Integer> rebalance() {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        if (rebalancing == null || rebalancing.isDone()) {
+            rebalancing = doRebalance();
+        }
+        return rebalancing;
+    }
+
     /**
      * Returns true if the database is open.
      * @return true if open, false otherwise
@@ -124,7 +196,7 @@ public class PartitionedDatabase implements Database {
     @Override
     public CompletableFuture<Boolean> containsKey(String tableName, String key) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).containsKey(tableName, key);
+        return readThrough(tableName, key, p -> p.containsKey(tableName, key), present -> present);
     }
 
     @Override
@@ -141,19 +213,21 @@ public class PartitionedDatabase implements Database {
     @Override
     public CompletableFuture<Versioned<byte[]>> get(String tableName, String key) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).get(tableName, key);
+        return readThrough(tableName, key, p -> p.get(tableName, key), value -> value != null);
     }
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> put(String tableName, String key, byte[] value) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).put(tableName, key, value);
+        return ensureMigrated(tableName, key)
+                .thenCompose(v -> partition(tableName, key).put(tableName, key, value));
     }
 
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> remove(String tableName, String key) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).remove(tableName, key);
+        return ensureMigrated(tableName, key)
+                .thenCompose(v -> partition(tableName, key).remove(tableName, key));
     }
 
     @Override
@@ -204,49 +278,91 @@ public class PartitionedDatabase implements Database {
     @Override
     public CompletableFuture<Result<Versioned<byte[]>>> putIfAbsent(String tableName, String key, byte[] value) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).putIfAbsent(tableName, key, value);
+        return ensureMigrated(tableName, key)
+                .thenCompose(v -> partition(tableName, key).putIfAbsent(tableName, key, value));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> remove(String tableName, String key, byte[] value) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).remove(tableName, key, value);
+        return ensureMigrated(tableName, key)
+                .thenCompose(v -> partition(tableName, key).remove(tableName, key, value));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> remove(String tableName, String key, long version) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).remove(tableName, key, version);
+        return ensureMigrated(tableName, key)
+                .thenCompose(v -> partition(tableName, key).remove(tableName, key, version));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> replace(
             String tableName, String key, byte[] oldValue, byte[] newValue) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).replace(tableName, key, oldValue, newValue);
+        return ensureMigrated(tableName, key)
+                .thenCompose(v -> partition(tableName, key).replace(tableName, key, oldValue, newValue));
     }
 
     @Override
     public CompletableFuture<Result<Boolean>> replace(
             String tableName, String key, long oldVersion, byte[] newValue) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(tableName, key).replace(tableName, key, oldVersion, newValue);
+        return ensureMigrated(tableName, key)
+                .thenCompose(v -> partition(tableName, key).replace(tableName, key, oldVersion, newValue));
     }
 
     @Override
     public CompletableFuture<Long> nextValue(String counterName) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(counterName, counterName).nextValue(counterName);
+        return counterPartitioner.getPartition(counterName, counterName).nextValue(counterName);
     }
 
     @Override
     public CompletableFuture<Long> currentValue(String counterName) {
         checkState(isOpen.get(), DB_NOT_OPEN);
-        return partitioner.getPartition(counterName, counterName).currentValue(counterName);
+        return counterPartitioner.getPartition(counterName, counterName).currentValue(counterName);
+    }
+
+    @Override
+    public CompletableFuture<List<Object>> execute(List<DatabaseOperation> operations) {
+        checkState(isOpen.get(), DB_NOT_OPEN);
+        Map<Database, List<Integer>> perPartitionIndexes = Maps.newHashMap();
+        for (int i = 0; i < operations.size(); i++) {
+            DatabaseOperation operation = operations.get(i);
+            Database partition = operation.type() == DatabaseOperation.Type.NEXT_VALUE
+                    ? counterPartitioner.getPartition(operation.name(), operation.name())
+                    : partition(operation.name(), operation.key());
+            perPartitionIndexes.computeIfAbsent(partition, k -> Lists.newArrayList()).add(i);
+        }
+        Object[] results = new Object[operations.size()];
+        return CompletableFuture.allOf(operations
+                    .stream()
+                    .filter(operation -> operation.type() != DatabaseOperation.Type.NEXT_VALUE)
+                    .map(operation -> ensureMigrated(operation.name(), operation.key()))
+                    .toArray(CompletableFuture[]::new))
+                .thenCompose(v -> CompletableFuture.allOf(perPartitionIndexes.entrySet()
+                    .stream()
+                    .map(entry -> entry.getKey()
+                            .execute(entry.getValue()
+                                          .stream()
+                                          .map(operations::get)
+                                          .collect(Collectors.toList()))
+                            .thenAccept(partitionResults -> {
+                                for (int i = 0; i < partitionResults.size(); i++) {
+                                    results[entry.getValue().get(i)] = partitionResults.get(i);
+                                }
+                            }))
+                    .toArray(CompletableFuture[]::new)))
+                .thenApply(v -> Arrays.asList(results));
     }
 
     @Override
     public CompletableFuture<Boolean> prepareAndCommit(Transaction transaction) {
+        return ensureMigrated(transaction).thenCompose(v -> doPrepareAndCommit(transaction));
+    }
+
+    private CompletableFuture<Boolean> doPrepareAndCommit(Transaction transaction) {
         Map<Database, Transaction> subTransactions = createSubTransactions(transaction);
         if (subTransactions.isEmpty()) {
             return CompletableFuture.completedFuture(true);
@@ -261,6 +377,10 @@ public class PartitionedDatabase implements Database {
 
     @Override
     public CompletableFuture<Boolean> prepare(Transaction transaction) {
+        return ensureMigrated(transaction).thenCompose(v -> doPrepare(transaction));
+    }
+
+    private CompletableFuture<Boolean> doPrepare(Transaction transaction) {
         Map<Database, Transaction> subTransactions = createSubTransactions(transaction);
         AtomicBoolean status = new AtomicBoolean(true);
         return CompletableFuture.allOf(subTransactions.entrySet()
@@ -299,7 +419,10 @@ public class PartitionedDatabase implements Database {
                     .stream()
                     .map(Database::open)
                     .toArray(CompletableFuture[]::new))
-                .thenApply(v -> {
+                .thenCompose(v -> counterPartitioner.getPartition(balancedMarker, balancedMarker)
+                                                    .currentValue(balancedMarker))
+                .thenApply(marker -> {
+                    isBalanced.set(marker > 0);
                     isOpen.set(true);
                     return this;
                 });
@@ -343,7 +466,7 @@ public class PartitionedDatabase implements Database {
             Transaction transaction) {
         Map<Database, List<DatabaseUpdate>> perPartitionUpdates = Maps.newHashMap();
         for (DatabaseUpdate update : transaction.updates()) {
-            Database partition = partitioner.getPartition(update.tableName(), update.key());
+            Database partition = partition(update.tableName(), update.key());
             List<DatabaseUpdate> partitionUpdates =
                     perPartitionUpdates.computeIfAbsent(partition, k -> Lists.newLinkedList());
             partitionUpdates.add(update);
@@ -353,4 +476,164 @@ public class PartitionedDatabase implements Database {
 
         return subTransactions;
     }
+
+    private CompletableFuture<Integer> doRebalance() {
+        AtomicInteger moved = new AtomicInteger(0);
+        AtomicBoolean complete = new AtomicBoolean(true);
+        // Partitions and tables are processed one at a time to limit the
+        // load rebalancing puts on the database.
+        CompletableFuture<Void> result = CompletableFuture.completedFuture(null);
+        for (Database source : partitions) {
+            result = result.thenCompose(v -> source.tableNames())
+                    .thenCompose(tableNames -> {
+                        CompletableFuture<Void> tables = CompletableFuture.completedFuture(null);
+                        for (String tableName : tableNames) {
+                            tables = tables.thenCompose(v -> rebalance(source, tableName, moved, complete));
+                        }
+                        return tables;
+                    });
+        }
+        return result.thenCompose(v -> {
+            if (!complete.get()) {
+                return CompletableFuture.completedFuture(moved.get());
+            }
+            return counterPartitioner.getPartition(balancedMarker, balancedMarker)
+                    .nextValue(balancedMarker)
+                    .thenApply(marker -> {
+                        isBalanced.set(true);
+                        return moved.get();
+                    });
+        });
+    }
+
+    private CompletableFuture<Void> rebalance(Database source, String tableName,
+                                              AtomicInteger moved, AtomicBoolean complete) {
+        return source.entrySet(tableName).thenCompose(entries -> {
+            CompletableFuture<Void> result = CompletableFuture.completedFuture(null);
+            for (Entry<String, Versioned<byte[]>> entry : entries) {
+                Database owner = partitioner.getPartition(tableName, entry.getKey());
+                if (owner != source) {
+                    result = result
+                            .thenCompose(v -> migrate(source, owner, tableName, entry.getKey(), entry.getValue()))
+                            .thenCompose(migrated -> {
+                                if (migrated) {
+                                    moved.incrementAndGet();
+                                    rebalancedEntries.mark();
+                                    return CompletableFuture.completedFuture(null);
+                                }
+                                // Entries moved or removed by someone else in
+                                // the meantime do not hold the pass back.
+                                return source.containsKey(tableName, entry.getKey())
+                                        .thenAccept(present -> {
+                                            if (present) {
+                                                complete.set(false);
+                                            }
+                                        });
+                            });
+                }
+            }
+            return result;
+        });
+    }
+
+    // Moves an entry to the specified partition as a transaction spanning both
+    // partitions. Once the source entry is locked, it is moved only if it
+    // still has the version that was read and the target has no entry yet;
+    // otherwise both partitions are left untouched. Also fails if either
+    // entry is locked by someone else.
+    private CompletableFuture<Boolean> migrate(Database source, Database target, String tableName,
+                                               String key, Versioned<byte[]> value) {
+        long transactionId = RandomUtils.nextLong();
+        Transaction remove = new DefaultTransaction(transactionId, Arrays.asList(
+                DatabaseUpdate.newBuilder()
+                        .withType(DatabaseUpdate.Type.REMOVE_IF_VERSION_MATCH)
+                        .withTableName(tableName)
+                        .withKey(key)
+                        .withCurrentVersion(value.version())
+                        .build()));
+        Transaction create = new DefaultTransaction(transactionId, Arrays.asList(
+                DatabaseUpdate.newBuilder()
+                        .withType(DatabaseUpdate.Type.PUT_IF_ABSENT)
+                        .withTableName(tableName)
+                        .withKey(key)
+                        .withValue(value.value())
+                        .build()));
+        return source.prepare(remove)
+                .thenCompose(locked -> !locked
+                        ? CompletableFuture.completedFuture(false)
+                        // A version-checked remove also succeeds if the entry
+                        // is gone, which must not bring it back in the target.
+                        : source.get(tableName, key)
+                                .thenCompose(current -> current == null || current.version() != value.version()
+                                        ? CompletableFuture.completedFuture(false)
+                                        : target.prepare(create)))
+                .thenCompose(prepared -> !prepared
+                        ? target.rollback(create)
+                                .thenCompose(v -> source.rollback(remove))
+                                .thenApply(v -> false)
+                        // The target is committed first so the entry remains
+                        // readable throughout the move.
+                        : target.commit(create)
+                                .thenCompose(v -> source.commit(remove))
+                                .thenApply(v -> true));
+    }
+
+    // Moves the entry of the specified key to its partition, if it is stored
+    // elsewhere, so that it can be updated in place.
+    private CompletableFuture<Void> ensureMigrated(String tableName, String key) {
+        if (isBalanced.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Database owner = partitioner.getPartition(tableName, key);
+        return owner.containsKey(tableName, key).thenCompose(present -> {
+            CompletableFuture<Void> result = CompletableFuture.completedFuture(null);
+            if (!present) {
+                for (Database source : partitions) {
+                    if (source != owner) {
+                        result = result
+                                .thenCompose(v -> source.get(tableName, key))
+                                .thenCompose(value -> value == null
+                                        ? CompletableFuture.completedFuture(null)
+                                        : migrate(source, owner, tableName, key, value).thenAccept(m -> { }));
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    private CompletableFuture<Void> ensureMigrated(Transaction transaction) {
+        if (isBalanced.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.allOf(transaction.updates()
+                .stream()
+                .map(update -> ensureMigrated(update.tableName(), update.key()))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    // Reads from the partition of the specified key and, until the partitions
+    // are balanced, from the other partitions in turn if nothing is found.
+    private <T> CompletableFuture<T> readThrough(String tableName, String key,
+                                                 Function<Database, CompletableFuture<T>> read,
+                                                 Predicate<T> found) {
+        Database owner = partition(tableName, key);
+        CompletableFuture<T> result = read.apply(owner);
+        if (isBalanced.get()) {
+            return result;
+        }
+        for (Database other : partitions) {
+            if (other != owner) {
+                result = result.thenCompose(value -> found.test(value)
+                        ? CompletableFuture.completedFuture(value) : read.apply(other));
+            }
+        }
+        return result;
+    }
+
+    private Database partition(String tableName, String key) {
+        Database partition = partitioner.getPartition(tableName, key);
+        partitionLoad.get(partition).mark();
+        return partition;
+    }
 }
@@ -125,9 +125,10 @@ public class GossipDeviceStore
     private final ConcurrentMap<DeviceId, ConcurrentMap<PortNumber, PortStatistics>>
             devicePortStats = Maps.newConcurrentMap();
 
-    // to be updated under Device lock
-    private final Map<DeviceId, Timestamp> offline = Maps.newHashMap();
-    private final Map<DeviceId, Timestamp> removalRequest = Maps.newHashMap();
+    // to be updated under Device lock; concurrent so that updates to
+    // unrelated devices do not contend on a store-wide monitor
+    private final ConcurrentMap<DeviceId, Timestamp> offline = Maps.newConcurrentMap();
+    private final ConcurrentMap<DeviceId, Timestamp> removalRequest = Maps.newConcurrentMap();
 
     // available(=UP) devices
     private final Set<DeviceId> availableDevices = Sets.newConcurrentHashSet();
@@ -265,9 +266,9 @@ public class GossipDeviceStore
     }
 
     @Override
-    public synchronized DeviceEvent createOrUpdateDevice(ProviderId providerId,
-                                     DeviceId deviceId,
-                                     DeviceDescription deviceDescription) {
+    public DeviceEvent createOrUpdateDevice(ProviderId providerId,
+                                            DeviceId deviceId,
+                                            DeviceDescription deviceDescription) {
         NodeId localNode = clusterService.getLocalNode().id();
         NodeId deviceNode = mastershipService.getMasterFor(deviceId);
 
@@ -276,14 +277,18 @@ public class GossipDeviceStore
         DeviceEvent deviceEvent = null;
         if (localNode.equals(deviceNode)) {
 
-            final Timestamp newTimestamp = deviceClockService.getTimestamp(deviceId);
-            final Timestamped<DeviceDescription> deltaDesc = new Timestamped<>(deviceDescription, newTimestamp);
-            final Timestamped<DeviceDescription> mergedDesc;
+            Timestamped<DeviceDescription> mergedDesc = null;
             final Map<ProviderId, DeviceDescriptions> device = getOrCreateDeviceDescriptionsMap(deviceId);
 
             synchronized (device) {
+                // Timestamps are taken under the device lock, so that they are
+                // ordered like the updates and removals they are applied to.
+                final Timestamp newTimestamp = deviceClockService.getTimestamp(deviceId);
+                final Timestamped<DeviceDescription> deltaDesc = new Timestamped<>(deviceDescription, newTimestamp);
                 deviceEvent = createOrUpdateDeviceInternal(providerId, deviceId, deltaDesc);
-                mergedDesc = device.get(providerId).getDeviceDesc();
+                if (deviceEvent != null) {
+                    mergedDesc = device.get(providerId).getDeviceDesc();
+                }
             }
 
             if (deviceEvent != null) {
@@ -481,9 +486,9 @@ public class GossipDeviceStore
     }
 
     @Override
-    public synchronized List<DeviceEvent> updatePorts(ProviderId providerId,
-                                       DeviceId deviceId,
-                                       List<PortDescription> portDescriptions) {
+    public List<DeviceEvent> updatePorts(ProviderId providerId,
+                                         DeviceId deviceId,
+                                         List<PortDescription> portDescriptions) {
 
         NodeId localNode = clusterService.getLocalNode().id();
         // TODO: It might be negligible, but this will have negative impact to topology discovery performance,
@@ -498,48 +503,50 @@ public class GossipDeviceStore
         List<DeviceEvent> deviceEvents = null;
         if (localNode.equals(deviceNode)) {
 
-            final Timestamp newTimestamp;
-            try {
-                newTimestamp = deviceClockService.getTimestamp(deviceId);
-            } catch (IllegalStateException e) {
-                log.info("Timestamp was not available for device {}", deviceId);
-                log.debug("  discarding {}", portDescriptions);
-                // Failed to generate timestamp.
-
-                // Possible situation:
-                //  Device connected and became master for short period of time,
-                // but lost mastership before this instance had the chance to
-                // retrieve term information.
+            Timestamped<List<PortDescription>> merged = null;
+            final Map<ProviderId, DeviceDescriptions> device = getOrCreateDeviceDescriptionsMap(deviceId);
 
-                // Information dropped here is expected to be recoverable by
-                // device probing after mastership change
+            synchronized (device) {
+                // Timestamps are taken under the device lock, see createOrUpdateDevice
+                final Timestamp newTimestamp;
+                try {
+                    newTimestamp = deviceClockService.getTimestamp(deviceId);
+                } catch (IllegalStateException e) {
+                    log.info("Timestamp was not available for device {}", deviceId);
+                    log.debug("  discarding {}", portDescriptions);
+                    // Failed to generate timestamp.
 
-                return Collections.emptyList();
-            }
-            log.debug("timestamp for {} {}", deviceId, newTimestamp);
+                    // Possible situation:
+                    //  Device connected and became master for short period of time,
+                    // but lost mastership before this instance had the chance to
+                    // retrieve term information.
 
-            final Timestamped<List<PortDescription>> timestampedInput
-                    = new Timestamped<>(portDescriptions, newTimestamp);
-            final Timestamped<List<PortDescription>> merged;
+                    // Information dropped here is expected to be recoverable by
+                    // device probing after mastership change
 
-            final Map<ProviderId, DeviceDescriptions> device = getOrCreateDeviceDescriptionsMap(deviceId);
+                    return Collections.emptyList();
+                }
+                log.debug("timestamp for {} {}", deviceId, newTimestamp);
 
-            synchronized (device) {
+                final Timestamped<List<PortDescription>> timestampedInput
+                        = new Timestamped<>(portDescriptions, newTimestamp);
                 deviceEvents = updatePortsInternal(providerId, deviceId, timestampedInput);
-                final DeviceDescriptions descs = device.get(providerId);
-                List<PortDescription> mergedList =
-                        FluentIterable.from(portDescriptions)
-                                .transform(new Function<PortDescription, PortDescription>() {
-                                    @Override
-                                    public PortDescription apply(PortDescription input) {
-                                        // lookup merged port description
-                                        return descs.getPortDesc(input.portNumber()).value();
-                                    }
-                                }).toList();
-                merged = new Timestamped<List<PortDescription>>(mergedList, newTimestamp);
+                if (deviceEvents != null && !deviceEvents.isEmpty()) {
+                    final DeviceDescriptions descs = device.get(providerId);
+                    List<PortDescription> mergedList =
+                            FluentIterable.from(portDescriptions)
+                                    .transform(new Function<PortDescription, PortDescription>() {
+                                        @Override
+                                        public PortDescription apply(PortDescription input) {
+                                            // lookup merged port description
+                                            return descs.getPortDesc(input.portNumber()).value();
+                                        }
+                                    }).toList();
+                    merged = new Timestamped<List<PortDescription>>(mergedList, newTimestamp);
+                }
             }
 
-            if (!deviceEvents.isEmpty()) {
+            if (merged != null) {
                 log.info("Notifying peers of a ports update topology event for providerId: {} and deviceId: {}",
                         providerId, deviceId);
                 notifyPeers(new InternalPortEvent(providerId, deviceId, merged));
@@ -713,29 +720,32 @@ public class GossipDeviceStore
     }
 
     @Override
-    public synchronized DeviceEvent updatePortStatus(ProviderId providerId,
-                                                     DeviceId deviceId,
-                                                     PortDescription portDescription) {
+    public DeviceEvent updatePortStatus(ProviderId providerId,
+                                        DeviceId deviceId,
+                                        PortDescription portDescription) {
 
-        final Timestamp newTimestamp;
-        try {
-            newTimestamp = deviceClockService.getTimestamp(deviceId);
-        } catch (IllegalStateException e) {
-            log.info("Timestamp was not available for device {}", deviceId);
-            log.debug("  discarding {}", portDescription);
-            // Failed to generate timestamp. Ignoring.
-            // See updatePorts comment
-            return null;
-        }
-        final Timestamped<PortDescription> deltaDesc
-            = new Timestamped<>(portDescription, newTimestamp);
         final DeviceEvent event;
-        final Timestamped<PortDescription> mergedDesc;
+        Timestamped<PortDescription> mergedDesc = null;
         final Map<ProviderId, DeviceDescriptions> device = getOrCreateDeviceDescriptionsMap(deviceId);
         synchronized (device) {
+            // Timestamps are taken under the device lock, see createOrUpdateDevice
+            final Timestamp newTimestamp;
+            try {
+                newTimestamp = deviceClockService.getTimestamp(deviceId);
+            } catch (IllegalStateException e) {
+                log.info("Timestamp was not available for device {}", deviceId);
+                log.debug("  discarding {}", portDescription);
+                // Failed to generate timestamp. Ignoring.
+                // See updatePorts comment
+                return null;
+            }
+            final Timestamped<PortDescription> deltaDesc
+                = new Timestamped<>(portDescription, newTimestamp);
             event = updatePortStatusInternal(providerId, deviceId, deltaDesc);
-            mergedDesc = device.get(providerId)
-                            .getPortDesc(portDescription.portNumber());
+            if (event != null) {
+                mergedDesc = device.get(providerId)
+                                .getPortDesc(portDescription.portNumber());
+            }
         }
         if (event != null) {
             log.info("Notifying peers of a port status update topology event for providerId: {} and deviceId: {}",
@@ -806,11 +816,8 @@ public class GossipDeviceStore
     public DeviceEvent updatePortStatistics(ProviderId providerId, DeviceId deviceId,
                                             Collection<PortStatistics> portStats) {
 
-        ConcurrentMap<PortNumber, PortStatistics> statsMap = devicePortStats.get(deviceId);
-        if (statsMap == null) {
-            statsMap = Maps.newConcurrentMap();
-            devicePortStats.put(deviceId, statsMap);
-        }
+        ConcurrentMap<PortNumber, PortStatistics> statsMap =
+                devicePortStats.computeIfAbsent(deviceId, k -> Maps.newConcurrentMap());
 
         for (PortStatistics stat: portStats) {
             PortNumber portNumber = PortNumber.portNumber(stat.port());
@@ -842,7 +849,7 @@ public class GossipDeviceStore
     }
 
     @Override
-    public synchronized DeviceEvent removeDevice(DeviceId deviceId) {
+    public DeviceEvent removeDevice(DeviceId deviceId) {
         final NodeId myId = clusterService.getLocalNode().id();
         NodeId master = mastershipService.getMasterFor(deviceId);
 
@@ -884,8 +891,14 @@ public class GossipDeviceStore
 
         // I have control..
 
-        Timestamp timestamp = deviceClockService.getTimestamp(deviceId);
-        DeviceEvent event = removeDeviceInternal(deviceId, timestamp);
+        final Timestamp timestamp;
+        final DeviceEvent event;
+        final Map<ProviderId, DeviceDescriptions> descs = getOrCreateDeviceDescriptionsMap(deviceId);
+        synchronized (descs) {
+            // Timestamps are taken under the device lock, see createOrUpdateDevice
+            timestamp = deviceClockService.getTimestamp(deviceId);
+            event = removeDeviceInternal(deviceId, timestamp);
+        }
         if (event != null) {
             log.debug("Notifying peers of a device removed topology event for deviceId: {}",
                     deviceId);
@@ -906,6 +919,10 @@ public class GossipDeviceStore
             // accept removal request if given timestamp is newer than
             // the latest Timestamp from Primary provider
             DeviceDescriptions primDescs = getPrimaryDescriptions(descs);
+            if (primDescs == null) {
+                // already removed
+                return null;
+            }
             Timestamp lastTimestamp = primDescs.getLatestTimestamp();
             if (timestamp.compareTo(lastTimestamp) <= 0) {
                 // outdated event ignore
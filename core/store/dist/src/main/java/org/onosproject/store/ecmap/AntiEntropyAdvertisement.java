@@ -31,6 +31,7 @@ public class AntiEntropyAdvertisement<K> {
     private final NodeId sender;
     private final Map<K, Timestamp> timestamps;
     private final Map<K, Timestamp> tombstones;
+    private final int[] buckets;
 
     /**
      * Creates a new anti entropy advertisement message.
@@ -42,9 +43,27 @@ public class AntiEntropyAdvertisement<K> {
     public AntiEntropyAdvertisement(NodeId sender,
                                     Map<K, Timestamp> timestamps,
                                     Map<K, Timestamp> tombstones) {
+        this(sender, timestamps, tombstones, null);
+    }
+
+    /**
+     * Creates a new anti entropy advertisement message covering only the
+     * items in the specified digest buckets.
+     *
+     * @param sender the sender's node ID
+     * @param timestamps map of item key to timestamp for current items
+     * @param tombstones map of item key to timestamp for removed items
+     * @param buckets digest buckets covered by the advertisement; null if
+     *                the advertisement covers all items
+     */
+    public AntiEntropyAdvertisement(NodeId sender,
+                                    Map<K, Timestamp> timestamps,
+                                    Map<K, Timestamp> tombstones,
+                                    int[] buckets) {
         this.sender = checkNotNull(sender);
         this.timestamps = checkNotNull(timestamps);
         this.tombstones = checkNotNull(tombstones);
+        this.buckets = buckets;
     }
 
     /**
@@ -74,12 +93,22 @@ public class AntiEntropyAdvertisement<K> {
         return tombstones;
     }
 
+    /**
+     * Returns the digest buckets covered by this advertisement.
+     *
+     * @return covered buckets; null if the advertisement covers all items
+     */
+    public int[] buckets() {
+        return buckets;
+    }
+
     // For serializer
     @SuppressWarnings("unused")
     private AntiEntropyAdvertisement() {
         this.sender = null;
         this.timestamps = null;
         this.tombstones = null;
+        this.buckets = null;
     }
 
     @Override
@@ -87,6 +116,7 @@ public class AntiEntropyAdvertisement<K> {
         return MoreObjects.toStringHelper(getClass())
                 .add("timestampsSize", timestamps.size())
                 .add("tombstonesSize", tombstones.size())
+                .add("bucketsSize", buckets != null ? buckets.length : null)
                 .toString();
     }
 }
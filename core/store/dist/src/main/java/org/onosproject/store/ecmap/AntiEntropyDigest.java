@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import com.google.common.base.MoreObjects;
+import org.onosproject.cluster.NodeId;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Anti-entropy digest message for eventually consistent map.
+ * <p>
+ * The message either carries the digests of all bucket groups of the
+ * sender's map, or the digests of the individual buckets of some groups.
+ * </p>
+ */
+public class AntiEntropyDigest {
+
+    private final NodeId sender;
+    private final int[] groups;
+    private final long[] digests;
+
+    /**
+     * Creates a new anti entropy digest message.
+     *
+     * @param sender the sender's node ID
+     * @param groups bucket groups whose bucket digests are carried; null if
+     *               the message carries the digests of all groups
+     * @param digests group digests or bucket digests of the given groups
+     */
+    public AntiEntropyDigest(NodeId sender, int[] groups, long[] digests) {
+        this.sender = checkNotNull(sender);
+        this.groups = groups;
+        this.digests = checkNotNull(digests);
+    }
+
+    /**
+     * Returns the sender's node ID.
+     *
+     * @return the sender's node ID
+     */
+    public NodeId sender() {
+        return sender;
+    }
+
+    /**
+     * Returns the bucket groups whose bucket digests are carried.
+     *
+     * @return bucket groups; null if the message carries group digests
+     */
+    public int[] groups() {
+        return groups;
+    }
+
+    /**
+     * Returns the carried group or bucket digests.
+     *
+     * @return digests
+     */
+    public long[] digests() {
+        return digests;
+    }
+
+    // For serializer
+    @SuppressWarnings("unused")
+    private AntiEntropyDigest() {
+        this.sender = null;
+        this.groups = null;
+        this.digests = null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("sender", sender)
+                .add("digestsSize", digests.length)
+                .toString();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.onosproject.store.ecmap;
 
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.KryoNamespace;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.NodeId;
@@ -39,6 +40,7 @@ public class EventuallyConsistentMapBuilderImpl<K, V>
         implements EventuallyConsistentMapBuilder<K, V> {
     private final ClusterService clusterService;
     private final ClusterCommunicationService clusterCommunicator;
+    private final MetricsService metricsService;
 
     private String name;
     private KryoNamespace.Builder serializerBuilder;
@@ -52,6 +54,9 @@ public class EventuallyConsistentMapBuilderImpl<K, V>
     private TimeUnit antiEntropyTimeUnit = TimeUnit.SECONDS;
     private boolean convergeFaster = false;
     private boolean persistent = false;
+    private int persistenceBatchSize = MapDbPersistentStore.DEFAULT_MAX_BATCH_SIZE;
+    private int persistenceBatchMillis = MapDbPersistentStore.DEFAULT_MAX_BATCH_MS;
+    private boolean digestAntiEntropy = false;
 
     /**
      * Creates a new eventually consistent map builder.
@@ -61,8 +66,23 @@ public class EventuallyConsistentMapBuilderImpl<K, V>
      */
     public EventuallyConsistentMapBuilderImpl(ClusterService clusterService,
                                               ClusterCommunicationService clusterCommunicator) {
+        this(clusterService, clusterCommunicator, null);
+    }
+
+    /**
+     * Creates a new eventually consistent map builder whose maps report
+     * their anti-entropy statistics to the given metrics service.
+     *
+     * @param clusterService cluster service
+     * @param clusterCommunicator cluster communication service
+     * @param metricsService metrics service; null to not collect metrics
+     */
+    public EventuallyConsistentMapBuilderImpl(ClusterService clusterService,
+                                              ClusterCommunicationService clusterCommunicator,
+                                              MetricsService metricsService) {
         this.clusterService = checkNotNull(clusterService);
         this.clusterCommunicator = checkNotNull(clusterCommunicator);
+        this.metricsService = metricsService;
     }
 
     @Override
@@ -137,6 +157,26 @@ public class EventuallyConsistentMapBuilderImpl<K, V>
         return this;
     }
 
+    @Override
+    public EventuallyConsistentMapBuilder<K, V> withPersistenceBatchSize(int maxBatchSize) {
+        checkArgument(maxBatchSize > 0, "persistence batch size must be greater than 0");
+        persistenceBatchSize = maxBatchSize;
+        return this;
+    }
+
+    @Override
+    public EventuallyConsistentMapBuilder<K, V> withPersistenceBatchMillis(int maxBatchMillis) {
+        checkArgument(maxBatchMillis > 0, "persistence batch millis must be greater than 0");
+        persistenceBatchMillis = maxBatchMillis;
+        return this;
+    }
+
+    @Override
+    public EventuallyConsistentMapBuilder<K, V> withDigestAntiEntropy() {
+        digestAntiEntropy = true;
+        return this;
+    }
+
     @Override
     public EventuallyConsistentMap<K, V> build() {
         checkNotNull(name, "name is a mandatory parameter");
@@ -156,6 +196,10 @@ public class EventuallyConsistentMapBuilderImpl<K, V>
                                                  antiEntropyPeriod,
                                                  antiEntropyTimeUnit,
                                                  convergeFaster,
-                                                 persistent);
+                                                 persistent,
+                                                 persistenceBatchSize,
+                                                 persistenceBatchMillis,
+                                                 digestAntiEntropy,
+                                                 metricsService);
     }
 }
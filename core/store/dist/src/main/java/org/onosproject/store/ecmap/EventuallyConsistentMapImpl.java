@@ -15,13 +15,21 @@
  */
 package org.onosproject.store.ecmap;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 
 import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.lang3.mutable.MutableBoolean;
+import org.apache.commons.lang3.mutable.MutableObject;
 import org.apache.commons.lang3.tuple.Pair;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.util.AbstractAccumulator;
 import org.onlab.util.KryoNamespace;
 import org.onlab.util.SlidingWindowCounter;
@@ -60,6 +68,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -88,6 +97,7 @@ public class EventuallyConsistentMapImpl<K, V>
 
     private final MessageSubject updateMessageSubject;
     private final MessageSubject antiEntropyAdvertisementSubject;
+    private final MessageSubject antiEntropyDigestSubject;
 
     private final Set<EventuallyConsistentMapListener<K, V>> listeners
             = new CopyOnWriteArraySet<>();
@@ -118,6 +128,18 @@ public class EventuallyConsistentMapImpl<K, V>
     private final boolean persistent;
     private final PersistentStore<K, V> persistentStore;
 
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    // Digest of the map contents and cache of the key hashes of live items;
+    // only maintained when anti-entropy exchanges digests
+    private final MapDigest digest;
+    private final ConcurrentMap<K, Long> keyHashes;
+
+    private final MetricsService metricsService;
+    private final MetricsComponent metricsComponent;
+    private final MetricsFeature metricsFeature;
+    private final InternalMetrics metrics;
+
     /**
      * Creates a new eventually consistent map shared amongst multiple instances.
      * <p>
@@ -145,7 +167,16 @@ public class EventuallyConsistentMapImpl<K, V>
      * @param antiEntropyTimeUnit   time unit for anti-entropy period
      * @param convergeFaster        make anti-entropy try to converge faster
      * @param persistent            persist data to disk
+     * @param persistenceBatchSize  maximum number of updates written to
+     *                              disk at once
+     * @param persistenceBatchMillis maximum number of millis an update is
+     *                              held before being written to disk
+     * @param digestAntiEntropy     make anti-entropy exchange digests before
+     *                              advertising timestamps
+     * @param metricsService        metrics service to report anti-entropy
+     *                              statistics to; may be null
      */
+    // CHECKSTYLE IGNORE ParameterNumber FOR NEXT 1 LINES
     EventuallyConsistentMapImpl(String mapName,
                                 ClusterService clusterService,
                                 ClusterCommunicationService clusterCommunicator,
@@ -159,7 +190,11 @@ public class EventuallyConsistentMapImpl<K, V>
                                 long antiEntropyPeriod,
                                 TimeUnit antiEntropyTimeUnit,
                                 boolean convergeFaster,
-                                boolean persistent) {
+                                boolean persistent,
+                                int persistenceBatchSize,
+                                int persistenceBatchMillis,
+                                boolean digestAntiEntropy,
+                                MetricsService metricsService) {
         items = new ConcurrentHashMap<>();
         removedItems = new ConcurrentHashMap<>();
         senderPending = Maps.newConcurrentMap();
@@ -198,17 +233,47 @@ public class EventuallyConsistentMapImpl<K, V>
                     newFixedThreadPool(8, groupedThreads("onos/ecm", mapName + "-publish-%d"));
         }
 
+        if (digestAntiEntropy) {
+            digest = new MapDigest();
+            keyHashes = new ConcurrentHashMap<>();
+        } else {
+            digest = null;
+            keyHashes = null;
+        }
+
+        this.metricsService = metricsService;
+        if (metricsService != null) {
+            metricsComponent = metricsService.registerComponent("EventuallyConsistentMap");
+            metricsFeature = metricsComponent.registerFeature(mapName);
+            metrics = new InternalMetrics();
+        } else {
+            metricsComponent = null;
+            metricsFeature = null;
+            metrics = null;
+        }
+
         this.persistent = persistent;
 
         if (this.persistent) {
             String dataDirectory = System.getProperty("karaf.data", "./data");
             String filename = dataDirectory + "/" + "mapdb-ecm-" + mapName;
 
+            // batches must be written one at a time and in order
             ExecutorService dbExecutor =
-                    newFixedThreadPool(1, groupedThreads("onos/ecm", mapName + "-dbwriter"));
+                    Executors.newSingleThreadExecutor(groupedThreads("onos/ecm", mapName + "-dbwriter"));
+
+            persistentStore = new MapDbPersistentStore<>(filename, dbExecutor, serializer,
+                    persistenceBatchSize, persistenceBatchMillis,
+                    metrics != null ? metrics.persistenceWriteLag : null,
+                    metrics != null ? metrics.persistenceDroppedUpdates : null);
 
-            persistentStore = new MapDbPersistentStore<>(filename, dbExecutor, serializer);
+            long start = System.currentTimeMillis();
             persistentStore.readInto(items, removedItems);
+            if (metrics != null) {
+                metrics.persistenceRestore.update(System.currentTimeMillis() - start);
+            }
+            items.forEach((key, value) -> toggleDigest(key, value.timestamp(), false));
+            removedItems.forEach((key, timestamp) -> toggleDigest(key, timestamp, true));
         } else {
             this.persistentStore = null;
         }
@@ -233,6 +298,13 @@ public class EventuallyConsistentMapImpl<K, V>
         clusterCommunicator.addSubscriber(antiEntropyAdvertisementSubject,
                                           new InternalAntiEntropyListener(), this.backgroundExecutor);
 
+        antiEntropyDigestSubject = new MessageSubject("ecm-" + mapName + "-anti-entropy-digest");
+        if (digest != null) {
+            clusterCommunicator.addSubscriber(antiEntropyDigestSubject,
+                                              new InternalAntiEntropyDigestListener(),
+                                              this.backgroundExecutor);
+        }
+
         this.tombstonesDisabled = tombstonesDisabled;
         this.lightweightAntiEntropy = !convergeFaster;
     }
@@ -251,6 +323,9 @@ public class EventuallyConsistentMapImpl<K, V>
                         .register(AntiEntropyAdvertisement.class)
                         .register(HashMap.class)
                         .register(Timestamped.class)
+                        .register(AntiEntropyDigest.class)
+                        .register(int[].class)
+                        .register(long[].class)
                         .build();
             }
         };
@@ -321,6 +396,7 @@ public class EventuallyConsistentMapImpl<K, V>
         }
 
         final MutableBoolean updated = new MutableBoolean(false);
+        final MutableObject<Timestamped<V>> previous = new MutableObject<>();
 
         items.compute(key, (k, existing) -> {
             if (existing != null && existing.isNewerThan(timestamp)) {
@@ -328,6 +404,7 @@ public class EventuallyConsistentMapImpl<K, V>
                 return existing;
             } else {
                 updated.setTrue();
+                previous.setValue(existing);
                 return new Timestamped<>(value, timestamp);
             }
             });
@@ -337,8 +414,15 @@ public class EventuallyConsistentMapImpl<K, V>
             log.debug("ecmap - existing was newer {}", value);
         }
 
-        if (success && removed != null) {
-            removedItems.remove(key, removed);
+        if (success) {
+            if (previous.getValue() != null) {
+                toggleDigest(key, previous.getValue().timestamp(), false);
+            }
+            toggleDigest(key, timestamp, false);
+        }
+
+        if (success && removed != null && removedItems.remove(key, removed)) {
+            toggleDigest(key, removed, true);
         }
 
         if (success && persistent) {
@@ -371,6 +455,7 @@ public class EventuallyConsistentMapImpl<K, V>
 
         counter.incrementCount();
         final MutableBoolean updated = new MutableBoolean(false);
+        final MutableObject<Timestamped<V>> previous = new MutableObject<>();
 
         items.compute(key, (k, existing) -> {
             if (existing != null && existing.isNewerThan(timestamp)) {
@@ -378,6 +463,7 @@ public class EventuallyConsistentMapImpl<K, V>
                 return existing;
             } else {
                 updated.setTrue();
+                previous.setValue(existing);
                 // remove from items map
                 return null;
             }
@@ -387,6 +473,13 @@ public class EventuallyConsistentMapImpl<K, V>
             return false;
         }
 
+        if (previous.getValue() != null) {
+            toggleDigest(key, previous.getValue().timestamp(), false);
+        }
+        if (keyHashes != null) {
+            keyHashes.remove(key);
+        }
+
         boolean updatedTombstone = false;
 
         if (!tombstonesDisabled) {
@@ -396,6 +489,12 @@ public class EventuallyConsistentMapImpl<K, V>
                 updatedTombstone = (removedItems.putIfAbsent(key, timestamp) == null);
             } else if (timestamp.isNewerThan(removedTimestamp)) {
                 updatedTombstone = removedItems.replace(key, removedTimestamp, timestamp);
+                if (updatedTombstone) {
+                    toggleDigest(key, removedTimestamp, true);
+                }
+            }
+            if (updatedTombstone) {
+                toggleDigest(key, timestamp, true);
             }
         }
 
@@ -481,8 +580,19 @@ public class EventuallyConsistentMapImpl<K, V>
 
         listeners.clear();
 
+        if (persistentStore != null) {
+            persistentStore.close();
+        }
+
         clusterCommunicator.removeSubscriber(updateMessageSubject);
         clusterCommunicator.removeSubscriber(antiEntropyAdvertisementSubject);
+        if (digest != null) {
+            clusterCommunicator.removeSubscriber(antiEntropyDigestSubject);
+        }
+
+        if (metrics != null) {
+            metrics.remove();
+        }
     }
 
     private void notifyListeners(EventuallyConsistentMapEvent<K, V> event) {
@@ -519,6 +629,63 @@ public class EventuallyConsistentMapImpl<K, V>
 //        communicationExecutor.execute(() -> clusterCommunicator.unicast(message, peer));
     }
 
+    // Sends an anti-entropy advertisement or digest, accounting for its size.
+    private boolean unicastAntiEntropyMessage(NodeId peer, MessageSubject subject, Object event) {
+        ClusterMessage message = new ClusterMessage(
+                clusterService.getLocalNode().id(),
+                subject,
+                serializer.encode(event));
+        if (metrics != null) {
+            metrics.sent(message.payload().length);
+        }
+        return clusterCommunicator.unicast(message, peer);
+    }
+
+    // Returns the hash of the given key, which is consistent across instances.
+    // Only the hashes of live items are cached, so that tombstones and keys
+    // seen in anti-entropy do not grow the cache without bound.
+    private long keyHash(K key) {
+        Long cached = keyHashes.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long hash = HASH_FUNCTION.hashBytes(serializer.encode(key)).asLong();
+        if (items.containsKey(key)) {
+            keyHashes.put(key, hash);
+            // drop it again should the item have been removed meanwhile
+            if (!items.containsKey(key)) {
+                keyHashes.remove(key);
+            }
+        }
+        return hash;
+    }
+
+    // Adds or removes the given live item or tombstone to or from the digest.
+    private void toggleDigest(K key, Timestamp timestamp, boolean tombstone) {
+        if (digest == null) {
+            return;
+        }
+        long keyHash = keyHash(key);
+        long entryHash = HASH_FUNCTION.newHasher()
+                .putLong(keyHash)
+                .putBytes(serializer.encode(timestamp))
+                .putBoolean(tombstone)
+                .hash().asLong();
+        digest.toggle(keyHash, entryHash);
+    }
+
+    // Returns a predicate matching the keys which fall into the given buckets.
+    private Predicate<K> inBuckets(int[] buckets) {
+        if (buckets == null || digest == null) {
+            return key -> true;
+        }
+        boolean[] covered = new boolean[MapDigest.BUCKETS];
+        for (int bucket : buckets) {
+            covered[bucket] = true;
+        }
+        return key -> covered[MapDigest.bucket(keyHash(key))];
+    }
+
     private boolean underHighLoad() {
         return counter.get(LOAD_WINDOW) > HIGH_LOAD_THRESHOLD;
     }
@@ -559,9 +726,22 @@ public class EventuallyConsistentMapImpl<K, V>
                     return;
                 }
 
-                AntiEntropyAdvertisement<K> ad = createAdvertisement();
+                if (metrics != null) {
+                    metrics.rounds.inc();
+                }
 
-                if (!unicastMessage(peer, antiEntropyAdvertisementSubject, ad)) {
+                if (digest != null) {
+                    AntiEntropyDigest groupDigest =
+                            new AntiEntropyDigest(self, null, digest.groupDigests());
+                    if (!unicastAntiEntropyMessage(peer, antiEntropyDigestSubject, groupDigest)) {
+                        log.debug("Failed to send anti-entropy digest to {}", peer);
+                    }
+                    return;
+                }
+
+                AntiEntropyAdvertisement<K> ad = createAdvertisement(null);
+
+                if (!unicastAntiEntropyMessage(peer, antiEntropyAdvertisementSubject, ad)) {
                     log.debug("Failed to send anti-entropy advertisement to {}", peer);
                 }
             } catch (Exception e) {
@@ -571,16 +751,71 @@ public class EventuallyConsistentMapImpl<K, V>
         }
     }
 
-    private AntiEntropyAdvertisement<K> createAdvertisement() {
+    private AntiEntropyAdvertisement<K> createAdvertisement(int[] buckets) {
         final NodeId self = clusterService.getLocalNode().id();
 
-        Map<K, Timestamp> timestamps = new HashMap<>(items.size());
+        if (buckets == null) {
+            Map<K, Timestamp> timestamps = new HashMap<>(items.size());
 
-        items.forEach((key, value) -> timestamps.put(key, value.timestamp()));
+            items.forEach((key, value) -> timestamps.put(key, value.timestamp()));
 
-        Map<K, Timestamp> tombstones = new HashMap<>(removedItems);
+            Map<K, Timestamp> tombstones = new HashMap<>(removedItems);
+
+            return new AntiEntropyAdvertisement<>(self, timestamps, tombstones);
+        }
+
+        Predicate<K> covered = inBuckets(buckets);
+        Map<K, Timestamp> timestamps = new HashMap<>();
+        items.forEach((key, value) -> {
+            if (covered.test(key)) {
+                timestamps.put(key, value.timestamp());
+            }
+        });
 
-        return new AntiEntropyAdvertisement<>(self, timestamps, tombstones);
+        Map<K, Timestamp> tombstones = new HashMap<>();
+        removedItems.forEach((key, timestamp) -> {
+            if (covered.test(key)) {
+                tombstones.put(key, timestamp);
+            }
+        });
+
+        return new AntiEntropyAdvertisement<>(self, timestamps, tombstones, buckets);
+    }
+
+    /**
+     * Compares the digest received from a peer with the local one. Group
+     * digests are answered with the bucket digests of the mismatching
+     * groups, while bucket digests are answered with an advertisement
+     * covering only the mismatching buckets.
+     *
+     * @param remote remote anti-entropy digest
+     */
+    private void handleAntiEntropyDigest(AntiEntropyDigest remote) {
+        final NodeId self = clusterService.getLocalNode().id();
+        final NodeId sender = remote.sender();
+
+        if (remote.groups() == null) {
+            int[] groups = digest.mismatchingGroups(remote.digests());
+            if (groups.length == 0) {
+                log.trace("In sync with {}", sender);
+                return;
+            }
+            AntiEntropyDigest bucketDigest =
+                    new AntiEntropyDigest(self, groups, digest.bucketDigests(groups));
+            if (!unicastAntiEntropyMessage(sender, antiEntropyDigestSubject, bucketDigest)) {
+                log.debug("Failed to send anti-entropy digest to {}", sender);
+            }
+            return;
+        }
+
+        int[] buckets = digest.mismatchingBuckets(remote.groups(), remote.digests());
+        if (buckets.length == 0) {
+            return;
+        }
+        AntiEntropyAdvertisement<K> ad = createAdvertisement(buckets);
+        if (!unicastAntiEntropyMessage(sender, antiEntropyAdvertisementSubject, ad)) {
+            log.debug("Failed to send anti-entropy advertisement to {}", sender);
+        }
     }
 
     private void handleAntiEntropyAdvertisement(AntiEntropyAdvertisement<K> ad) {
@@ -598,8 +833,8 @@ public class EventuallyConsistentMapImpl<K, V>
                 if (!items.containsKey(key)) {
                     // Send the advertisement back if this peer is out-of-sync
                     final NodeId sender = ad.sender();
-                    AntiEntropyAdvertisement<K> myAd = createAdvertisement();
-                    if (!unicastMessage(sender, antiEntropyAdvertisementSubject, myAd)) {
+                    AntiEntropyAdvertisement<K> myAd = createAdvertisement(ad.buckets());
+                    if (!unicastAntiEntropyMessage(sender, antiEntropyAdvertisementSubject, myAd)) {
                         log.debug("Failed to send reactive anti-entropy advertisement to {}", sender);
                     }
                     break;
@@ -624,9 +859,13 @@ public class EventuallyConsistentMapImpl<K, V>
         final List<EventuallyConsistentMapEvent<K, V>> externalEvents
                 = new LinkedList<>();
         final NodeId sender = ad.sender();
+        final Predicate<K> covered = inBuckets(ad.buckets());
 
         for (Map.Entry<K, Timestamped<V>> item : items.entrySet()) {
             K key = item.getKey();
+            if (!covered.test(key)) {
+                continue;
+            }
             Timestamped<V> localValue = item.getValue();
 
             Timestamp remoteTimestamp = ad.timestamps().get(key);
@@ -663,9 +902,13 @@ public class EventuallyConsistentMapImpl<K, V>
      */
     private void antiEntropyCheckLocalRemoved(AntiEntropyAdvertisement<K> ad) {
         final NodeId sender = ad.sender();
+        final Predicate<K> covered = inBuckets(ad.buckets());
 
         for (Map.Entry<K, Timestamp> dead : removedItems.entrySet()) {
             K key = dead.getKey();
+            if (!covered.test(key)) {
+                continue;
+            }
             Timestamp localDeadTimestamp = dead.getValue();
 
             Timestamp remoteLiveTimestamp = ad.timestamps().get(key);
@@ -722,6 +965,9 @@ public class EventuallyConsistentMapImpl<K, V>
         public void handle(ClusterMessage message) {
             log.trace("Received anti-entropy advertisement from peer: {}",
                       message.sender());
+            if (metrics != null) {
+                metrics.received(message.payload().length);
+            }
             AntiEntropyAdvertisement<K> advertisement = serializer.decode(message.payload());
             try {
                 if (!underHighLoad()) {
@@ -733,6 +979,67 @@ public class EventuallyConsistentMapImpl<K, V>
         }
     }
 
+    private final class InternalAntiEntropyDigestListener
+            implements ClusterMessageHandler {
+
+        @Override
+        public void handle(ClusterMessage message) {
+            log.trace("Received anti-entropy digest from peer: {}",
+                      message.sender());
+            if (metrics != null) {
+                metrics.received(message.payload().length);
+            }
+            AntiEntropyDigest remote = serializer.decode(message.payload());
+            try {
+                if (!underHighLoad()) {
+                    handleAntiEntropyDigest(remote);
+                }
+            } catch (Exception e) {
+                log.warn("Exception thrown handling digests", e);
+            }
+        }
+    }
+
+    // Bookkeeping of the anti-entropy traffic and persistence of this map;
+    // anti-entropy bytes include the advertisements and digests exchanged on
+    // behalf of rounds started by either side, but not the updates pushed to
+    // repair divergences.
+    private final class InternalMetrics {
+        private final Counter rounds =
+                metricsService.createCounter(metricsComponent, metricsFeature, "antiEntropyRounds");
+        private final Counter bytesSent =
+                metricsService.createCounter(metricsComponent, metricsFeature, "antiEntropyBytesSent");
+        private final Counter bytesReceived =
+                metricsService.createCounter(metricsComponent, metricsFeature, "antiEntropyBytesReceived");
+        private final Histogram messageBytes =
+                metricsService.createHistogram(metricsComponent, metricsFeature, "antiEntropyMessageBytes");
+        private final Histogram persistenceWriteLag =
+                metricsService.createHistogram(metricsComponent, metricsFeature, "persistenceWriteLagMillis");
+        private final Histogram persistenceRestore =
+                metricsService.createHistogram(metricsComponent, metricsFeature, "persistenceRestoreMillis");
+        private final Counter persistenceDroppedUpdates =
+                metricsService.createCounter(metricsComponent, metricsFeature, "persistenceDroppedUpdates");
+
+        private void sent(int bytes) {
+            bytesSent.inc(bytes);
+            messageBytes.update(bytes);
+        }
+
+        private void received(int bytes) {
+            bytesReceived.inc(bytes);
+        }
+
+        private void remove() {
+            metricsService.removeMetric(metricsComponent, metricsFeature, "antiEntropyRounds");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "antiEntropyBytesSent");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "antiEntropyBytesReceived");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "antiEntropyMessageBytes");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "persistenceWriteLagMillis");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "persistenceRestoreMillis");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "persistenceDroppedUpdates");
+        }
+    }
+
     private final class InternalEventListener implements ClusterMessageHandler {
         @Override
         public void handle(ClusterMessage message) {
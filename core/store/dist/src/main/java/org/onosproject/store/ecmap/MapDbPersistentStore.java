@@ -16,36 +16,76 @@
 
 package org.onosproject.store.ecmap;
 
-import org.apache.commons.lang3.mutable.MutableBoolean;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.mapdb.Hasher;
 import org.mapdb.Serializer;
+import org.onlab.util.AbstractAccumulator;
 import org.onosproject.store.Timestamp;
 import org.onosproject.store.impl.Timestamped;
 import org.onosproject.store.serializers.KryoSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.ExecutorService;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * MapDB based implementation of a persistent store.
+ * <p>
+ * Updates are written behind: they are accumulated, coalesced per key and
+ * applied to the memory-mapped database file in batches, each of which is
+ * committed as a single transaction. A crash therefore loses at most the
+ * updates of the batches not yet committed, which peers restore through
+ * anti-entropy, but never leaves a batch partially applied.
+ * </p>
+ * <p>
+ * A batch that fails to commit is rolled back and re-applied one update at
+ * a time, so that a single bad update cannot take the rest down with it.
+ * Updates that still fail are requeued, and dropped with an error only
+ * after several failed attempts.
+ * </p>
  */
 class MapDbPersistentStore<K, V> implements PersistentStore<K, V> {
 
+    private static final Logger log = LoggerFactory.getLogger(MapDbPersistentStore.class);
+
+    static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+    static final int DEFAULT_MAX_BATCH_MS = 100;
+    private static final int DEFAULT_MAX_IDLE_MS = 10;
+    static final int MAX_COMMIT_ATTEMPTS = 3;
+    private static final Timer TIMER = new Timer("onos-ecm-persistence", true);
+
     private final ExecutorService executor;
     private final KryoSerializer serializer;
+    private final Histogram writeLag;
+    private final Counter droppedUpdates;
+    private final int maxBatchMillis;
 
     private final DB database;
 
     private final Map<byte[], byte[]> items;
     private final Map<byte[], byte[]> tombstones;
 
+    private final UpdateAccumulator accumulator;
+
+    private volatile boolean closed = false;
+
     /**
-     * Creates a new MapDB based persistent store.
+     * Creates a new MapDB based persistent store, which commits updates in
+     * batches of default size and age.
      *
      * @param filename filename of the database on disk
      * @param executor executor to use for tasks that write to the disk
@@ -53,12 +93,40 @@ class MapDbPersistentStore<K, V> implements PersistentStore<K, V> {
      */
     MapDbPersistentStore(String filename, ExecutorService executor,
                          KryoSerializer serializer) {
+        this(filename, executor, serializer,
+             DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_MS, null, null);
+    }
+
+    /**
+     * Creates a new MapDB based persistent store.
+     *
+     * @param filename filename of the database on disk
+     * @param executor executor to use for tasks that write to the disk; it
+     *                 must run the tasks one at a time, in order
+     * @param serializer serializer for keys and values
+     * @param maxBatchSize maximum number of updates committed at once
+     * @param maxBatchMillis maximum number of millis an update is held
+     *                       before being committed
+     * @param writeLag histogram of the age, in millis, of the oldest update
+     *                 of each committed batch; may be null
+     * @param droppedUpdates counter of the updates given up on after
+     *                       repeatedly failing to commit; may be null
+     */
+    MapDbPersistentStore(String filename, ExecutorService executor,
+                         KryoSerializer serializer,
+                         int maxBatchSize, int maxBatchMillis,
+                         Histogram writeLag, Counter droppedUpdates) {
         this.executor = checkNotNull(executor);
         this.serializer = checkNotNull(serializer);
+        this.writeLag = writeLag;
+        this.droppedUpdates = droppedUpdates;
+        this.maxBatchMillis = maxBatchMillis;
 
         File databaseFile = new File(filename);
 
-        database = DBMaker.newFileDB(databaseFile).make();
+        database = DBMaker.newFileDB(databaseFile)
+                .mmapFileEnableIfSupported()
+                .make();
 
         items = database.createHashMap("items")
                 .keySerializer(Serializer.BYTE_ARRAY)
@@ -71,22 +139,105 @@ class MapDbPersistentStore<K, V> implements PersistentStore<K, V> {
                 .valueSerializer(Serializer.BYTE_ARRAY)
                 .hasher(Hasher.BYTE_ARRAY)
                 .makeOrGet();
+
+        accumulator = new UpdateAccumulator(maxBatchSize, maxBatchMillis);
     }
 
     @Override
     public void readInto(Map<K, Timestamped<V>> items, Map<K, Timestamp> tombstones) {
-        this.items.forEach((keyBytes, valueBytes) ->
-                              items.put(serializer.decode(keyBytes),
-                                               serializer.decode(valueBytes)));
-
-        this.tombstones.forEach((keyBytes, valueBytes) ->
-                                   tombstones.put(serializer.decode(keyBytes),
-                                                    serializer.decode(valueBytes)));
+        // Read the raw entries sequentially, but decode them in parallel
+        List<Map.Entry<byte[], byte[]>> itemEntries = Lists.newArrayList(this.items.entrySet());
+        itemEntries.parallelStream().forEach(entry ->
+                items.put(serializer.decode(entry.getKey()),
+                          serializer.decode(entry.getValue())));
+
+        List<Map.Entry<byte[], byte[]>> tombstoneEntries = Lists.newArrayList(this.tombstones.entrySet());
+        tombstoneEntries.parallelStream().forEach(entry ->
+                tombstones.put(serializer.decode(entry.getKey()),
+                               serializer.decode(entry.getValue())));
     }
 
     @Override
     public void put(K key, V value, Timestamp timestamp) {
-        executor.submit(() -> putInternal(key, value, timestamp));
+        accumulator.add(new Update<>(key, value, timestamp));
+    }
+
+    @Override
+    public void remove(K key, Timestamp timestamp) {
+        accumulator.add(new Update<>(key, null, timestamp));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // Every pending update is handed to the executor within the max
+        // batch age, so closing the database after that flushes them all.
+        TIMER.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                executor.execute(database::close);
+                executor.shutdown();
+            }
+        }, maxBatchMillis + 1);
+    }
+
+    // Applies and commits the given batch of updates; only ever invoked
+    // from the executor, which is the sole writer of the database.
+    private void commit(Collection<Update<K, V>> updates, long oldest) {
+        if (!apply(updates)) {
+            if (updates.size() == 1) {
+                retryOrDrop(updates.iterator().next());
+            } else {
+                // Isolate the failing updates by committing one at a time
+                for (Update<K, V> update : updates) {
+                    if (!apply(ImmutableList.of(update))) {
+                        retryOrDrop(update);
+                    }
+                }
+            }
+        }
+
+        if (writeLag != null) {
+            writeLag.update(System.currentTimeMillis() - oldest);
+        }
+    }
+
+    // Applies and commits the given updates; rolls all of them back and
+    // returns false if any one fails.
+    private boolean apply(Iterable<Update<K, V>> updates) {
+        try {
+            for (Update<K, V> update : updates) {
+                if (update.value != null) {
+                    putInternal(update.key, update.value, update.timestamp);
+                } else {
+                    removeInternal(update.key, update.timestamp);
+                }
+            }
+            database.commit();
+            return true;
+        } catch (Exception e) {
+            log.warn("Unable to commit updates", e);
+            try {
+                database.rollback();
+            } catch (Exception re) {
+                log.warn("Unable to roll back updates", re);
+            }
+            return false;
+        }
+    }
+
+    // Requeues an update that failed to commit, unless it failed too often
+    // already or the store is closing.
+    private void retryOrDrop(Update<K, V> update) {
+        if (update.attempts < MAX_COMMIT_ATTEMPTS && !closed) {
+            accumulator.add(update.retry());
+        } else {
+            log.error("Dropping update of {} after {} failed commit attempts; " +
+                      "it is no longer persisted", update.key, update.attempts);
+            if (droppedUpdates != null) {
+                droppedUpdates.inc();
+            }
+        }
     }
 
     private void putInternal(K key, V value, Timestamp timestamp) {
@@ -99,68 +250,90 @@ class MapDbPersistentStore<K, V> implements PersistentStore<K, V> {
             return;
         }
 
-        final MutableBoolean updated = new MutableBoolean(false);
-
-        items.compute(keyBytes, (k, existingBytes) -> {
-            Timestamped<V> existing = existingBytes == null ? null :
-                                      serializer.decode(existingBytes);
-            if (existing != null && existing.isNewerThan(timestamp)) {
-                updated.setFalse();
-                return existingBytes;
-            } else {
-                updated.setTrue();
-                return serializer.encode(new Timestamped<>(value, timestamp));
-            }
-        });
-
-        boolean success = updated.booleanValue();
-
-        if (success && removed != null) {
-            tombstones.remove(keyBytes, removedBytes);
+        byte[] existingBytes = items.get(keyBytes);
+        Timestamped<V> existing = existingBytes == null ? null :
+                                  serializer.decode(existingBytes);
+        if (existing != null && existing.isNewerThan(timestamp)) {
+            return;
         }
 
-        database.commit();
-    }
+        items.put(keyBytes, serializer.encode(new Timestamped<>(value, timestamp)));
 
-    @Override
-    public void remove(K key, Timestamp timestamp) {
-        executor.submit(() -> removeInternal(key, timestamp));
+        if (removed != null) {
+            tombstones.remove(keyBytes);
+        }
     }
 
     private void removeInternal(K key, Timestamp timestamp) {
         byte[] keyBytes = serializer.encode(key);
 
-        final MutableBoolean updated = new MutableBoolean(false);
-
-        items.compute(keyBytes, (k, existingBytes) -> {
-            Timestamp existing = existingBytes == null ? null :
-                                 serializer.decode(existingBytes);
-            if (existing != null && existing.isNewerThan(timestamp)) {
-                updated.setFalse();
-                return existingBytes;
-            } else {
-                updated.setTrue();
-                // remove from items map
-                return null;
-            }
-        });
-
-        if (!updated.booleanValue()) {
+        byte[] existingBytes = items.get(keyBytes);
+        Timestamped<V> existing = existingBytes == null ? null :
+                                  serializer.decode(existingBytes);
+        if (existing != null && existing.isNewerThan(timestamp)) {
             return;
         }
 
-        byte[] timestampBytes = serializer.encode(timestamp);
+        if (existing != null) {
+            items.remove(keyBytes);
+        }
+
         byte[] removedBytes = tombstones.get(keyBytes);
 
         Timestamp removedTimestamp = removedBytes == null ? null :
                                      serializer.decode(removedBytes);
-        if (removedTimestamp == null) {
-            tombstones.putIfAbsent(keyBytes, timestampBytes);
-        } else if (timestamp.isNewerThan(removedTimestamp)) {
-            tombstones.replace(keyBytes, removedBytes, timestampBytes);
+        if (removedTimestamp == null || timestamp.isNewerThan(removedTimestamp)) {
+            tombstones.put(keyBytes, serializer.encode(timestamp));
+        }
+    }
+
+    // Pending put, or remove if the value is null.
+    private static final class Update<K, V> {
+        private final K key;
+        private final V value;
+        private final Timestamp timestamp;
+        private final long created;
+        private final int attempts;
+
+        private Update(K key, V value, Timestamp timestamp) {
+            this(key, value, timestamp, System.currentTimeMillis(), 1);
+        }
+
+        private Update(K key, V value, Timestamp timestamp,
+                       long created, int attempts) {
+            this.key = key;
+            this.value = value;
+            this.timestamp = timestamp;
+            this.created = created;
+            this.attempts = attempts;
         }
 
-        database.commit();
+        // Returns a copy of this update for another commit attempt.
+        private Update<K, V> retry() {
+            return new Update<>(key, value, timestamp, created, attempts + 1);
+        }
+    }
+
+    private final class UpdateAccumulator extends AbstractAccumulator<Update<K, V>> {
+
+        private UpdateAccumulator(int maxBatchSize, int maxBatchMillis) {
+            super(TIMER, maxBatchSize, maxBatchMillis,
+                  Math.min(DEFAULT_MAX_IDLE_MS, maxBatchMillis));
+        }
+
+        @Override
+        public void processItems(List<Update<K, V>> updates) {
+            // Only the most recent update of each key needs to be written
+            Map<K, Update<K, V>> latest = Maps.newHashMap();
+            long oldest = Long.MAX_VALUE;
+            for (Update<K, V> update : updates) {
+                latest.merge(update.key, update, (a, b) ->
+                        b.timestamp.isNewerThan(a.timestamp) ? b : a);
+                oldest = Math.min(oldest, update.created);
+            }
+            long batchOldest = oldest;
+            executor.execute(() -> commit(latest.values(), batchOldest));
+        }
     }
 
 }
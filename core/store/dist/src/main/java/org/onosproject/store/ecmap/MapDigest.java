@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Two-level digest of the contents of an eventually consistent map.
+ * <p>
+ * Entries are assigned to buckets by the hash of their key and each bucket
+ * holds the XOR of the hashes of its live items and tombstones. As XOR is
+ * its own inverse and is order-independent, the digest can be maintained
+ * incrementally, without locking, by toggling the hash of an entry in and
+ * out as the entry is written or replaced. Buckets are further grouped so
+ * that peers can first compare the few group digests and then drill down
+ * only into the buckets of the groups they disagree on.
+ * </p>
+ */
+final class MapDigest {
+
+    static final int GROUPS = 32;
+    static final int GROUP_SIZE = 32;
+    static final int BUCKETS = GROUPS * GROUP_SIZE;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Returns the bucket to which a key with the given hash belongs.
+     *
+     * @param keyHash key hash
+     * @return bucket index
+     */
+    static int bucket(long keyHash) {
+        return (int) (keyHash & (BUCKETS - 1));
+    }
+
+    /**
+     * Adds the hash of an entry to its bucket, or removes it if the same
+     * hash has been added before.
+     *
+     * @param keyHash   hash of the entry key
+     * @param entryHash hash of the entry
+     */
+    void toggle(long keyHash, long entryHash) {
+        buckets.accumulateAndGet(bucket(keyHash), entryHash, (a, b) -> a ^ b);
+    }
+
+    /**
+     * Returns the digest of each bucket group.
+     *
+     * @return group digests
+     */
+    long[] groupDigests() {
+        long[] digests = new long[GROUPS];
+        for (int i = 0; i < BUCKETS; i++) {
+            digests[i / GROUP_SIZE] ^= buckets.get(i);
+        }
+        return digests;
+    }
+
+    /**
+     * Returns the digests of all buckets in the specified groups, in order.
+     *
+     * @param groups bucket groups
+     * @return bucket digests
+     */
+    long[] bucketDigests(int[] groups) {
+        long[] digests = new long[groups.length * GROUP_SIZE];
+        for (int g = 0; g < groups.length; g++) {
+            for (int i = 0; i < GROUP_SIZE; i++) {
+                digests[g * GROUP_SIZE + i] = buckets.get(groups[g] * GROUP_SIZE + i);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Returns the bucket groups whose digests differ from the given ones.
+     *
+     * @param remote remote group digests
+     * @return mismatching groups
+     */
+    int[] mismatchingGroups(long[] remote) {
+        long[] local = groupDigests();
+        if (remote.length != GROUPS) {
+            return range(GROUPS);
+        }
+        int[] mismatches = new int[GROUPS];
+        int count = 0;
+        for (int g = 0; g < GROUPS; g++) {
+            if (local[g] != remote[g]) {
+                mismatches[count++] = g;
+            }
+        }
+        return Arrays.copyOf(mismatches, count);
+    }
+
+    /**
+     * Returns the buckets of the specified groups whose digests differ from
+     * the given ones.
+     *
+     * @param groups bucket groups
+     * @param remote remote bucket digests of the groups, in order
+     * @return mismatching buckets
+     */
+    int[] mismatchingBuckets(int[] groups, long[] remote) {
+        if (remote.length != groups.length * GROUP_SIZE) {
+            return range(BUCKETS);
+        }
+        int[] mismatches = new int[remote.length];
+        int count = 0;
+        for (int g = 0; g < groups.length; g++) {
+            for (int i = 0; i < GROUP_SIZE; i++) {
+                int bucket = groups[g] * GROUP_SIZE + i;
+                if (buckets.get(bucket) != remote[g * GROUP_SIZE + i]) {
+                    mismatches[count++] = bucket;
+                }
+            }
+        }
+        return Arrays.copyOf(mismatches, count);
+    }
+
+    private static int[] range(int size) {
+        int[] range = new int[size];
+        for (int i = 0; i < size; i++) {
+            range[i] = i;
+        }
+        return range;
+    }
+
+}
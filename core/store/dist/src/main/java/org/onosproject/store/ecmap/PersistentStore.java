@@ -27,7 +27,8 @@ import java.util.Map;
 interface PersistentStore<K, V> {
 
     /**
-     * Read the contents of the disk into the given maps.
+     * Read the contents of the disk into the given maps. The maps may be
+     * populated from multiple threads at once.
      *
      * @param items items map
      * @param tombstones tombstones map
@@ -50,4 +51,9 @@ interface PersistentStore<K, V> {
      * @param timestamp the timestamp of the update
      */
     void remove(K key, Timestamp timestamp);
+
+    /**
+     * Closes the store once the updates given so far are written to disk.
+     */
+    void close();
 }
@@ -15,14 +15,21 @@
  */
 package org.onosproject.store.flow.impl;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
-import com.hazelcast.core.IMap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
@@ -32,16 +39,23 @@ import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
-import org.onlab.util.BoundedThreadPool;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onlab.util.AbstractAccumulator;
 import org.onlab.util.KryoNamespace;
-import org.onlab.util.NewConcurrentHashMap;
 import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.cluster.ClusterService;
+import org.onosproject.cluster.ControllerNode;
 import org.onosproject.cluster.NodeId;
 import org.onosproject.core.CoreService;
 import org.onosproject.core.IdGenerator;
+import org.onosproject.mastership.MastershipTerm;
+import org.onosproject.mastership.MastershipTermService;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.CompletedBatchOperation;
 import org.onosproject.net.flow.DefaultFlowEntry;
@@ -68,7 +82,6 @@ import org.onosproject.store.flow.ReplicaInfoEvent;
 import org.onosproject.store.flow.ReplicaInfoEventListener;
 import org.onosproject.store.flow.ReplicaInfoService;
 import org.onosproject.store.hz.AbstractHazelcastStore;
-import org.onosproject.store.hz.SMap;
 import org.onosproject.store.serializers.KryoSerializer;
 import org.onosproject.store.serializers.StoreSerializer;
 import org.onosproject.store.serializers.impl.DistributedStoreSerializers;
@@ -76,18 +89,21 @@ import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -96,8 +112,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
-import static com.google.common.base.Preconditions.checkNotNull;
-import static org.apache.commons.lang3.concurrent.ConcurrentUtils.createIfAbsentUnchecked;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.onlab.util.Tools.get;
 import static org.onlab.util.Tools.groupedThreads;
@@ -119,6 +133,9 @@ public class DistributedFlowRuleStore
     private static final int MESSAGE_HANDLER_THREAD_POOL_SIZE = 8;
     private static final boolean DEFAULT_BACKUP_ENABLED = true;
     private static final long FLOW_RULE_STORE_TIMEOUT_MILLIS = 5000;
+    private static final int DEFAULT_MAX_BACKUP_DEVICES = 1000;
+    private static final int DEFAULT_MAX_BACKUP_MS = 100;
+    private static final int DEFAULT_MAX_BACKUP_IDLE_MS = 20;
 
     @Property(name = "msgHandlerPoolSize", intValue = MESSAGE_HANDLER_THREAD_POOL_SIZE,
             label = "Number of threads in the message handler pool")
@@ -145,24 +162,47 @@ public class DistributedFlowRuleStore
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected DeviceService deviceService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MastershipTermService termService;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ComponentConfigService configService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
     private Map<Long, NodeId> pendingResponses = Maps.newConcurrentMap();
 
-    // Cache of SMaps used for backup data.  each SMap contain device flow table
-    private LoadingCache<DeviceId, SMap<FlowId, ImmutableList<StoredFlowEntry>>> smaps;
+    // Flow IDs changed since the last backup message, per device mastered here
+    private final ConcurrentMap<DeviceId, PendingBackup> pendingBackups = new ConcurrentHashMap<>();
+
+    // Replication state of each device mastered here; confined to backupExecutor
+    private final Map<DeviceId, BackupState> backupStates = new HashMap<>();
+
+    // Backup copies of the flow tables of devices mastered by peers
+    private final ConcurrentMap<DeviceId, FlowBackupTable> backups = new ConcurrentHashMap<>();
+
+    private static final Timer BACKUP_TIMER = new Timer("onos-flow-backup", true);
+
+    private final BackupAccumulator backupAccumulator = new BackupAccumulator();
 
     private ExecutorService messageHandlingExecutor;
 
-    private final ExecutorService backupExecutors =
-            BoundedThreadPool.newSingleThreadExecutor(groupedThreads("onos/flow", "async-backups"));
-            //Executors.newSingleThreadExecutor(groupedThreads("onos/flow", "async-backups"));
+    private final ExecutorService backupExecutor =
+            Executors.newSingleThreadExecutor(groupedThreads("onos/flow", "async-backups"));
+
+    // Promotes backups to the flow table once fetched from the peers
+    private final ExecutorService backupLoadExecutor =
+            Executors.newSingleThreadExecutor(groupedThreads("onos/flow", "backup-loader"));
 
-    private boolean syncBackup = false;
+    private MetricsComponent metricsComponent;
+    private MetricsFeature metricsFeature;
+    private Histogram replicationLag;
+    private Histogram backupBatchSize;
+    private Counter backupResyncs;
 
     protected static final StoreSerializer SERIALIZER = new KryoSerializer() {
         @Override
@@ -172,12 +212,15 @@ public class DistributedFlowRuleStore
                     .nextId(DistributedStoreSerializers.STORE_CUSTOM_BEGIN)
                     .register(FlowRuleEvent.class)
                     .register(FlowRuleEvent.Type.class)
+                    .register(FlowBackupMessage.class)
                     .build();
         }
     };
 
     private ReplicaInfoEventListener replicaInfoEventListener;
 
+    private final DeviceListener deviceListener = new InternalDeviceListener();
+
     private IdGenerator idGenerator;
 
     private NodeId local;
@@ -192,10 +235,7 @@ public class DistributedFlowRuleStore
 
         local = clusterService.getLocalNode().id();
 
-        // Cache to create SMap on demand
-        smaps = CacheBuilder.newBuilder()
-                .softValues()
-                .build(new SMapLoader());
+        registerMetrics();
 
         messageHandlingExecutor = Executors.newFixedThreadPool(
                 msgHandlerPoolSize, groupedThreads("onos/store/flow", "message-handlers"));
@@ -205,6 +245,7 @@ public class DistributedFlowRuleStore
         replicaInfoEventListener = new InternalReplicaInfoEventListener();
 
         replicaInfoManager.addListener(replicaInfoEventListener);
+        deviceService.addListener(deviceListener);
 
         logConfig("Started");
     }
@@ -215,6 +256,10 @@ public class DistributedFlowRuleStore
         unregisterMessageHandlers();
         messageHandlingExecutor.shutdownNow();
         replicaInfoManager.removeListener(replicaInfoEventListener);
+        deviceService.removeListener(deviceListener);
+        backupExecutor.shutdownNow();
+        backupLoadExecutor.shutdownNow();
+        removeMetrics();
         log.info("Stopped");
     }
 
@@ -243,6 +288,9 @@ public class DistributedFlowRuleStore
 
         if (newBackupEnabled != backupEnabled) {
             backupEnabled = newBackupEnabled;
+            if (!backupEnabled) {
+                pendingBackups.clear();
+            }
         }
         if (newPoolSize != msgHandlerPoolSize) {
             msgHandlerPoolSize = newPoolSize;
@@ -291,7 +339,7 @@ public class DistributedFlowRuleStore
             public void handle(ClusterMessage message) {
                 DeviceId deviceId = SERIALIZER.decode(message.payload());
                 log.trace("Received get flow entries request for {} from {}", deviceId, message.sender());
-                Set<FlowEntry> flowEntries = flowTable.getFlowEntries(deviceId);
+                Set<FlowEntry> flowEntries = Sets.newHashSet(flowTable.getFlowEntries(deviceId));
                 try {
                     message.respond(SERIALIZER.encode(flowEntries));
                 } catch (IOException e) {
@@ -314,9 +362,40 @@ public class DistributedFlowRuleStore
                 }
             }
         }, executor);
+
+        clusterCommunicator.addSubscriber(BACKUP_FLOWS, new OnBackupFlows(), executor);
+
+        clusterCommunicator.addSubscriber(GET_FLOW_BACKUP, new ClusterMessageHandler() {
+
+            @Override
+            public void handle(ClusterMessage message) {
+                DeviceId deviceId = SERIALIZER.decode(message.payload());
+                log.trace("Received get flow backup request for {} from {}", deviceId, message.sender());
+                FlowBackupTable backup = backups.get(deviceId);
+                try {
+                    message.respond(SERIALIZER.encode(backup == null ? null : backup.snapshot()));
+                } catch (IOException e) {
+                    log.error("Failed to respond to peer's getFlowBackup request", e);
+                }
+            }
+        }, executor);
+
+        clusterCommunicator.addSubscriber(PURGE_FLOW_BACKUP, new ClusterMessageHandler() {
+
+            @Override
+            public void handle(ClusterMessage message) {
+                FlowBackupMessage purge = SERIALIZER.decode(message.payload());
+                log.trace("Received purge of flow backup up to {} from {}", purge, message.sender());
+                backups.computeIfPresent(purge.deviceId(), (did, backup) ->
+                        backup.isNewerThan(purge.term(), purge.sequence()) ? backup : null);
+            }
+        }, executor);
     }
 
     private void unregisterMessageHandlers() {
+        clusterCommunicator.removeSubscriber(PURGE_FLOW_BACKUP);
+        clusterCommunicator.removeSubscriber(GET_FLOW_BACKUP);
+        clusterCommunicator.removeSubscriber(BACKUP_FLOWS);
         clusterCommunicator.removeSubscriber(REMOVE_FLOW_ENTRY);
         clusterCommunicator.removeSubscriber(GET_DEVICE_FLOW_ENTRIES);
         clusterCommunicator.removeSubscriber(GET_FLOW_ENTRY);
@@ -329,6 +408,30 @@ public class DistributedFlowRuleStore
                  prefix, msgHandlerPoolSize, backupEnabled);
     }
 
+    private void registerMetrics() {
+        metricsComponent = metricsService.registerComponent("DistributedFlowRuleStore");
+        metricsFeature = metricsComponent.registerFeature("backup");
+        replicationLag = metricsService.createHistogram(metricsComponent, metricsFeature,
+                                                        "replicationLagMillis");
+        backupBatchSize = metricsService.createHistogram(metricsComponent, metricsFeature,
+                                                         "batchSize");
+        backupResyncs = metricsService.createCounter(metricsComponent, metricsFeature,
+                                                     "resyncs");
+        metricsService.registerMetric(metricsComponent, metricsFeature, "backupSize",
+                                      (Gauge<Integer>) () -> backups.values().stream()
+                                              .mapToInt(FlowBackupTable::size).sum());
+        metricsService.registerMetric(metricsComponent, metricsFeature, "pendingDevices",
+                                      (Gauge<Integer>) pendingBackups::size);
+    }
+
+    private void removeMetrics() {
+        metricsService.removeMetric(metricsComponent, metricsFeature, "replicationLagMillis");
+        metricsService.removeMetric(metricsComponent, metricsFeature, "batchSize");
+        metricsService.removeMetric(metricsComponent, metricsFeature, "resyncs");
+        metricsService.removeMetric(metricsComponent, metricsFeature, "backupSize");
+        metricsService.removeMetric(metricsComponent, metricsFeature, "pendingDevices");
+    }
+
 
     // This is not a efficient operation on a distributed sharded
     // flow store. We need to revisit the need for this operation or at least
@@ -528,16 +631,128 @@ public class DistributedFlowRuleStore
             return;
         }
 
-        Future<?> backup = backupExecutors.submit(new UpdateBackup(deviceId, entries));
+        // Only remember which flows changed; their current state is
+        // picked up when the backup message is built, which coalesces
+        // successive changes of the same flow into one.
+        pendingBackups.compute(deviceId, (did, pending) -> {
+            PendingBackup p = pending == null ? new PendingBackup() : pending;
+            entries.forEach(entry -> p.flowIds.add(entry.target().id()));
+            return p;
+        });
+        backupAccumulator.add(deviceId);
+    }
 
-        if (syncBackup) {
-            // wait for backup to complete
-            try {
-                backup.get();
-            } catch (InterruptedException | ExecutionException e) {
-                log.error("Failed to create backups", e);
-            }
+    // Schedules transfer of the entire flow table of the device to its backup.
+    private void fullBackup(DeviceId deviceId) {
+        if (!backupEnabled) {
+            return;
         }
+        backupExecutor.execute(() -> {
+            backupStates.remove(deviceId);
+            pendingBackups.putIfAbsent(deviceId, new PendingBackup());
+            backupAccumulator.add(deviceId);
+        });
+    }
+
+    // Sends the pending changes of the device flow table to its backup node;
+    // at most one message per device is outstanding at any time, changes
+    // made in the meantime are coalesced into the next one.
+    private void sendBackup(DeviceId deviceId) {
+        BackupState state = backupStates.get(deviceId);
+        if (state != null && state.inFlight) {
+            // Will be picked up once the outstanding message is acknowledged
+            return;
+        }
+
+        if (!local.equals(replicaInfoManager.getReplicaInfoFor(deviceId).master().orNull())) {
+            pendingBackups.remove(deviceId);
+            backupStates.remove(deviceId);
+            return;
+        }
+
+        long term = termFor(deviceId);
+        NodeId target = backupNodeFor(deviceId);
+        PendingBackup pending = pendingBackups.remove(deviceId);
+        if (state == null || state.term != term) {
+            // Sequence numbers restart with every mastership term
+            state = new BackupState(term);
+            backupStates.put(deviceId, state);
+        }
+        if (target == null) {
+            // No one to back up to; the entire table goes out with the
+            // next change once a peer becomes available
+            state.synced = false;
+            return;
+        }
+
+        boolean full = !state.synced || !target.equals(state.target);
+        if (!full && pending == null) {
+            return;
+        }
+        if (state.target != null && !target.equals(state.target)) {
+            // The former backup node must not hold on to its stale copy
+            purgeBackup(deviceId, term, state.sequence, state.target);
+        }
+
+        Map<FlowId, List<StoredFlowEntry>> flows = full
+                ? flowTable.snapshot(deviceId)
+                : flowTable.snapshot(deviceId, pending.flowIds);
+        FlowBackupMessage backup = new FlowBackupMessage(deviceId, term, ++state.sequence, full, flows);
+        long since = pending == null ? System.currentTimeMillis() : pending.since;
+
+        state.target = target;
+        state.synced = true;
+        state.inFlight = true;
+        backupBatchSize.update(flows.size());
+        log.trace("Sending {} to {}", backup, target);
+
+        ListenableFuture<byte[]> response;
+        try {
+            response = clusterCommunicator.sendAndReceive(
+                    new ClusterMessage(local, BACKUP_FLOWS, SERIALIZER.encode(backup)), target);
+        } catch (IOException e) {
+            response = Futures.immediateFailedFuture(e);
+        }
+        Futures.addCallback(response, new BackupCallback(backup, state, since), backupExecutor);
+    }
+
+    // Asks the given node to drop its backup copy of the device flow table
+    // unless the copy is more recent than the specified version.
+    private void purgeBackup(DeviceId deviceId, long term, long sequence, NodeId nodeId) {
+        FlowBackupMessage purge = new FlowBackupMessage(deviceId, term, sequence, true, ImmutableMap.of());
+        ClusterMessage message = new ClusterMessage(local, PURGE_FLOW_BACKUP, SERIALIZER.encode(purge));
+        boolean sent = nodeId == null
+                ? clusterCommunicator.broadcast(message)
+                : clusterCommunicator.unicast(message, nodeId);
+        if (!sent) {
+            log.debug("Failed to purge flow backup of {} up to {}", deviceId, purge);
+        }
+    }
+
+    private long termFor(DeviceId deviceId) {
+        MastershipTerm term = termService.getMastershipTerm(deviceId);
+        return term == null ? 0 : term.termNumber();
+    }
+
+    // Drops the replication state of a device that is no longer mastered here.
+    private void dropBackupState(DeviceId deviceId) {
+        pendingBackups.remove(deviceId);
+        backupExecutor.execute(() -> backupStates.remove(deviceId));
+    }
+
+    // Picks the backup node for a device mastered by this node, spreading
+    // the devices across all other active nodes.
+    private NodeId backupNodeFor(DeviceId deviceId) {
+        List<NodeId> peers = clusterService.getNodes().stream()
+                .map(ControllerNode::id)
+                .filter(id -> !id.equals(local))
+                .filter(id -> clusterService.getState(id) == ControllerNode.State.ACTIVE)
+                .sorted(Comparator.comparing(NodeId::toString))
+                .collect(Collectors.toList());
+        if (peers.isEmpty()) {
+            return null;
+        }
+        return peers.get(Math.floorMod(deviceId.hashCode(), peers.size()));
     }
 
     @Override
@@ -659,28 +874,100 @@ public class DistributedFlowRuleStore
         }
     }
 
+    // Fetches the device flow table backup from the peers without blocking
+    // the caller, and promotes it once the responses are in.
     private void loadFromBackup(final DeviceId did) {
         if (!backupEnabled) {
             return;
         }
         log.info("We are now the master for {}. Will load flow rules from backup", did);
-        try {
-            log.debug("Loading FlowRules for {} from backups", did);
-            SMap<FlowId, ImmutableList<StoredFlowEntry>> backupFlowTable = smaps.get(did);
-            for (Entry<FlowId, ImmutableList<StoredFlowEntry>> e
-                    : backupFlowTable.entrySet()) {
 
-                log.trace("loading {}", e.getValue());
-                for (StoredFlowEntry entry : e.getValue()) {
-                    flowTable.getFlowEntriesById(entry).remove(entry);
-                    flowTable.getFlowEntriesById(entry).add(entry);
+        Map<NodeId, ListenableFuture<byte[]>> responses = fetchBackup(did);
+        SettableFuture<Void> done = SettableFuture.create();
+        TimerTask timeout = new TimerTask() {
+            @Override
+            public void run() {
+                done.set(null);
+            }
+        };
+        Futures.successfulAsList(responses.values())
+                .addListener(() -> done.set(null), MoreExecutors.directExecutor());
+        BACKUP_TIMER.schedule(timeout, FLOW_RULE_STORE_TIMEOUT_MILLIS);
+        done.addListener(() -> {
+            timeout.cancel();
+            promoteBackup(did, responses);
+        }, backupLoadExecutor);
+    }
 
+    private void promoteBackup(DeviceId did, Map<NodeId, ListenableFuture<byte[]>> responses) {
+        if (!local.equals(replicaInfoManager.getReplicaInfoFor(did).master().orNull())) {
+            log.debug("No longer the master for {}; not loading flow rules from backup", did);
+            return;
+        }
 
+        // Promote the most recent copy, whether held here or by a peer; a local
+        // copy may be stale if this node stopped being the backup meanwhile.
+        FlowBackupTable localBackup = backups.remove(did);
+        FlowBackupMessage backup = bestBackup(did, responses);
+        if (localBackup != null) {
+            FlowBackupMessage localCopy = localBackup.snapshot();
+            if (backup == null || localCopy.isNewerThan(backup.term(), backup.sequence())) {
+                backup = localCopy;
+            }
+        }
+        if (backup != null) {
+            log.debug("Loading {} FlowRules for {} from backups", backup.flows().size(), did);
+            for (List<StoredFlowEntry> entries : backup.flows().values()) {
+                log.trace("loading {}", entries);
+                for (StoredFlowEntry entry : entries) {
+                    flowTable.remove(did, entry);
+                    flowTable.add(entry);
+                }
+            }
+        }
+
+        // Copies made under former masters are obsolete from now on; the
+        // backup node of the new master is seeded with the entire table
+        purgeBackup(did, termFor(did), 0, null);
+        fullBackup(did);
+    }
+
+    // Requests bulk transfer of the device flow table backup from the peers.
+    private Map<NodeId, ListenableFuture<byte[]>> fetchBackup(DeviceId did) {
+        ClusterMessage message = new ClusterMessage(local, GET_FLOW_BACKUP, SERIALIZER.encode(did));
+        Map<NodeId, ListenableFuture<byte[]>> responses = new HashMap<>();
+        for (ControllerNode node : clusterService.getNodes()) {
+            if (!node.id().equals(local)
+                    && clusterService.getState(node.id()) == ControllerNode.State.ACTIVE) {
+                try {
+                    responses.put(node.id(), clusterCommunicator.sendAndReceive(message, node.id()));
+                } catch (IOException e) {
+                    log.warn("Unable to request flow backup of {} from {}", did, node.id());
                 }
             }
-        } catch (ExecutionException e) {
-            log.error("Failed to load backup flowtable for {}", did, e);
         }
+        return responses;
+    }
+
+    // Picks the copy of the latest mastership term and sequence among the
+    // responses received so far.
+    private FlowBackupMessage bestBackup(DeviceId did, Map<NodeId, ListenableFuture<byte[]>> responses) {
+        FlowBackupMessage best = null;
+        for (Map.Entry<NodeId, ListenableFuture<byte[]>> response : responses.entrySet()) {
+            if (!response.getValue().isDone()) {
+                log.warn("Timed out fetching flow backup of {} from {}", did, response.getKey());
+                continue;
+            }
+            try {
+                FlowBackupMessage backup = SERIALIZER.decode(Futures.getUnchecked(response.getValue()));
+                if (backup != null && (best == null || backup.isNewerThan(best.term(), best.sequence()))) {
+                    best = backup;
+                }
+            } catch (UncheckedExecutionException | CancellationException e) {
+                log.warn("Unable to fetch flow backup of {} from {}", did, response.getKey());
+            }
+        }
+        return best;
     }
 
     private void removeFromPrimary(final DeviceId did) {
@@ -728,14 +1015,104 @@ public class DistributedFlowRuleStore
         }
     }
 
-    private final class SMapLoader
-            extends CacheLoader<DeviceId, SMap<FlowId, ImmutableList<StoredFlowEntry>>> {
+    private final class OnBackupFlows implements ClusterMessageHandler {
+
+        @Override
+        public void handle(ClusterMessage message) {
+            FlowBackupMessage backup = SERIALIZER.decode(message.payload());
+            log.trace("Received {} from {}", backup, message.sender());
+            long[] applied = new long[1];
+            // Applied atomically with respect to purges of the same copy
+            backups.compute(backup.deviceId(), (did, table) -> {
+                FlowBackupTable copy = table == null ? new FlowBackupTable(did) : table;
+                applied[0] = copy.apply(backup);
+                // do not keep a fresh copy that rejected the message
+                return copy.isNewerThan(0, 0) ? copy : null;
+            });
+            try {
+                message.respond(SERIALIZER.encode(applied[0]));
+            } catch (IOException e) {
+                log.error("Failed to acknowledge flow backup", e);
+            }
+        }
+    }
+
+    // Flow IDs of a device changed since its last backup message
+    private static final class PendingBackup {
+        private final Set<FlowId> flowIds = new HashSet<>();
+        private final long since = System.currentTimeMillis();
+    }
+
+    // Replication state of a device mastered by this node
+    private static final class BackupState {
+        private final long term;
+        private NodeId target;
+        private long sequence;
+        private boolean synced;
+        private boolean inFlight;
+
+        private BackupState(long term) {
+            this.term = term;
+        }
+    }
+
+    // Coalesces devices with pending flow changes into periodic backup rounds
+    private final class BackupAccumulator extends AbstractAccumulator<DeviceId> {
+
+        private BackupAccumulator() {
+            super(BACKUP_TIMER, DEFAULT_MAX_BACKUP_DEVICES,
+                  DEFAULT_MAX_BACKUP_MS, DEFAULT_MAX_BACKUP_IDLE_MS);
+        }
+
+        @Override
+        public void processItems(List<DeviceId> deviceIds) {
+            ImmutableSet.copyOf(deviceIds).forEach(
+                    did -> backupExecutor.execute(() -> sendBackup(did)));
+        }
+    }
+
+    // Handles the acknowledgement of a backup message
+    private final class BackupCallback implements FutureCallback<byte[]> {
+
+        private final FlowBackupMessage backup;
+        private final BackupState state;
+        private final long since;
+
+        private BackupCallback(FlowBackupMessage backup, BackupState state, long since) {
+            this.backup = backup;
+            this.state = state;
+            this.since = since;
+        }
 
         @Override
-        public SMap<FlowId, ImmutableList<StoredFlowEntry>> load(DeviceId id)
-                throws Exception {
-            IMap<byte[], byte[]> map = theInstance.getMap("flowtable_" + id.toString());
-            return new SMap<FlowId, ImmutableList<StoredFlowEntry>>(map, SERIALIZER);
+        public void onSuccess(byte[] result) {
+            long applied = SERIALIZER.decode(result);
+            state.inFlight = false;
+            if (applied == backup.sequence()) {
+                replicationLag.update(System.currentTimeMillis() - since);
+            } else {
+                // Backup missed an update; start over with the entire table
+                log.debug("Backup of {} is at {} instead of {}; resending all",
+                          backup.deviceId(), applied, backup.sequence());
+                resync();
+            }
+            if (pendingBackups.containsKey(backup.deviceId())) {
+                sendBackup(backup.deviceId());
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            log.debug("Failed to back up flows of {} to {}", backup.deviceId(), state.target, t);
+            state.inFlight = false;
+            resync();
+        }
+
+        private void resync() {
+            backupResyncs.inc();
+            state.synced = false;
+            pendingBackups.putIfAbsent(backup.deviceId(), new PendingBackup());
+            backupAccumulator.add(backup.deviceId());
         }
     }
 
@@ -754,14 +1131,12 @@ public class DistributedFlowRuleStore
                         // This node is the new master, populate local structure
                         // from backup
                         loadFromBackup(did);
-                    }
-                    //else {
+                    } else {
                         // This node is no longer the master holder,
                         // clean local structure
                         //removeFromPrimary(did);
-                        // TODO: probably should stop pending backup activities in
-                        // executors to avoid overwriting with old value
-                    //}
+                        dropBackupState(did);
+                    }
                     break;
                 default:
                     break;
@@ -770,59 +1145,15 @@ public class DistributedFlowRuleStore
         }
     }
 
-    // Task to update FlowEntries in backup HZ store
-    private final class UpdateBackup implements Runnable {
-
-        private final DeviceId deviceId;
-        private final Set<FlowRuleBatchEntry> ops;
-
-
-        public UpdateBackup(DeviceId deviceId,
-                            Set<FlowRuleBatchEntry> ops) {
-            this.deviceId = checkNotNull(deviceId);
-            this.ops = checkNotNull(ops);
-
-        }
+    private final class InternalDeviceListener implements DeviceListener {
 
         @Override
-        public void run() {
-            try {
-                log.trace("update backup {} {}", deviceId, ops
-                );
-                final SMap<FlowId, ImmutableList<StoredFlowEntry>> backupFlowTable = smaps.get(deviceId);
-
-
-                ops.stream().forEach(
-                        op -> {
-                            final FlowRule entry = op.target();
-                            final FlowId id = entry.id();
-                            ImmutableList<StoredFlowEntry> original = backupFlowTable.get(id);
-                            List<StoredFlowEntry> list = new ArrayList<>();
-                            if (original != null) {
-                                list.addAll(original);
-                            }
-                            list.remove(op.target());
-                            if (op.operator() == FlowRuleOperation.ADD) {
-                                list.add((StoredFlowEntry) entry);
-                            }
-
-                            ImmutableList<StoredFlowEntry> newValue = ImmutableList.copyOf(list);
-                            boolean success;
-                            if (original == null) {
-                                success = (backupFlowTable.putIfAbsent(id, newValue) == null);
-                            } else {
-                                success = backupFlowTable.replace(id, original, newValue);
-                            }
-                            if (!success) {
-                                log.error("Updating backup failed.");
-                            }
-
-                        }
-                );
-            } catch (ExecutionException e) {
-                log.error("Failed to write to backups", e);
+        public void event(DeviceEvent event) {
+            if (event.type() == DeviceEvent.Type.DEVICE_REMOVED) {
+                DeviceId did = event.subject().id();
+                backups.remove(did);
+                dropBackupState(did);
             }
-
         }
     }
 
@@ -834,81 +1165,79 @@ public class DistributedFlowRuleStore
          */
 
 
-        private final ConcurrentMap<DeviceId, ConcurrentMap<FlowId, Set<StoredFlowEntry>>>
+        private final ConcurrentMap<DeviceId, FlowEntryTable>
                 flowEntries = new ConcurrentHashMap<>();
 
-
-        private NewConcurrentHashMap<FlowId, Set<StoredFlowEntry>> lazyEmptyFlowTable() {
-            return NewConcurrentHashMap.<FlowId, Set<StoredFlowEntry>>ifNeeded();
-        }
-
         /**
-         * Returns the flow table for specified device.
+         * Returns the flow table for specified device, creating it if needed.
          *
          * @param deviceId identifier of the device
-         * @return Map representing Flow Table of given device.
+         * @return Flow Table of given device.
          */
-        private ConcurrentMap<FlowId, Set<StoredFlowEntry>> getFlowTable(DeviceId deviceId) {
-            return createIfAbsentUnchecked(flowEntries,
-                                           deviceId, lazyEmptyFlowTable());
-        }
-
-        private Set<StoredFlowEntry> getFlowEntriesInternal(DeviceId deviceId, FlowId flowId) {
-            final ConcurrentMap<FlowId, Set<StoredFlowEntry>> flowTable = getFlowTable(deviceId);
-            Set<StoredFlowEntry> r = flowTable.get(flowId);
-            if (r == null) {
-                final Set<StoredFlowEntry> concurrentlyAdded;
-                r = new CopyOnWriteArraySet<>();
-                concurrentlyAdded = flowTable.putIfAbsent(flowId, r);
-                if (concurrentlyAdded != null) {
-                    return concurrentlyAdded;
-                }
-            }
-            return r;
-        }
-
-        private StoredFlowEntry getFlowEntryInternal(FlowRule rule) {
-            for (StoredFlowEntry f : getFlowEntriesInternal(rule.deviceId(), rule.id())) {
-                if (f.equals(rule)) {
-                    return f;
-                }
-            }
-            return null;
-        }
-
-        private Set<FlowEntry> getFlowEntriesInternal(DeviceId deviceId) {
-            return getFlowTable(deviceId).values().stream()
-                    .flatMap((list -> list.stream())).collect(Collectors.toSet());
-
+        private FlowEntryTable getFlowTable(DeviceId deviceId) {
+            return flowEntries.computeIfAbsent(deviceId, did -> new FlowEntryTable());
         }
 
-
         public StoredFlowEntry getFlowEntry(FlowRule rule) {
-            return getFlowEntryInternal(rule);
-        }
-
-        public Set<FlowEntry> getFlowEntries(DeviceId deviceId) {
-            return getFlowEntriesInternal(deviceId);
+            FlowEntryTable table = flowEntries.get(rule.deviceId());
+            return table == null ? null : table.get(rule);
         }
 
-        public Set<StoredFlowEntry> getFlowEntriesById(FlowEntry entry) {
-            return getFlowEntriesInternal(entry.deviceId(), entry.id());
+        /**
+         * Returns a live, read-only view of the flow entries of the device.
+         *
+         * @param deviceId identifier of the device
+         * @return flow entries of given device
+         */
+        public Collection<FlowEntry> getFlowEntries(DeviceId deviceId) {
+            FlowEntryTable table = flowEntries.get(deviceId);
+            return table == null ? Collections.emptySet() : table.view();
         }
 
         public void add(FlowEntry rule) {
-            ((CopyOnWriteArraySet)
-                    getFlowEntriesInternal(rule.deviceId(), rule.id())).add(rule);
+            StoredFlowEntry entry = rule instanceof StoredFlowEntry
+                    ? (StoredFlowEntry) rule
+                    : new DefaultFlowEntry(rule, rule.state(), rule.life(),
+                                           rule.packets(), rule.bytes());
+            getFlowTable(rule.deviceId()).add(entry);
         }
 
         public boolean remove(DeviceId deviceId, FlowEntry rule) {
-            return ((CopyOnWriteArraySet)
-                    getFlowEntriesInternal(deviceId, rule.id())).remove(rule);
-            //return flowEntries.remove(deviceId, rule);
+            FlowEntryTable table = flowEntries.get(deviceId);
+            return table != null && table.remove(rule);
         }
 
         public void clearDevice(DeviceId did) {
             flowEntries.remove(did);
         }
+
+        /**
+         * Returns a copy of the entire flow table of the specified device.
+         *
+         * @param deviceId identifier of the device
+         * @return flow entries keyed by flow ID
+         */
+        public Map<FlowId, List<StoredFlowEntry>> snapshot(DeviceId deviceId) {
+            FlowEntryTable table = flowEntries.get(deviceId);
+            return table == null ? new HashMap<>() : table.snapshot();
+        }
+
+        /**
+         * Returns a copy of the current entries of the specified flows;
+         * flows without entries are mapped to an empty list.
+         *
+         * @param deviceId identifier of the device
+         * @param flowIds  flow identifiers
+         * @return flow entries keyed by flow ID
+         */
+        public Map<FlowId, List<StoredFlowEntry>> snapshot(DeviceId deviceId, Set<FlowId> flowIds) {
+            FlowEntryTable table = flowEntries.get(deviceId);
+            Map<FlowId, List<StoredFlowEntry>> snapshot = new HashMap<>();
+            for (FlowId id : flowIds) {
+                snapshot.put(id, table == null ? ImmutableList.of() : table.get(id));
+            }
+            return snapshot;
+        }
     }
 
 
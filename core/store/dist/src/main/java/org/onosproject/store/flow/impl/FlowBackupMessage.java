@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.base.MoreObjects;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Flow table replication message exchanged between the master of a device
+ * and its backup node.
+ * <p>
+ * A message either carries the full flow table of the device, or a delta
+ * holding the current entries of each flow ID that changed since the
+ * previous message; an empty list of entries denotes a removed flow ID.
+ * Deltas are numbered by a per-device sequence number so that the backup
+ * node can detect gaps and request a full transfer instead.
+ * </p>
+ * <p>
+ * Sequence numbers restart with every new master, hence copies are versioned
+ * by the mastership term of the sending master first and by the sequence
+ * number within that term second.
+ * </p>
+ */
+public class FlowBackupMessage {
+
+    private final DeviceId deviceId;
+    private final long term;
+    private final long sequence;
+    private final boolean full;
+    private final Map<FlowId, List<StoredFlowEntry>> flows;
+
+    /**
+     * Creates a new flow backup message.
+     *
+     * @param deviceId device identifier
+     * @param term     mastership term of the sending master
+     * @param sequence sequence number of the message within the term
+     * @param full     true if the message carries the full flow table
+     * @param flows    flow entries keyed by flow ID
+     */
+    public FlowBackupMessage(DeviceId deviceId, long term, long sequence, boolean full,
+                             Map<FlowId, List<StoredFlowEntry>> flows) {
+        this.deviceId = checkNotNull(deviceId);
+        this.term = term;
+        this.sequence = sequence;
+        this.full = full;
+        this.flows = checkNotNull(flows);
+    }
+
+    /**
+     * Returns the device whose flow table is replicated.
+     *
+     * @return device identifier
+     */
+    public DeviceId deviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Returns the mastership term of the master that sent the message.
+     *
+     * @return mastership term number
+     */
+    public long term() {
+        return term;
+    }
+
+    /**
+     * Returns the sequence number of the message within its term.
+     *
+     * @return sequence number
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Indicates whether this message reflects a later version of the flow
+     * table than the given term and sequence number.
+     *
+     * @param term     mastership term number
+     * @param sequence sequence number within the term
+     * @return true if this message is more recent
+     */
+    public boolean isNewerThan(long term, long sequence) {
+        return this.term > term || (this.term == term && this.sequence > sequence);
+    }
+
+    /**
+     * Indicates whether the message carries the full flow table.
+     *
+     * @return true for full flow table, false for a delta
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * Returns the carried flow entries keyed by flow ID.
+     *
+     * @return flow entries
+     */
+    public Map<FlowId, List<StoredFlowEntry>> flows() {
+        return flows;
+    }
+
+    // For serializer
+    @SuppressWarnings("unused")
+    private FlowBackupMessage() {
+        this.deviceId = null;
+        this.term = 0;
+        this.sequence = 0;
+        this.full = false;
+        this.flows = null;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("deviceId", deviceId)
+                .add("term", term)
+                .add("sequence", sequence)
+                .add("full", full)
+                .add("flows", flows.size())
+                .toString();
+    }
+}
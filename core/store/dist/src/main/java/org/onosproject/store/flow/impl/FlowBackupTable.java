@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Backup copy of the flow table of a single device, kept by the backup node
+ * and fed by the replication messages of the device master.
+ */
+final class FlowBackupTable {
+
+    private final DeviceId deviceId;
+    private final Map<FlowId, List<StoredFlowEntry>> flows = new HashMap<>();
+    private long term;
+    private long sequence;
+    private int size;
+
+    /**
+     * Creates an empty backup table for the specified device.
+     *
+     * @param deviceId device identifier
+     */
+    FlowBackupTable(DeviceId deviceId) {
+        this.deviceId = checkNotNull(deviceId);
+    }
+
+    /**
+     * Applies the given replication message to the table. Messages from an
+     * earlier mastership term, deltas from a later term and deltas that do
+     * not immediately follow the last applied message are ignored.
+     *
+     * @param message replication message
+     * @return sequence number of the last applied message, which matches
+     * the sequence number of the given message if it was applied
+     */
+    synchronized long apply(FlowBackupMessage message) {
+        if (message.term() < term
+                || (message.term() > term && !message.isFull())) {
+            return sequence;
+        }
+        if (message.isFull()) {
+            flows.clear();
+            size = 0;
+        } else if (message.sequence() != sequence + 1) {
+            return sequence;
+        }
+
+        message.flows().forEach((id, entries) -> {
+            List<StoredFlowEntry> previous = entries.isEmpty()
+                    ? flows.remove(id) : flows.put(id, entries);
+            size += entries.size() - (previous == null ? 0 : previous.size());
+        });
+        term = message.term();
+        sequence = message.sequence();
+        return sequence;
+    }
+
+    /**
+     * Indicates whether the table holds a later version of the flow table
+     * than the given term and sequence number.
+     *
+     * @param term     mastership term number
+     * @param sequence sequence number within the term
+     * @return true if the table is more recent
+     */
+    synchronized boolean isNewerThan(long term, long sequence) {
+        return this.term > term || (this.term == term && this.sequence > sequence);
+    }
+
+    /**
+     * Returns a full replication message holding the contents of the table.
+     *
+     * @return full flow table message
+     */
+    synchronized FlowBackupMessage snapshot() {
+        return new FlowBackupMessage(deviceId, term, sequence, true, ImmutableMap.copyOf(flows));
+    }
+
+    /**
+     * Returns the number of flow entries in the table.
+     *
+     * @return number of flow entries
+     */
+    synchronized int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact flow table of a single device, keyed by the primitive value of
+ * the flow ID.
+ * <p>
+ * Entries are held directly in a single open-addressing array with linear
+ * probing, rather than in a map of per-flow-ID sets; the rare flow IDs with
+ * more than one entry hold a small array of them instead. The key of a slot
+ * is derived from the entry it holds, so no separate key array is needed.
+ * </p>
+ * <p>
+ * Updates are serialized, while lookups and iteration proceed without
+ * locking; removed slots are marked rather than cleared so that concurrent
+ * probes are never cut short, and the array is only ever rebuilt into a new
+ * one. Iteration is weakly consistent, in the same sense as that of the
+ * concurrent collections.
+ * </p>
+ */
+final class FlowEntryTable {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final Object REMOVED = new Object();
+
+    private volatile AtomicReferenceArray<Object> slots =
+            new AtomicReferenceArray<>(MIN_CAPACITY);
+    private volatile int size;
+    private int occupied;
+
+    private final Collection<FlowEntry> view = new View();
+
+    /**
+     * Returns the number of entries in the table.
+     *
+     * @return number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the stored entry equal to the given flow rule.
+     *
+     * @param rule flow rule
+     * @return stored entry; null if none
+     */
+    StoredFlowEntry get(FlowRule rule) {
+        Object value = find(slots, rule.id().value());
+        if (value instanceof StoredFlowEntry) {
+            return value.equals(rule) ? (StoredFlowEntry) value : null;
+        }
+        if (value != null) {
+            for (StoredFlowEntry entry : (StoredFlowEntry[]) value) {
+                if (entry.equals(rule)) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all entries with the given flow ID.
+     *
+     * @param flowId flow ID
+     * @return list of entries; empty if none
+     */
+    List<StoredFlowEntry> get(FlowId flowId) {
+        return entries(find(slots, flowId.value()));
+    }
+
+    /**
+     * Adds the given entry, unless an equal one is already present.
+     *
+     * @param entry flow entry
+     * @return true if the entry was added
+     */
+    synchronized boolean add(StoredFlowEntry entry) {
+        long id = entry.id().value();
+        AtomicReferenceArray<Object> table = slots;
+        int mask = table.length() - 1;
+        int free = -1;
+        int i = hash(id) & mask;
+        for (;; i = (i + 1) & mask) {
+            Object value = table.get(i);
+            if (value == null) {
+                break;
+            }
+            if (value == REMOVED) {
+                free = free < 0 ? i : free;
+            } else if (id(value) == id) {
+                StoredFlowEntry[] entries = array(value);
+                for (StoredFlowEntry e : entries) {
+                    if (e.equals(entry)) {
+                        return false;
+                    }
+                }
+                StoredFlowEntry[] grown = Arrays.copyOf(entries, entries.length + 1);
+                grown[entries.length] = entry;
+                table.set(i, grown);
+                size++;
+                return true;
+            }
+        }
+
+        // Reuse the first removed slot along the way, if any
+        if (free >= 0) {
+            table.set(free, entry);
+        } else {
+            table.set(i, entry);
+            occupied++;
+        }
+        size++;
+        if (occupied * 4 >= table.length() * 3) {
+            rebuild();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the entry equal to the given flow entry.
+     *
+     * @param entry flow entry
+     * @return true if an entry was removed
+     */
+    synchronized boolean remove(FlowEntry entry) {
+        long id = entry.id().value();
+        AtomicReferenceArray<Object> table = slots;
+        int mask = table.length() - 1;
+        for (int i = hash(id) & mask;; i = (i + 1) & mask) {
+            Object value = table.get(i);
+            if (value == null) {
+                return false;
+            }
+            if (value != REMOVED && id(value) == id) {
+                StoredFlowEntry[] entries = array(value);
+                for (int j = 0; j < entries.length; j++) {
+                    if (entries[j].equals(entry)) {
+                        table.set(i, without(entries, j));
+                        size--;
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns an unmodifiable, weakly consistent view of all entries.
+     *
+     * @return collection view of the entries
+     */
+    Collection<FlowEntry> view() {
+        return view;
+    }
+
+    /**
+     * Returns a copy of all entries, grouped by flow ID.
+     *
+     * @return entries keyed by flow ID
+     */
+    Map<FlowId, List<StoredFlowEntry>> snapshot() {
+        AtomicReferenceArray<Object> table = slots;
+        Map<FlowId, List<StoredFlowEntry>> snapshot = new HashMap<>();
+        for (int i = 0; i < table.length(); i++) {
+            Object value = table.get(i);
+            if (value != null && value != REMOVED) {
+                snapshot.put(FlowId.valueOf(id(value)), entries(value));
+            }
+        }
+        return snapshot;
+    }
+
+    // Finds the value held for the given flow ID in the specified table.
+    private static Object find(AtomicReferenceArray<Object> table, long id) {
+        int mask = table.length() - 1;
+        for (int i = hash(id) & mask;; i = (i + 1) & mask) {
+            Object value = table.get(i);
+            if (value == null) {
+                return null;
+            }
+            if (value != REMOVED && id(value) == id) {
+                return value;
+            }
+        }
+    }
+
+    // Returns the first empty slot along the probe sequence of the flow ID.
+    private static int probe(AtomicReferenceArray<Object> table, long id) {
+        int mask = table.length() - 1;
+        int i = hash(id) & mask;
+        while (table.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // Replaces the slots with a new array sized for the current entries,
+    // dropping all removal marks along the way.
+    private void rebuild() {
+        AtomicReferenceArray<Object> table = slots;
+        int live = 0;
+        for (int i = 0; i < table.length(); i++) {
+            Object value = table.get(i);
+            if (value != null && value != REMOVED) {
+                live++;
+            }
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < live * 2) {
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<Object> rebuilt = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < table.length(); i++) {
+            Object value = table.get(i);
+            if (value != null && value != REMOVED) {
+                rebuilt.set(probe(rebuilt, id(value)), value);
+            }
+        }
+        occupied = live;
+        slots = rebuilt;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long id(Object value) {
+        return value instanceof StoredFlowEntry
+                ? ((StoredFlowEntry) value).id().value()
+                : ((StoredFlowEntry[]) value)[0].id().value();
+    }
+
+    private static StoredFlowEntry[] array(Object value) {
+        return value instanceof StoredFlowEntry
+                ? new StoredFlowEntry[]{(StoredFlowEntry) value}
+                : (StoredFlowEntry[]) value;
+    }
+
+    private static List<StoredFlowEntry> entries(Object value) {
+        if (value == null) {
+            return ImmutableList.of();
+        }
+        return value instanceof StoredFlowEntry
+                ? ImmutableList.of((StoredFlowEntry) value)
+                : ImmutableList.copyOf((StoredFlowEntry[]) value);
+    }
+
+    // Returns the slot value left after removing the j-th of the entries.
+    private static Object without(StoredFlowEntry[] entries, int j) {
+        if (entries.length == 1) {
+            return REMOVED;
+        }
+        if (entries.length == 2) {
+            return entries[1 - j];
+        }
+        StoredFlowEntry[] shrunk = new StoredFlowEntry[entries.length - 1];
+        System.arraycopy(entries, 0, shrunk, 0, j);
+        System.arraycopy(entries, j + 1, shrunk, j, shrunk.length - j);
+        return shrunk;
+    }
+
+    // Read-only view iterating directly over the slots
+    private final class View extends AbstractCollection<FlowEntry> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<FlowEntry> iterator() {
+            return new SlotIterator(slots);
+        }
+    }
+
+    private static final class SlotIterator implements Iterator<FlowEntry> {
+
+        private final AtomicReferenceArray<Object> table;
+        private int slot;
+        private StoredFlowEntry[] entries;
+        private int index;
+        private FlowEntry next;
+
+        private SlotIterator(AtomicReferenceArray<Object> table) {
+            this.table = table;
+            advance();
+        }
+
+        private void advance() {
+            if (entries != null && index < entries.length) {
+                next = entries[index++];
+                return;
+            }
+            entries = null;
+            while (slot < table.length()) {
+                Object value = table.get(slot++);
+                if (value instanceof StoredFlowEntry) {
+                    next = (StoredFlowEntry) value;
+                    return;
+                } else if (value != null && value != REMOVED) {
+                    entries = (StoredFlowEntry[]) value;
+                    index = 1;
+                    next = entries[0];
+                    return;
+                }
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public FlowEntry next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            FlowEntry current = next;
+            advance();
+            return current;
+        }
+    }
+
+}
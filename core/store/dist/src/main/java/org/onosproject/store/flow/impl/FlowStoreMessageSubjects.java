@@ -37,4 +37,13 @@ public final class FlowStoreMessageSubjects {
 
     public static final MessageSubject REMOTE_APPLY_COMPLETED
             = new MessageSubject("peer-apply-completed");
+
+    public static final MessageSubject BACKUP_FLOWS
+            = new MessageSubject("peer-backup-flows");
+
+    public static final MessageSubject GET_FLOW_BACKUP
+            = new MessageSubject("peer-get-flow-backup");
+
+    public static final MessageSubject PURGE_FLOW_BACKUP
+            = new MessageSubject("peer-purge-flow-backup");
 }
@@ -36,6 +36,7 @@ import org.onlab.util.KryoNamespace;
 import org.onosproject.cluster.ClusterService;
 import org.onosproject.cluster.ControllerNode;
 import org.onosproject.cluster.NodeId;
+import org.onosproject.common.host.HostIndex;
 import org.onosproject.net.Annotations;
 import org.onosproject.net.AnnotationsUtil;
 import org.onosproject.net.ConnectPoint;
@@ -117,6 +118,9 @@ public class GossipHostStore
         = synchronizedSetMultimap(newSetMultimap(new ConcurrentHashMap<>(),
                                                  () -> newConcurrentHashSet()));
 
+    // Secondary indexes of hosts by their attributes
+    private final HostIndex index = new HostIndex(hosts::get);
+
     private final SetMultimap<ConnectPoint, PortAddresses> portAddresses =
             Multimaps.synchronizedSetMultimap(
                     HashMultimap.<ConnectPoint, PortAddresses>create());
@@ -192,6 +196,7 @@ public class GossipHostStore
         hosts.clear();
         removedHosts.clear();
         locations.clear();
+        index.clear();
         portAddresses.clear();
 
         log.info("Stopped");
@@ -258,6 +263,7 @@ public class GossipHostStore
                 return updateHost(providerId, hostId, concAdd, descr, timestamp);
             }
             locations.put(descr.location(), newhost);
+            index.index(newhost);
             return new HostEvent(HOST_ADDED, newhost);
         }
     }
@@ -307,6 +313,8 @@ public class GossipHostStore
                 }
                 locations.remove(oldHost.location(), oldHost);
                 locations.put(updated.location(), updated);
+                index.unindex(oldHost);
+                index.index(updated);
 
                 HostEvent.Type eventType;
                 if (hostMoved) {
@@ -336,6 +344,7 @@ public class GossipHostStore
             Host host = hosts.remove(hostId);
             if (host != null) {
                 locations.remove((host.location()), host);
+                index.unindex(host);
                 removedHosts.put(hostId, new Timestamped<>(host, timestamp));
                 return new HostEvent(HOST_REMOVED, host);
             }
@@ -360,35 +369,17 @@ public class GossipHostStore
 
     @Override
     public Set<Host> getHosts(VlanId vlanId) {
-        Set<Host> vlanset = new HashSet<>();
-        for (Host h : hosts.values()) {
-            if (h.vlan().equals(vlanId)) {
-                vlanset.add(h);
-            }
-        }
-        return vlanset;
+        return index.getHosts(vlanId);
     }
 
     @Override
     public Set<Host> getHosts(MacAddress mac) {
-        Set<Host> macset = new HashSet<>();
-        for (Host h : hosts.values()) {
-            if (h.mac().equals(mac)) {
-                macset.add(h);
-            }
-        }
-        return macset;
+        return index.getHosts(mac);
     }
 
     @Override
     public Set<Host> getHosts(IpAddress ip) {
-        Set<Host> ipset = new HashSet<>();
-        for (Host h : hosts.values()) {
-            if (h.ipAddresses().contains(ip)) {
-                ipset.add(h);
-            }
-        }
-        return ipset;
+        return index.getHosts(ip);
     }
 
     @Override
@@ -398,13 +389,7 @@ public class GossipHostStore
 
     @Override
     public Set<Host> getConnectedHosts(DeviceId deviceId) {
-        Set<Host> hostset = new HashSet<>();
-        for (ConnectPoint p : locations.keySet()) {
-            if (p.deviceId().equals(deviceId)) {
-                hostset.addAll(locations.get(p));
-            }
-        }
-        return hostset;
+        return index.getConnectedHosts(deviceId);
     }
 
     @Override
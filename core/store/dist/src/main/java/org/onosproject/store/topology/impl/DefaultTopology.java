@@ -23,13 +23,19 @@ import static org.onosproject.net.Link.State.INACTIVE;
 import static org.onosproject.net.Link.Type.INDIRECT;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
-import org.onlab.graph.DijkstraGraphSearch;
 import org.onlab.graph.GraphPathSearch;
 import org.onlab.graph.GraphPathSearch.Result;
+import org.onlab.graph.IndexedDijkstraGraphSearch;
 import org.onlab.graph.TarjanGraphSearch;
 import org.onlab.graph.TarjanGraphSearch.SCCResult;
 import org.onosproject.net.AbstractModel;
@@ -52,10 +58,13 @@ import org.onosproject.net.topology.TopologyVertex;
 
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSetMultimap;
-import com.google.common.collect.ImmutableSetMultimap.Builder;
 
 // FIXME: Move to onos-core-common when ready
 /**
@@ -64,21 +73,28 @@ import com.google.common.collect.ImmutableSetMultimap.Builder;
  */
 public class DefaultTopology extends AbstractModel implements Topology {
 
-    private static final DijkstraGraphSearch<TopologyVertex, TopologyEdge> DIJKSTRA = new DijkstraGraphSearch<>();
+    private static final IndexedDijkstraGraphSearch<TopologyVertex, TopologyEdge> DIJKSTRA =
+            new IndexedDijkstraGraphSearch<>();
     private static final TarjanGraphSearch<TopologyVertex, TopologyEdge> TARJAN = new TarjanGraphSearch<>();
 
+    static final int DEFAULT_MAX_CACHED_PATHS = 10000;
+
     private final long time;
     private final long creationTime;
     private final long computeCost;
-    private final TopologyGraph graph;
+    private final DefaultTopologyGraph graph;
 
-    private final LinkWeight weight;
     private final Supplier<SCCResult<TopologyVertex, TopologyEdge>> clusterResults;
+    private final Supplier<ImmutableList<ClusterData>> clusterData;
     private final Supplier<ImmutableMap<ClusterId, TopologyCluster>> clusters;
+    private final Supplier<ImmutableMap<DeviceId, TopologyCluster>> clustersByDevice;
     private final Supplier<ImmutableSet<ConnectPoint>> infrastructurePoints;
-    private final Supplier<ImmutableSetMultimap<ClusterId, ConnectPoint>> broadcastSets;
 
-    private final Supplier<ClusterIndexes> clusterIndexes;
+    // Paths computed so far; keyed by src, dst and link weight identity.
+    private final Cache<PathKey, Set<Path>> pathCache;
+
+    // Eager path computations; cancelled once this topology is superseded.
+    private final List<ForkJoinTask<?>> precomputeTasks;
 
     /**
      * Creates a topology descriptor attributed to the specified provider.
@@ -89,24 +105,141 @@ public class DefaultTopology extends AbstractModel implements Topology {
      *            data describing the new topology
      */
     DefaultTopology(ProviderId providerId, GraphDescription description) {
+        this(providerId, description, DEFAULT_MAX_CACHED_PATHS, null);
+    }
+
+    /**
+     * Creates a topology descriptor attributed to the specified provider,
+     * which caches up to the given number of computed path sets.
+     *
+     * @param providerId
+     *            identity of the provider
+     * @param description
+     *            data describing the new topology
+     * @param maxCachedPaths
+     *            maximum number of source/destination path sets to cache
+     * @param precomputePool
+     *            optional pool on which to eagerly compute shortest paths
+     *            between all devices using the default link weight, up to
+     *            the capacity of the cache; null to compute paths on demand
+     *            only
+     */
+    DefaultTopology(ProviderId providerId, GraphDescription description,
+                    int maxCachedPaths, ForkJoinPool precomputePool) {
+        this(providerId, description, null, maxCachedPaths, precomputePool);
+    }
+
+    /**
+     * Creates a topology descriptor attributed to the specified provider,
+     * deriving its clusters incrementally from those of a previous topology.
+     * Only clusters affected by the devices and links added or removed since
+     * then are re-computed; the others, along with their broadcast sets, are
+     * shared with the previous topology.
+     *
+     * @param providerId
+     *            identity of the provider
+     * @param description
+     *            data describing the new topology
+     * @param previous
+     *            optional previous topology; null to compute the clusters
+     *            from scratch
+     * @param maxCachedPaths
+     *            maximum number of source/destination path sets to cache
+     * @param precomputePool
+     *            optional pool on which to eagerly compute shortest paths
+     *            between all devices using the default link weight, up to
+     *            the capacity of the cache; null to compute paths on demand
+     *            only
+     */
+    DefaultTopology(ProviderId providerId, GraphDescription description,
+                    DefaultTopology previous, int maxCachedPaths,
+                    ForkJoinPool precomputePool) {
+        this(providerId, description, previous, maxCachedPaths, precomputePool,
+             ImmutableSet.of());
+    }
+
+    /**
+     * Creates a topology descriptor attributed to the specified provider,
+     * deriving its clusters incrementally from those of a previous topology
+     * and eagerly computing the paths between the given edge devices.
+     *
+     * @param providerId
+     *            identity of the provider
+     * @param description
+     *            data describing the new topology
+     * @param previous
+     *            optional previous topology; null to compute the clusters
+     *            from scratch
+     * @param maxCachedPaths
+     *            maximum number of source/destination path sets to cache
+     * @param precomputePool
+     *            optional pool on which to eagerly compute shortest paths
+     *            between the edge devices using the default link weight, up
+     *            to the capacity of the cache; null to compute paths on
+     *            demand only
+     * @param edgeDevices
+     *            devices with hosts attached, between which paths are
+     *            precomputed; empty to precompute between all devices
+     */
+    DefaultTopology(ProviderId providerId, GraphDescription description,
+                    DefaultTopology previous, int maxCachedPaths,
+                    ForkJoinPool precomputePool, Set<DeviceId> edgeDevices) {
         super(providerId);
         this.time = description.timestamp();
         this.creationTime = description.creationTime();
 
-        // Build the graph
-        this.graph = new DefaultTopologyGraph(description.vertexes(),
-                description.edges());
+        // Whatever the previous topology has yet to precompute is now moot.
+        if (previous != null) {
+            previous.cancelPrecompute();
+        }
 
-        this.clusterResults = Suppliers.memoize(() -> searchForClusters());
+        // Build the graph, deriving it from the previous one if possible
+        this.graph = previous == null ?
+                new DefaultTopologyGraph(description.vertexes(), description.edges()) :
+                new DefaultTopologyGraph(previous.graph, description.vertexes(),
+                                         description.edges());
+
+        if (previous == null) {
+            this.clusterResults = Suppliers.memoize(() -> searchForClusters());
+            this.clusterData = Suppliers.memoize(() -> buildClusterData(null));
+        } else {
+            // Derive the clusters right away, so that no reference to the
+            // previous topology is retained beyond this point.
+            this.clusterResults = Suppliers.ofInstance(searchForClusters(previous));
+            this.clusterData = Suppliers.ofInstance(buildClusterData(previous));
+        }
         this.clusters = Suppliers.memoize(() -> buildTopologyClusters());
 
-        this.clusterIndexes = Suppliers.memoize(() -> buildIndexes());
+        this.clustersByDevice = Suppliers.memoize(() -> buildClustersByDevice());
+        this.infrastructurePoints = Suppliers.memoize(() -> findInfrastructurePoints());
 
-        this.weight = new HopCountLinkWeight(graph.getVertexes().size());
-        this.broadcastSets = Suppliers.memoize(() -> buildBroadcastSets());
-        this.infrastructurePoints = Suppliers
-                .memoize(() -> findInfrastructurePoints());
+        this.pathCache = CacheBuilder.newBuilder()
+                .maximumSize(maxCachedPaths)
+                .recordStats()
+                .build();
         this.computeCost = Math.max(0, System.nanoTime() - time);
+
+        // Precompute between the edge devices, from as many of them as the
+        // cache can hold paths for; more would only evict what was computed.
+        if (precomputePool != null) {
+            Set<DeviceId> destinations = new HashSet<>();
+            List<TopologyVertex> sources = new ArrayList<>();
+            for (TopologyVertex vertex : graph.getVertexes()) {
+                if (edgeDevices.isEmpty() || edgeDevices.contains(vertex.deviceId())) {
+                    destinations.add(vertex.deviceId());
+                    sources.add(vertex);
+                }
+            }
+            int pathsPerSource = Math.max(destinations.size() - 1, 1);
+            int sourceCount = Math.min(sources.size(), maxCachedPaths / pathsPerSource);
+            ImmutableList.Builder<ForkJoinTask<?>> tasks = ImmutableList.builder();
+            for (TopologyVertex vertex : sources.subList(0, sourceCount)) {
+                tasks.add(precomputePool.submit(() -> precomputePaths(vertex, destinations)));
+            }
+            this.precomputeTasks = tasks.build();
+        } else {
+            this.precomputeTasks = ImmutableList.of();
+        }
     }
 
     @Override
@@ -140,15 +273,13 @@ public class DefaultTopology extends AbstractModel implements Topology {
     }
 
     private ImmutableMap<DeviceId, TopologyCluster> clustersByDevice() {
-        return clusterIndexes.get().clustersByDevice;
-    }
-
-    private ImmutableSetMultimap<TopologyCluster, DeviceId> devicesByCluster() {
-        return clusterIndexes.get().devicesByCluster;
+        return clustersByDevice.get();
     }
 
-    private ImmutableSetMultimap<TopologyCluster, Link> linksByCluster() {
-        return clusterIndexes.get().linksByCluster;
+    // Returns the data of the given cluster, provided it is one of ours.
+    private ClusterData dataOf(TopologyCluster cluster) {
+        return cluster.equals(clusters.get().get(cluster.id())) ?
+                clusterData.get().get(cluster.id().index()) : null;
     }
 
     /**
@@ -199,7 +330,8 @@ public class DefaultTopology extends AbstractModel implements Topology {
      * @return cluster devices
      */
     Set<DeviceId> getClusterDevices(TopologyCluster cluster) {
-        return devicesByCluster().get(cluster);
+        ClusterData data = dataOf(cluster);
+        return data != null ? data.devices() : ImmutableSet.of();
     }
 
     /**
@@ -210,7 +342,8 @@ public class DefaultTopology extends AbstractModel implements Topology {
      * @return cluster links
      */
     Set<Link> getClusterLinks(TopologyCluster cluster) {
-        return linksByCluster().get(cluster);
+        ClusterData data = dataOf(cluster);
+        return data != null ? data.links() : ImmutableSet.of();
     }
 
     /**
@@ -246,8 +379,8 @@ public class DefaultTopology extends AbstractModel implements Topology {
 
         // If the broadcast set is null or empty, or if the point explicitly
         // belongs to it, return true;
-        Set<ConnectPoint> points = broadcastSets.get().get(cluster.id());
-        return (points == null) || points.isEmpty() || points.contains(connectPoint);
+        Set<ConnectPoint> points = clusterData.get().get(cluster.id().index()).points();
+        return points.isEmpty() || points.contains(connectPoint);
     }
 
     /**
@@ -258,7 +391,7 @@ public class DefaultTopology extends AbstractModel implements Topology {
      * @return size of the cluster broadcast set
      */
     int broadcastSetSize(ClusterId clusterId) {
-        return broadcastSets.get().get(clusterId).size();
+        return clusterData.get().get(clusterId.index()).points().size();
     }
 
     /**
@@ -276,8 +409,35 @@ public class DefaultTopology extends AbstractModel implements Topology {
     }
 
     /**
-     * Computes on-demand the set of shortest paths between source and
-     * destination devices.
+     * Cancels the eager path computations that have not started yet.
+     */
+    void cancelPrecompute() {
+        precomputeTasks.forEach(task -> task.cancel(false));
+    }
+
+    /**
+     * Returns the statistics of the cache of computed paths.
+     *
+     * @return path cache statistics
+     */
+    CacheStats pathCacheStats() {
+        return pathCache.stats();
+    }
+
+    /**
+     * Returns the number of source/destination path sets currently cached.
+     *
+     * @return path cache size
+     */
+    long pathCacheSize() {
+        return pathCache.size();
+    }
+
+    /**
+     * Returns the set of shortest paths between source and destination
+     * devices, computing them on-demand unless already cached. Paths are
+     * cached using the identity of the link weight function, so callers
+     * should re-use the same function instance to benefit from the cache.
      *
      * @param src source device
      *
@@ -288,6 +448,17 @@ public class DefaultTopology extends AbstractModel implements Topology {
      * @return set of shortest paths
      */
     Set<Path> getPaths(DeviceId src, DeviceId dst, LinkWeight weight) {
+        PathKey key = new PathKey(src, dst, weight);
+        Set<Path> paths = pathCache.getIfPresent(key);
+        if (paths == null) {
+            paths = computePaths(src, dst, weight);
+            pathCache.put(key, paths);
+        }
+        return paths;
+    }
+
+    // Computes the set of shortest paths between source and destination.
+    private Set<Path> computePaths(DeviceId src, DeviceId dst, LinkWeight weight) {
         final DefaultTopologyVertex srcV = new DefaultTopologyVertex(src);
         final DefaultTopologyVertex dstV = new DefaultTopologyVertex(dst);
         Set<TopologyVertex> vertices = graph.getVertexes();
@@ -305,6 +476,23 @@ public class DefaultTopology extends AbstractModel implements Topology {
         return builder.build();
     }
 
+    // Computes the default-weight shortest paths from the given vertex to
+    // the given destinations and adds them to the path cache.
+    private void precomputePaths(TopologyVertex srcV, Set<DeviceId> destinations) {
+        Result<TopologyVertex, TopologyEdge> result =
+                DIJKSTRA.search(graph, srcV, null, null, ALL_PATHS);
+        Map<DeviceId, ImmutableSet.Builder<Path>> builders = new HashMap<>();
+        for (org.onlab.graph.Path<TopologyVertex, TopologyEdge> path : result.paths()) {
+            if (!destinations.contains(path.dst().deviceId())) {
+                continue;
+            }
+            builders.computeIfAbsent(path.dst().deviceId(), k -> ImmutableSet.builder())
+                    .add(networkPath(path));
+        }
+        builders.forEach((dst, builder) -> pathCache.put(
+                new PathKey(srcV.deviceId(), dst, null), builder.build()));
+    }
+
     // Converts graph path to a network path with the same cost.
     private Path networkPath(org.onlab.graph.Path<TopologyVertex, TopologyEdge> path) {
         List<Link> links = new ArrayList<>();
@@ -320,6 +508,13 @@ public class DefaultTopology extends AbstractModel implements Topology {
         return TARJAN.search(graph, new NoIndirectLinksWeight());
     }
 
+    // Searches for SCC clusters in the network topology graph, re-using the
+    // clusters of the previous topology which remained intact.
+    private SCCResult<TopologyVertex, TopologyEdge> searchForClusters(DefaultTopology previous) {
+        return TARJAN.search(graph, new NoIndirectLinksWeight(),
+                             previous.clusterResults.get());
+    }
+
     // Builds the topology clusters and returns the id-cluster bindings.
     private ImmutableMap<ClusterId, TopologyCluster> buildTopologyClusters() {
         ImmutableMap.Builder<ClusterId, TopologyCluster> clusterBuilder = ImmutableMap.builder();
@@ -338,7 +533,7 @@ public class DefaultTopology extends AbstractModel implements Topology {
             DefaultTopologyCluster cluster = new DefaultTopologyCluster(cid,
                                                                         vertexSet.size(),
                                                                         edgeSet.size(),
-                                                                        findRoot(vertexSet));
+                                                                        clusterData.get().get(i).root);
             clusterBuilder.put(cid, cluster);
         }
         return clusterBuilder.build();
@@ -346,7 +541,7 @@ public class DefaultTopology extends AbstractModel implements Topology {
 
     // Finds the vertex whose device id is the lexicographical minimum in the
     // specified set.
-    private TopologyVertex findRoot(Set<TopologyVertex> vertexSet) {
+    private static TopologyVertex findRoot(Set<TopologyVertex> vertexSet) {
         TopologyVertex minVertex = null;
         for (TopologyVertex vertex : vertexSet) {
             if ((minVertex == null) || (minVertex.deviceId()
@@ -357,12 +552,34 @@ public class DefaultTopology extends AbstractModel implements Topology {
         return minVertex;
     }
 
-    // Processes a map of broadcast sets for each cluster.
-    private ImmutableSetMultimap<ClusterId, ConnectPoint> buildBroadcastSets() {
-        Builder<ClusterId, ConnectPoint> builder = ImmutableSetMultimap
-                .builder();
-        for (TopologyCluster cluster : clusters.get().values()) {
-            addClusterBroadcastSet(cluster, builder);
+    // Collects end-points of all infrastructure links.
+    private ImmutableSet<ConnectPoint> findInfrastructurePoints() {
+        ImmutableSet.Builder<ConnectPoint> builder = ImmutableSet.builder();
+        for (TopologyEdge edge : graph.getEdges()) {
+            builder.add(edge.link().src());
+            builder.add(edge.link().dst());
+        }
+        return builder.build();
+    }
+
+    // Prepares the data of each cluster, re-using that of the previous
+    // topology for clusters whose vertexes and edges are the same.
+    private ImmutableList<ClusterData> buildClusterData(DefaultTopology previous) {
+        Map<Set<TopologyEdge>, ClusterData> previousData = new IdentityHashMap<>();
+        if (previous != null) {
+            for (ClusterData data : previous.clusterData.get()) {
+                previousData.put(data.edges, data);
+            }
+        }
+
+        SCCResult<TopologyVertex, TopologyEdge> results = clusterResults.get();
+        ImmutableList.Builder<ClusterData> builder = ImmutableList.builder();
+        for (int i = 0, n = results.clusterCount(); i < n; i++) {
+            Set<TopologyVertex> vertexSet = results.clusterVertexes().get(i);
+            Set<TopologyEdge> edgeSet = results.clusterEdges().get(i);
+            ClusterData data = previousData.get(edgeSet);
+            builder.add(data != null && data.vertexes == vertexSet ?
+                                data : new ClusterData(vertexSet, edgeSet));
         }
         return builder.build();
     }
@@ -370,19 +587,19 @@ public class DefaultTopology extends AbstractModel implements Topology {
     // Finds all broadcast points for the cluster. These are those connection
     // points which lie along the shortest paths between the cluster root and
     // all other devices within the cluster.
-    private void addClusterBroadcastSet(TopologyCluster cluster, Builder<ClusterId, ConnectPoint> builder) {
-        // Use the graph root search results to build the broadcast set.
-        Result<TopologyVertex, TopologyEdge> result = DIJKSTRA.search(graph, cluster.root(), null, weight, 1);
-        for (Map.Entry<TopologyVertex, Set<TopologyEdge>> entry : result.parents().entrySet()) {
-            TopologyVertex vertex = entry.getKey();
-
-            // Ignore any parents that lead outside the cluster.
-            if (clustersByDevice().get(vertex.deviceId()) != cluster) {
-                continue;
-            }
-
+    private static ImmutableSet<ConnectPoint> findBroadcastPoints(Set<TopologyVertex> vertexes,
+                                                                  Set<TopologyEdge> edges,
+                                                                  TopologyVertex root) {
+        // Shortest paths between devices of a cluster never leave it, so
+        // searching the cluster alone yields the same results as searching
+        // the whole graph.
+        TopologyGraph clusterGraph = new DefaultTopologyGraph(vertexes, edges);
+        Result<TopologyVertex, TopologyEdge> result =
+                DIJKSTRA.search(clusterGraph, root, null,
+                                new HopCountLinkWeight(vertexes.size()), 1);
+        ImmutableSet.Builder<ConnectPoint> builder = ImmutableSet.builder();
+        for (Set<TopologyEdge> parents : result.parents().values()) {
             // Ignore any back-link sets that are empty.
-            Set<TopologyEdge> parents = entry.getValue();
             if (parents.isEmpty()) {
                 continue;
             }
@@ -390,51 +607,21 @@ public class DefaultTopology extends AbstractModel implements Topology {
             // Use the first back-link source and destinations to add to the
             // broadcast set.
             Link link = parents.iterator().next().link();
-            builder.put(cluster.id(), link.src());
-            builder.put(cluster.id(), link.dst());
-        }
-    }
-
-    // Collects and returns an set of all infrastructure link end-points.
-    private ImmutableSet<ConnectPoint> findInfrastructurePoints() {
-        ImmutableSet.Builder<ConnectPoint> builder = ImmutableSet.builder();
-        for (TopologyEdge edge : graph.getEdges()) {
-            builder.add(edge.link().src());
-            builder.add(edge.link().dst());
+            builder.add(link.src());
+            builder.add(link.dst());
         }
         return builder.build();
     }
 
-    // Builds cluster-devices, cluster-links and device-cluster indexes.
-    private ClusterIndexes buildIndexes() {
-        // Prepare the index builders
-        ImmutableMap.Builder<DeviceId, TopologyCluster> clusterBuilder =
-                ImmutableMap.builder();
-        ImmutableSetMultimap.Builder<TopologyCluster, DeviceId> devicesBuilder =
-                ImmutableSetMultimap.builder();
-        ImmutableSetMultimap.Builder<TopologyCluster, Link> linksBuilder =
-                ImmutableSetMultimap.builder();
-
-        // Now scan through all the clusters
+    // Builds the device-cluster index.
+    private ImmutableMap<DeviceId, TopologyCluster> buildClustersByDevice() {
+        ImmutableMap.Builder<DeviceId, TopologyCluster> builder = ImmutableMap.builder();
         for (TopologyCluster cluster : clusters.get().values()) {
-            int i = cluster.id().index();
-
-            // Scan through all the cluster vertexes.
-            for (TopologyVertex vertex : clusterResults.get().clusterVertexes().get(i)) {
-                devicesBuilder.put(cluster, vertex.deviceId());
-                clusterBuilder.put(vertex.deviceId(), cluster);
-            }
-
-            // Scan through all the cluster edges.
-            for (TopologyEdge edge : clusterResults.get().clusterEdges().get(i)) {
-                linksBuilder.put(cluster, edge.link());
+            for (TopologyVertex vertex : clusterData.get().get(cluster.id().index()).vertexes) {
+                builder.put(vertex.deviceId(), cluster);
             }
         }
-
-        // Finalize all indexes.
-        return new ClusterIndexes(clusterBuilder.build(),
-                                  devicesBuilder.build(),
-                                  linksBuilder.build());
+        return builder.build();
     }
 
     // Link weight for measuring link cost as hop count with indirect links
@@ -465,18 +652,70 @@ public class DefaultTopology extends AbstractModel implements Topology {
         }
     }
 
-    static final class ClusterIndexes {
-        final ImmutableMap<DeviceId, TopologyCluster> clustersByDevice;
-        final ImmutableSetMultimap<TopologyCluster, DeviceId> devicesByCluster;
-        final ImmutableSetMultimap<TopologyCluster, Link> linksByCluster;
+    // Root, devices, links and broadcast points of a cluster; these depend
+    // on the cluster vertexes and edges alone, which allows them to be shared
+    // by subsequent topologies for as long as the cluster remains unchanged.
+    private static final class ClusterData {
+        private final Set<TopologyVertex> vertexes;
+        private final Set<TopologyEdge> edges;
+        private final TopologyVertex root;
+        private final Supplier<ImmutableSet<DeviceId>> devices;
+        private final Supplier<ImmutableSet<Link>> links;
+        private final Supplier<ImmutableSet<ConnectPoint>> points;
+
+        private ClusterData(Set<TopologyVertex> vertexes, Set<TopologyEdge> edges) {
+            this.vertexes = vertexes;
+            this.edges = edges;
+            this.root = findRoot(vertexes);
+            this.devices = Suppliers.memoize(() -> ImmutableSet.copyOf(
+                    Collections2.transform(vertexes, TopologyVertex::deviceId)));
+            this.links = Suppliers.memoize(() -> ImmutableSet.copyOf(
+                    Collections2.transform(edges, TopologyEdge::link)));
+            this.points = Suppliers.memoize(() -> findBroadcastPoints(vertexes, edges, root));
+        }
+
+        private Set<DeviceId> devices() {
+            return devices.get();
+        }
+
+        private Set<Link> links() {
+            return links.get();
+        }
+
+        private Set<ConnectPoint> points() {
+            return points.get();
+        }
+    }
+
+    // Key for cached paths; link weights are compared by identity.
+    private static final class PathKey {
+        private final DeviceId src;
+        private final DeviceId dst;
+        private final LinkWeight weight;
+
+        private PathKey(DeviceId src, DeviceId dst, LinkWeight weight) {
+            this.src = src;
+            this.dst = dst;
+            this.weight = weight;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(src, dst, System.identityHashCode(weight));
+        }
 
-        public ClusterIndexes(
-                ImmutableMap<DeviceId, TopologyCluster> clustersByDevice,
-                ImmutableSetMultimap<TopologyCluster, DeviceId> devicesByCluster,
-                ImmutableSetMultimap<TopologyCluster, Link> linksByCluster) {
-            this.clustersByDevice = clustersByDevice;
-            this.devicesByCluster = devicesByCluster;
-            this.linksByCluster = linksByCluster;
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof PathKey) {
+                final PathKey other = (PathKey) obj;
+                return Objects.equals(this.src, other.src) &&
+                        Objects.equals(this.dst, other.dst) &&
+                        this.weight == other.weight;
+            }
+            return false;
         }
     }
 
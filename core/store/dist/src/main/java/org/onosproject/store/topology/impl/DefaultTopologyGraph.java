@@ -16,12 +16,16 @@
 package org.onosproject.store.topology.impl;
 
 import org.onlab.graph.AdjacencyListsGraph;
+import org.onosproject.net.Link;
 import org.onosproject.net.topology.TopologyEdge;
 import org.onosproject.net.topology.TopologyGraph;
 import org.onosproject.net.topology.TopologyVertex;
 
+import java.util.Objects;
 import java.util.Set;
 
+import static org.onosproject.net.AnnotationsUtil.isEqual;
+
 /**
  * Default implementation of an immutable topology graph based on a generic
  * implementation of adjacency lists graph.
@@ -40,4 +44,28 @@ public class DefaultTopologyGraph
         super(vertexes, edges);
     }
 
+    /**
+     * Creates a topology graph comprising of the specified vertexes and edges,
+     * which shares the adjacency lists of unaffected vertexes with a previous
+     * topology graph. Edges whose links differ from the previous ones in
+     * anything but identity, e.g. state or annotations, are replaced.
+     *
+     * @param previous previous topology graph
+     * @param vertexes set of graph vertexes
+     * @param edges    set of graph edges
+     */
+    public DefaultTopologyGraph(DefaultTopologyGraph previous,
+                                Set<TopologyVertex> vertexes, Set<TopologyEdge> edges) {
+        super(previous, vertexes, edges, DefaultTopologyGraph::isSame);
+    }
+
+    // Indicates whether the previous edge can stand in for the current one.
+    private static boolean isSame(TopologyEdge previous, TopologyEdge edge) {
+        Link a = previous.link();
+        Link b = edge.link();
+        return a == b || (a.state() == b.state() && a.isDurable() == b.isDurable() &&
+                Objects.equals(a.providerId(), b.providerId()) &&
+                isEqual(a.annotations(), b.annotations()));
+    }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Unit tests for {@link CommitBatcher}.
+ */
+public class CommitBatcherTest {
+
+    private final List<List<DatabaseOperation>> batches = Lists.newArrayList();
+    private final List<CompletableFuture<List<Object>>> commits = Lists.newArrayList();
+
+    private CompletableFuture<List<Object>> commit(List<DatabaseOperation> batch) {
+        CompletableFuture<List<Object>> commit = new CompletableFuture<>();
+        batches.add(batch);
+        commits.add(commit);
+        return commit;
+    }
+
+    // Completes a commit with the counter names of its operations as results.
+    private void complete(int i) {
+        commits.get(i).complete(batches.get(i)
+                                       .stream()
+                                       .map(DatabaseOperation::name)
+                                       .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testGroupCommit() {
+        CommitBatcher batcher = new CommitBatcher(this::commit, 3, 1);
+
+        CompletableFuture<String> a = batcher.submit(DatabaseOperation.nextValue("a"));
+        // The first operation is committed right away...
+        assertEquals(1, batches.size());
+
+        // ...while the ones that follow wait for it to complete
+        CompletableFuture<String> b = batcher.submit(DatabaseOperation.nextValue("b"));
+        CompletableFuture<String> c = batcher.submit(DatabaseOperation.nextValue("c"));
+        CompletableFuture<String> d = batcher.submit(DatabaseOperation.nextValue("d"));
+        CompletableFuture<String> e = batcher.submit(DatabaseOperation.nextValue("e"));
+        assertEquals(1, batches.size());
+
+        complete(0);
+        assertEquals("a", a.join());
+        assertEquals(2, batches.size());
+        assertEquals(3, batches.get(1).size());
+        assertFalse(b.isDone());
+
+        complete(1);
+        assertEquals("b", b.join());
+        assertEquals("c", c.join());
+        assertEquals("d", d.join());
+        assertEquals(3, batches.size());
+        assertEquals(1, batches.get(2).size());
+
+        complete(2);
+        assertEquals("e", e.join());
+        assertEquals(3, batcher.batchSize().getCount());
+        assertEquals(3, batcher.commitLatency().getCount());
+    }
+
+    @Test
+    public void testPipelining() {
+        CommitBatcher batcher = new CommitBatcher(this::commit, 10, 2);
+        batcher.submit(DatabaseOperation.nextValue("a"));
+        batcher.submit(DatabaseOperation.nextValue("b"));
+        CompletableFuture<String> c = batcher.submit(DatabaseOperation.nextValue("c"));
+        // Two batches are in flight without waiting for one another
+        assertEquals(2, batches.size());
+
+        commits.get(1).completeExceptionally(new IllegalStateException());
+        assertEquals(3, batches.size());
+        complete(2);
+        assertEquals("c", c.join());
+    }
+
+    @Test
+    public void testFailedCommit() {
+        CommitBatcher batcher = new CommitBatcher(this::commit, 10, 1);
+        CompletableFuture<String> a = batcher.submit(DatabaseOperation.nextValue("a"));
+        commits.get(0).completeExceptionally(new IllegalStateException());
+        assertTrue(a.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * Unit tests for {@link ConsistentHashPartitioner}.
+ */
+public class ConsistentHashPartitionerTest {
+
+    private static final int KEYS = 30000;
+
+    private static Database partition(String name) {
+        Database database = createMock(Database.class);
+        expect(database.name()).andReturn(name).anyTimes();
+        replay(database);
+        return database;
+    }
+
+    private static final Database P1 = partition("p1");
+    private static final Database P2 = partition("p2");
+    private static final Database P3 = partition("p3");
+    private static final Database P4 = partition("p4");
+
+    @Test
+    public void testDeterministic() {
+        Partitioner<String> a = new ConsistentHashPartitioner(ImmutableList.of(P1, P2, P3));
+        Partitioner<String> b = new ConsistentHashPartitioner(ImmutableList.of(P1, P2, P3));
+        for (int i = 0; i < 1000; i++) {
+            assertSame(a.getPartition("table", "key" + i), b.getPartition("table", "key" + i));
+        }
+    }
+
+    @Test
+    public void testTableSpreadEvenly() {
+        List<Database> partitions = ImmutableList.of(P1, P2, P3);
+        Partitioner<String> partitioner = new ConsistentHashPartitioner(partitions);
+        Map<Database, Integer> counts = Maps.newHashMap();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(partitioner.getPartition("hot-table", "key" + i), 1, Integer::sum);
+        }
+        assertEquals(partitions.size(), counts.size());
+        int fairShare = KEYS / partitions.size();
+        counts.values().forEach(count ->
+                assertTrue("skewed partition: " + count, Math.abs(count - fairShare) < fairShare / 5));
+    }
+
+    @Test
+    public void testAddPartitionMovesFewKeys() {
+        Partitioner<String> before = new ConsistentHashPartitioner(ImmutableList.of(P1, P2, P3));
+        Partitioner<String> after = new ConsistentHashPartitioner(ImmutableList.of(P1, P2, P3, P4));
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            Database oldOwner = before.getPartition("table", "key" + i);
+            Database newOwner = after.getPartition("table", "key" + i);
+            if (oldOwner != newOwner) {
+                // Keys only ever move to the new partition
+                assertSame(P4, newOwner);
+                moved++;
+            }
+        }
+        // Roughly a quarter of the keys move, rather than nearly all of them
+        assertTrue("moved " + moved, moved > KEYS / 6 && moved < KEYS / 3);
+    }
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.onlab.junit.TestTools.assertAfter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.packet.IpAddress;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.Leadership;
+import org.onosproject.cluster.LeadershipEvent;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.event.DefaultEventSinkRegistry;
+import org.onosproject.event.Event;
+import org.onosproject.event.EventDeliveryService;
+import org.onosproject.event.EventSink;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.AtomicCounterBuilder;
+import org.onosproject.store.service.AsyncConsistentMap;
+import org.onosproject.store.service.ConsistentMap;
+import org.onosproject.store.service.ConsistentMapBuilder;
+import org.onosproject.store.service.ConsistentMapException;
+import org.onosproject.store.service.EventuallyConsistentMapBuilder;
+import org.onosproject.store.service.Serializer;
+import org.onosproject.store.service.SetBuilder;
+import org.onosproject.store.service.StorageService;
+import org.onosproject.store.service.TransactionContext;
+import org.onosproject.store.service.Versioned;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for the batched elections and peer updates of
+ * {@link DistributedLeadershipManager}.
+ */
+public class DistributedLeadershipManagerTest {
+
+    private static final NodeId LOCAL = new NodeId("local");
+    private static final NodeId PEER = new NodeId("peer");
+    private static final List<String> TOPICS = ImmutableList.of("t1", "t2", "t3", "t4", "t5");
+    private static final Serializer SERIALIZER = Serializer.using(
+            new KryoNamespace.Builder().register(KryoNamespaces.API).build());
+
+    private final TestMap<String, NodeId> leaderMap = new TestMap<>();
+    private final TestMap<String, List<NodeId>> candidateMap = new TestMap<>();
+    private final TestClusterService clusterService = new TestClusterService();
+    private final TestCommunicator communicator = new TestCommunicator();
+
+    private DistributedLeadershipManager manager;
+
+    @Before
+    public void setUp() {
+        manager = new DistributedLeadershipManager();
+        manager.storageService = new TestStorageService();
+        manager.clusterService = clusterService;
+        manager.clusterCommunicator = communicator;
+        manager.eventDispatcher = new TestEventDispatcher();
+        manager.metricsService = new MetricsManager();
+        manager.activate();
+    }
+
+    @After
+    public void tearDown() {
+        manager.deactivate();
+    }
+
+    // Has the peer lead and head the candidates of the given topics.
+    private void peerLeads(List<String> topics) {
+        topics.forEach(topic -> {
+            leaderMap.putIfAbsent(topic, PEER);
+            candidateMap.putIfAbsent(topic, ImmutableList.of(PEER));
+        });
+    }
+
+    // Has the peer fail and lose its locks.
+    private void peerFails(List<String> topics) {
+        clusterService.states.put(PEER, ControllerNode.State.INACTIVE);
+        topics.forEach(topic -> leaderMap.remove(topic, leaderMap.get(topic).version()));
+    }
+
+    // Returns the events of all leadership messages broadcast so far.
+    private List<LeadershipEvent> broadcastEvents() {
+        return communicator.sent.stream()
+                .flatMap(message -> SERIALIZER.<List<LeadershipEvent>>decode(message.payload()).stream())
+                .collect(Collectors.toList());
+    }
+
+    private void receive(Object payload) {
+        communicator.handler.handle(new ClusterMessage(
+                PEER, new MessageSubject("distributed-leadership-manager-events"),
+                SERIALIZER.encode(payload)));
+    }
+
+    private static LeadershipEvent event(LeadershipEvent.Type type, String topic, long epoch) {
+        return new LeadershipEvent(type, new Leadership(topic, PEER, epoch, 0));
+    }
+
+    @Test
+    public void batchElection() {
+        peerLeads(TOPICS);
+        TOPICS.forEach(manager::runForLeadership);
+        TOPICS.forEach(topic -> assertNull("no leader should be known yet", manager.getLeader(topic)));
+
+        peerFails(TOPICS);
+        assertAfter(5000, () ->
+                TOPICS.forEach(topic -> assertEquals("incorrect leader", LOCAL, manager.getLeader(topic))));
+
+        // Every batch contended for all the topics, reading them with one call
+        assertFalse("no batch was run", candidateMap.getAllCalls.isEmpty());
+        candidateMap.getAllCalls.forEach(size ->
+                assertEquals("incorrect batch size", TOPICS.size(), size.intValue()));
+
+        // and their new leadership reached the peers as lists of events
+        assertAfter(1000, () -> assertEquals("incorrect elected topics", ImmutableList.copyOf(TOPICS),
+                broadcastEvents().stream()
+                        .filter(e -> e.type() == LeadershipEvent.Type.LEADER_ELECTED)
+                        .map(e -> e.subject().topic())
+                        .distinct().sorted()
+                        .collect(Collectors.toList())));
+    }
+
+    @Test
+    public void retryAfterFailure() {
+        peerLeads(TOPICS);
+        TOPICS.forEach(manager::runForLeadership);
+
+        candidateMap.getAllFailures.set(2);
+        peerFails(TOPICS);
+        assertAfter(10000, () ->
+                TOPICS.forEach(topic -> assertEquals("incorrect leader", LOCAL, manager.getLeader(topic))));
+        assertEquals("failed batches should be retried", 0, candidateMap.getAllFailures.get());
+    }
+
+    @Test
+    public void listFormPeerUpdates() {
+        receive(ImmutableList.of(event(LeadershipEvent.Type.LEADER_ELECTED, "a", 1),
+                                 event(LeadershipEvent.Type.LEADER_ELECTED, "b", 1)));
+        assertEquals("incorrect leader", PEER, manager.getLeader("a"));
+        assertEquals("incorrect leader", PEER, manager.getLeader("b"));
+
+        // Each event of a list is applied, or ignored if outdated, on its own
+        receive(ImmutableList.of(event(LeadershipEvent.Type.LEADER_BOOTED, "a", 1),
+                                 event(LeadershipEvent.Type.LEADER_ELECTED, "b", 0),
+                                 event(LeadershipEvent.Type.LEADER_ELECTED, "c", 2)));
+        assertNull("leader should be booted", manager.getLeader("a"));
+        assertEquals("stale update should be ignored", 1, manager.getLeadership("b").epoch());
+        assertEquals("incorrect leader", PEER, manager.getLeader("c"));
+
+        // A single event, as sent by instances that do not batch, is accepted too
+        receive(event(LeadershipEvent.Type.LEADER_ELECTED, "a", 3));
+        assertEquals("incorrect leader", PEER, manager.getLeader("a"));
+        assertTrue("incorrect leader board", manager.getLeaderBoard().keySet().containsAll(
+                ImmutableList.of("a", "b", "c")));
+    }
+
+    // Consistent map held in memory, with versions drawn from one sequence;
+    // bulk reads can be made to fail.
+    private static final class TestMap<K, V> implements ConsistentMap<K, V> {
+        private static final AtomicLong VERSIONS = new AtomicLong();
+
+        private final Map<K, Versioned<V>> map = new ConcurrentHashMap<>();
+        private final List<Integer> getAllCalls = new CopyOnWriteArrayList<>();
+        private final AtomicInteger getAllFailures = new AtomicInteger();
+
+        private Versioned<V> versioned(V value) {
+            return new Versioned<>(value, VERSIONS.incrementAndGet());
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean containsKey(K key) {
+            return map.containsKey(key);
+        }
+
+        @Override
+        public boolean containsValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Versioned<V> get(K key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Map<K, Versioned<V>> getAll(Set<K> keys) {
+            if (getAllFailures.getAndUpdate(n -> Math.max(n - 1, 0)) > 0) {
+                throw new ConsistentMapException.Timeout();
+            }
+            getAllCalls.add(keys.size());
+            Map<K, Versioned<V>> result = Maps.newHashMap();
+            keys.forEach(key -> {
+                Versioned<V> value = map.get(key);
+                if (value != null) {
+                    result.put(key, value);
+                }
+            });
+            return ImmutableMap.copyOf(result);
+        }
+
+        @Override
+        public Versioned<V> put(K key, V value) {
+            return map.put(key, versioned(value));
+        }
+
+        @Override
+        public void putAll(Map<K, V> entries) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Versioned<V> remove(K key) {
+            return map.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return map.keySet();
+        }
+
+        @Override
+        public Collection<Versioned<V>> values() {
+            return map.values();
+        }
+
+        @Override
+        public Set<Entry<K, Versioned<V>>> entrySet() {
+            return map.entrySet();
+        }
+
+        @Override
+        public Versioned<V> putIfAbsent(K key, V value) {
+            return map.putIfAbsent(key, versioned(value));
+        }
+
+        @Override
+        public boolean remove(K key, V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean remove(K key, long version) {
+            Versioned<V> current = map.get(key);
+            return current != null && current.version() == version && map.remove(key, current);
+        }
+
+        @Override
+        public boolean replace(K key, V oldValue, V newValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean replace(K key, long oldVersion, V newValue) {
+            Versioned<V> current = map.get(key);
+            return current != null && current.version() == oldVersion &&
+                    map.replace(key, current, versioned(newValue));
+        }
+    }
+
+    private final class TestStorageService implements StorageService {
+        @Override
+        public <K, V> EventuallyConsistentMapBuilder<K, V> eventuallyConsistentMapBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <K, V> ConsistentMapBuilder<K, V> consistentMapBuilder() {
+            return new TestMapBuilder<>();
+        }
+
+        @Override
+        public <E> SetBuilder<E> setBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AtomicCounterBuilder atomicCounterBuilder() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TransactionContext createTransactionContext() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Hands out the test maps by name.
+    private final class TestMapBuilder<K, V> implements ConsistentMapBuilder<K, V> {
+        private String name;
+
+        @Override
+        public ConsistentMapBuilder<K, V> withName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        @Override
+        public ConsistentMapBuilder<K, V> withSerializer(Serializer serializer) {
+            return this;
+        }
+
+        @Override
+        public ConsistentMapBuilder<K, V> withPartitionsDisabled() {
+            return this;
+        }
+
+        @Override
+        public ConsistentMapBuilder<K, V> withNearCache() {
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public ConsistentMap<K, V> build() {
+            return (ConsistentMap<K, V>) (name.equals("onos-topic-leaders") ? leaderMap : candidateMap);
+        }
+
+        @Override
+        public AsyncConsistentMap<K, V> buildAsyncMap() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class TestClusterService extends ClusterServiceAdapter {
+        private final ControllerNode local = new DefaultControllerNode(LOCAL, IpAddress.valueOf("127.0.0.1"));
+        private final Map<NodeId, ControllerNode.State> states = new ConcurrentHashMap<>();
+
+        @Override
+        public ControllerNode getLocalNode() {
+            return local;
+        }
+
+        @Override
+        public ControllerNode.State getState(NodeId nodeId) {
+            return states.getOrDefault(nodeId, ControllerNode.State.ACTIVE);
+        }
+    }
+
+    // Records broadcast messages and the subscriber of leadership messages
+    private static final class TestCommunicator implements ClusterCommunicationService {
+        private final List<ClusterMessage> sent = new CopyOnWriteArrayList<>();
+        private ClusterMessageHandler handler;
+
+        @Override
+        public boolean broadcast(ClusterMessage message) {
+            sent.add(message);
+            return true;
+        }
+
+        @Override
+        public boolean broadcastIncludeSelf(ClusterMessage message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean unicast(ClusterMessage message, NodeId toNodeId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean multicast(ClusterMessage message, Iterable<NodeId> nodeIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber,
+                                  ExecutorService executor) {
+            this.handler = subscriber;
+        }
+
+        @Override
+        public void removeSubscriber(MessageSubject subject) {
+        }
+    }
+
+    // Delivers events in-line with the post method invocation
+    private static final class TestEventDispatcher extends DefaultEventSinkRegistry
+            implements EventDeliveryService {
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        @Override
+        public void post(Event event) {
+            EventSink sink = getSink(event.getClass());
+            if (sink != null) {
+                sink.process(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.onlab.junit.TestTools.assertAfter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.Serializer;
+import org.onosproject.store.service.Versioned;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Unit tests for {@link NearCachedAsyncConsistentMap}.
+ */
+public class NearCachedAsyncConsistentMapTest {
+
+    private static final String NAME = "foo";
+    private static final Serializer SERIALIZER = Serializer.using(KryoNamespaces.BASIC);
+
+    private final TestCommunicator communicator = new TestCommunicator("node1");
+    private final TestCommunicator peerCommunicator = new TestCommunicator("node2");
+    private final MetricsManager metricsService = new MetricsManager();
+    private final Database database = createMock(Database.class);
+
+    private NearCacheInvalidator invalidator;
+    private NearCacheInvalidator peerInvalidator;
+
+    @Before
+    public void setUp() {
+        communicator.peers.add(peerCommunicator);
+        peerCommunicator.peers.add(communicator);
+        invalidator = new NearCacheInvalidator(new TestClusterService("node1"), communicator);
+        peerInvalidator = new NearCacheInvalidator(new TestClusterService("node2"), peerCommunicator);
+    }
+
+    @After
+    public void tearDown() {
+        invalidator.close();
+        peerInvalidator.close();
+    }
+
+    private static CompletableFuture<Versioned<byte[]>> stored(String value) {
+        return CompletableFuture.completedFuture(
+                value == null ? null : new Versioned<>(SERIALIZER.encode(value), 1, 0));
+    }
+
+    private static CompletableFuture<Result<Versioned<byte[]>>> updated() {
+        return CompletableFuture.completedFuture(Result.ok(null));
+    }
+
+    private NearCachedAsyncConsistentMap<String, String> nearCachedMap() {
+        return new NearCachedAsyncConsistentMap<>(NAME, database, SERIALIZER, invalidator, metricsService);
+    }
+
+    private long count(String counter) {
+        return metricsService.getCounters((name, metric) -> name.endsWith(counter))
+                .values().iterator().next().getCount();
+    }
+
+    @Test
+    public void testHit() {
+        expect(database.get(eq(NAME), anyString())).andReturn(stored("bar")).once();
+        replay(database);
+
+        NearCachedAsyncConsistentMap<String, String> map = nearCachedMap();
+        assertEquals("bar", map.get("a").join().value());
+        assertEquals("bar", map.get("a").join().value());
+        verify(database);
+        assertEquals(1, count("nearCacheMisses"));
+        assertEquals(1, count("nearCacheHits"));
+    }
+
+    @Test
+    public void testMissCachesAbsence() {
+        expect(database.get(eq(NAME), anyString())).andReturn(stored(null)).once();
+        replay(database);
+
+        NearCachedAsyncConsistentMap<String, String> map = nearCachedMap();
+        assertNull(map.get("a").join());
+        assertNull(map.get("a").join());
+        assertFalse(map.containsKey("a").join());
+        verify(database);
+    }
+
+    @Test
+    public void testInvalidatedByOwnUpdate() {
+        expect(database.get(eq(NAME), anyString())).andReturn(stored("bar"));
+        expect(database.put(eq(NAME), anyString(), anyObject(byte[].class))).andReturn(updated());
+        expect(database.get(eq(NAME), anyString())).andReturn(stored("baz"));
+        replay(database);
+
+        NearCachedAsyncConsistentMap<String, String> map = nearCachedMap();
+        assertEquals("bar", map.get("a").join().value());
+        map.put("a", "baz").join();
+        assertEquals("baz", map.get("a").join().value());
+        verify(database);
+        assertEquals(1, count("nearCacheInvalidations"));
+    }
+
+    @Test
+    public void testInvalidatedByPlainMap() {
+        expect(database.get(eq(NAME), anyString())).andReturn(stored("bar"));
+        expect(database.put(eq(NAME), anyString(), anyObject(byte[].class))).andReturn(updated());
+        expect(database.get(eq(NAME), anyString())).andReturn(stored("baz"));
+        replay(database);
+
+        NearCachedAsyncConsistentMap<String, String> map = nearCachedMap();
+        DefaultAsyncConsistentMap<String, String> plain =
+                new DefaultAsyncConsistentMap<>(NAME, database, SERIALIZER, invalidator);
+        assertEquals("bar", map.get("a").join().value());
+        plain.put("a", "baz").join();
+        assertEquals("baz", map.get("a").join().value());
+        verify(database);
+    }
+
+    @Test
+    public void testInvalidatedByPeer() {
+        expect(database.get(eq(NAME), anyString())).andReturn(stored("bar"));
+        expect(database.put(eq(NAME), anyString(), anyObject(byte[].class))).andReturn(updated());
+        expect(database.get(eq(NAME), anyString())).andReturn(stored("baz"));
+        replay(database);
+
+        NearCachedAsyncConsistentMap<String, String> map = nearCachedMap();
+        DefaultAsyncConsistentMap<String, String> peer =
+                new DefaultAsyncConsistentMap<>(NAME, database, SERIALIZER, peerInvalidator);
+        awaitAnnouncement();
+        assertEquals("bar", map.get("a").join().value());
+        peer.put("a", "baz").join();
+        assertAfter(5000, () -> assertEquals(1, count("nearCacheInvalidations")));
+        assertEquals("baz", map.get("a").join().value());
+        verify(database);
+    }
+
+    @Test
+    public void testNoMessagesWithoutNearCache() {
+        expect(database.put(eq(NAME), anyString(), anyObject(byte[].class))).andReturn(updated()).times(10);
+        replay(database);
+
+        DefaultAsyncConsistentMap<String, String> peer =
+                new DefaultAsyncConsistentMap<>(NAME, database, SERIALIZER, peerInvalidator);
+        for (int i = 0; i < 10; i++) {
+            peer.put("a" + i, "baz").join();
+        }
+        verify(database);
+        assertEquals(0, peerCommunicator.sent.get());
+    }
+
+    @Test
+    public void testInvalidationsCoalesced() {
+        final int updates = 100;
+        expect(database.put(eq(NAME), anyString(), anyObject(byte[].class))).andReturn(updated()).times(updates);
+        replay(database);
+
+        NearCachedAsyncConsistentMap<String, String> map = nearCachedMap();
+        DefaultAsyncConsistentMap<String, String> peer =
+                new DefaultAsyncConsistentMap<>(NAME, database, SERIALIZER, peerInvalidator);
+        awaitAnnouncement();
+        for (int i = 0; i < updates; i++) {
+            peer.put("a" + i, "baz").join();
+        }
+        assertAfter(5000, () -> assertEquals(updates, count("nearCacheInvalidations")));
+        assertTrue("invalidations not coalesced", peerCommunicator.sent.get() < updates / 2);
+        verify(database);
+        assertEquals(NAME, map.name());
+    }
+
+    // Waits until the peer knows about the near cache on this instance.
+    private void awaitAnnouncement() {
+        assertAfter(5000, () -> assertFalse(peerInvalidator.nearCachingNodes(NAME).isEmpty()));
+    }
+
+    private static final class TestClusterService extends ClusterServiceAdapter {
+        private final ControllerNode local;
+
+        private TestClusterService(String id) {
+            local = new DefaultControllerNode(new NodeId(id), IpAddress.valueOf("127.0.0.1"));
+        }
+
+        @Override
+        public ControllerNode getLocalNode() {
+            return local;
+        }
+    }
+
+    // Delivers messages straight to the subscribers of its peers
+    private static final class TestCommunicator implements ClusterCommunicationService {
+        private final NodeId nodeId;
+        private final List<TestCommunicator> peers = Lists.newArrayList();
+        private final Map<MessageSubject, ClusterMessageHandler> handlers = Maps.newConcurrentMap();
+        private final Map<MessageSubject, ExecutorService> executors = Maps.newConcurrentMap();
+        // Number of unicast messages sent
+        private final AtomicInteger sent = new AtomicInteger();
+
+        private TestCommunicator(String nodeId) {
+            this.nodeId = new NodeId(nodeId);
+        }
+
+        private void deliver(ClusterMessage message) {
+            ClusterMessageHandler handler = handlers.get(message.subject());
+            if (handler != null) {
+                executors.get(message.subject()).execute(() -> handler.handle(message));
+            }
+        }
+
+        @Override
+        public boolean broadcast(ClusterMessage message) {
+            peers.forEach(peer -> peer.deliver(message));
+            return true;
+        }
+
+        @Override
+        public boolean broadcastIncludeSelf(ClusterMessage message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean unicast(ClusterMessage message, NodeId toNodeId) {
+            sent.incrementAndGet();
+            peers.stream().filter(peer -> peer.nodeId.equals(toNodeId)).forEach(peer -> peer.deliver(message));
+            return true;
+        }
+
+        @Override
+        public boolean multicast(ClusterMessage message, Iterable<NodeId> nodeIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber,
+                                  ExecutorService executor) {
+            handlers.put(subject, subscriber);
+            executors.put(subject, executor);
+        }
+
+        @Override
+        public void removeSubscriber(MessageSubject subject) {
+            handlers.remove(subject);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.consistent.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import net.kuujo.copycat.state.StateContext;
+
+/**
+ * Unit tests for rebalancing of {@link PartitionedDatabase}.
+ */
+public class PartitionedDatabaseTest {
+
+    private static final String TABLE = "table";
+    private static final byte[] VALUE = "value".getBytes();
+
+    private TestPartition p1;
+    private TestPartition p2;
+    private PartitionedDatabase database;
+    private String key;
+
+    @Before
+    public void setUp() {
+        p1 = new TestPartition("p1");
+        p2 = new TestPartition("p2");
+        List<Database> partitions = ImmutableList.of(p1.database, p2.database);
+        Partitioner<String> partitioner = new ConsistentHashPartitioner(partitions);
+        // Pick a key that belongs in p2 and misplace it in p1.
+        for (int i = 0; key == null; i++) {
+            if (partitioner.getPartition(TABLE, "key" + i) == p2.database) {
+                key = "key" + i;
+            }
+        }
+        p1.state.put(TABLE, key, VALUE);
+        database = new PartitionedDatabase("test", partitions, new MetricsManager());
+        database.open().join();
+    }
+
+    @Test
+    public void testRebalanceMovesMisplacedEntry() {
+        assertFalse(database.isBalanced());
+        assertArrayEquals(VALUE, database.get(TABLE, key).join().value());
+
+        assertEquals(1, (int) database.rebalance().join());
+        assertTrue(database.isBalanced());
+        assertFalse(p1.state.containsKey(TABLE, key));
+        assertArrayEquals(VALUE, p2.state.get(TABLE, key).value());
+    }
+
+    @Test
+    public void testMoveRacingWithDelete() {
+        // The entry is moved and deleted by a concurrent writer after the
+        // rebalance read it but before the rebalance moves it itself.
+        p1.beforePrepare.set(() -> database.remove(TABLE, key).join());
+
+        assertEquals(0, (int) database.rebalance().join());
+        assertTrue(database.isBalanced());
+        assertFalse(p1.state.containsKey(TABLE, key));
+        assertFalse(p2.state.containsKey(TABLE, key));
+        assertNull(database.get(TABLE, key).join());
+    }
+
+    @Test
+    public void testUpdateMovesEntry() {
+        assertArrayEquals(VALUE, database.put(TABLE, key, "new".getBytes()).join().value().value());
+        assertFalse(p1.state.containsKey(TABLE, key));
+        assertArrayEquals("new".getBytes(), p2.state.get(TABLE, key).value());
+    }
+
+    /**
+     * Database partition backed by an in-memory database state, with a hook
+     * run once before the next transaction is prepared on it.
+     */
+    private static final class TestPartition {
+        private final DefaultDatabaseState state = new DefaultDatabaseState();
+        private final AtomicReference<Runnable> beforePrepare = new AtomicReference<>();
+        private final Database database;
+
+        private TestPartition(String name) {
+            Map<String, Object> context = Maps.newHashMap();
+            state.init(stateContext(context));
+            database = (Database) Proxy.newProxyInstance(
+                    getClass().getClassLoader(), new Class<?>[] {Database.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                        case "name":
+                            return name;
+                        case "open":
+                            return CompletableFuture.completedFuture(proxy);
+                        case "close":
+                            return CompletableFuture.completedFuture(null);
+                        case "isOpen":
+                            return true;
+                        case "isClosed":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return name;
+                        case "prepare":
+                            Runnable hook = beforePrepare.getAndSet(null);
+                            if (hook != null) {
+                                hook.run();
+                            }
+                            return CompletableFuture.completedFuture(invoke(method, args));
+                        default:
+                            return CompletableFuture.completedFuture(invoke(method, args));
+                        }
+                    });
+        }
+
+        private Object invoke(Method method, Object[] args) throws Exception {
+            try {
+                return DefaultDatabaseState.class
+                        .getMethod(method.getName(), method.getParameterTypes())
+                        .invoke(state, args);
+            } catch (InvocationTargetException e) {
+                throw (Exception) e.getCause();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static StateContext<DatabaseState<String, byte[]>> stateContext(Map<String, Object> context) {
+            return (StateContext<DatabaseState<String, byte[]>>) Proxy.newProxyInstance(
+                    StateContext.class.getClassLoader(), new Class<?>[] {StateContext.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("get")) {
+                            return context.get(args[0]);
+                        } else if (method.getName().equals("put")) {
+                            context.put((String) args[0], args[1]);
+                            return proxy;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}
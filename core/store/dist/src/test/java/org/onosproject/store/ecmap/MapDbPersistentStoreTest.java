@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onlab.util.KryoNamespace;
+import org.onosproject.store.Timestamp;
+import org.onosproject.store.impl.LogicalTimestamp;
+import org.onosproject.store.impl.Timestamped;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.serializers.KryoSerializer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onlab.junit.TestTools.assertAfter;
+
+/**
+ * Unit tests for the write-behind batching of MapDbPersistentStore.
+ */
+public class MapDbPersistentStoreTest {
+
+    private static final String POISON = "poison";
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private String filename;
+    private ExecutorService executor;
+    private Histogram writeLag;
+    private Counter droppedUpdates;
+
+    // Number of times encoding the poison key is still going to fail
+    private volatile int poisonFailures;
+
+    private final KryoSerializer serializer = new KryoSerializer() {
+        @Override
+        protected void setupKryoPool() {
+            serializerPool = KryoNamespace.newBuilder()
+                    .register(KryoNamespaces.BASIC)
+                    .register(LogicalTimestamp.class)
+                    .register(Timestamped.class)
+                    .build();
+        }
+
+        @Override
+        public byte[] encode(Object obj) {
+            if (POISON.equals(obj) && poisonFailures > 0) {
+                poisonFailures--;
+                throw new IllegalStateException("cannot encode " + obj);
+            }
+            return super.encode(obj);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        filename = tempFolder.newFolder().getPath() + "/mapdb-test";
+        executor = Executors.newSingleThreadExecutor();
+        writeLag = new Histogram(new UniformReservoir());
+        droppedUpdates = new Counter();
+        poisonFailures = 0;
+    }
+
+    private MapDbPersistentStore<String, String> open(int maxBatchMillis) {
+        return new MapDbPersistentStore<>(filename, executor, serializer,
+                                          MapDbPersistentStore.DEFAULT_MAX_BATCH_SIZE,
+                                          maxBatchMillis, writeLag, droppedUpdates);
+    }
+
+    // Closes the store and re-opens its file to read back what it persisted.
+    private void closeAndReadBack(MapDbPersistentStore<String, String> store,
+                                  Map<String, Timestamped<String>> items,
+                                  Map<String, Timestamp> tombstones)
+            throws InterruptedException {
+        ExecutorService closing = executor;
+        store.close();
+        assertTrue("store should close", closing.awaitTermination(5, TimeUnit.SECONDS));
+
+        executor = Executors.newSingleThreadExecutor();
+        MapDbPersistentStore<String, String> reopened = open(MapDbPersistentStore.DEFAULT_MAX_BATCH_MS);
+        reopened.readInto(items, tombstones);
+        reopened.close();
+    }
+
+    @Test
+    public void batchCoalescedPerKey() throws InterruptedException {
+        MapDbPersistentStore<String, String> store = open(MapDbPersistentStore.DEFAULT_MAX_BATCH_MS);
+        store.put("a", "1", new LogicalTimestamp(1));
+        store.put("a", "2", new LogicalTimestamp(2));
+        store.put("b", "1", new LogicalTimestamp(1));
+        store.remove("b", new LogicalTimestamp(2));
+        assertAfter(1000, () -> assertEquals("incorrect batch count", 1, writeLag.getCount()));
+
+        Map<String, Timestamped<String>> items = new HashMap<>();
+        Map<String, Timestamp> tombstones = new HashMap<>();
+        closeAndReadBack(store, items, tombstones);
+        assertEquals("incorrect value", "2", items.get("a").value());
+        assertFalse("b should be removed", items.containsKey("b"));
+        assertEquals("incorrect tombstone", new LogicalTimestamp(2), tombstones.get("b"));
+    }
+
+    @Test
+    public void flushOnClose() throws InterruptedException {
+        // Batches are held long enough for close to catch them pending
+        MapDbPersistentStore<String, String> store = open(1000);
+        store.put("a", "1", new LogicalTimestamp(1));
+        store.put("b", "1", new LogicalTimestamp(1));
+        assertEquals("nothing should be committed yet", 0, writeLag.getCount());
+
+        Map<String, Timestamped<String>> items = new HashMap<>();
+        Map<String, Timestamp> tombstones = new HashMap<>();
+        closeAndReadBack(store, items, tombstones);
+        assertEquals("incorrect item count", 2, items.size());
+    }
+
+    @Test
+    public void failedUpdateRetried() throws InterruptedException {
+        MapDbPersistentStore<String, String> store = open(MapDbPersistentStore.DEFAULT_MAX_BATCH_MS);
+        // Fails within the first batch, on its own, then on its first retry
+        poisonFailures = MapDbPersistentStore.MAX_COMMIT_ATTEMPTS;
+        store.put("a", "1", new LogicalTimestamp(1));
+        store.put(POISON, "1", new LogicalTimestamp(1));
+
+        // The first batch, then each retry of the poison update
+        assertAfter(1000, () -> assertEquals("incorrect batch count",
+                MapDbPersistentStore.MAX_COMMIT_ATTEMPTS, writeLag.getCount()));
+
+        Map<String, Timestamped<String>> items = new HashMap<>();
+        Map<String, Timestamp> tombstones = new HashMap<>();
+        closeAndReadBack(store, items, tombstones);
+        assertEquals("incorrect item count", 2, items.size());
+        assertEquals("nothing should be dropped", 0, droppedUpdates.getCount());
+    }
+
+    @Test
+    public void failingUpdateDropped() throws InterruptedException {
+        MapDbPersistentStore<String, String> store = open(MapDbPersistentStore.DEFAULT_MAX_BATCH_MS);
+        poisonFailures = Integer.MAX_VALUE;
+        store.put("a", "1", new LogicalTimestamp(1));
+        store.put(POISON, "1", new LogicalTimestamp(1));
+        assertAfter(1000, () -> assertEquals("poison should be dropped",
+                                             1, droppedUpdates.getCount()));
+
+        Map<String, Timestamped<String>> items = new HashMap<>();
+        Map<String, Timestamp> tombstones = new HashMap<>();
+        closeAndReadBack(store, items, tombstones);
+        assertTrue("good update should survive the rollback", items.containsKey("a"));
+        assertFalse("poison should not be persisted", items.containsKey(POISON));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.ecmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for MapDigest.
+ */
+public class MapDigestTest {
+
+    private static final long KEY1 = 0x1234L;
+    private static final long KEY2 = 0x1234L + MapDigest.BUCKETS * 7;
+    private static final long KEY3 = 0xabcdefL;
+
+    @Test
+    public void inSync() {
+        MapDigest a = new MapDigest();
+        MapDigest b = new MapDigest();
+
+        // Order of the updates should not matter
+        a.toggle(KEY1, 11);
+        a.toggle(KEY2, 22);
+        b.toggle(KEY2, 22);
+        b.toggle(KEY1, 11);
+
+        assertEquals(0, a.mismatchingGroups(b.groupDigests()).length);
+    }
+
+    @Test
+    public void toggleOut() {
+        MapDigest a = new MapDigest();
+        MapDigest b = new MapDigest();
+
+        a.toggle(KEY1, 11);
+        a.toggle(KEY3, 33);
+        a.toggle(KEY3, 33);
+        b.toggle(KEY1, 11);
+
+        assertEquals(0, a.mismatchingGroups(b.groupDigests()).length);
+    }
+
+    @Test
+    public void mismatch() {
+        MapDigest a = new MapDigest();
+        MapDigest b = new MapDigest();
+
+        a.toggle(KEY1, 11);
+        a.toggle(KEY3, 33);
+        b.toggle(KEY1, 11);
+        b.toggle(KEY3, 34);
+
+        int[] groups = a.mismatchingGroups(b.groupDigests());
+        int bucket = MapDigest.bucket(KEY3);
+        assertArrayEquals(new int[]{bucket / MapDigest.GROUP_SIZE}, groups);
+
+        int[] buckets = b.mismatchingBuckets(groups, a.bucketDigests(groups));
+        assertArrayEquals(new int[]{bucket}, buckets);
+    }
+
+    @Test
+    public void sameBucket() {
+        assertEquals(MapDigest.bucket(KEY1), MapDigest.bucket(KEY2));
+
+        MapDigest a = new MapDigest();
+        MapDigest b = new MapDigest();
+
+        a.toggle(KEY1, 11);
+        b.toggle(KEY2, 11);
+
+        // Buckets are summaries; only the entry hashes tell entries apart
+        assertEquals(0, a.mismatchingGroups(b.groupDigests()).length);
+
+        b.toggle(KEY2, 11);
+        b.toggle(KEY2, 22);
+        int[] groups = a.mismatchingGroups(b.groupDigests());
+        assertArrayEquals(new int[]{MapDigest.bucket(KEY1)},
+                          a.mismatchingBuckets(groups, b.bucketDigests(groups)));
+    }
+
+    @Test
+    public void mismatchedLayout() {
+        MapDigest a = new MapDigest();
+        assertEquals(MapDigest.GROUPS, a.mismatchingGroups(new long[3]).length);
+        assertEquals(MapDigest.BUCKETS,
+                     a.mismatchingBuckets(new int[]{0}, new long[3]).length);
+    }
+
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.packet.ChassisId;
+import org.onlab.packet.IpAddress;
+import org.onosproject.cfg.ComponentConfigAdapter;
+import org.onosproject.cluster.ClusterServiceAdapter;
+import org.onosproject.cluster.ControllerNode;
+import org.onosproject.cluster.DefaultControllerNode;
+import org.onosproject.cluster.NodeId;
+import org.onosproject.core.CoreServiceAdapter;
+import org.onosproject.mastership.MastershipTerm;
+import org.onosproject.net.DefaultDevice;
+import org.onosproject.net.Device;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.device.DeviceEvent;
+import org.onosproject.net.device.DeviceListener;
+import org.onosproject.net.device.DeviceServiceAdapter;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
+import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleBatchEntry;
+import org.onosproject.net.flow.FlowRuleBatchEntry.FlowRuleOperation;
+import org.onosproject.net.flow.FlowRuleBatchOperation;
+import org.onosproject.net.provider.ProviderId;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.ClusterMessage;
+import org.onosproject.store.cluster.messaging.ClusterMessageHandler;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.flow.ReplicaInfo;
+import org.onosproject.store.flow.ReplicaInfoEvent;
+import org.onosproject.store.flow.ReplicaInfoEventListener;
+import org.onosproject.store.flow.ReplicaInfoService;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.onlab.junit.TestTools.assertAfter;
+import static org.onosproject.net.DeviceId.deviceId;
+import static org.onosproject.store.flow.impl.FlowStoreMessageSubjects.PURGE_FLOW_BACKUP;
+
+/**
+ * Tests of the flow table replication and failover of the distributed
+ * flow rule store, using a set of stores wired by an in-memory cluster.
+ */
+public class DistributedFlowRuleStoreTest {
+
+    private static final DeviceId DID = deviceId("of:1");
+    private static final Device DEVICE =
+            new DefaultDevice(new ProviderId("of", "foo"), DID, Device.Type.SWITCH,
+                              "m", "h", "s", "n", new ChassisId());
+
+    private static final IpAddress IP = IpAddress.valueOf("127.0.0.1");
+
+    private static final NodeId N1 = new NodeId("node1");
+    private static final NodeId N2 = new NodeId("node2");
+    private static final NodeId N3 = new NodeId("node3");
+
+    private static final int TIMEOUT = 2000;
+
+    private final Map<NodeId, TestNode> nodes = new LinkedHashMap<>();
+    private final Set<NodeId> active = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private volatile NodeId master;
+    private volatile long term;
+    private volatile boolean dropPurges;
+    private volatile NodeId unresponsive;
+
+    @Before
+    public void setUp() {
+        for (NodeId id : ImmutableList.of(N1, N2, N3)) {
+            nodes.put(id, new TestNode(id));
+        }
+        nodes.values().forEach(node -> node.store.activate(null));
+    }
+
+    @After
+    public void tearDown() {
+        nodes.values().forEach(node -> node.store.deactivate(null));
+    }
+
+    @Test
+    public void failover() {
+        activate(N1, N2);
+        changeMaster(N1);
+        addFlow(N1, 1, 1);
+        addFlow(N1, 2, 2);
+
+        activate(N1, N2, N3);
+        changeMaster(N3);
+        assertAfter(TIMEOUT, () -> assertEquals("flows not recovered", 2,
+                                                Iterables.size(store(N3).getFlowEntries(DID))));
+
+        // The copy kept for the former master must be gone once the new
+        // master backs up its own changes, wherever it places them
+        addFlow(N3, 3, 3);
+        assertEquals("master should not keep a backup", 0, backupSize(N3));
+    }
+
+    @Test
+    public void staleCopyOfEarlierTerm() {
+        activate(N1, N2);
+        changeMaster(N1);
+        addFlow(N1, 1, 1);
+        addFlow(N1, 2, 2);
+        addFlow(N1, 3, 3);
+
+        // Node 2 misses the start of the next term and keeps its copy, which
+        // has a higher sequence number than anything backed up since
+        dropPurges = true;
+        activate(N1, N3);
+        changeMaster(N1);
+        assertAfter(TIMEOUT, () -> assertEquals("incorrect backup", 3, backupSize(N3)));
+        FlowEntry removed = store(N1).getFlowEntries(DID).iterator().next();
+        store(N1).removeFlowRule(removed);
+        assertAfter(TIMEOUT, () -> assertEquals("incorrect backup", 2, backupSize(N3)));
+        assertEquals("stale backup should remain", 3, backupSize(N2));
+
+        // The newer copy held by a peer wins over the stale local copy
+        activate(N2, N3);
+        changeMaster(N2);
+        assertAfter(TIMEOUT, () -> assertEquals("stale flows recovered", 2,
+                                                Iterables.size(store(N2).getFlowEntries(DID))));
+    }
+
+    @Test
+    public void failoverWithUnresponsivePeer() {
+        activate(N1, N2);
+        changeMaster(N1);
+        addFlow(N1, 1, 1);
+        addFlow(N1, 2, 2);
+
+        // The former master never answers; the backup held by node 2 is
+        // loaded once the fetch times out, without holding up the event
+        unresponsive = N1;
+        activate(N1, N2, N3);
+        long start = System.currentTimeMillis();
+        changeMaster(N3);
+        assertTrue("event dispatch blocked", System.currentTimeMillis() - start < TIMEOUT);
+        assertEquals("flows loaded before fetch completed", 0,
+                     Iterables.size(store(N3).getFlowEntries(DID)));
+        assertAfter(3 * TIMEOUT + 1000, () -> assertEquals("flows not recovered", 2,
+                                                Iterables.size(store(N3).getFlowEntries(DID))));
+    }
+
+    @Test
+    public void purgeOnReassignment() {
+        activate(N1, N2);
+        changeMaster(N1);
+        addFlow(N1, 1, 1);
+        addFlow(N1, 2, 2);
+
+        activate(N1, N3);
+        addFlow(N1, 3, 3);
+        assertAfter(TIMEOUT, () -> assertEquals("incorrect backup", 3, backupSize(N3)));
+        assertAfter(TIMEOUT, () -> assertEquals("former backup not purged", 0, backupSize(N2)));
+    }
+
+    @Test
+    public void purgeOnDeviceRemoval() {
+        activate(N1, N2);
+        changeMaster(N1);
+        addFlow(N1, 1, 1);
+
+        nodes.values().forEach(node -> node.deviceService.listener.event(
+                new DeviceEvent(DeviceEvent.Type.DEVICE_REMOVED, DEVICE)));
+        assertEquals("backup not purged", 0, backupSize(N2));
+    }
+
+    private DistributedFlowRuleStore store(NodeId id) {
+        return nodes.get(id).store;
+    }
+
+    private void activate(NodeId... ids) {
+        active.clear();
+        active.addAll(ImmutableSet.copyOf(ids));
+    }
+
+    private void changeMaster(NodeId newMaster) {
+        master = newMaster;
+        term++;
+        ReplicaInfoEvent event = new ReplicaInfoEvent(ReplicaInfoEvent.Type.MASTER_CHANGED, DID,
+                                                      new ReplicaInfo(master, ImmutableList.of()));
+        nodes.values().forEach(node -> node.replicaInfoService.listener.event(event));
+    }
+
+    // Adds a flow on the given master and waits for its backup to catch up
+    private void addFlow(NodeId id, long flowId, int expectedBackupSize) {
+        FlowRule rule = new DefaultFlowEntry(DID, DefaultTrafficSelector.emptySelector(),
+                                             DefaultTrafficTreatment.emptyTreatment(), 1,
+                                             FlowEntryState.ADDED, 0, 0, 0, flowId, 0);
+        store(id).storeBatch(new FlowRuleBatchOperation(
+                ImmutableList.of(new FlowRuleBatchEntry(FlowRuleOperation.ADD, rule)), DID, flowId));
+        assertAfter(TIMEOUT, () -> assertEquals("incorrect backup", expectedBackupSize, totalBackupSize()));
+    }
+
+    private int backupSize(NodeId id) {
+        return (Integer) nodes.get(id).metricsService
+                .getGauges((name, metric) -> name.endsWith("backupSize"))
+                .values().iterator().next().getValue();
+    }
+
+    private int totalBackupSize() {
+        return nodes.keySet().stream().mapToInt(this::backupSize).sum();
+    }
+
+    // Single cluster member hosting its own flow rule store
+    private final class TestNode {
+        private final ControllerNode node;
+        private final DistributedFlowRuleStore store;
+        private final MetricsManager metricsService = new MetricsManager();
+        private final TestCommunicator communicator = new TestCommunicator();
+        private final TestReplicaInfoService replicaInfoService = new TestReplicaInfoService();
+        private final TestDeviceService deviceService = new TestDeviceService();
+
+        private TestNode(NodeId id) {
+            node = new DefaultControllerNode(id, IP);
+            store = new TestDistributedFlowRuleStore();
+            store.clusterService = new TestClusterService(node);
+            store.clusterCommunicator = communicator;
+            store.replicaInfoManager = replicaInfoService;
+            store.termService = deviceId -> MastershipTerm.of(master, term);
+            store.deviceService = deviceService;
+            store.coreService = new CoreServiceAdapter();
+            store.configService = new ComponentConfigAdapter();
+            store.metricsService = metricsService;
+        }
+    }
+
+    private static final class TestDistributedFlowRuleStore extends DistributedFlowRuleStore {
+        private TestDistributedFlowRuleStore() {
+            storeService = () -> null;
+        }
+    }
+
+    private final class TestClusterService extends ClusterServiceAdapter {
+        private final ControllerNode local;
+
+        private TestClusterService(ControllerNode local) {
+            this.local = local;
+        }
+
+        @Override
+        public ControllerNode getLocalNode() {
+            return local;
+        }
+
+        @Override
+        public Set<ControllerNode> getNodes() {
+            Set<ControllerNode> all = new HashSet<>();
+            nodes.values().forEach(node -> all.add(node.node));
+            return all;
+        }
+
+        @Override
+        public ControllerNode.State getState(NodeId nodeId) {
+            return active.contains(nodeId) ? ControllerNode.State.ACTIVE : ControllerNode.State.INACTIVE;
+        }
+    }
+
+    private final class TestReplicaInfoService implements ReplicaInfoService {
+        private ReplicaInfoEventListener listener;
+
+        @Override
+        public ReplicaInfo getReplicaInfoFor(DeviceId deviceId) {
+            return new ReplicaInfo(master, ImmutableList.of());
+        }
+
+        @Override
+        public void addListener(ReplicaInfoEventListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void removeListener(ReplicaInfoEventListener listener) {
+            this.listener = null;
+        }
+    }
+
+    private static final class TestDeviceService extends DeviceServiceAdapter {
+        private DeviceListener listener;
+
+        @Override
+        public void addListener(DeviceListener listener) {
+            this.listener = listener;
+        }
+    }
+
+    // Delivers messages straight to the handlers of the addressed store
+    private final class TestCommunicator implements ClusterCommunicationService {
+        private final Map<MessageSubject, ClusterMessageHandler> handlers = new ConcurrentHashMap<>();
+        private final Map<MessageSubject, ExecutorService> executors = new ConcurrentHashMap<>();
+
+        private boolean deliver(ClusterMessage message) {
+            ClusterMessageHandler handler = handlers.get(message.subject());
+            if (handler == null) {
+                return false;
+            }
+            executors.get(message.subject()).execute(() -> handler.handle(message));
+            return true;
+        }
+
+        @Override
+        public boolean broadcast(ClusterMessage message) {
+            nodes.keySet().stream()
+                    .filter(id -> !id.equals(message.sender()))
+                    .forEach(id -> unicast(message, id));
+            return true;
+        }
+
+        @Override
+        public boolean broadcastIncludeSelf(ClusterMessage message) {
+            nodes.keySet().forEach(id -> unicast(message, id));
+            return true;
+        }
+
+        @Override
+        public boolean unicast(ClusterMessage message, NodeId toNodeId) {
+            if (dropPurges && message.subject().equals(PURGE_FLOW_BACKUP)) {
+                return true;
+            }
+            return nodes.get(toNodeId).communicator.deliver(message);
+        }
+
+        @Override
+        public boolean multicast(ClusterMessage message, Iterable<NodeId> nodeIds) {
+            nodeIds.forEach(id -> unicast(message, id));
+            return true;
+        }
+
+        @Override
+        public ListenableFuture<byte[]> sendAndReceive(ClusterMessage message, NodeId toNodeId)
+                throws IOException {
+            SettableFuture<byte[]> response = SettableFuture.create();
+            if (toNodeId.equals(unresponsive)) {
+                return response;
+            }
+            ClusterMessage request = new ClusterMessage(message.sender(), message.subject(),
+                                                        message.payload()) {
+                @Override
+                public void respond(byte[] data) {
+                    response.set(data);
+                }
+            };
+            if (!nodes.get(toNodeId).communicator.deliver(request)) {
+                throw new IOException("No handler for " + message.subject());
+            }
+            return response;
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addSubscriber(MessageSubject subject, ClusterMessageHandler subscriber,
+                                  ExecutorService executor) {
+            handlers.put(subject, subscriber);
+            executors.put(subject, executor);
+        }
+
+        @Override
+        public void removeSubscriber(MessageSubject subject) {
+            handlers.remove(subject);
+            executors.remove(subject);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.DeviceId.deviceId;
+
+/**
+ * Tests of the flow backup table.
+ */
+public class FlowBackupTableTest {
+
+    private static final DeviceId DID = deviceId("of:1");
+
+    private static StoredFlowEntry entry(long id) {
+        return new DefaultFlowEntry(DID, DefaultTrafficSelector.emptySelector(),
+                                    DefaultTrafficTreatment.emptyTreatment(), 1,
+                                    FlowEntryState.ADDED, 0, 0, 0, id, 0);
+    }
+
+    private static Map<FlowId, List<StoredFlowEntry>> flows(long... ids) {
+        ImmutableMap.Builder<FlowId, List<StoredFlowEntry>> builder = ImmutableMap.builder();
+        for (long id : ids) {
+            builder.put(FlowId.valueOf(id), ImmutableList.of(entry(id)));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void fullAndDeltas() {
+        FlowBackupTable table = new FlowBackupTable(DID);
+        assertEquals("incorrect ack", 1, table.apply(new FlowBackupMessage(DID, 1, 1, true, flows(1, 2))));
+        assertEquals("incorrect ack", 2, table.apply(new FlowBackupMessage(DID, 1, 2, false, flows(3))));
+        assertEquals("incorrect ack", 3, table.apply(new FlowBackupMessage(
+                DID, 1, 3, false, ImmutableMap.of(FlowId.valueOf(1), ImmutableList.of()))));
+        assertEquals("incorrect size", 2, table.size());
+
+        FlowBackupMessage snapshot = table.snapshot();
+        assertTrue("snapshot should be full", snapshot.isFull());
+        assertEquals("incorrect term", 1, snapshot.term());
+        assertEquals("incorrect sequence", 3, snapshot.sequence());
+        assertEquals("incorrect flows", flows(2, 3).keySet(), snapshot.flows().keySet());
+    }
+
+    @Test
+    public void gapIgnored() {
+        FlowBackupTable table = new FlowBackupTable(DID);
+        table.apply(new FlowBackupMessage(DID, 1, 1, true, flows(1)));
+        assertEquals("gap should not be applied", 1,
+                     table.apply(new FlowBackupMessage(DID, 1, 3, false, flows(2))));
+        assertEquals("incorrect size", 1, table.size());
+
+        assertEquals("full should reset", 7,
+                     table.apply(new FlowBackupMessage(DID, 1, 7, true, flows(4, 5, 6))));
+        assertEquals("incorrect size", 3, table.size());
+    }
+
+    @Test
+    public void staleTermIgnored() {
+        FlowBackupTable table = new FlowBackupTable(DID);
+        table.apply(new FlowBackupMessage(DID, 2, 1, true, flows(1)));
+        assertEquals("earlier term should not be applied", 1,
+                     table.apply(new FlowBackupMessage(DID, 1, 5, true, flows(2, 3))));
+        assertEquals("incorrect size", 1, table.size());
+        assertEquals("incorrect term", 2, table.snapshot().term());
+    }
+
+    @Test
+    public void newTermRequiresFull() {
+        FlowBackupTable table = new FlowBackupTable(DID);
+        table.apply(new FlowBackupMessage(DID, 1, 4, true, flows(1)));
+        assertEquals("delta of a new term should not be applied", 4,
+                     table.apply(new FlowBackupMessage(DID, 2, 1, false, flows(2))));
+        assertEquals("full of a new term should be applied", 1,
+                     table.apply(new FlowBackupMessage(DID, 2, 1, true, flows(2, 3))));
+        assertEquals("incorrect size", 2, table.size());
+        assertEquals("incorrect term", 2, table.snapshot().term());
+    }
+
+    @Test
+    public void versionOrdering() {
+        FlowBackupTable table = new FlowBackupTable(DID);
+        table.apply(new FlowBackupMessage(DID, 2, 3, true, flows(1)));
+        assertTrue("should be newer than earlier term", table.isNewerThan(1, 9));
+        assertTrue("should be newer than earlier sequence", table.isNewerThan(2, 2));
+        assertFalse("should not be newer than itself", table.isNewerThan(2, 3));
+        assertFalse("should not be newer than later term", table.isNewerThan(3, 0));
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.flow.impl;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.flow.DefaultFlowEntry;
+import org.onosproject.net.flow.DefaultTrafficSelector;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.FlowEntry;
+import org.onosproject.net.flow.FlowEntry.FlowEntryState;
+import org.onosproject.net.flow.FlowId;
+import org.onosproject.net.flow.StoredFlowEntry;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.DeviceId.deviceId;
+
+/**
+ * Tests of the compact flow entry table.
+ */
+public class FlowEntryTableTest {
+
+    private static final DeviceId DID = deviceId("of:1");
+
+    private static final int[] PERF_SIZES = {100000, 1000000, 5000000};
+    private static final int PERF_LOOKUPS = 1000000;
+
+    private static StoredFlowEntry entry(long id, int priority) {
+        return new DefaultFlowEntry(DID, DefaultTrafficSelector.emptySelector(),
+                                    DefaultTrafficTreatment.emptyTreatment(), priority,
+                                    FlowEntryState.ADDED, 0, 0, 0, id, 0);
+    }
+
+    // Flow rules equal each other regardless of their IDs, so compare those
+    private static Set<Long> ids(Iterable<? extends FlowEntry> entries) {
+        Set<Long> ids = Sets.newHashSet();
+        entries.forEach(e -> ids.add(e.id().value()));
+        return ids;
+    }
+
+    @Test
+    public void basics() {
+        FlowEntryTable table = new FlowEntryTable();
+        StoredFlowEntry e1 = entry(1, 1);
+        StoredFlowEntry e2 = entry(2, 1);
+        assertTrue("should be added", table.add(e1));
+        assertTrue("should be added", table.add(e2));
+        assertFalse("duplicate should not be added", table.add(entry(1, 1)));
+        assertEquals("incorrect size", 2, table.size());
+
+        assertSame("incorrect entry", e1, table.get(entry(1, 1)));
+        assertNull("no entry expected", table.get(entry(3, 1)));
+        assertEquals("incorrect entries", ImmutableSet.of(1L, 2L), ids(table.view()));
+
+        assertTrue("should be removed", table.remove(entry(1, 1)));
+        assertFalse("should not be removed", table.remove(entry(1, 1)));
+        assertNull("no entry expected", table.get(e1));
+        assertEquals("incorrect size", 1, table.size());
+        assertEquals("incorrect entries", ImmutableSet.of(2L), ids(table.view()));
+    }
+
+    @Test
+    public void sameFlowId() {
+        FlowEntryTable table = new FlowEntryTable();
+        StoredFlowEntry e1 = entry(7, 1);
+        StoredFlowEntry e2 = entry(7, 2);
+        StoredFlowEntry e3 = entry(7, 3);
+        table.add(e1);
+        table.add(e2);
+        table.add(e3);
+        assertEquals("incorrect size", 3, table.size());
+        assertEquals("incorrect entries", 3, table.get(FlowId.valueOf(7)).size());
+        assertSame("incorrect entry", e2, table.get(entry(7, 2)));
+
+        table.remove(e2);
+        assertEquals("incorrect entries", ImmutableSet.of(e1, e3),
+                     ImmutableSet.copyOf(table.get(FlowId.valueOf(7))));
+        table.remove(e1);
+        table.remove(e3);
+        assertTrue("no entries expected", table.get(FlowId.valueOf(7)).isEmpty());
+        assertTrue("no entries expected", table.view().isEmpty());
+    }
+
+    @Test
+    public void growAndShrink() {
+        FlowEntryTable table = new FlowEntryTable();
+        for (long id = 0; id < 10000; id++) {
+            table.add(entry(id, 1));
+        }
+        assertEquals("incorrect size", 10000, table.size());
+        assertEquals("incorrect snapshot", 10000, table.snapshot().size());
+
+        for (long id = 0; id < 10000; id += 2) {
+            assertTrue("should be removed", table.remove(entry(id, 1)));
+        }
+        for (long id = 0; id < 10000; id++) {
+            assertEquals("incorrect lookup of " + id, id % 2 == 1,
+                         table.get(entry(id, 1)) != null);
+        }
+        assertEquals("incorrect size", 5000, table.size());
+        assertEquals("incorrect iteration", 5000, ids(table.view()).size());
+    }
+
+    @Test
+    public void iterateWhileModified() {
+        FlowEntryTable table = new FlowEntryTable();
+        for (long id = 0; id < 100; id++) {
+            table.add(entry(id, 1));
+        }
+        Set<Long> seen = Sets.newHashSet();
+        Iterator<FlowEntry> it = table.view().iterator();
+        while (it.hasNext()) {
+            FlowEntry entry = it.next();
+            seen.add(entry.id().value());
+            table.remove(entry);
+            table.add(entry(entry.id().value() + 1000, 1));
+        }
+        assertEquals("all original entries should be seen", 100,
+                     seen.stream().filter(id -> id < 100).count());
+        assertEquals("incorrect size", 100, table.size());
+    }
+
+    @Ignore("Benchmark; run manually with a heap of several GB")
+    @Test
+    public void comparativePerf() {
+        DecimalFormat fmt = new DecimalFormat("#,###");
+        for (int size : PERF_SIZES) {
+            List<StoredFlowEntry> entries = new ArrayList<>(size);
+            for (long id = 0; id < size; id++) {
+                entries.add(entry(id, 1));
+            }
+
+            long before = usedMemory();
+            FlowEntryTable table = new FlowEntryTable();
+            entries.forEach(table::add);
+            long tableBytes = (usedMemory() - before) / size;
+            long tableCost = lookupCost(entries, table::get);
+
+            // Per-device map of copy-on-write sets it replaced
+            before = usedMemory();
+            ConcurrentMap<FlowId, Set<StoredFlowEntry>> map = new ConcurrentHashMap<>();
+            entries.forEach(e -> map.computeIfAbsent(e.id(), k -> new CopyOnWriteArraySet<>()).add(e));
+            long mapBytes = (usedMemory() - before) / size;
+            long mapCost = lookupCost(entries, rule -> {
+                for (StoredFlowEntry e : map.get(rule.id())) {
+                    if (e.equals(rule)) {
+                        return e;
+                    }
+                }
+                return null;
+            });
+
+            assertEquals("incorrect size", map.size(), table.size());
+            System.out.println("For " + fmt.format(size) + " flows, the table takes " +
+                                       tableBytes + " bytes per flow and " +
+                                       fmt.format(tableCost) + " nanos per lookup; the map takes " +
+                                       mapBytes + " bytes per flow and " +
+                                       fmt.format(mapCost) + " nanos per lookup");
+        }
+    }
+
+    // Returns the average cost of looking up entries spread across the table.
+    private static long lookupCost(List<StoredFlowEntry> entries,
+                                   Function<StoredFlowEntry, StoredFlowEntry> lookup) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < PERF_LOOKUPS; i++) {
+            if (lookup.apply(entries.get((int) ((i * 7919L) % entries.size()))) != null) {
+                found++;
+            }
+        }
+        long cost = (System.nanoTime() - start) / PERF_LOOKUPS;
+        assertEquals("lookups should succeed", PERF_LOOKUPS, found);
+        return cost;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -423,11 +423,8 @@ public class SimpleDeviceStore
     public DeviceEvent updatePortStatistics(ProviderId providerId, DeviceId deviceId,
                                             Collection<PortStatistics> portStats) {
 
-        ConcurrentMap<PortNumber, PortStatistics> statsMap = devicePortStats.get(deviceId);
-        if (statsMap == null) {
-            statsMap = Maps.newConcurrentMap();
-            devicePortStats.put(deviceId, statsMap);
-        }
+        ConcurrentMap<PortNumber, PortStatistics> statsMap =
+                devicePortStats.computeIfAbsent(deviceId, k -> Maps.newConcurrentMap());
 
         for (PortStatistics stat: portStats) {
             PortNumber portNumber = PortNumber.portNumber(stat.port());
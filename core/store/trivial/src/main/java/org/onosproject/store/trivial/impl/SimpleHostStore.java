@@ -32,6 +32,7 @@ import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Service;
+import org.onosproject.common.host.HostIndex;
 import org.onosproject.net.Annotations;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.DefaultAnnotations;
@@ -77,6 +78,9 @@ public class SimpleHostStore
     // Hosts tracked by their location
     private final Multimap<ConnectPoint, Host> locations = HashMultimap.create();
 
+    // Secondary indexes of hosts by their attributes
+    private final HostIndex index = new HostIndex(hosts::get);
+
     private final SetMultimap<ConnectPoint, PortAddresses> portAddresses =
             Multimaps.synchronizedSetMultimap(
                     HashMultimap.<ConnectPoint, PortAddresses>create());
@@ -113,6 +117,7 @@ public class SimpleHostStore
         synchronized (this) {
             hosts.put(hostId, newhost);
             locations.put(descr.location(), newhost);
+            index.index(newhost);
         }
         return new HostEvent(HOST_ADDED, newhost);
     }
@@ -122,7 +127,13 @@ public class SimpleHostStore
                                  HostDescription descr) {
         HostEvent event;
         if (!host.location().equals(descr.location())) {
-            host.setLocation(descr.location());
+            synchronized (this) {
+                locations.remove(host.location(), host);
+                index.unindex(host);
+                host.setLocation(descr.location());
+                locations.put(host.location(), host);
+                index.index(host);
+            }
             return new HostEvent(HOST_MOVED, host);
         }
 
@@ -144,6 +155,8 @@ public class SimpleHostStore
             hosts.put(host.id(), updated);
             locations.remove(host.location(), host);
             locations.put(updated.location(), updated);
+            index.unindex(host);
+            index.index(updated);
         }
         return event;
     }
@@ -154,6 +167,7 @@ public class SimpleHostStore
             Host host = hosts.remove(hostId);
             if (host != null) {
                 locations.remove((host.location()), host);
+                index.unindex(host);
                 return new HostEvent(HOST_REMOVED, host);
             }
             return null;
@@ -177,35 +191,17 @@ public class SimpleHostStore
 
     @Override
     public Set<Host> getHosts(VlanId vlanId) {
-        Set<Host> vlanset = new HashSet<>();
-        for (Host h : hosts.values()) {
-            if (h.vlan().equals(vlanId)) {
-                vlanset.add(h);
-            }
-        }
-        return vlanset;
+        return index.getHosts(vlanId);
     }
 
     @Override
     public Set<Host> getHosts(MacAddress mac) {
-        Set<Host> macset = new HashSet<>();
-        for (Host h : hosts.values()) {
-            if (h.mac().equals(mac)) {
-                macset.add(h);
-            }
-        }
-        return macset;
+        return index.getHosts(mac);
     }
 
     @Override
     public Set<Host> getHosts(IpAddress ip) {
-        Set<Host> ipset = new HashSet<>();
-        for (Host h : hosts.values()) {
-            if (h.ipAddresses().contains(ip)) {
-                ipset.add(h);
-            }
-        }
-        return ipset;
+        return index.getHosts(ip);
     }
 
     @Override
@@ -215,13 +211,7 @@ public class SimpleHostStore
 
     @Override
     public Set<Host> getConnectedHosts(DeviceId deviceId) {
-        Set<Host> hostset = new HashSet<>();
-        for (ConnectPoint p : locations.keySet()) {
-            if (p.deviceId().equals(deviceId)) {
-                hostset.addAll(locations.get(p));
-            }
-        }
-        return hostset;
+        return index.getConnectedHosts(deviceId);
     }
 
     @Override
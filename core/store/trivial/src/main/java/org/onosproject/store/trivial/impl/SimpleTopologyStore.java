@@ -15,15 +15,29 @@
  */
 package org.onosproject.store.trivial.impl;
 
+import com.codahale.metrics.Gauge;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
 import org.apache.felix.scr.annotations.Service;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.event.Event;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
 import org.onosproject.net.Link;
 import org.onosproject.net.Path;
+import org.onosproject.net.host.HostService;
 import org.onosproject.net.provider.ProviderId;
 import org.onosproject.net.topology.ClusterId;
 import org.onosproject.net.topology.GraphDescription;
@@ -35,11 +49,17 @@ import org.onosproject.net.topology.TopologyGraph;
 import org.onosproject.net.topology.TopologyStore;
 import org.onosproject.net.topology.TopologyStoreDelegate;
 import org.onosproject.store.AbstractStore;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
+import java.util.Dictionary;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.onlab.util.Tools.get;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -52,19 +72,123 @@ public class SimpleTopologyStore
         extends AbstractStore<TopologyEvent, TopologyStoreDelegate>
         implements TopologyStore {
 
+    private static final int DEFAULT_MAX_CACHED_PATHS = 10000;
+    private static final boolean DEFAULT_PRECOMPUTE_PATHS = false;
+
     private final Logger log = getLogger(getClass());
 
+    @Property(name = "maxCachedPaths", intValue = DEFAULT_MAX_CACHED_PATHS,
+            label = "Maximum number of source/destination path sets cached per topology")
+    private int maxCachedPaths = DEFAULT_MAX_CACHED_PATHS;
+
+    @Property(name = "precomputePaths", boolValue = DEFAULT_PRECOMPUTE_PATHS,
+            label = "Indicates whether shortest paths between the devices with " +
+                    "hosts attached are computed eagerly whenever a new topology " +
+                    "is built, up to the capacity of the path cache")
+    private boolean precomputePaths = DEFAULT_PRECOMPUTE_PATHS;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MetricsService metricsService;
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+            policy = ReferencePolicy.DYNAMIC)
+    protected volatile HostService hostService;
+
+    private ForkJoinPool precomputePool;
+    private MetricsComponent metricsComponent;
+    private MetricsFeature pathCacheFeature;
+
+    // Path cache statistics accrued by the topologies already replaced
+    private volatile CacheStats pastPathCacheStats =
+            new CacheStats(0, 0, 0, 0, 0, 0);
+
     private volatile DefaultTopology current;
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
+        precomputePool = new ForkJoinPool();
+        registerMetrics();
+        modified(context);
         log.info("Started");
     }
 
     @Deactivate
-    public void deactivate() {
+    public void deactivate(ComponentContext context) {
+        cfgService.unregisterProperties(getClass(), false);
+        removeMetrics();
+        precomputePool.shutdownNow();
+        precomputePool = null;
         log.info("Stopped");
     }
+
+    @Modified
+    public void modified(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+
+        Dictionary<?, ?> properties = context.getProperties();
+        try {
+            String s = get(properties, "maxCachedPaths");
+            int newMaxCachedPaths = isNullOrEmpty(s) ? maxCachedPaths : Integer.parseInt(s.trim());
+            if (newMaxCachedPaths < 1) {
+                log.warn("maxCachedPaths must be at least 1; keeping {}", maxCachedPaths);
+            } else {
+                maxCachedPaths = newMaxCachedPaths;
+            }
+
+            s = get(properties, "precomputePaths");
+            precomputePaths = isNullOrEmpty(s) ? precomputePaths : Boolean.parseBoolean(s.trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            maxCachedPaths = DEFAULT_MAX_CACHED_PATHS;
+            precomputePaths = DEFAULT_PRECOMPUTE_PATHS;
+        }
+        log.info("Configured with maxCachedPaths = {}; precomputePaths = {}",
+                 maxCachedPaths, precomputePaths);
+    }
+
+    // Returns the devices with hosts attached; empty if none are known.
+    private Set<DeviceId> edgeDevices() {
+        HostService hosts = hostService;
+        if (hosts == null) {
+            return ImmutableSet.of();
+        }
+        Set<DeviceId> devices = new HashSet<>();
+        for (Host host : hosts.getHosts()) {
+            devices.add(host.location().deviceId());
+        }
+        return devices;
+    }
+
+    // Exposes the path cache statistics of the topology snapshots.
+    private void registerMetrics() {
+        metricsComponent = metricsService.registerComponent("Topology");
+        pathCacheFeature = metricsComponent.registerFeature("PathCache");
+        metricsService.registerMetric(metricsComponent, pathCacheFeature, "hits",
+                (Gauge<Long>) () -> pathCacheStats().hitCount());
+        metricsService.registerMetric(metricsComponent, pathCacheFeature, "misses",
+                (Gauge<Long>) () -> pathCacheStats().missCount());
+        metricsService.registerMetric(metricsComponent, pathCacheFeature, "size",
+                (Gauge<Long>) () -> current != null ? current.pathCacheSize() : 0L);
+    }
+
+    private void removeMetrics() {
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, "hits");
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, "misses");
+        metricsService.removeMetric(metricsComponent, pathCacheFeature, "size");
+    }
+
+    // Returns the path cache statistics accrued across all topologies.
+    private CacheStats pathCacheStats() {
+        DefaultTopology topology = current;
+        return topology == null ? pastPathCacheStats :
+                pastPathCacheStats.plus(topology.pathCacheStats());
+    }
+
     @Override
     public Topology currentTopology() {
         return current;
@@ -132,12 +256,19 @@ public class SimpleTopologyStore
             return null;
         }
 
-        // Have the default topology construct self from the description data.
+        // Have the default topology construct self from the description data,
+        // re-using whatever it can from the current one.
         DefaultTopology newTopology =
-                new DefaultTopology(providerId, graphDescription);
+                new DefaultTopology(providerId, graphDescription, current,
+                                    maxCachedPaths,
+                                    precomputePaths ? precomputePool : null,
+                                    precomputePaths ? edgeDevices() : ImmutableSet.of());
 
         // Promote the new topology to current and return a ready-to-send event.
         synchronized (this) {
+            if (current != null) {
+                pastPathCacheStats = pastPathCacheStats.plus(current.pathCacheStats());
+            }
             current = newTopology;
             return new TopologyEvent(TopologyEvent.Type.TOPOLOGY_CHANGED,
                                      current, reasons);
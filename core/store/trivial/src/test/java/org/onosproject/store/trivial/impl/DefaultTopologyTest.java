@@ -18,7 +18,9 @@ package org.onosproject.store.trivial.impl;
 import org.junit.Before;
 import org.junit.Test;
 import org.onlab.packet.ChassisId;
+import org.onosproject.net.AnnotationKeys;
 import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DefaultAnnotations;
 import org.onosproject.net.DefaultDevice;
 import org.onosproject.net.DefaultLink;
 import org.onosproject.net.Device;
@@ -29,11 +31,19 @@ import org.onosproject.net.PortNumber;
 import org.onosproject.net.provider.ProviderId;
 import org.onosproject.net.topology.ClusterId;
 import org.onosproject.net.topology.DefaultGraphDescription;
+import org.onosproject.net.topology.DefaultTopologyVertex;
 import org.onosproject.net.topology.GraphDescription;
 import org.onosproject.net.topology.LinkWeight;
 import org.onosproject.net.topology.TopologyCluster;
+import org.onosproject.net.topology.TopologyVertex;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.collect.ImmutableSet.of;
 import static org.junit.Assert.*;
@@ -61,6 +71,7 @@ public class DefaultTopologyTest {
                     ? 2.0 : 1.0;
 
     private DefaultTopology dt;
+    private GraphDescription graphDescription;
 
     @Before
     public void setUp() {
@@ -72,8 +83,7 @@ public class DefaultTopologyTest {
                              link("3", 2, "2", 2), link("2", 2, "3", 2),
                              link("1", 3, "4", 3), link("4", 3, "1", 3),
                              link("3", 4, "4", 4), link("4", 4, "3", 4));
-        GraphDescription graphDescription =
-                new DefaultGraphDescription(now, devices, links);
+        graphDescription = new DefaultGraphDescription(now, devices, links);
 
         dt = new DefaultTopology(PID, graphDescription);
         assertEquals("incorrect supplier", PID, dt.providerId());
@@ -100,6 +110,93 @@ public class DefaultTopologyTest {
         assertEquals("incorrect path count", 1, paths.size());
     }
 
+    @Test
+    public void pathCache() {
+        Set<Path> paths = dt.getPaths(D1, D3);
+        assertEquals("incorrect miss count", 1, dt.pathCacheStats().missCount());
+        assertSame("paths should be cached", paths, dt.getPaths(D1, D3));
+        assertEquals("incorrect hit count", 1, dt.pathCacheStats().hitCount());
+
+        dt.getPaths(D1, D3, WEIGHT);
+        assertEquals("incorrect miss count", 2, dt.pathCacheStats().missCount());
+        dt.getPaths(D1, D3, edge -> 1.0);
+        assertEquals("weights should be keyed by identity",
+                     3, dt.pathCacheStats().missCount());
+        assertEquals("incorrect cache size", 3, dt.pathCacheSize());
+    }
+
+    @Test
+    public void precomputedPaths() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool();
+        dt = new DefaultTopology(PID, graphDescription,
+                                 DefaultTopology.DEFAULT_MAX_CACHED_PATHS, pool);
+        pool.shutdown();
+        assertTrue("precompute should complete", pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        // 4 devices reach 3 others in the first cluster; D5 reaches none
+        assertEquals("incorrect cache size", 12, dt.pathCacheSize());
+        assertEquals("incorrect path count", 2, dt.getPaths(D1, D3).size());
+        assertEquals("incorrect hit count", 1, dt.pathCacheStats().hitCount());
+        assertEquals("incorrect miss count", 0, dt.pathCacheStats().missCount());
+    }
+
+    @Test
+    public void precomputedEdgePaths() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool();
+        dt = new DefaultTopology(PID, graphDescription, null,
+                                 DefaultTopology.DEFAULT_MAX_CACHED_PATHS, pool,
+                                 of(D1, D3));
+        pool.shutdown();
+        assertTrue("precompute should complete", pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Only the paths between the edge devices are precomputed
+        assertEquals("incorrect cache size", 2, dt.pathCacheSize());
+        assertEquals("incorrect path count", 2, dt.getPaths(D3, D1).size());
+        assertEquals("incorrect hit count", 1, dt.pathCacheStats().hitCount());
+        dt.getPaths(D1, D2);
+        assertEquals("incorrect miss count", 1, dt.pathCacheStats().missCount());
+    }
+
+    @Test
+    public void precomputeBoundedByCache() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool();
+        dt = new DefaultTopology(PID, graphDescription, null, 4, pool, of(D1, D2, D3));
+        pool.shutdown();
+        assertTrue("precompute should complete", pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        // Two of the three edge devices fill the cache with paths to the others
+        assertEquals("incorrect cache size", 4, dt.pathCacheSize());
+        assertEquals("nothing should be evicted", 0, dt.pathCacheStats().evictionCount());
+    }
+
+    @Test
+    public void supersededPrecomputeCancelled() throws InterruptedException {
+        // Hold the only worker so that the precompute tasks stay queued
+        ForkJoinPool pool = new ForkJoinPool(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue("worker should be busy", started.await(5, TimeUnit.SECONDS));
+
+        dt = new DefaultTopology(PID, graphDescription,
+                                 DefaultTopology.DEFAULT_MAX_CACHED_PATHS, pool);
+        DefaultTopology next = new DefaultTopology(PID, graphDescription, dt,
+                DefaultTopology.DEFAULT_MAX_CACHED_PATHS, null);
+
+        release.countDown();
+        pool.shutdown();
+        assertTrue("pool should be idle", pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals("superseded precompute should not run", 0, dt.pathCacheSize());
+        assertEquals("incorrect path count", 2, next.getPaths(D1, D3).size());
+    }
+
     @Test
     public void pointRelated() {
         assertTrue("should be infrastructure point",
@@ -120,6 +217,132 @@ public class DefaultTopologyTest {
         assertFalse("cluster should not contain D5", devs.contains(D5));
     }
 
+    @Test
+    public void incrementalClusters() {
+        // Dropping the D1-D2 links leaves both clusters intact.
+        Set<Device> devices = of(device("1"), device("2"),
+                                 device("3"), device("4"),
+                                 device("5"));
+        Set<Link> links = of(link("3", 2, "2", 2), link("2", 2, "3", 2),
+                             link("1", 3, "4", 3), link("4", 3, "1", 3),
+                             link("3", 4, "4", 4), link("4", 4, "3", 4));
+        DefaultTopology next = new DefaultTopology(PID,
+                new DefaultGraphDescription(System.nanoTime(), devices, links), dt,
+                DefaultTopology.DEFAULT_MAX_CACHED_PATHS, null);
+        assertEquals("incorrect cluster count", 2, next.clusterCount());
+        assertEquals("incorrect cluster device count", 4,
+                     next.getClusterDevices(next.getCluster(D1)).size());
+        assertEquals("incorrect cluster link count", 6,
+                     next.getClusterLinks(next.getCluster(D1)).size());
+        assertTrue("should be broadcast point",
+                   next.isBroadcastPoint(new ConnectPoint(D1, portNumber(3))));
+        assertFalse("should not be infrastructure point",
+                    next.isInfrastructure(new ConnectPoint(D1, P1)));
+
+        // Linking D5 both ways merges it into the other cluster.
+        links = of(link("3", 2, "2", 2), link("2", 2, "3", 2),
+                   link("1", 3, "4", 3), link("4", 3, "1", 3),
+                   link("3", 4, "4", 4), link("4", 4, "3", 4),
+                   link("5", 1, "2", 5), link("2", 5, "5", 1));
+        next = new DefaultTopology(PID,
+                new DefaultGraphDescription(System.nanoTime(), devices, links), next,
+                DefaultTopology.DEFAULT_MAX_CACHED_PATHS, null);
+        assertEquals("incorrect cluster count", 1, next.clusterCount());
+        assertEquals("incorrect cluster device count", 5,
+                     next.getClusterDevices(next.getCluster(D5)).size());
+        assertEquals("incorrect broadcast set size", 8,
+                     next.broadcastSetSize(next.getCluster(D5).id()));
+    }
+
+    @Test
+    public void incrementalChangedLink() {
+        // Re-annotating the D1-D2 link must yield the new link instance.
+        Set<Device> devices = of(device("1"), device("2"),
+                                 device("3"), device("4"),
+                                 device("5"));
+        Link annotated = new DefaultLink(PID, new ConnectPoint(D1, P1),
+                                         new ConnectPoint(D2, P1), Link.Type.DIRECT,
+                                         DefaultAnnotations.builder()
+                                                 .set(AnnotationKeys.LATENCY, "5").build());
+        Set<Link> links = of(annotated, link("2", 1, "1", 1),
+                             link("3", 2, "2", 2), link("2", 2, "3", 2),
+                             link("1", 3, "4", 3), link("4", 3, "1", 3),
+                             link("3", 4, "4", 4), link("4", 4, "3", 4));
+        DefaultTopology next = new DefaultTopology(PID,
+                new DefaultGraphDescription(System.nanoTime(), devices, links), dt,
+                DefaultTopology.DEFAULT_MAX_CACHED_PATHS, null);
+
+        TopologyVertex v1 = new DefaultTopologyVertex(D1);
+        assertTrue("new link not in graph",
+                   next.getGraph().getEdgesFrom(v1).stream().anyMatch(e -> e.link() == annotated));
+        assertTrue("new link not in cluster",
+                   next.getClusterLinks(next.getCluster(D1)).stream().anyMatch(l -> l == annotated));
+        Path path = next.getPaths(D1, D2).iterator().next();
+        assertSame("new link not in path", annotated, path.links().get(0));
+        assertTrue("should be infrastructure point",
+                   next.isInfrastructure(new ConnectPoint(D1, P1)));
+    }
+
+    @Test
+    public void incrementalPerf() {
+        // Forty rings of twenty devices each, connected one way only.
+        Set<Device> devices = new HashSet<>();
+        Set<Link> links = new HashSet<>();
+        for (int r = 0; r < 40; r++) {
+            for (int i = 0; i < 20; i++) {
+                String id = r + "0" + i;
+                String next = r + "0" + (i + 1) % 20;
+                devices.add(device(id));
+                links.add(link(id, 1, next, 2));
+                links.add(link(next, 2, id, 1));
+            }
+            if (r > 0) {
+                links.add(link(r + "00", 3, (r - 1) + "00", 3));
+            }
+        }
+
+        long now = System.nanoTime();
+        DefaultTopology full = new DefaultTopology(PID,
+                new DefaultGraphDescription(now, devices, links));
+        DefaultTopology incremental = full;
+        assertEquals("incorrect cluster count", 40, full.clusterCount());
+
+        List<Link> flaps = new ArrayList<>(links);
+        long fullNanos = 0;
+        long incrementalNanos = 0;
+        for (int i = 0; i < 100; i++) {
+            // Flap a link down and back up, querying a broadcast point of
+            // each resulting topology to have its broadcast sets computed.
+            Link link = flaps.get(i * 31 % flaps.size());
+            for (int flap = 0; flap < 2; flap++) {
+                if (!links.remove(link)) {
+                    links.add(link);
+                }
+                GraphDescription description =
+                        new DefaultGraphDescription(++now, devices, links);
+                long start = System.nanoTime();
+                full = new DefaultTopology(PID, description);
+                full.isBroadcastPoint(link.src());
+                fullNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                incremental = new DefaultTopology(PID, description, incremental,
+                        DefaultTopology.DEFAULT_MAX_CACHED_PATHS, null);
+                incremental.isBroadcastPoint(link.src());
+                incrementalNanos += System.nanoTime() - start;
+
+                assertEquals("incorrect cluster count",
+                             full.clusterCount(), incremental.clusterCount());
+                assertEquals("incorrect broadcast set size",
+                             full.broadcastSetSize(full.getCluster(link.src().deviceId()).id()),
+                             incremental.broadcastSetSize(
+                                     incremental.getCluster(link.src().deviceId()).id()));
+            }
+        }
+        System.out.println("Full rebuild: " + fullNanos / 1000000 + "ms; " +
+                                   "incremental rebuild: " + incrementalNanos / 1000000 + "ms");
+    }
+
     // Short-hand for creating a link.
     public static Link link(String src, int sp, String dst, int dp) {
         return new DefaultLink(PID, new ConnectPoint(did(src), portNumber(sp)),
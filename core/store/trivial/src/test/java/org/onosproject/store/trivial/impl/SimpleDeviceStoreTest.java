@@ -25,12 +25,18 @@ import static org.onosproject.net.DeviceId.deviceId;
 import static org.onosproject.net.device.DeviceEvent.Type.*;
 import static org.onosproject.net.NetTestTools.assertAnnotationsEquals;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
@@ -46,6 +52,7 @@ import org.onosproject.net.Port;
 import org.onosproject.net.PortNumber;
 import org.onosproject.net.SparseAnnotations;
 import org.onosproject.net.device.DefaultDeviceDescription;
+import org.onosproject.net.device.DefaultPortStatistics;
 import org.onosproject.net.device.DefaultPortDescription;
 import org.onosproject.net.device.DeviceDescription;
 import org.onosproject.net.device.DeviceEvent;
@@ -527,4 +534,116 @@ public class SimpleDeviceStoreTest {
         deviceStore.removeDevice(DID1);
         assertTrue("Remove event fired", removeLatch.await(1, TimeUnit.SECONDS));
     }
+
+    @Test
+    public final void testConcurrentUpdates() throws Exception {
+        final int numDevices = 8;
+        final int numThreads = 8;
+        final int numPorts = 16;
+
+        List<DeviceId> dids = new ArrayList<>();
+        for (int i = 0; i < numDevices; i++) {
+            dids.add(deviceId("of:" + i));
+        }
+        List<PortDescription> pds = new ArrayList<>();
+        for (int i = 1; i <= numPorts; i++) {
+            pds.add(new DefaultPortDescription(PortNumber.portNumber(i), true));
+        }
+
+        // Every thread connects every device, starting at a different one,
+        // and reports statistics of a port of its own
+        List<DeviceEvent> events = Collections.synchronizedList(new ArrayList<>());
+        CyclicBarrier barrier = new CyclicBarrier(numThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                for (int i = 0; i < numDevices; i++) {
+                    DeviceId did = dids.get((thread + i) % numDevices);
+                    DeviceDescription description =
+                            new DefaultDeviceDescription(did.uri(), SWITCH, MFR,
+                                                         HW, SW1, SN, CID);
+                    DeviceEvent event = deviceStore.createOrUpdateDevice(PID, did, description);
+                    if (event != null) {
+                        events.add(event);
+                    }
+                    events.addAll(deviceStore.updatePorts(PID, did, pds));
+                    deviceStore.updatePortStatistics(PID, did, Arrays.asList(
+                            DefaultPortStatistics.builder().setDeviceId(did)
+                                    .setPort(thread + 1).build()));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals("incorrect device count", numDevices, deviceStore.getDeviceCount());
+        for (DeviceId did : dids) {
+            assertTrue("device should be available", deviceStore.isAvailable(did));
+            assertEquals("incorrect port count", numPorts, deviceStore.getPorts(did).size());
+            assertEquals("port statistics lost", numThreads,
+                         deviceStore.getPortStatistics(did).size());
+        }
+        assertEquals("each device should be added once", numDevices,
+                     events.stream().filter(e -> e.type() == DEVICE_ADDED).count());
+        assertEquals("each port should be added once", numDevices * numPorts,
+                     events.stream().filter(e -> e.type() == PORT_ADDED).count());
+    }
+
+    @Test
+    public final void testConcurrentRemoveAndUpdates() throws Exception {
+        final int numThreads = 4;
+        final int rounds = 500;
+
+        List<PortDescription> pds = Arrays.<PortDescription>asList(
+                new DefaultPortDescription(P1, true),
+                new DefaultPortDescription(P2, true));
+        DeviceDescription description =
+                new DefaultDeviceDescription(DID1.uri(), SWITCH, MFR, HW, SW1, SN, CID);
+
+        // Updating threads race with a thread repeatedly removing the device
+        CyclicBarrier barrier = new CyclicBarrier(numThreads + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads + 1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            futures.add(executor.submit(() -> {
+                barrier.await();
+                for (int i = 0; i < rounds; i++) {
+                    deviceStore.createOrUpdateDevice(PID, DID1, description);
+                    try {
+                        deviceStore.updatePorts(PID, DID1, pds);
+                        deviceStore.updatePortStatus(PID, DID1,
+                                new DefaultPortDescription(P1, i % 2 == 0));
+                    } catch (IllegalArgumentException e) {
+                        // device removed in the meantime
+                        continue;
+                    }
+                }
+                return null;
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            barrier.await();
+            for (int i = 0; i < rounds; i++) {
+                deviceStore.removeDevice(DID1);
+            }
+            return null;
+        }));
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // the device can be brought back once the dust has settled
+        deviceStore.removeDevice(DID1);
+        assertNotNull(deviceStore.createOrUpdateDevice(PID, DID1, description));
+        deviceStore.updatePorts(PID, DID1, pds);
+        assertEquals(1, deviceStore.getDeviceCount());
+        assertEquals(2, deviceStore.getPorts(DID1).size());
+    }
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.store.trivial.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.HostLocation;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.host.DefaultHostDescription;
+import org.onosproject.net.host.HostDescription;
+import org.onosproject.net.provider.ProviderId;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.net.DeviceId.deviceId;
+import static org.onosproject.net.host.HostEvent.Type.HOST_ADDED;
+import static org.onosproject.net.host.HostEvent.Type.HOST_MOVED;
+import static org.onosproject.net.host.HostEvent.Type.HOST_UPDATED;
+
+/**
+ * Test of the simple HostStore implementation.
+ */
+public class SimpleHostStoreTest {
+
+    private static final ProviderId PID = new ProviderId("of", "foo");
+    private static final DeviceId DID1 = deviceId("of:foo");
+    private static final DeviceId DID2 = deviceId("of:bar");
+
+    private static final MacAddress MAC1 = MacAddress.valueOf("00:00:00:00:00:01");
+    private static final MacAddress MAC2 = MacAddress.valueOf("00:00:00:00:00:02");
+    private static final VlanId VLAN1 = VlanId.vlanId((short) 1);
+    private static final VlanId VLAN2 = VlanId.vlanId((short) 2);
+    private static final IpAddress IP1 = IpAddress.valueOf("10.0.0.1");
+    private static final IpAddress IP2 = IpAddress.valueOf("10.0.0.2");
+
+    private static final HostId HID1 = HostId.hostId(MAC1, VLAN1);
+    private static final HostId HID2 = HostId.hostId(MAC2, VLAN1);
+    private static final HostId HID3 = HostId.hostId(MAC1, VLAN2);
+
+    private static final HostLocation LOC1 =
+            new HostLocation(DID1, PortNumber.portNumber(1), 0);
+    private static final HostLocation LOC2 =
+            new HostLocation(DID2, PortNumber.portNumber(1), 0);
+
+    private SimpleHostStore store;
+
+    @Before
+    public void setUp() {
+        store = new SimpleHostStore();
+        store.activate();
+    }
+
+    @After
+    public void tearDown() {
+        store.deactivate();
+    }
+
+    private static HostDescription description(HostId hostId, HostLocation location,
+                                               IpAddress... ips) {
+        return new DefaultHostDescription(hostId.mac(), hostId.vlanId(), location,
+                                          ImmutableSet.copyOf(ips));
+    }
+
+    private static Set<HostId> ids(Set<Host> hosts) {
+        ImmutableSet.Builder<HostId> builder = ImmutableSet.builder();
+        hosts.forEach(host -> builder.add(host.id()));
+        return builder.build();
+    }
+
+    @Test
+    public void testIndexedLookups() {
+        assertEquals(HOST_ADDED, store.createOrUpdateHost(PID, HID1,
+                description(HID1, LOC1, IP1)).type());
+        store.createOrUpdateHost(PID, HID2, description(HID2, LOC1, IP2));
+        store.createOrUpdateHost(PID, HID3, description(HID3, LOC2, IP1));
+
+        assertEquals(ImmutableSet.of(HID1, HID3), ids(store.getHosts(MAC1)));
+        assertEquals(ImmutableSet.of(HID1, HID2), ids(store.getHosts(VLAN1)));
+        assertEquals(ImmutableSet.of(HID1, HID3), ids(store.getHosts(IP1)));
+        assertEquals(ImmutableSet.of(HID2), ids(store.getHosts(IP2)));
+        assertEquals(ImmutableSet.of(HID1, HID2), ids(store.getConnectedHosts(DID1)));
+        assertEquals(ImmutableSet.of(HID3), ids(store.getConnectedHosts(DID2)));
+
+        store.removeHost(HID1);
+        assertEquals(ImmutableSet.of(HID3), ids(store.getHosts(MAC1)));
+        assertEquals(ImmutableSet.of(HID2), ids(store.getHosts(VLAN1)));
+        assertEquals(ImmutableSet.of(HID3), ids(store.getHosts(IP1)));
+        assertEquals(ImmutableSet.of(HID2), ids(store.getConnectedHosts(DID1)));
+    }
+
+    @Test
+    public void testIndexesFollowUpdates() {
+        store.createOrUpdateHost(PID, HID1, description(HID1, LOC1, IP1));
+
+        assertEquals(HOST_UPDATED, store.createOrUpdateHost(PID, HID1,
+                description(HID1, LOC1, IP2)).type());
+        assertEquals(ImmutableSet.of(HID1), ids(store.getHosts(IP1)));
+        assertEquals(ImmutableSet.of(HID1), ids(store.getHosts(IP2)));
+
+        assertEquals(HOST_MOVED, store.createOrUpdateHost(PID, HID1,
+                description(HID1, LOC2, IP2)).type());
+        assertTrue(store.getConnectedHosts(DID1).isEmpty());
+        assertTrue(store.getConnectedHosts(new ConnectPoint(DID1, PortNumber.portNumber(1))).isEmpty());
+        assertEquals(ImmutableSet.of(HID1), ids(store.getConnectedHosts(DID2)));
+        assertEquals(ImmutableSet.of(HID1), ids(store.getConnectedHosts(LOC2)));
+    }
+}
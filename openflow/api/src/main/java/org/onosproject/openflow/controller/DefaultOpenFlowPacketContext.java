@@ -40,6 +40,8 @@ public final class DefaultOpenFlowPacketContext implements OpenFlowPacketContext
     private final OpenFlowSwitch sw;
     private final OFPacketIn pktin;
     private OFPacketOut pktout = null;
+    private volatile Ethernet parsed;
+    private volatile boolean unparseable;
 
     private final boolean isBuffered;
 
@@ -89,13 +91,19 @@ public final class DefaultOpenFlowPacketContext implements OpenFlowPacketContext
 
     @Override
     public Ethernet parsed() {
-        Ethernet eth = new Ethernet();
-        try {
-            eth.deserialize(pktin.getData(), 0, pktin.getData().length);
-            return eth;
-        } catch (BufferUnderflowException | NullPointerException e) {
-            return null;
+        // Decoded once and shared by all listeners of the packet
+        Ethernet eth = parsed;
+        if (eth == null && !unparseable) {
+            eth = new Ethernet();
+            try {
+                eth.deserialize(pktin.getData(), 0, pktin.getData().length);
+                parsed = eth;
+            } catch (BufferUnderflowException | NullPointerException e) {
+                unparseable = true;
+                eth = null;
+            }
         }
+        return eth;
     }
 
     @Override
@@ -17,10 +17,10 @@
 package org.onosproject.openflow.controller.impl;
 
 import org.jboss.netty.bootstrap.ServerBootstrap;
-import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.group.ChannelGroup;
 import org.jboss.netty.channel.group.DefaultChannelGroup;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.onlab.metrics.MetricsService;
 import org.onosproject.openflow.controller.Dpid;
 import org.onosproject.openflow.controller.driver.OpenFlowAgent;
 import org.onosproject.openflow.controller.driver.OpenFlowSwitchDriver;
@@ -68,6 +68,9 @@ public class Controller {
 
     private NioServerSocketChannelFactory execFactory;
 
+    private MetricsService metricsService;
+    private OpenflowPipelineFactory pipelineFactory;
+
     // Perf. related configuration
     protected static final int SEND_BUFFER_SIZE = 4 * 1024 * 1024;
 
@@ -118,9 +121,8 @@ public class Controller {
             bootstrap.setOption("child.tcpNoDelay", true);
             bootstrap.setOption("child.sendBufferSize", Controller.SEND_BUFFER_SIZE);
 
-            ChannelPipelineFactory pfact =
-                    new OpenflowPipelineFactory(this, null);
-            bootstrap.setPipelineFactory(pfact);
+            pipelineFactory = new OpenflowPipelineFactory(this, null, metricsService);
+            bootstrap.setPipelineFactory(pipelineFactory);
             InetSocketAddress sa = new InetSocketAddress(openFlowPort);
             cg = new DefaultChannelGroup();
             cg.add(bootstrap.bind(sa));
@@ -214,9 +216,10 @@ public class Controller {
         return sw;
     }
 
-    public void start(OpenFlowAgent ag) {
+    public void start(OpenFlowAgent ag, MetricsService metricsService) {
         log.info("Starting OpenFlow IO");
         this.agent = ag;
+        this.metricsService = metricsService;
         this.init();
         this.run();
     }
@@ -226,6 +229,7 @@ public class Controller {
         log.info("Stopping OpenFlow IO");
         execFactory.shutdown();
         cg.close();
+        pipelineFactory.releaseExternalResources();
     }
 
 }
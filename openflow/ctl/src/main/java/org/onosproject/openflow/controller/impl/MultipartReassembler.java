@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+import org.onosproject.openflow.controller.Dpid;
+import org.projectfloodlight.openflow.protocol.OFStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.projectfloodlight.openflow.protocol.OFStatsType;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+
+/**
+ * Reassembles the entries of multipart statistics replies split over
+ * several messages.
+ * <p>
+ * Fragments are buffered per switch, statistics type and transaction ID,
+ * so replies of different switches, or to different requests, never
+ * contend with each other. Replies that fit in a single message bypass
+ * the buffers altogether.
+ * </p>
+ */
+final class MultipartReassembler {
+
+    private final ConcurrentMap<Key, Fragments> pending = new ConcurrentHashMap<>();
+
+    private final MetricsService metricsService;
+    private MetricsComponent metricsComponent;
+    private MetricsFeature metricsFeature;
+    private Timer reassemblyLatency;
+    private Histogram fragmentsPerReply;
+    private Counter fragments;
+
+    /**
+     * Creates a new reassembler.
+     *
+     * @param metricsService metrics service to report reassembly statistics
+     *                       to; may be null
+     */
+    MultipartReassembler(MetricsService metricsService) {
+        this.metricsService = metricsService;
+        if (metricsService != null) {
+            metricsComponent = metricsService.registerComponent("OpenFlowController");
+            metricsFeature = metricsComponent.registerFeature("multipart");
+            reassemblyLatency = metricsService.createTimer(
+                    metricsComponent, metricsFeature, "reassemblyLatency");
+            fragmentsPerReply = metricsService.createHistogram(
+                    metricsComponent, metricsFeature, "fragmentsPerReply");
+            fragments = metricsService.createCounter(
+                    metricsComponent, metricsFeature, "fragments");
+        }
+    }
+
+    /**
+     * Adds the entries of the given reply fragment.
+     *
+     * @param dpid    switch that sent the reply
+     * @param reply   reply fragment
+     * @param entries entries carried by the fragment
+     * @param <E>     type of entries
+     * @return all entries of the reply if the fragment was the last one;
+     * null otherwise
+     */
+    @SuppressWarnings("unchecked")
+    <E> List<E> add(Dpid dpid, OFStatsReply reply, List<E> entries) {
+        if (fragments != null) {
+            fragments.inc();
+        }
+        Key key = new Key(dpid, reply.getStatsType(), reply.getXid());
+        boolean more = reply.getFlags().contains(OFStatsReplyFlags.REPLY_MORE);
+
+        if (!more) {
+            Fragments buffered = pending.remove(key);
+            if (buffered == null) {
+                record(1, 0);
+                return entries;
+            }
+            buffered.entries.addAll(entries);
+            record(buffered.count + 1, System.nanoTime() - buffered.started);
+            return (List<E>) buffered.entries;
+        }
+
+        // Fragments of a reply are received in order from a single channel,
+        // so only the buffer of this reply is ever touched concurrently
+        pending.compute(key, (k, buffered) -> {
+            Fragments f = buffered == null ? new Fragments() : buffered;
+            f.entries.addAll(entries);
+            f.count++;
+            return f;
+        });
+        return null;
+    }
+
+    /**
+     * Discards partially received replies of the given switch.
+     *
+     * @param dpid switch identifier
+     */
+    void purge(Dpid dpid) {
+        pending.keySet().removeIf(key -> key.dpid.equals(dpid));
+    }
+
+    /**
+     * Removes the metrics registered by the reassembler.
+     */
+    void removeMetrics() {
+        if (metricsService != null) {
+            metricsService.removeMetric(metricsComponent, metricsFeature, "reassemblyLatency");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "fragmentsPerReply");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "fragments");
+        }
+    }
+
+    private void record(int count, long nanos) {
+        if (fragmentsPerReply != null) {
+            fragmentsPerReply.update(count);
+            reassemblyLatency.update(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class Fragments {
+        private final List<Object> entries = new ArrayList<>();
+        private final long started = System.nanoTime();
+        private int count;
+    }
+
+    private static final class Key {
+        private final Dpid dpid;
+        private final OFStatsType type;
+        private final long xid;
+
+        private Key(Dpid dpid, OFStatsType type, long xid) {
+            this.dpid = dpid;
+            this.type = type;
+            this.xid = xid;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dpid, type, xid);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                Key that = (Key) obj;
+                return xid == that.xid && type == that.type && dpid.equals(that.dpid);
+            }
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFType;
+
+import com.codahale.metrics.Histogram;
+
+/**
+ * Coalesces the outbound messages of a switch channel into fewer, larger
+ * writes, for use in a netty pipeline ahead of the {@link OFMessageEncoder}.
+ * <p>
+ * Bulk programming messages, such as flow and group mods, are held back
+ * until either enough of them are pending, a barrier request or any other
+ * message is written, or a short delay expires; all pending messages are
+ * then written down the pipeline as a single list, which the encoder turns
+ * into a single buffer. Write ordering of the channel is preserved.
+ * </p>
+ */
+public class OFMessageCoalescer extends SimpleChannelDownstreamHandler {
+
+    private final ScheduledExecutorService flusher;
+    private final int maxMessages;
+    private final long maxDelayMicros;
+    private final Histogram messagesPerFlush;
+    private final AtomicInteger queued;
+
+    private List<OFMessage> pending = new ArrayList<>();
+    private List<ChannelFuture> futures = new ArrayList<>();
+    private boolean scheduled;
+
+    /**
+     * Creates a new message coalescer.
+     *
+     * @param flusher          executor used to flush delayed messages
+     * @param maxMessages      number of pending messages that triggers a flush
+     * @param maxDelayMicros   maximum delay of a pending message
+     * @param messagesPerFlush histogram of number of messages per flush
+     * @param queued           number of messages pending across channels
+     */
+    public OFMessageCoalescer(ScheduledExecutorService flusher, int maxMessages,
+                              long maxDelayMicros, Histogram messagesPerFlush,
+                              AtomicInteger queued) {
+        this.flusher = flusher;
+        this.maxMessages = maxMessages;
+        this.maxDelayMicros = maxDelayMicros;
+        this.messagesPerFlush = messagesPerFlush;
+        this.queued = queued;
+    }
+
+    @Override
+    public void writeRequested(ChannelHandlerContext ctx, MessageEvent e)
+            throws Exception {
+        if (!(e.getMessage() instanceof List)) {
+            synchronized (this) {
+                flush(ctx);
+                ctx.sendDownstream(e);
+            }
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<OFMessage> msgs = (List<OFMessage>) e.getMessage();
+        synchronized (this) {
+            pending.addAll(msgs);
+            futures.add(e.getFuture());
+            queued.addAndGet(msgs.size());
+            if (pending.size() >= maxMessages || !deferrable(msgs)) {
+                flush(ctx);
+            } else if (!scheduled) {
+                scheduled = true;
+                flusher.schedule(() -> flushPending(ctx), maxDelayMicros,
+                                 TimeUnit.MICROSECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void closeRequested(ChannelHandlerContext ctx, ChannelStateEvent e)
+            throws Exception {
+        flushPending(ctx);
+        super.closeRequested(ctx, e);
+    }
+
+    @Override
+    public void disconnectRequested(ChannelHandlerContext ctx, ChannelStateEvent e)
+            throws Exception {
+        flushPending(ctx);
+        super.disconnectRequested(ctx, e);
+    }
+
+    private synchronized void flushPending(ChannelHandlerContext ctx) {
+        flush(ctx);
+    }
+
+    // Writes all pending messages down the pipeline as a single list and
+    // completes the futures of the coalesced writes with the outcome.
+    // Must be called while holding the lock, so that writes stay in order.
+    private void flush(ChannelHandlerContext ctx) {
+        scheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<OFMessage> msgs = pending;
+        List<ChannelFuture> writes = futures;
+        pending = new ArrayList<>(msgs.size());
+        futures = new ArrayList<>(writes.size());
+        queued.addAndGet(-msgs.size());
+        messagesPerFlush.update(msgs.size());
+
+        ChannelFuture future = Channels.future(ctx.getChannel());
+        future.addListener(f -> {
+            for (ChannelFuture write : writes) {
+                if (f.isSuccess()) {
+                    write.setSuccess();
+                } else {
+                    write.setFailure(f.getCause());
+                }
+            }
+        });
+        Channels.write(ctx, future, msgs);
+    }
+
+    // Only bulk programming messages are worth holding back; anything else
+    // may be awaited by the switch or by a caller and goes out right away.
+    private static boolean deferrable(List<OFMessage> msgs) {
+        for (OFMessage msg : msgs) {
+            OFType type = msg.getType();
+            if (type != OFType.FLOW_MOD && type != OFType.GROUP_MOD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -25,6 +25,7 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
 import org.projectfloodlight.openflow.protocol.OFMessage;
 
+import com.codahale.metrics.Histogram;
 
 /**
  * Encode an openflow message for output into a ChannelBuffer, for use in a
@@ -32,6 +33,30 @@ import org.projectfloodlight.openflow.protocol.OFMessage;
  */
 public class OFMessageEncoder extends OneToOneEncoder {
 
+    private static final int INITIAL_MESSAGE_SIZE_ESTIMATE = 128;
+
+    private final Histogram bytesPerWrite;
+
+    // Running estimate of the encoded message size, used to allocate
+    // buffers that fit the whole list without having to grow them
+    private int messageSizeEstimate = INITIAL_MESSAGE_SIZE_ESTIMATE;
+
+    /**
+     * Creates a new encoder.
+     */
+    public OFMessageEncoder() {
+        this(null);
+    }
+
+    /**
+     * Creates a new encoder which records the size of each encoded write.
+     *
+     * @param bytesPerWrite histogram of encoded bytes per write; may be null
+     */
+    public OFMessageEncoder(Histogram bytesPerWrite) {
+        this.bytesPerWrite = bytesPerWrite;
+    }
+
     @Override
     protected Object encode(ChannelHandlerContext ctx, Channel channel,
                             Object msg) throws Exception {
@@ -47,11 +72,21 @@ public class OFMessageEncoder extends OneToOneEncoder {
             size += ofm.getLengthU();
         }*/
 
-        ChannelBuffer buf = ChannelBuffers.dynamicBuffer();
+        ChannelBuffer buf = ChannelBuffers.dynamicBuffer(
+                Math.max(1, msglist.size() * messageSizeEstimate));
 
         for (OFMessage ofm : msglist) {
             ofm.writeTo(buf);
         }
+
+        int bytes = buf.readableBytes();
+        if (!msglist.isEmpty()) {
+            // Leave some headroom over the average to avoid regrowing
+            messageSizeEstimate = bytes / msglist.size() + 16;
+        }
+        if (bytesPerWrite != null) {
+            bytesPerWrite.update(bytes);
+        }
         return buf;
     }
 
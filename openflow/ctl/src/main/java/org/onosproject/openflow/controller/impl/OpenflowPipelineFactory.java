@@ -16,7 +16,10 @@
 
 package org.onosproject.openflow.controller.impl;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
@@ -27,6 +30,15 @@ import org.jboss.netty.handler.timeout.ReadTimeoutHandler;
 import org.jboss.netty.util.ExternalResourceReleasable;
 import org.jboss.netty.util.HashedWheelTimer;
 import org.jboss.netty.util.Timer;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+
+import static org.onlab.util.Tools.groupedThreads;
 
 /**
  * Creates a ChannelPipeline for a server-side openflow channel.
@@ -40,14 +52,50 @@ public class OpenflowPipelineFactory
     protected IdleStateHandler idleHandler;
     protected ReadTimeoutHandler readTimeoutHandler;
 
+    // Outbound message coalescing
+    private static final int MAX_COALESCED_MESSAGES = 256;
+    private static final long MAX_COALESCING_DELAY_MICROS = 1000;
+
+    protected ScheduledExecutorService flusher;
+    private final MetricsService metricsService;
+    private MetricsComponent metricsComponent;
+    private MetricsFeature metricsFeature;
+    private final Histogram messagesPerFlush;
+    private final Histogram bytesPerWrite;
+    private final AtomicInteger messagesQueued = new AtomicInteger();
+
     public OpenflowPipelineFactory(Controller controller,
                                    ThreadPoolExecutor pipelineExecutor) {
+        this(controller, pipelineExecutor, null);
+    }
+
+    public OpenflowPipelineFactory(Controller controller,
+                                   ThreadPoolExecutor pipelineExecutor,
+                                   MetricsService metricsService) {
         super();
         this.controller = controller;
         this.pipelineExecutor = pipelineExecutor;
         this.timer = new HashedWheelTimer();
         this.idleHandler = new IdleStateHandler(timer, 20, 25, 0);
         this.readTimeoutHandler = new ReadTimeoutHandler(timer, 30);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("onos/of", "write-flusher"));
+
+        this.metricsService = metricsService;
+        if (metricsService != null) {
+            metricsComponent = metricsService.registerComponent("OpenFlowController");
+            metricsFeature = metricsComponent.registerFeature("writes");
+            messagesPerFlush = metricsService.createHistogram(
+                    metricsComponent, metricsFeature, "messagesPerFlush");
+            bytesPerWrite = metricsService.createHistogram(
+                    metricsComponent, metricsFeature, "bytesPerWrite");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "messagesQueued");
+            metricsService.registerMetric(metricsComponent, metricsFeature, "messagesQueued",
+                                          (Gauge<Integer>) messagesQueued::get);
+        } else {
+            messagesPerFlush = new Histogram(new UniformReservoir());
+            bytesPerWrite = null;
+        }
     }
 
     @Override
@@ -56,7 +104,11 @@ public class OpenflowPipelineFactory
 
         ChannelPipeline pipeline = Channels.pipeline();
         pipeline.addLast("ofmessagedecoder", new OFMessageDecoder());
-        pipeline.addLast("ofmessageencoder", new OFMessageEncoder());
+        pipeline.addLast("ofmessageencoder", new OFMessageEncoder(bytesPerWrite));
+        pipeline.addLast("ofmessagecoalescer",
+                         new OFMessageCoalescer(flusher, MAX_COALESCED_MESSAGES,
+                                                MAX_COALESCING_DELAY_MICROS,
+                                                messagesPerFlush, messagesQueued));
         pipeline.addLast("idle", idleHandler);
         pipeline.addLast("timeout", readTimeoutHandler);
         // XXX S ONOS: was 15 increased it to fix Issue #296
@@ -73,5 +125,11 @@ public class OpenflowPipelineFactory
     @Override
     public void releaseExternalResources() {
         timer.stop();
+        flusher.shutdown();
+        if (metricsService != null) {
+            metricsService.removeMetric(metricsComponent, metricsFeature, "messagesPerFlush");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "bytesPerWrite");
+            metricsService.removeMetric(metricsComponent, metricsFeature, "messagesQueued");
+        }
     }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.onosproject.openflow.controller.Dpid;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFPortStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFPortStatsReply;
+import org.projectfloodlight.openflow.protocol.OFStatsReplyFlags;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.types.OFPort;
+
+import com.google.common.collect.ImmutableList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests of the multipart reply reassembler.
+ */
+public class MultipartReassemblerTest {
+
+    private static final OFFactory FACTORY = OFFactories.getFactory(OFVersion.OF_13);
+    private static final Dpid DPID1 = new Dpid(1);
+    private static final Dpid DPID2 = new Dpid(2);
+
+    private final MultipartReassembler reassembler = new MultipartReassembler(null);
+
+    private static OFPortStatsReply reply(long xid, boolean more, int... ports) {
+        ImmutableList.Builder<OFPortStatsEntry> entries = ImmutableList.builder();
+        for (int port : ports) {
+            entries.add(FACTORY.buildPortStatsEntry().setPortNo(OFPort.of(port)).build());
+        }
+        Set<OFStatsReplyFlags> flags = more
+                ? EnumSet.of(OFStatsReplyFlags.REPLY_MORE)
+                : EnumSet.noneOf(OFStatsReplyFlags.class);
+        return FACTORY.buildPortStatsReply().setXid(xid).setFlags(flags)
+                .setEntries(entries.build()).build();
+    }
+
+    private List<OFPortStatsEntry> add(Dpid dpid, OFPortStatsReply reply) {
+        return reassembler.add(dpid, reply, reply.getEntries());
+    }
+
+    @Test
+    public void singleFragment() {
+        OFPortStatsReply reply = reply(1, false, 1, 2);
+        assertSame("entries should be passed through", reply.getEntries(), add(DPID1, reply));
+    }
+
+    @Test
+    public void interleavedReplies() {
+        assertNull("reply should be incomplete", add(DPID1, reply(1, true, 1)));
+        assertNull("reply should be incomplete", add(DPID2, reply(1, true, 2)));
+        assertNull("reply should be incomplete", add(DPID1, reply(2, true, 3)));
+        assertNull("reply should be incomplete", add(DPID1, reply(1, true, 4)));
+
+        assertEquals("incorrect reassembly", 3, add(DPID1, reply(1, false, 5)).size());
+        assertEquals("incorrect reassembly", 2, add(DPID2, reply(1, false, 6)).size());
+        assertEquals("incorrect reassembly", 2, add(DPID1, reply(2, false, 7)).size());
+    }
+
+    @Test
+    public void purge() {
+        assertNull("reply should be incomplete", add(DPID1, reply(1, true, 1)));
+        reassembler.purge(DPID1);
+        assertEquals("fragments should be discarded", 1, add(DPID1, reply(1, false, 2)).size());
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.openflow.controller.impl;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFMessage;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import com.google.common.collect.ImmutableList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the outbound message coalescer.
+ */
+public class OFMessageCoalescerTest {
+
+    private static final OFFactory FACTORY = OFFactories.getFactory(OFVersion.OF_13);
+
+    private ScheduledExecutorService flusher;
+    private Histogram messagesPerFlush;
+    private AtomicInteger queued;
+    private EncoderEmbedder<List<OFMessage>> embedder;
+
+    @Before
+    public void setUp() {
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        messagesPerFlush = new Histogram(new UniformReservoir());
+        queued = new AtomicInteger();
+        // Delay long enough for the timed flush never to kick in
+        embedder = new EncoderEmbedder<>(
+                new OFMessageCoalescer(flusher, 4, 60_000_000, messagesPerFlush, queued));
+    }
+
+    @After
+    public void tearDown() {
+        flusher.shutdownNow();
+    }
+
+    private static OFMessage flowMod(long xid) {
+        return FACTORY.buildFlowAdd().setXid(xid).build();
+    }
+
+    @Test
+    public void flushOnBarrier() {
+        embedder.offer(ImmutableList.of(flowMod(1)));
+        embedder.offer(ImmutableList.of(flowMod(2)));
+        assertNull("flow mods should be held back", embedder.poll());
+        assertEquals("incorrect queued count", 2, queued.get());
+
+        OFMessage barrier = FACTORY.buildBarrierRequest().setXid(3).build();
+        embedder.offer(ImmutableList.of(barrier));
+        assertEquals("incorrect coalesced write",
+                     ImmutableList.of(flowMod(1), flowMod(2), barrier), embedder.poll());
+        assertNull("no more writes expected", embedder.poll());
+        assertEquals("incorrect queued count", 0, queued.get());
+        assertEquals("incorrect flush count", 1, messagesPerFlush.getCount());
+    }
+
+    @Test
+    public void flushOnSize() {
+        for (long xid = 0; xid < 6; xid++) {
+            embedder.offer(ImmutableList.of(flowMod(xid)));
+        }
+        assertEquals("incorrect coalesced write", 4, embedder.poll().size());
+        assertNull("remainder should be held back", embedder.poll());
+        assertEquals("incorrect queued count", 2, queued.get());
+    }
+
+}
@@ -278,6 +278,12 @@ public class HostLocationProviderTest {
             testProcessor = processor;
         }
 
+        @Override
+        public void addProcessor(PacketProcessor processor, int priority,
+                                 TrafficSelector selector) {
+            testProcessor = processor;
+        }
+
         @Override
         public void removeProcessor(PacketProcessor processor) {
         }
@@ -389,6 +389,12 @@ public class LLDPLinkProviderTest {
             testProcessor = processor;
         }
 
+        @Override
+        public void addProcessor(PacketProcessor processor, int priority,
+                                 TrafficSelector selector) {
+            testProcessor = processor;
+        }
+
         @Override
         public void removeProcessor(PacketProcessor processor) {
 
@@ -17,6 +17,7 @@ package org.onosproject.provider.nil.device.impl;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
@@ -39,6 +40,7 @@ import org.onosproject.net.device.DeviceDescription;
 import org.onosproject.net.device.DeviceProvider;
 import org.onosproject.net.device.DeviceProviderRegistry;
 import org.onosproject.net.device.DeviceProviderService;
+import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.device.PortDescription;
 import org.onosproject.net.provider.AbstractProvider;
 import org.onosproject.net.provider.ProviderId;
@@ -49,7 +51,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Dictionary;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -77,19 +80,28 @@ public class NullDeviceProvider extends AbstractProvider implements DeviceProvid
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected ComponentConfigService cfgService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected DeviceService deviceService;
+
     private DeviceProviderService providerService;
 
-    private ExecutorService deviceBuilder =
-            Executors.newFixedThreadPool(1, groupedThreads("onos/null", "device-creator"));
+    private ExecutorService deviceBuilder;
 
     private static final String SCHEME = "null";
     private static final int DEF_NUMDEVICES = 10;
     private static final int DEF_NUMPORTS = 10;
+    private static final int DEF_CONNECTTHREADS = 1;
+
+    // Maximum time to wait for advertised devices to come online, in ms.
+    private static final int ONLINE_TIMEOUT = 60000;
+
+    // Delay between checks for advertised devices having come online, in ms.
+    private static final int ONLINE_POLL_INTERVAL = 20;
 
     //Delay between events in ms.
     private static final int EVENTINTERVAL = 5;
 
-    private final Map<Integer, DeviceDescription> descriptions = Maps.newHashMap();
+    private final ConcurrentMap<Integer, DeviceDescription> descriptions = Maps.newConcurrentMap();
 
     @Property(name = "devConfigs", value = "", label = "Instance-specific configurations")
     private String devConfigs = null;
@@ -99,6 +111,11 @@ public class NullDeviceProvider extends AbstractProvider implements DeviceProvid
     @Property(name = "numPorts", intValue = 10, label = "Number of ports per devices")
     private int numPorts = DEF_NUMPORTS;
 
+    @Property(name = "connectThreads", intValue = 1,
+            label = "Number of threads connecting devices; more than one connects " +
+                    "all devices at once to benchmark a connect storm")
+    private int connectThreads = DEF_CONNECTTHREADS;
+
     private DeviceCreator creator;
 
     /**
@@ -114,6 +131,7 @@ public class NullDeviceProvider extends AbstractProvider implements DeviceProvid
     public void activate(ComponentContext context) {
         cfgService.registerProperties(getClass());
         providerService = providerRegistry.register(this);
+        deviceBuilder = Executors.newFixedThreadPool(1, groupedThreads("onos/null", "device-creator"));
         if (!modified(context)) {
             deviceBuilder.submit(new DeviceCreator(true));
         }
@@ -124,13 +142,19 @@ public class NullDeviceProvider extends AbstractProvider implements DeviceProvid
     @Deactivate
     public void deactivate(ComponentContext context) {
         cfgService.unregisterProperties(getClass(), false);
-        deviceBuilder.submit(new DeviceCreator(false));
+
+        // Cancel any advertisement under way, then withdraw the devices
+        // once nothing else is using the provider service.
+        deviceBuilder.shutdownNow();
         try {
-            deviceBuilder.awaitTermination(1000, TimeUnit.MILLISECONDS);
+            if (!deviceBuilder.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
+                log.warn("Device builder did not terminate");
+            }
         } catch (InterruptedException e) {
-            log.error("Device builder did not terminate");
+            log.warn("Interrupted while stopping device builder");
+            Thread.currentThread().interrupt();
         }
-        deviceBuilder.shutdownNow();
+        new DeviceCreator(false).run();
         providerRegistry.unregister(this);
         providerService = null;
 
@@ -149,6 +173,7 @@ public class NullDeviceProvider extends AbstractProvider implements DeviceProvid
 
         int newDevNum = DEF_NUMDEVICES;
         int newPortNum = DEF_NUMPORTS;
+        int newConnectThreads = DEF_CONNECTTHREADS;
         try {
             String s = get(properties, "devConfigs");
             if (!isNullOrEmpty(s)) {
@@ -156,10 +181,13 @@ public class NullDeviceProvider extends AbstractProvider implements DeviceProvid
             }
             s = get(properties, "numPorts");
             newPortNum = isNullOrEmpty(s) ? DEF_NUMPORTS : Integer.parseInt(s.trim());
+            s = get(properties, "connectThreads");
+            newConnectThreads = isNullOrEmpty(s) ? DEF_CONNECTTHREADS : Integer.parseInt(s.trim());
         } catch (NumberFormatException e) {
             log.warn(e.getMessage());
             newDevNum = numDevices;
             newPortNum = numPorts;
+            newConnectThreads = connectThreads;
         }
 
         boolean chgd = false;
@@ -171,7 +199,12 @@ public class NullDeviceProvider extends AbstractProvider implements DeviceProvid
             numPorts = newPortNum;
             chgd |= true;
         }
-        log.info("Using settings numDevices={}, numPorts={}", numDevices, numPorts);
+        if (newConnectThreads != connectThreads) {
+            connectThreads = Math.max(newConnectThreads, 1);
+            chgd |= true;
+        }
+        log.info("Using settings numDevices={}, numPorts={}, connectThreads={}",
+                 numDevices, numPorts, connectThreads);
         if (chgd) {
             deviceBuilder.submit(new DeviceCreator(true));
         }
@@ -221,6 +254,9 @@ public class NullDeviceProvider extends AbstractProvider implements DeviceProvid
                     advertiseDevices();
                 } catch (URISyntaxException e) {
                     log.warn("URI creation failed during device adverts {}", e.getMessage());
+                } catch (InterruptedException e) {
+                    log.info("Device advertisement cancelled");
+                    Thread.currentThread().interrupt();
                 }
             } else {
                 removeDevices();
@@ -236,27 +272,84 @@ public class NullDeviceProvider extends AbstractProvider implements DeviceProvid
             descriptions.clear();
         }
 
-        private void advertiseDevices() throws URISyntaxException {
+        private void advertiseDevices() throws URISyntaxException, InterruptedException {
             DeviceId did;
             ChassisId cid;
+            List<DeviceId> dids = Lists.newArrayList();
 
             // nodeIdHash takes into account for nodeID to avoid collisions when running multi-node providers.
             long nodeIdHash = clusterService.getLocalNode().id().hashCode() << 16;
 
-            for (int i = 0; i < numDevices; i++) {
-                long id = nodeIdHash | i;
-
-                did = DeviceId.deviceId(new URI(SCHEME, toHex(id), null));
-                cid = new ChassisId(i);
-                DeviceDescription desc =
-                        new DefaultDeviceDescription(did.uri(), Device.Type.SWITCH,
-                                                     "ON.Lab", "0.0.1", "0.0.1", "1234",
-                                                     cid);
-                descriptions.put(i, desc);
-                providerService.deviceConnected(did, desc);
-                providerService.updatePorts(did, buildPorts());
-                delay(EVENTINTERVAL);
+            // With a single thread, devices are trickled in one at a time;
+            // otherwise they are all connected at once to mimic a connect storm.
+            ExecutorService connectors = connectThreads > 1 ?
+                    Executors.newFixedThreadPool(connectThreads,
+                                                 groupedThreads("onos/null", "device-connector-%d")) :
+                    null;
+
+            try {
+                long start = System.currentTimeMillis();
+                for (int i = 0; i < numDevices; i++) {
+                    long id = nodeIdHash | i;
+
+                    did = DeviceId.deviceId(new URI(SCHEME, toHex(id), null));
+                    cid = new ChassisId(i);
+                    DeviceDescription desc =
+                            new DefaultDeviceDescription(did.uri(), Device.Type.SWITCH,
+                                                         "ON.Lab", "0.0.1", "0.0.1", "1234",
+                                                         cid);
+                    descriptions.put(i, desc);
+                    dids.add(did);
+                    if (connectors != null) {
+                        final DeviceId deviceId = did;
+                        connectors.submit(() -> connectDevice(deviceId, desc));
+                    } else {
+                        connectDevice(did, desc);
+                        Thread.sleep(EVENTINTERVAL);
+                    }
+                }
+
+                // Only a connect storm is measured; trickled devices are
+                // paced by the event interval rather than by the core.
+                if (connectors != null) {
+                    connectors.shutdown();
+                    if (!connectors.awaitTermination(ONLINE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                        log.warn("Timed out connecting devices");
+                        return;
+                    }
+                    awaitOnline(dids, start);
+                }
+            } finally {
+                if (connectors != null) {
+                    connectors.shutdownNow();
+                }
+            }
+        }
+
+        private void connectDevice(DeviceId did, DeviceDescription desc) {
+            DeviceProviderService service = providerService;
+            if (service == null || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            service.deviceConnected(did, desc);
+            service.updatePorts(did, buildPorts());
+        }
+
+        // Waits for the advertised devices to become available and reports
+        // the rate at which they came online.
+        private void awaitOnline(List<DeviceId> dids, long start) throws InterruptedException {
+            Set<DeviceId> pending = Sets.newHashSet(dids);
+            while (System.currentTimeMillis() - start < ONLINE_TIMEOUT) {
+                pending.removeIf(deviceService::isAvailable);
+                if (pending.isEmpty()) {
+                    break;
+                }
+                Thread.sleep(ONLINE_POLL_INTERVAL);
             }
+            long online = dids.size() - pending.size();
+            long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+            log.info("{} of {} devices online in {} ms ({} devices/s, connectThreads={})",
+                     online, dids.size(), elapsed, online * 1000 / elapsed, connectThreads);
         }
 
         private List<PortDescription> buildPorts() {
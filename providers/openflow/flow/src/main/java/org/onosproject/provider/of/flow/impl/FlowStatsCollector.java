@@ -17,7 +17,9 @@ package org.onosproject.provider.of.flow.impl;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 import org.jboss.netty.util.HashedWheelTimer;
 import org.jboss.netty.util.Timeout;
@@ -25,26 +27,66 @@ import org.jboss.netty.util.TimerTask;
 import org.onosproject.openflow.controller.OpenFlowSwitch;
 import org.onosproject.openflow.controller.RoleState;
 import org.onlab.util.Timer;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
 import org.projectfloodlight.openflow.protocol.OFFlowStatsRequest;
 import org.projectfloodlight.openflow.types.OFPort;
 import org.projectfloodlight.openflow.types.TableId;
 import org.slf4j.Logger;
 
+/**
+ * Periodically polls a switch for its flow statistics.
+ * <p>
+ * Polling backs off exponentially, up to {@link #MAX_BACKOFF} doublings of
+ * the refresh interval, while consecutive replies report identical flow
+ * counters, and returns to the refresh interval as soon as the counters
+ * change or the flows on the switch are modified.
+ * </p>
+ */
 public class FlowStatsCollector implements TimerTask {
 
+    /**
+     * Maximum number of times the refresh interval is doubled for a switch
+     * whose flow statistics are not changing.
+     */
+    static final int MAX_BACKOFF = 2;
+
+    private static final long INITIAL_DELAY_MS = 1000;
+
     private final Logger log = getLogger(getClass());
 
     private final HashedWheelTimer timer = Timer.getTimer();
     private final OpenFlowSwitch sw;
     private final int refreshInterval;
+    private final double offset;
+    private final LongSupplier minIntervalMillis;
 
-    private Timeout timeout;
+    private volatile Timeout timeout;
 
-    private boolean stopTimer = false;;
+    private volatile boolean stopTimer = false;
+
+    private volatile int backoff = 0;
+    private long lastSignature;
 
     public FlowStatsCollector(OpenFlowSwitch sw, int refreshInterval) {
+        this(sw, refreshInterval, 0.0, () -> 0L);
+    }
+
+    /**
+     * Creates a flow statistics collector.
+     *
+     * @param sw                switch to poll
+     * @param refreshInterval   base polling interval in seconds
+     * @param offset            fraction of the refresh interval by which to
+     *                          delay the first poll, in the range [0, 1)
+     * @param minIntervalMillis supplier of the smallest polling interval
+     *                          permitted by the polling budget
+     */
+    public FlowStatsCollector(OpenFlowSwitch sw, int refreshInterval,
+                              double offset, LongSupplier minIntervalMillis) {
         this.sw = sw;
         this.refreshInterval = refreshInterval;
+        this.offset = offset;
+        this.minIntervalMillis = minIntervalMillis;
     }
 
     @Override
@@ -54,15 +96,72 @@ public class FlowStatsCollector implements TimerTask {
         sendFlowStatistics();
 
         if (!this.stopTimer) {
-            log.trace("Scheduling stats collection in {} seconds for {}",
-                    this.refreshInterval, this.sw.getStringId());
-            timeout.getTimer().newTimeout(this, refreshInterval,
-                    TimeUnit.SECONDS);
+            long delay = pollIntervalMillis();
+            log.trace("Scheduling stats collection in {} ms for {}",
+                    delay, this.sw.getStringId());
+            this.timeout = timeout.getTimer().newTimeout(this, delay,
+                    TimeUnit.MILLISECONDS);
         }
 
 
     }
 
+    /**
+     * Returns the delay until the next poll, taking into account the
+     * current backoff and the polling budget.
+     *
+     * @return polling interval in milliseconds
+     */
+    long pollIntervalMillis() {
+        long interval = TimeUnit.SECONDS.toMillis(refreshInterval) << backoff;
+        return Math.max(interval, minIntervalMillis.getAsLong());
+    }
+
+    /**
+     * Returns the smallest interval at which each of the given number of
+     * switches may be polled without exceeding the polling budget.
+     *
+     * @param switches number of switches polled
+     * @param budget   maximum number of polls per second across all the
+     *                 switches; 0 or less for no limit
+     * @return minimum polling interval in milliseconds
+     */
+    static long minIntervalMillis(int switches, int budget) {
+        if (budget <= 0) {
+            return 0;
+        }
+        return TimeUnit.SECONDS.toMillis(switches) / budget;
+    }
+
+    /**
+     * Records the flow statistics reported by the switch and adjusts the
+     * polling interval depending on whether they have changed since the
+     * previous reply.
+     *
+     * @param entries flow statistics entries of a reply
+     */
+    public synchronized void statsReceived(List<OFFlowStatsEntry> entries) {
+        long signature = entries.size();
+        for (OFFlowStatsEntry entry : entries) {
+            signature = 31 * signature + entry.getPacketCount().getValue();
+            signature = 31 * signature + entry.getByteCount().getValue();
+        }
+        if (signature == lastSignature) {
+            backoff = Math.min(backoff + 1, MAX_BACKOFF);
+        } else {
+            backoff = 0;
+        }
+        lastSignature = signature;
+    }
+
+    /**
+     * Resets polling to the refresh interval; to be invoked whenever flows
+     * are programmed on the switch.
+     */
+    public void flowsModified() {
+        backoff = 0;
+    }
+
     private void sendFlowStatistics() {
         if (log.isTraceEnabled()) {
             log.trace("sendFlowStatistics {}:{}", sw.getStringId(), sw.getRole());
@@ -84,11 +183,15 @@ public class FlowStatsCollector implements TimerTask {
     public void start() {
 
         /*
-         * Initially start polling quickly. Then drop down to configured value
+         * Initially start polling quickly. Then drop down to configured value.
+         * The offset staggers the first poll so that switches connecting
+         * together are not all polled in the same tick thereafter.
          */
         log.info("Starting Stats collection thread for {}",
                 this.sw.getStringId());
-        timeout = timer.newTimeout(this, 1, TimeUnit.SECONDS);
+        long delay = INITIAL_DELAY_MS +
+                (long) (offset * TimeUnit.SECONDS.toMillis(refreshInterval));
+        timeout = timer.newTimeout(this, delay, TimeUnit.MILLISECONDS);
     }
 
     public void stop() {
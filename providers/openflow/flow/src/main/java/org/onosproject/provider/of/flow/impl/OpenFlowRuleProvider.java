@@ -20,13 +20,16 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalNotification;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
+import org.apache.felix.scr.annotations.Modified;
+import org.apache.felix.scr.annotations.Property;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.onosproject.cfg.ComponentConfigService;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.net.DeviceId;
 import org.onosproject.net.flow.CompletedBatchOperation;
@@ -56,16 +59,22 @@ import org.projectfloodlight.openflow.protocol.OFPortStatus;
 import org.projectfloodlight.openflow.protocol.OFStatsReply;
 import org.projectfloodlight.openflow.protocol.OFStatsType;
 import org.projectfloodlight.openflow.protocol.errormsg.OFFlowModFailedErrorMsg;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 
 import java.util.Collections;
+import java.util.Dictionary;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static org.onlab.util.Tools.get;
 import static org.slf4j.LoggerFactory.getLogger;
 
 
@@ -78,12 +87,26 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
     private final Logger log = getLogger(getClass());
 
+    private static final int DEFAULT_POLL_BUDGET = 0;
+    private static final long MASTER_COUNT_REFRESH_MILLIS = 1000;
+
+    // Golden ratio conjugate; spreads successive collectors evenly
+    // across the polling interval.
+    private static final double STAGGER = 0.6180339887;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected FlowRuleProviderRegistry providerRegistry;
 
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected OpenFlowController controller;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ComponentConfigService cfgService;
+
+    @Property(name = "flowPollBudget", intValue = DEFAULT_POLL_BUDGET,
+            label = "Maximum number of flow statistics requests per second " +
+                    "issued by this instance; 0 for no limit")
+    private int flowPollBudget = DEFAULT_POLL_BUDGET;
 
     private FlowRuleProviderService providerService;
 
@@ -91,7 +114,14 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
     private Cache<Long, InternalCacheEntry> pendingBatches;
 
-    private final Map<Dpid, FlowStatsCollector> collectors = Maps.newHashMap();
+    private final Map<Dpid, FlowStatsCollector> collectors = new ConcurrentHashMap<>();
+
+    private final AtomicInteger collectorCount = new AtomicInteger();
+
+    // Number of switches mastered here; recounted at most once per refresh
+    // period, or on the next poll after a switch or role change
+    private volatile int masterSwitchCount;
+    private volatile long masterSwitchCountTime;
 
 
     /**
@@ -102,7 +132,9 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
     }
 
     @Activate
-    public void activate() {
+    public void activate(ComponentContext context) {
+        cfgService.registerProperties(getClass());
+        modified(context);
         providerService = providerRegistry.register(this);
         controller.addListener(listener);
         controller.addEventListener(listener);
@@ -118,9 +150,7 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
 
         for (OpenFlowSwitch sw : controller.getSwitches()) {
-            FlowStatsCollector fsc = new FlowStatsCollector(sw, POLL_INTERVAL);
-            fsc.start();
-            collectors.put(new Dpid(sw.getId()), fsc);
+            startCollector(new Dpid(sw.getId()), sw);
         }
 
 
@@ -129,12 +159,74 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
     @Deactivate
     public void deactivate() {
+        cfgService.unregisterProperties(getClass(), false);
         providerRegistry.unregister(this);
         providerService = null;
 
         log.info("Stopped");
     }
 
+    @Modified
+    public void modified(ComponentContext context) {
+        if (context == null) {
+            return;
+        }
+
+        Dictionary<?, ?> properties = context.getProperties();
+        int newPollBudget;
+        try {
+            String s = get(properties, "flowPollBudget");
+            newPollBudget = isNullOrEmpty(s) ? flowPollBudget : Integer.parseInt(s.trim());
+        } catch (NumberFormatException | ClassCastException e) {
+            newPollBudget = DEFAULT_POLL_BUDGET;
+        }
+
+        if (newPollBudget != flowPollBudget) {
+            flowPollBudget = newPollBudget;
+            log.info("Reconfigured. Flow statistics polling budget is {} requests/s",
+                     flowPollBudget);
+        }
+    }
+
+    private void startCollector(Dpid dpid, OpenFlowSwitch sw) {
+        double offset = (collectorCount.getAndIncrement() * STAGGER) % 1.0;
+        FlowStatsCollector fsc = new FlowStatsCollector(sw, POLL_INTERVAL,
+                                                        offset, this::minPollIntervalMillis);
+        fsc.start();
+        collectors.put(dpid, fsc);
+    }
+
+    // Smallest interval at which each switch may be polled without the
+    // switches mastered by this instance exceeding the polling budget.
+    private long minPollIntervalMillis() {
+        int budget = flowPollBudget;
+        if (budget <= 0) {
+            return 0;
+        }
+        return FlowStatsCollector.minIntervalMillis(masterSwitchCount(), budget);
+    }
+
+    private int masterSwitchCount() {
+        long now = System.currentTimeMillis();
+        if (now - masterSwitchCountTime >= MASTER_COUNT_REFRESH_MILLIS) {
+            masterSwitchCount = Iterables.size(controller.getMasterSwitches());
+            masterSwitchCountTime = now;
+        }
+        return masterSwitchCount;
+    }
+
+    // Has the master switch count refreshed on the next poll.
+    private void masterSwitchesChanged() {
+        masterSwitchCountTime = 0;
+    }
+
+    private void flowsModified(DeviceId deviceId) {
+        FlowStatsCollector collector = collectors.get(Dpid.dpid(deviceId.uri()));
+        if (collector != null) {
+            collector.flowsModified();
+        }
+    }
+
     @Override
     public void applyFlowRule(FlowRule... flowRules) {
         for (FlowRule flowRule : flowRules) {
@@ -144,6 +236,7 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
     private void applyRule(FlowRule flowRule) {
         OpenFlowSwitch sw = controller.getSwitch(Dpid.dpid(flowRule.deviceId().uri()));
+        flowsModified(flowRule.deviceId());
         if (flowRule.type() == FlowRule.Type.DEFAULT) {
             sw.sendMsg(FlowModBuilder.builder(flowRule, sw.factory(),
                     Optional.empty()).buildFlowAdd());
@@ -166,6 +259,7 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
     private void removeRule(FlowRule flowRule) {
         OpenFlowSwitch sw = controller.getSwitch(Dpid.dpid(flowRule.deviceId().uri()));
+        flowsModified(flowRule.deviceId());
         if (flowRule.type() == FlowRule.Type.DEFAULT) {
             sw.sendMsg(FlowModBuilder.builder(flowRule, sw.factory(),
                     Optional.empty()).buildFlowDel());
@@ -189,6 +283,7 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
 
         OpenFlowSwitch sw = controller.getSwitch(Dpid.dpid(batch.deviceId().uri()));
+        flowsModified(batch.deviceId());
         OFFlowMod mod;
 
         for (FlowRuleBatchEntry fbe : batch.getOperations()) {
@@ -281,13 +376,13 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
         @Override
         public void switchAdded(Dpid dpid) {
-            FlowStatsCollector fsc = new FlowStatsCollector(controller.getSwitch(dpid), POLL_INTERVAL);
-            fsc.start();
-            collectors.put(dpid, fsc);
+            masterSwitchesChanged();
+            startCollector(dpid, controller.getSwitch(dpid));
         }
 
         @Override
         public void switchRemoved(Dpid dpid) {
+            masterSwitchesChanged();
             FlowStatsCollector collector = collectors.remove(dpid);
             if (collector != null) {
                 collector.stop();
@@ -367,7 +462,7 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
         @Override
         public void receivedRoleReply(Dpid dpid, RoleState requested,
                                       RoleState response) {
-            // Do nothing here for now.
+            masterSwitchesChanged();
         }
 
         private void pushFlowMetrics(Dpid dpid, OFFlowStatsReply replies) {
@@ -383,6 +478,11 @@ public class OpenFlowRuleProvider extends AbstractProvider implements FlowRulePr
 
             providerService.pushFlowMetrics(did, flowEntries);
 
+            FlowStatsCollector collector = collectors.get(dpid);
+            if (collector != null) {
+                collector.statsReceived(replies.getEntries());
+            }
+
         }
 
     }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.provider.of.flow.impl;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.projectfloodlight.openflow.protocol.OFFactories;
+import org.projectfloodlight.openflow.protocol.OFFactory;
+import org.projectfloodlight.openflow.protocol.OFFlowStatsEntry;
+import org.projectfloodlight.openflow.protocol.OFVersion;
+import org.projectfloodlight.openflow.types.U64;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the polling interval adjustments of the flow statistics collector.
+ */
+public class FlowStatsCollectorTest {
+
+    private static final OFFactory FACTORY = OFFactories.getFactory(OFVersion.OF_13);
+    private static final int REFRESH_INTERVAL = 10;
+    private static final long REFRESH_MILLIS = TimeUnit.SECONDS.toMillis(REFRESH_INTERVAL);
+
+    private FlowStatsCollector collector;
+
+    @Before
+    public void setUp() {
+        collector = new FlowStatsCollector(null, REFRESH_INTERVAL);
+    }
+
+    private static List<OFFlowStatsEntry> stats(long packets, long bytes) {
+        return ImmutableList.of(FACTORY.buildFlowStatsEntry()
+                                        .setPacketCount(U64.of(packets))
+                                        .setByteCount(U64.of(bytes))
+                                        .build());
+    }
+
+    @Test
+    public void backoffGrowsWhileUnchanged() {
+        collector.statsReceived(stats(1, 100));
+        assertEquals("first reply should not back off",
+                     REFRESH_MILLIS, collector.pollIntervalMillis());
+
+        collector.statsReceived(stats(1, 100));
+        assertEquals("incorrect interval", 2 * REFRESH_MILLIS, collector.pollIntervalMillis());
+
+        collector.statsReceived(stats(1, 100));
+        assertEquals("incorrect interval", 4 * REFRESH_MILLIS, collector.pollIntervalMillis());
+    }
+
+    @Test
+    public void backoffCapped() {
+        for (int i = 0; i <= FlowStatsCollector.MAX_BACKOFF + 3; i++) {
+            collector.statsReceived(stats(1, 100));
+        }
+        assertEquals("backoff should be capped",
+                     REFRESH_MILLIS << FlowStatsCollector.MAX_BACKOFF,
+                     collector.pollIntervalMillis());
+    }
+
+    @Test
+    public void backoffResetOnChange() {
+        collector.statsReceived(stats(1, 100));
+        collector.statsReceived(stats(1, 100));
+        collector.statsReceived(stats(1, 100));
+        collector.statsReceived(stats(2, 200));
+        assertEquals("changed counters should reset backoff",
+                     REFRESH_MILLIS, collector.pollIntervalMillis());
+
+        // Backoff then starts over from the new counters
+        collector.statsReceived(stats(2, 200));
+        assertEquals("incorrect interval", 2 * REFRESH_MILLIS, collector.pollIntervalMillis());
+    }
+
+    @Test
+    public void backoffResetOnFlowsModified() {
+        collector.statsReceived(stats(1, 100));
+        collector.statsReceived(stats(1, 100));
+        collector.flowsModified();
+        assertEquals("modified flows should reset backoff",
+                     REFRESH_MILLIS, collector.pollIntervalMillis());
+    }
+
+    @Test
+    public void unlimitedBudget() {
+        assertEquals("no budget should not limit polling",
+                     0, FlowStatsCollector.minIntervalMillis(1000, 0));
+    }
+
+    @Test
+    public void budgetSharedAcrossSwitches() {
+        final int budget = 20;
+        AtomicInteger switches = new AtomicInteger();
+        List<FlowStatsCollector> collectors = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            collectors.add(new FlowStatsCollector(null, REFRESH_INTERVAL, 0.0, () ->
+                    FlowStatsCollector.minIntervalMillis(switches.get(), budget)));
+        }
+
+        // Fewer switches than the budget allows still poll at the refresh interval
+        switches.set(100);
+        assertEquals("budget should not apply yet",
+                     REFRESH_MILLIS, collectors.get(0).pollIntervalMillis());
+
+        // Beyond that, every switch is polled less often to stay in budget
+        switches.set(collectors.size());
+        double pollsPerSecond = 0;
+        for (FlowStatsCollector c : collectors) {
+            long interval = c.pollIntervalMillis();
+            assertTrue("interval should be stretched", interval > REFRESH_MILLIS);
+            pollsPerSecond += 1000.0 / interval;
+        }
+        assertTrue("budget exceeded: " + pollsPerSecond, pollsPerSecond <= budget);
+    }
+
+    @Test
+    public void backoffBeyondBudget() {
+        collector = new FlowStatsCollector(null, REFRESH_INTERVAL, 0.0,
+                                           () -> 3 * REFRESH_MILLIS);
+        assertEquals("budget should stretch interval",
+                     3 * REFRESH_MILLIS, collector.pollIntervalMillis());
+
+        for (int i = 0; i < FlowStatsCollector.MAX_BACKOFF + 1; i++) {
+            collector.statsReceived(stats(1, 100));
+        }
+        assertEquals("backoff should prevail when longer",
+                     REFRESH_MILLIS << FlowStatsCollector.MAX_BACKOFF,
+                     collector.pollIntervalMillis());
+    }
+}
@@ -15,11 +15,17 @@
  */
 package org.onlab.graph;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.ImmutableSetMultimap;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiPredicate;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -36,8 +42,8 @@ public class AdjacencyListsGraph<V extends Vertex, E extends Edge<V>>
     private final Set<V> vertexes;
     private final Set<E> edges;
 
-    private final ImmutableSetMultimap<V, E> sources;
-    private final ImmutableSetMultimap<V, E> destinations;
+    private final ImmutableMap<V, ImmutableSet<E>> sources;
+    private final ImmutableMap<V, ImmutableSet<E>> destinations;
 
     /**
      * Creates a graph comprising of the specified vertexes and edges.
@@ -50,17 +56,17 @@ public class AdjacencyListsGraph<V extends Vertex, E extends Edge<V>>
         checkNotNull(edges, "Edge set cannot be null");
 
         // Record ingress/egress edges for each vertex.
-        ImmutableSetMultimap.Builder<V, E> srcMap = ImmutableSetMultimap.builder();
-        ImmutableSetMultimap.Builder<V, E> dstMap = ImmutableSetMultimap.builder();
+        Map<V, ImmutableSet.Builder<E>> srcMap = new HashMap<>();
+        Map<V, ImmutableSet.Builder<E>> dstMap = new HashMap<>();
 
         // Also make sure that all edge end-points are added as vertexes
         ImmutableSet.Builder<V> actualVertexes = ImmutableSet.builder();
         actualVertexes.addAll(vertexes);
 
         for (E edge : edges) {
-            srcMap.put(edge.src(), edge);
+            srcMap.computeIfAbsent(edge.src(), v -> ImmutableSet.builder()).add(edge);
             actualVertexes.add(edge.src());
-            dstMap.put(edge.dst(), edge);
+            dstMap.computeIfAbsent(edge.dst(), v -> ImmutableSet.builder()).add(edge);
             actualVertexes.add(edge.dst());
         }
 
@@ -69,8 +75,137 @@ public class AdjacencyListsGraph<V extends Vertex, E extends Edge<V>>
         this.vertexes = actualVertexes.build();
 
         // Build immutable copies of sources and destinations edge maps
-        sources = srcMap.build();
-        destinations = dstMap.build();
+        sources = buildAdjacency(ImmutableMap.of(), srcMap);
+        destinations = buildAdjacency(ImmutableMap.of(), dstMap);
+    }
+
+    /**
+     * Creates a graph comprising of the specified vertexes and edges, which
+     * derives its adjacency lists from those of a previous graph. Only the
+     * lists of vertexes whose edges have been added, removed or replaced are
+     * re-built; all others are shared with the previous graph.
+     * <p>
+     * An edge is considered replaced unless the previous graph holds the very
+     * same edge instance, so that the adjacency lists never hand out stale
+     * instances of edges which are merely equal to the current ones.
+     * </p>
+     *
+     * @param previous previous graph
+     * @param vertexes set of graph vertexes
+     * @param edges    set of graph edges
+     */
+    public AdjacencyListsGraph(AdjacencyListsGraph<V, E> previous,
+                               Set<V> vertexes, Set<E> edges) {
+        this(previous, vertexes, edges, (previousEdge, edge) -> previousEdge == edge);
+    }
+
+    /**
+     * Creates a graph comprising of the specified vertexes and edges, which
+     * derives its adjacency lists from those of a previous graph. Only the
+     * lists of vertexes whose edges have been added, removed or replaced are
+     * re-built; all others are shared with the previous graph.
+     * <p>
+     * An edge of the previous graph is retained in place of an equal current
+     * edge only if the given predicate deems the two the same; otherwise the
+     * current edge replaces it.
+     * </p>
+     *
+     * @param previous previous graph
+     * @param vertexes set of graph vertexes
+     * @param edges    set of graph edges
+     * @param same     predicate telling whether an edge of the previous graph
+     *                 can stand in for the equal current edge
+     */
+    public AdjacencyListsGraph(AdjacencyListsGraph<V, E> previous,
+                               Set<V> vertexes, Set<E> edges,
+                               BiPredicate<E, E> same) {
+        checkNotNull(previous, "Previous graph cannot be null");
+        checkNotNull(vertexes, "Vertex set cannot be null");
+        checkNotNull(edges, "Edge set cannot be null");
+        checkNotNull(same, "Edge predicate cannot be null");
+
+        this.edges = ImmutableSet.copyOf(edges);
+
+        // Index the current edges to find their previous counterparts.
+        Map<E, E> current = new HashMap<>();
+        for (E edge : this.edges) {
+            current.put(edge, edge);
+        }
+
+        // Find the vertexes whose ingress/egress edges have changed.
+        Map<V, ImmutableSet.Builder<E>> srcMap = new HashMap<>();
+        Map<V, ImmutableSet.Builder<E>> dstMap = new HashMap<>();
+        Set<E> retained = new HashSet<>();
+        for (E edge : previous.edges) {
+            E currentEdge = current.get(edge);
+            if (currentEdge != null && same.test(edge, currentEdge)) {
+                retained.add(edge);
+            } else {
+                srcMap.computeIfAbsent(edge.src(), v -> ImmutableSet.builder());
+                dstMap.computeIfAbsent(edge.dst(), v -> ImmutableSet.builder());
+            }
+        }
+        List<E> added = new ArrayList<>();
+        for (E edge : this.edges) {
+            if (!retained.contains(edge)) {
+                added.add(edge);
+                srcMap.computeIfAbsent(edge.src(), v -> ImmutableSet.builder());
+                dstMap.computeIfAbsent(edge.dst(), v -> ImmutableSet.builder());
+            }
+        }
+
+        // Re-build their lists from the retained and the added edges.
+        retainEdges(previous.sources, srcMap, retained);
+        retainEdges(previous.destinations, dstMap, retained);
+        for (E edge : added) {
+            srcMap.get(edge.src()).add(edge);
+            dstMap.get(edge.dst()).add(edge);
+        }
+
+        sources = buildAdjacency(previous.sources, srcMap);
+        destinations = buildAdjacency(previous.destinations, dstMap);
+
+        // Also make sure that all edge end-points are added as vertexes
+        ImmutableSet.Builder<V> actualVertexes = ImmutableSet.builder();
+        actualVertexes.addAll(vertexes);
+        Set<V> missing = new HashSet<>(sources.keySet());
+        missing.addAll(destinations.keySet());
+        missing.removeAll(vertexes);
+        actualVertexes.addAll(missing);
+        this.vertexes = actualVertexes.build();
+    }
+
+    // Adds the previous edges of each given vertex which are retained.
+    private static <V, E> void retainEdges(Map<V, ImmutableSet<E>> previous,
+                                           Map<V, ImmutableSet.Builder<E>> lists,
+                                           Set<E> retained) {
+        for (Map.Entry<V, ImmutableSet.Builder<E>> entry : lists.entrySet()) {
+            for (E edge : previous.getOrDefault(entry.getKey(), ImmutableSet.of())) {
+                if (retained.contains(edge)) {
+                    entry.getValue().add(edge);
+                }
+            }
+        }
+    }
+
+    // Builds the adjacency lists from the previous lists, re-using those of
+    // the vertexes for which no new list is given.
+    private static <V, E> ImmutableMap<V, ImmutableSet<E>>
+            buildAdjacency(Map<V, ImmutableSet<E>> previous,
+                           Map<V, ImmutableSet.Builder<E>> lists) {
+        ImmutableMap.Builder<V, ImmutableSet<E>> builder = ImmutableMap.builder();
+        for (Map.Entry<V, ImmutableSet<E>> entry : previous.entrySet()) {
+            if (!lists.containsKey(entry.getKey())) {
+                builder.put(entry);
+            }
+        }
+        for (Map.Entry<V, ImmutableSet.Builder<E>> entry : lists.entrySet()) {
+            ImmutableSet<E> list = entry.getValue().build();
+            if (!list.isEmpty()) {
+                builder.put(entry.getKey(), list);
+            }
+        }
+        return builder.build();
     }
 
     @Override
@@ -85,12 +220,12 @@ public class AdjacencyListsGraph<V extends Vertex, E extends Edge<V>>
 
     @Override
     public Set<E> getEdgesFrom(V src) {
-        return sources.get(src);
+        return sources.getOrDefault(src, ImmutableSet.of());
     }
 
     @Override
     public Set<E> getEdgesTo(V dst) {
-        return destinations.get(dst);
+        return destinations.getOrDefault(dst, ImmutableSet.of());
     }
 
     @Override
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dijkstra shortest-path graph search algorithm capable of finding not just
+ * one, but all shortest paths between the source and destinations.
+ * <p>
+ * Produces the same results as {@link DijkstraGraphSearch}, but rather than
+ * re-heapifying all vertexes after each step, it maps the vertexes onto
+ * integer indexes and uses an {@link IndexedMinHeap} with decrease-key over
+ * primitive cost arrays, which bounds the search at O((V + E) log V).
+ * </p>
+ */
+public class IndexedDijkstraGraphSearch<V extends Vertex, E extends Edge<V>>
+        extends AbstractGraphPathSearch<V, E> {
+
+    @Override
+    public Result<V, E> search(Graph<V, E> graph, V src, V dst,
+                               EdgeWeight<V, E> weight, int maxPaths) {
+        checkArguments(graph, src, dst);
+
+        // Use the default result to remember cumulative costs and parent
+        // edges to each each respective vertex.
+        DefaultResult result = new DefaultResult(src, dst, maxPaths);
+
+        // Cost to reach the source vertex is 0 of course.
+        result.updateVertex(src, null, 0.0, false);
+
+        if (graph.getEdges().isEmpty()) {
+            result.buildPaths();
+            return result;
+        }
+
+        IndexedGraph<V, E> indexed = new IndexedGraph<>(graph);
+        int srcIndex = indexed.index(src);
+        int dstIndex = dst == null ? -1 : indexed.index(dst);
+
+        double[] costs = new double[indexed.size()];
+        Arrays.fill(costs, Double.MAX_VALUE);
+        costs[srcIndex] = 0.0;
+
+        // Use the min priority queue to progressively find each nearest
+        // vertex until we reach the desired destination, if one was given,
+        // or until we reach all possible destinations. Only vertexes that
+        // have been reached are ever placed on the queue.
+        IndexedMinHeap minQueue = new IndexedMinHeap(indexed.size());
+        minQueue.insert(srcIndex, 0.0);
+        double threshold = samenessThreshold();
+
+        while (!minQueue.isEmpty()) {
+            // Get the nearest vertex
+            int nearest = minQueue.extractMin();
+            if (nearest == dstIndex) {
+                break;
+            }
+
+            // Relax all its egress edges, skipping the negative ones.
+            double cost = costs[nearest];
+            for (int i = indexed.offsets[nearest]; i < indexed.offsets[nearest + 1]; i++) {
+                E edge = indexed.edge(i);
+                double hopCost = weight == null ? 1.0 : weight.weight(edge);
+                if (hopCost < 0) {
+                    continue;
+                }
+
+                int v = indexed.targets[i];
+                double oldCost = costs[v];
+                double newCost = cost + hopCost;
+                boolean relaxed = newCost < oldCost;
+                boolean same = Math.abs(newCost - oldCost) <= threshold;
+                if (same || relaxed) {
+                    result.updateVertex(edge.dst(), edge, newCost, !same);
+                }
+
+                if (relaxed) {
+                    costs[v] = newCost;
+                    if (minQueue.contains(v)) {
+                        minQueue.decreaseKey(v, newCost);
+                    } else {
+                        minQueue.insert(v, newCost);
+                    }
+                }
+            }
+        }
+
+        // Now construct a set of paths from the results.
+        result.buildPaths();
+        return result;
+    }
+
+    // Compact, array-based adjacency view of a graph with vertexes mapped
+    // onto integer indexes; egress edges of vertex i are stored in the
+    // range [offsets[i], offsets[i + 1]) of the edges and targets arrays.
+    private static final class IndexedGraph<V extends Vertex, E extends Edge<V>> {
+        private final Map<V, Integer> indexes;
+        private final int[] offsets;
+        private final int[] targets;
+        private final Object[] edges;
+
+        private IndexedGraph(Graph<V, E> graph) {
+            Set<V> vertexes = graph.getVertexes();
+            indexes = new HashMap<>(vertexes.size() * 2);
+            for (V vertex : vertexes) {
+                indexes.put(vertex, indexes.size());
+            }
+
+            offsets = new int[vertexes.size() + 1];
+            targets = new int[graph.getEdges().size()];
+            edges = new Object[targets.length];
+
+            int i = 0;
+            int e = 0;
+            for (V vertex : vertexes) {
+                offsets[i++] = e;
+                for (E edge : graph.getEdgesFrom(vertex)) {
+                    edges[e] = edge;
+                    targets[e++] = indexes.get(edge.dst());
+                }
+            }
+            offsets[i] = e;
+        }
+
+        private int size() {
+            return indexes.size();
+        }
+
+        private int index(V vertex) {
+            return indexes.get(vertex);
+        }
+
+        @SuppressWarnings("unchecked")
+        private E edge(int i) {
+            return (E) edges[i];
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import java.util.Arrays;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Array-backed binary min-heap of integer items in the range of
+ * {@code [0, capacity)}, each of which is prioritized by a double key.
+ * <p>
+ * Unlike {@link Heap}, this structure keeps track of the position of each
+ * item, which allows the key of an item already on the heap to be lowered
+ * in logarithmic time, without having to restore the heap property over
+ * the entire backing array.
+ * </p>
+ * <p>
+ * This class is not thread-safe and care must be taken to prevent concurrent
+ * modifications.
+ * </p>
+ */
+public class IndexedMinHeap {
+
+    private static final int ABSENT = -1;
+
+    private final int[] heap;
+    private final int[] positions;
+    private final double[] keys;
+    private int size;
+
+    /**
+     * Creates a new empty heap able to hold items from 0 up to, but not
+     * including, the given capacity.
+     *
+     * @param capacity number of distinct items
+     */
+    public IndexedMinHeap(int capacity) {
+        checkArgument(capacity >= 0, "Capacity cannot be negative");
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    /**
+     * Returns the current size of the heap.
+     *
+     * @return number of items in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if there are no items in the heap.
+     *
+     * @return true if heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Indicates whether the specified item is currently on the heap.
+     *
+     * @param item item index
+     * @return true if the item is on the heap
+     */
+    public boolean contains(int item) {
+        checkElementIndex(item, positions.length);
+        return positions[item] != ABSENT;
+    }
+
+    /**
+     * Returns the key of the specified item.
+     *
+     * @param item item index; must be on the heap
+     * @return item key
+     */
+    public double key(int item) {
+        checkArgument(contains(item), "Item not on the heap");
+        return keys[item];
+    }
+
+    /**
+     * Inserts the specified item with the given key.
+     *
+     * @param item item index; must not be on the heap already
+     * @param key  item key
+     */
+    public void insert(int item, double key) {
+        checkArgument(!contains(item), "Item already on the heap");
+        keys[item] = key;
+        heap[size] = item;
+        positions[item] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lowers the key of the specified item.
+     *
+     * @param item item index; must be on the heap
+     * @param key  new item key; must not exceed the current key
+     */
+    public void decreaseKey(int item, double key) {
+        checkArgument(contains(item), "Item not on the heap");
+        checkArgument(key <= keys[item], "Key cannot be increased");
+        keys[item] = key;
+        siftUp(positions[item]);
+    }
+
+    /**
+     * Returns the item with the smallest key.
+     *
+     * @return item index or -1 if the heap is empty
+     */
+    public int min() {
+        return size > 0 ? heap[0] : ABSENT;
+    }
+
+    /**
+     * Extracts and returns the item with the smallest key.
+     *
+     * @return item index or -1 if the heap is empty
+     */
+    public int extractMin() {
+        if (size == 0) {
+            return ABSENT;
+        }
+        int min = heap[0];
+        swap(0, --size);
+        positions[min] = ABSENT;
+        if (size > 0) {
+            siftDown(0);
+        }
+        return min;
+    }
+
+    // Moves the item at the given position up until heap property holds.
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!less(i, parent)) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    // Moves the item at the given position down until heap property holds.
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int right = left + 1;
+            int child = right < size && less(right, left) ? right : left;
+            if (!less(child, i)) {
+                break;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    // Compares items at the given positions; ties favour lower item index
+    // to keep the extraction order deterministic.
+    private boolean less(int i, int j) {
+        double ki = keys[heap[i]];
+        double kj = keys[heap[j]];
+        return ki < kj || (ki == kj && heap[i] < heap[j]);
+    }
+
+    private void swap(int i, int j) {
+        int t = heap[i];
+        heap[i] = heap[j];
+        heap[j] = t;
+        positions[heap[i]] = i;
+        positions[heap[j]] = j;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("size", size)
+                .add("capacity", positions.length)
+                .toString();
+    }
+
+}
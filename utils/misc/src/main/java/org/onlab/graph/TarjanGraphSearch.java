@@ -15,12 +15,16 @@
  */
 package org.onlab.graph;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 
 /**
@@ -53,6 +57,324 @@ public class TarjanGraphSearch<V extends Vertex, E extends Edge<V>>
         return result.build();
     }
 
+    /**
+     * Searches the specified graph for SCC clusters, re-using the results of
+     * a previous search of an earlier version of the graph.
+     * <p>
+     * Rather than scanning the entire graph, only the clusters affected by
+     * the vertexes and edges added or removed since the previous search are
+     * re-examined. Clusters which remain intact share the vertex sets and,
+     * unless their edges changed, the edge sets of the previous results;
+     * callers can therefore recognize them by identity and re-use any data
+     * they derived from them earlier.
+     * </p>
+     *
+     * @param graph    graph to search
+     * @param weight   optional edge weight; must be equivalent to the one
+     *                 used to produce the previous results
+     * @param previous results of searching the earlier version of the graph;
+     *                 null to search the graph from scratch
+     * @return SCC results
+     */
+    public SCCResult<V, E> search(Graph<V, E> graph, EdgeWeight<V, E> weight,
+                                  SCCResult<V, E> previous) {
+        if (previous == null) {
+            return search(graph, weight);
+        }
+
+        Graph<V, E> old = previous.graph;
+        int oldCount = previous.clusterCount();
+        Map<V, Integer> oldClusters = new HashMap<>();
+        for (int i = 0; i < oldCount; i++) {
+            for (V vertex : previous.clusterVertexes().get(i)) {
+                oldClusters.put(vertex, i);
+            }
+        }
+
+        // Clusters which may have fallen apart and clusters whose edge sets
+        // have to be re-computed.
+        boolean[] broken = new boolean[oldCount];
+        boolean[] changed = new boolean[oldCount];
+
+        Set<V> vertexes = graph.getVertexes();
+        for (V vertex : old.getVertexes()) {
+            if (!vertexes.contains(vertex)) {
+                int i = oldClusters.get(vertex);
+                broken[i] = true;
+                changed[i] = true;
+            }
+        }
+
+        // Compare the egress edges of all remaining vertexes to find those
+        // which were added, removed or whose traversability has changed.
+        List<E> cut = new ArrayList<>();
+        List<E> joined = new ArrayList<>();
+        for (V vertex : vertexes) {
+            if (oldClusters.containsKey(vertex)) {
+                compareEdges(old.getEdgesFrom(vertex), graph.getEdgesFrom(vertex),
+                             weight, oldClusters, changed, cut, joined);
+            } else {
+                for (E edge : graph.getEdgesFrom(vertex)) {
+                    if (isTraversable(edge, weight)) {
+                        joined.add(edge);
+                    }
+                }
+            }
+        }
+
+        // A cluster stays intact if the source of every cut edge can still
+        // reach its destination without leaving the cluster; any path within
+        // the cluster can then detour around the cut edges.
+        for (E edge : cut) {
+            int i = clusterOf(oldClusters, edge);
+            if (i >= 0 && !broken[i] &&
+                    !isReachable(graph, weight, edge.src(), edge.dst(), i, oldClusters)) {
+                broken[i] = true;
+            }
+        }
+
+        // Carve the graph into strongly connected parts, comprising the
+        // intact clusters, the clusters found among the remains of the broken
+        // ones and any newly added vertexes.
+        List<Set<V>> parts = new ArrayList<>();
+        int[] partOfCluster = new int[oldCount];
+        Map<V, Integer> partOfVertex = new HashMap<>();
+        Set<V> remains = new HashSet<>();
+        for (int i = 0; i < oldCount; i++) {
+            if (broken[i]) {
+                partOfCluster[i] = -1;
+                for (V vertex : previous.clusterVertexes().get(i)) {
+                    if (vertexes.contains(vertex)) {
+                        remains.add(vertex);
+                    }
+                }
+            } else {
+                partOfCluster[i] = parts.size();
+                parts.add(previous.clusterVertexes().get(i));
+            }
+        }
+        if (!remains.isEmpty()) {
+            for (Set<V> part : search(inducedGraph(graph, remains), weight).clusterVertexes()) {
+                addPart(parts, partOfVertex, part);
+            }
+        }
+        for (V vertex : vertexes) {
+            if (!oldClusters.containsKey(vertex)) {
+                addPart(parts, partOfVertex, Collections.singleton(vertex));
+            }
+        }
+
+        // Parts can only merge via newly traversable edges; if there are any
+        // between different parts, search the graph of parts for SCCs.
+        boolean merging = false;
+        for (E edge : joined) {
+            if (partOf(edge.src(), oldClusters, partOfCluster, partOfVertex) !=
+                    partOf(edge.dst(), oldClusters, partOfCluster, partOfVertex)) {
+                merging = true;
+                break;
+            }
+        }
+
+        List<List<Integer>> groups = new ArrayList<>();
+        if (merging) {
+            groups.addAll(mergeParts(parts.size(), graph, weight,
+                                     oldClusters, partOfCluster, partOfVertex));
+        } else {
+            for (int p = 0; p < parts.size(); p++) {
+                groups.add(Collections.singletonList(p));
+            }
+        }
+
+        // Finally, produce the clusters, re-using the previous ones which
+        // remained intact.
+        int[] clusterOfPart = new int[parts.size()];
+        Arrays.fill(clusterOfPart, -1);
+        for (int i = 0; i < oldCount; i++) {
+            if (partOfCluster[i] >= 0) {
+                clusterOfPart[partOfCluster[i]] = i;
+            }
+        }
+
+        SCCResult<V, E> result = new SCCResult<>(graph);
+        for (List<Integer> group : groups) {
+            int i = group.size() == 1 ? clusterOfPart[group.get(0)] : -1;
+            if (i >= 0) {
+                Set<V> clusterVertexes = previous.clusterVertexes().get(i);
+                result.addCluster(clusterVertexes, changed[i] ?
+                        result.findClusterEdges(clusterVertexes) :
+                        previous.clusterEdges().get(i));
+            } else {
+                Set<V> clusterVertexes = new HashSet<>();
+                for (int p : group) {
+                    clusterVertexes.addAll(parts.get(p));
+                }
+                clusterVertexes = Collections.unmodifiableSet(clusterVertexes);
+                result.addCluster(clusterVertexes, result.findClusterEdges(clusterVertexes));
+            }
+        }
+        return result.build();
+    }
+
+    // Compares the previous and current egress edges of a vertex, marks the
+    // clusters whose edges changed and collects edges which can no longer,
+    // or can newly, be traversed. Edges replaced by different, though equal,
+    // instances count as changed, so that clusters never retain stale ones.
+    private void compareEdges(Set<E> oldEdges, Set<E> edges, EdgeWeight<V, E> weight,
+                              Map<V, Integer> clusters, boolean[] changed,
+                              List<E> cut, List<E> joined) {
+        // Most often the edges are the very same instances and even listed
+        // in the same order, which can be verified without hashing them.
+        if (oldEdges.size() == edges.size()) {
+            Iterator<E> oldIt = oldEdges.iterator();
+            Iterator<E> it = edges.iterator();
+            boolean same = true;
+            while (same && it.hasNext()) {
+                E oldEdge = oldIt.next();
+                E edge = it.next();
+                same = oldEdge == edge &&
+                        isTraversable(oldEdge, weight) == isTraversable(edge, weight);
+            }
+            if (same) {
+                return;
+            }
+        }
+
+        Map<E, E> fresh = new HashMap<>();
+        for (E edge : edges) {
+            fresh.put(edge, edge);
+        }
+        for (E oldEdge : oldEdges) {
+            E edge = fresh.remove(oldEdge);
+            boolean was = isTraversable(oldEdge, weight);
+            boolean is = edge != null && isTraversable(edge, weight);
+            if (edge == null || was != is) {
+                markChanged(clusters, changed, oldEdge);
+                if (was && !is) {
+                    cut.add(oldEdge);
+                } else if (is) {
+                    joined.add(edge);
+                }
+            } else if (edge != oldEdge) {
+                markChanged(clusters, changed, oldEdge);
+            }
+        }
+        for (E edge : fresh.values()) {
+            markChanged(clusters, changed, edge);
+            if (isTraversable(edge, weight)) {
+                joined.add(edge);
+            }
+        }
+    }
+
+    // Indicates whether the given weight allows to traverse the edge.
+    private boolean isTraversable(E edge, EdgeWeight<V, E> weight) {
+        return weight == null || weight.weight(edge) >= 0;
+    }
+
+    // Marks the cluster containing both edge end-points, if any, as changed.
+    private void markChanged(Map<V, Integer> clusters, boolean[] changed, E edge) {
+        int i = clusterOf(clusters, edge);
+        if (i >= 0) {
+            changed[i] = true;
+        }
+    }
+
+    // Returns the index of the cluster containing both edge end-points or -1
+    // if they are in different clusters.
+    private int clusterOf(Map<V, Integer> clusters, E edge) {
+        Integer src = clusters.get(edge.src());
+        return src != null && src.equals(clusters.get(edge.dst())) ? src : -1;
+    }
+
+    // Indicates whether the destination vertex can be reached from the
+    // source vertex while staying within the given cluster.
+    private boolean isReachable(Graph<V, E> graph, EdgeWeight<V, E> weight,
+                                V src, V dst, Integer cluster,
+                                Map<V, Integer> clusters) {
+        Set<V> seen = new HashSet<>();
+        Queue<V> queue = new ArrayDeque<>();
+        seen.add(src);
+        queue.add(src);
+        while (!queue.isEmpty()) {
+            for (E edge : graph.getEdgesFrom(queue.remove())) {
+                V next = edge.dst();
+                if (isTraversable(edge, weight) &&
+                        cluster.equals(clusters.get(next)) && seen.add(next)) {
+                    if (next.equals(dst)) {
+                        return true;
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    // Returns the sub-graph induced by the specified vertexes.
+    private Graph<V, E> inducedGraph(Graph<V, E> graph, Set<V> vertexes) {
+        Set<E> edges = new HashSet<>();
+        for (V vertex : vertexes) {
+            for (E edge : graph.getEdgesFrom(vertex)) {
+                if (vertexes.contains(edge.dst())) {
+                    edges.add(edge);
+                }
+            }
+        }
+        return new AdjacencyListsGraph<>(vertexes, edges);
+    }
+
+    private void addPart(List<Set<V>> parts, Map<V, Integer> partOfVertex, Set<V> part) {
+        for (V vertex : part) {
+            partOfVertex.put(vertex, parts.size());
+        }
+        parts.add(part);
+    }
+
+    private int partOf(V vertex, Map<V, Integer> clusters,
+                       int[] partOfCluster, Map<V, Integer> partOfVertex) {
+        Integer i = clusters.get(vertex);
+        if (i != null && partOfCluster[i] >= 0) {
+            return partOfCluster[i];
+        }
+        return partOfVertex.get(vertex);
+    }
+
+    // Groups the parts which are strongly connected to each other by
+    // searching the graph obtained by contracting each part into a vertex.
+    private List<List<Integer>> mergeParts(int partCount, Graph<V, E> graph,
+                                           EdgeWeight<V, E> weight,
+                                           Map<V, Integer> clusters,
+                                           int[] partOfCluster,
+                                           Map<V, Integer> partOfVertex) {
+        List<PartVertex> partVertexes = new ArrayList<>(partCount);
+        for (int p = 0; p < partCount; p++) {
+            partVertexes.add(new PartVertex(p));
+        }
+        Set<PartEdge> partEdges = new HashSet<>();
+        for (E edge : graph.getEdges()) {
+            if (!isTraversable(edge, weight)) {
+                continue;
+            }
+            int src = partOf(edge.src(), clusters, partOfCluster, partOfVertex);
+            int dst = partOf(edge.dst(), clusters, partOfCluster, partOfVertex);
+            if (src != dst) {
+                partEdges.add(new PartEdge(partVertexes.get(src), partVertexes.get(dst)));
+            }
+        }
+
+        SCCResult<PartVertex, PartEdge> partResult = new TarjanGraphSearch<PartVertex, PartEdge>()
+                .search(new AdjacencyListsGraph<>(new HashSet<>(partVertexes), partEdges), null);
+        List<List<Integer>> groups = new ArrayList<>();
+        for (Set<PartVertex> group : partResult.clusterVertexes()) {
+            List<Integer> indexes = new ArrayList<>(group.size());
+            for (PartVertex vertex : group) {
+                indexes.add(vertex.index);
+            }
+            groups.add(indexes);
+        }
+        return groups;
+    }
+
     /**
      * Scans the specified graph, using recursion, and produces SCC results.
      *
@@ -167,6 +489,12 @@ public class TarjanGraphSearch<V extends Vertex, E extends Edge<V>>
             clusterEdges.add(findClusterEdges(vertexes));
         }
 
+        // Adds a new cluster comprising the specified vertexes and edges
+        private void addCluster(Set<V> vertexes, Set<E> edges) {
+            clusterVertexes.add(vertexes);
+            clusterEdges.add(edges);
+        }
+
         private Set<V> findClusterVertices(VertexData data) {
             VertexData<V> nextVertexData;
             Set<V> vertexes = new HashSet<>();
@@ -196,6 +524,22 @@ public class TarjanGraphSearch<V extends Vertex, E extends Edge<V>>
         }
     }
 
+    // Vertex standing for a strongly connected part of a graph.
+    private static final class PartVertex implements Vertex {
+        final int index;
+
+        private PartVertex(int index) {
+            this.index = index;
+        }
+    }
+
+    // Edge linking two strongly connected parts of a graph.
+    private static final class PartEdge extends AbstractEdge<PartVertex> {
+        private PartEdge(PartVertex src, PartVertex dst) {
+            super(src, dst);
+        }
+    }
+
     // Augments the vertex to assist in determining SCC clusters.
     private static final class VertexData<V extends Vertex> {
         final V vertex;
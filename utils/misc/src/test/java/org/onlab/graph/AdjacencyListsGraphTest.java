@@ -22,6 +22,9 @@ import org.junit.Test;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests of the graph implementation.
@@ -36,10 +39,13 @@ public class AdjacencyListsGraphTest {
     private static final TestVertex F = new TestVertex("F");
     private static final TestVertex G = new TestVertex("G");
 
-    private final Set<TestEdge> edges =
-            ImmutableSet.of(new TestEdge(A, B, 1), new TestEdge(B, C, 1),
-                            new TestEdge(C, D, 1), new TestEdge(D, A, 1),
-                            new TestEdge(B, D, 1));
+    private static final TestEdge AB = new TestEdge(A, B, 1);
+    private static final TestEdge BC = new TestEdge(B, C, 1);
+    private static final TestEdge CD = new TestEdge(C, D, 1);
+    private static final TestEdge DA = new TestEdge(D, A, 1);
+    private static final TestEdge BD = new TestEdge(B, D, 1);
+
+    private final Set<TestEdge> edges = ImmutableSet.of(AB, BC, CD, DA, BD);
 
     @Test
     public void equality() {
@@ -69,4 +75,53 @@ public class AdjacencyListsGraphTest {
         assertEquals("incorrect egress edge count", 2, graph.getEdgesFrom(B).size());
         assertEquals("incorrect ingress edge count", 2, graph.getEdgesTo(D).size());
     }
+
+    @Test
+    public void derived() {
+        Set<TestVertex> vertexes = ImmutableSet.of(A, B, C, D, E, F);
+        AdjacencyListsGraph<TestVertex, TestEdge> graph = new AdjacencyListsGraph<>(vertexes, edges);
+
+        // Drop B-D, add D-E and G-A; G is not listed as a vertex.
+        Set<TestEdge> edges2 =
+                ImmutableSet.of(AB, BC, CD, DA,
+                                new TestEdge(D, E, 1), new TestEdge(G, A, 1));
+        AdjacencyListsGraph<TestVertex, TestEdge> derived =
+                new AdjacencyListsGraph<>(graph, vertexes, edges2);
+        assertEquals("incorrect graph", new AdjacencyListsGraph<>(vertexes, edges2), derived);
+        assertTrue("missing end-point vertex", derived.getVertexes().contains(G));
+
+        assertEquals("incorrect egress edge count", 1, derived.getEdgesFrom(B).size());
+        assertEquals("incorrect ingress edge count", 1, derived.getEdgesTo(D).size());
+        assertEquals("incorrect egress edge count", 2, derived.getEdgesFrom(D).size());
+        assertEquals("incorrect ingress edge count", 1, derived.getEdgesTo(E).size());
+        assertEquals("incorrect ingress edge count", 2, derived.getEdgesTo(A).size());
+        assertEquals("incorrect egress edge count", 0, derived.getEdgesFrom(E).size());
+
+        assertSame("unchanged lists should be shared", graph.getEdgesFrom(C), derived.getEdgesFrom(C));
+        assertSame("unchanged lists should be shared", graph.getEdgesTo(B), derived.getEdgesTo(B));
+        assertNotSame("changed lists should be re-built", graph.getEdgesFrom(B), derived.getEdgesFrom(B));
+    }
+
+    @Test
+    public void derivedWithReplacedEdge() {
+        Set<TestVertex> vertexes = ImmutableSet.of(A, B, C, D);
+        AdjacencyListsGraph<TestVertex, TestEdge> graph = new AdjacencyListsGraph<>(vertexes, edges);
+
+        // Replace C-D by an equal, yet different instance.
+        TestEdge cd = new TestEdge(C, D, 1);
+        Set<TestEdge> edges2 = ImmutableSet.of(AB, BC, cd, DA, BD);
+        AdjacencyListsGraph<TestVertex, TestEdge> derived =
+                new AdjacencyListsGraph<>(graph, vertexes, edges2);
+        assertEquals("incorrect graph", graph, derived);
+        assertSame("replaced edge not swapped in", cd, derived.getEdgesFrom(C).iterator().next());
+        assertTrue("replaced edge not swapped in",
+                   derived.getEdgesTo(D).stream().anyMatch(e -> e == cd));
+        assertSame("unchanged lists should be shared", graph.getEdgesFrom(A), derived.getEdgesFrom(A));
+
+        // Unless the previous edge is deemed the same as the current one.
+        AdjacencyListsGraph<TestVertex, TestEdge> retained =
+                new AdjacencyListsGraph<>(graph, vertexes, edges2, (e1, e2) -> true);
+        assertSame("same edge should be retained", CD, retained.getEdgesFrom(C).iterator().next());
+        assertSame("unchanged lists should be shared", graph.getEdgesFrom(C), retained.getEdgesFrom(C));
+    }
 }
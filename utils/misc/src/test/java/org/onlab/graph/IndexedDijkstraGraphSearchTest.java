@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of the indexed Dijkstra algorithm.
+ */
+public class IndexedDijkstraGraphSearchTest extends DijkstraGraphSearchTest {
+
+    private static final int[] PERF_SIZES = {100, 500, 1000};
+    private static final int PERF_SEARCHES = 10;
+
+    @Override
+    protected AbstractGraphPathSearch<TestVertex, TestEdge> graphSearch() {
+        return new IndexedDijkstraGraphSearch<>();
+    }
+
+    // Produces a random, sparse graph with fabric-like fan-out, including
+    // plenty of equal-cost paths.
+    private Graph<TestVertex, TestEdge> randomGraph(int size, long seed) {
+        Random random = new Random(seed);
+        List<TestVertex> vertexes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            vertexes.add(new TestVertex("v" + i));
+        }
+
+        Set<TestEdge> edges = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < 4; j++) {
+                TestVertex other = vertexes.get(random.nextInt(size));
+                if (!other.equals(vertexes.get(i))) {
+                    int w = 1 + random.nextInt(3);
+                    edges.add(new TestEdge(vertexes.get(i), other, w));
+                    edges.add(new TestEdge(other, vertexes.get(i), w));
+                }
+            }
+        }
+        return new AdjacencyListsGraph<>(new HashSet<>(vertexes), edges);
+    }
+
+    @Test
+    public void sameAsDijkstra() {
+        DijkstraGraphSearch<TestVertex, TestEdge> dijkstra = new DijkstraGraphSearch<>();
+        AbstractGraphPathSearch<TestVertex, TestEdge> indexed = graphSearch();
+        for (long seed = 0; seed < 5; seed++) {
+            graph = randomGraph(60, seed);
+            for (TestVertex src : graph.getVertexes()) {
+                for (TestVertex dst : new TestVertex[]{null, new TestVertex("v0")}) {
+                    assertEquals("paths differ",
+                                 dijkstra.search(graph, src, dst, weight,
+                                                 GraphPathSearch.ALL_PATHS).paths(),
+                                 indexed.search(graph, src, dst, weight,
+                                                GraphPathSearch.ALL_PATHS).paths());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void comparativePerf() {
+        DecimalFormat fmt = new DecimalFormat("#,###");
+        for (int size : PERF_SIZES) {
+            graph = randomGraph(size, size);
+            List<TestVertex> vertexes = new ArrayList<>(graph.getVertexes());
+            long heapCost = computeCost(new DijkstraGraphSearch<>(), vertexes);
+            long indexedCost = computeCost(graphSearch(), vertexes);
+            System.out.println("Compute cost for " + size + " vertexes is " +
+                                       fmt.format(heapCost) + " nanos with heap and " +
+                                       fmt.format(indexedCost) + " nanos indexed");
+        }
+    }
+
+    private long computeCost(GraphPathSearch<TestVertex, TestEdge> search,
+                             List<TestVertex> vertexes) {
+        long start = System.nanoTime();
+        for (int i = 0; i < PERF_SEARCHES; i++) {
+            search.search(graph, vertexes.get(i), vertexes.get(vertexes.size() - i - 1),
+                          weight, GraphPathSearch.ALL_PATHS);
+        }
+        return (System.nanoTime() - start) / PERF_SEARCHES;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.graph;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Indexed min-heap data structure tests.
+ */
+public class IndexedMinHeapTest {
+
+    private static final double[] KEYS = {6, 4, 5, 9, 8, 3, 2, 1, 7, 0};
+
+    private IndexedMinHeap fill() {
+        IndexedMinHeap h = new IndexedMinHeap(KEYS.length);
+        for (int i = 0; i < KEYS.length; i++) {
+            h.insert(i, KEYS[i]);
+        }
+        return h;
+    }
+
+    @Test
+    public void empty() {
+        IndexedMinHeap h = new IndexedMinHeap(4);
+        assertTrue("should be empty", h.isEmpty());
+        assertEquals("incorrect size", 0, h.size());
+        assertEquals("no item expected", -1, h.min());
+        assertEquals("no item expected", -1, h.extractMin());
+    }
+
+    @Test
+    public void insert() {
+        IndexedMinHeap h = fill();
+        assertEquals("incorrect size", 10, h.size());
+        assertTrue("item expected", h.contains(3));
+        assertEquals("incorrect key", 9.0, h.key(3), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateInsert() {
+        IndexedMinHeap h = fill();
+        h.insert(3, 1.0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfRange() {
+        IndexedMinHeap h = new IndexedMinHeap(2);
+        h.insert(2, 1.0);
+    }
+
+    @Test
+    public void minQueue() {
+        IndexedMinHeap h = fill();
+        assertEquals("incorrect min", 9, h.min());
+
+        double last = -1;
+        while (!h.isEmpty()) {
+            int item = h.extractMin();
+            assertFalse("item not expected", h.contains(item));
+            assertTrue("incorrect order", KEYS[item] >= last);
+            last = KEYS[item];
+        }
+        assertEquals("incorrect size", 0, h.size());
+    }
+
+    @Test
+    public void decreaseKey() {
+        IndexedMinHeap h = fill();
+        h.decreaseKey(3, -1.0);
+        assertEquals("incorrect min", 3, h.min());
+        assertEquals("incorrect key", -1.0, h.key(3), 0.0);
+        assertEquals("incorrect min", 3, h.extractMin());
+        assertEquals("incorrect min", 9, h.extractMin());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void increaseKey() {
+        IndexedMinHeap h = fill();
+        h.decreaseKey(9, 5.0);
+    }
+
+    @Test
+    public void ties() {
+        IndexedMinHeap h = new IndexedMinHeap(3);
+        h.insert(2, 1.0);
+        h.insert(0, 1.0);
+        h.insert(1, 1.0);
+        assertEquals("incorrect min", 0, h.extractMin());
+        assertEquals("incorrect min", 1, h.extractMin());
+        assertEquals("incorrect min", 2, h.extractMin());
+    }
+
+}
@@ -17,8 +17,17 @@ package org.onlab.graph;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
 import static com.google.common.collect.ImmutableSet.of;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.onlab.graph.TarjanGraphSearch.SCCResult;
 
 /**
@@ -122,4 +131,206 @@ public class TarjanGraphSearchTest extends GraphTest {
         validate(result, 1, 4, 4);
     }
 
+    @Test
+    public void incrementalReusesIntactClusters() {
+        TestEdge bridge = new TestEdge(D, A, 1);
+        Set<TestEdge> edges = new HashSet<>(of(new TestEdge(A, B, 1),
+                                               new TestEdge(B, C, 1),
+                                               new TestEdge(C, D, 1),
+                                               bridge,
+                                               new TestEdge(E, F, 1),
+                                               new TestEdge(F, G, 1),
+                                               new TestEdge(G, H, 1),
+                                               new TestEdge(H, E, 1)));
+        TarjanGraphSearch<TestVertex, TestEdge> gs = new TarjanGraphSearch<>();
+        SCCResult<TestVertex, TestEdge> first =
+                gs.search(new AdjacencyListsGraph<>(vertexes(), edges), null);
+        validate(first, 2);
+
+        // Cutting the A-D cycle breaks its cluster apart, but not the other.
+        edges.remove(bridge);
+        SCCResult<TestVertex, TestEdge> second =
+                gs.search(new AdjacencyListsGraph<>(vertexes(), edges), null, first);
+        validate(second, 5);
+        Set<TestVertex> efgh = clusterWith(first, E);
+        assertSame("intact cluster vertexes not shared", efgh, clusterWith(second, E));
+        assertSame("intact cluster edges not shared",
+                   first.clusterEdges().get(first.clusterVertexes().indexOf(efgh)),
+                   second.clusterEdges().get(second.clusterVertexes().indexOf(efgh)));
+
+        // Restoring the edge and linking both cycles merges everything.
+        edges.add(bridge);
+        edges.add(new TestEdge(B, E, 1));
+        edges.add(new TestEdge(E, B, 1));
+        SCCResult<TestVertex, TestEdge> third =
+                gs.search(new AdjacencyListsGraph<>(vertexes(), edges), null, second);
+        validate(third, 1);
+        validate(third, 0, 8, 10);
+        assertNotSame("merged cluster should be new", efgh, clusterWith(third, E));
+    }
+
+    @Test
+    public void incrementalWithReplacedEdge() {
+        TestEdge ab = new TestEdge(A, B, 1);
+        Set<TestEdge> edges = new HashSet<>(of(ab, new TestEdge(B, C, 1),
+                                               new TestEdge(C, A, 1)));
+        TarjanGraphSearch<TestVertex, TestEdge> gs = new TarjanGraphSearch<>();
+        AdjacencyListsGraph<TestVertex, TestEdge> graph =
+                new AdjacencyListsGraph<>(vertexes(), edges);
+        SCCResult<TestVertex, TestEdge> first = gs.search(graph, null);
+
+        // Replacing an edge by an equal instance keeps the cluster, but its
+        // edges must be the current instances.
+        TestEdge replacement = new TestEdge(A, B, 1);
+        edges.remove(ab);
+        edges.add(replacement);
+        SCCResult<TestVertex, TestEdge> second =
+                gs.search(new AdjacencyListsGraph<>(graph, vertexes(), edges), null, first);
+        Set<TestVertex> abc = clusterWith(first, A);
+        assertSame("intact cluster vertexes not shared", abc, clusterWith(second, A));
+        Set<TestEdge> clusterEdges =
+                second.clusterEdges().get(second.clusterVertexes().indexOf(abc));
+        assertTrue("replaced edge not swapped in",
+                   clusterEdges.stream().anyMatch(e -> e == replacement));
+        assertTrue("stale edge retained",
+                   clusterEdges.stream().noneMatch(e -> e == ab));
+    }
+
+    @Test
+    public void incrementalMatchesFullSearch() {
+        Random random = new Random(42);
+        List<TestVertex> vertexes = testVertexes(40);
+        TarjanGraphSearch<TestVertex, TestEdge> gs = new TarjanGraphSearch<>();
+
+        Set<TestVertex> vs = new HashSet<>(vertexes);
+        Set<TestEdge> es = randomEdges(random, vertexes, 60);
+        SCCResult<TestVertex, TestEdge> result =
+                gs.search(new AdjacencyListsGraph<>(vs, es), weight);
+
+        for (int round = 0; round < 500; round++) {
+            mutate(random, vertexes, vs, es);
+            Graph<TestVertex, TestEdge> g = new AdjacencyListsGraph<>(vs, es);
+            result = gs.search(g, weight, result);
+            SCCResult<TestVertex, TestEdge> expected = gs.search(g, weight);
+            assertEquals("incorrect clusters in round " + round,
+                         new HashSet<>(expected.clusterVertexes()),
+                         new HashSet<>(result.clusterVertexes()));
+            assertEquals("incorrect cluster edges in round " + round,
+                         new HashSet<>(expected.clusterEdges()),
+                         new HashSet<>(result.clusterEdges()));
+        }
+    }
+
+    @Test
+    public void incrementalPerf() {
+        Random random = new Random(7);
+        List<TestVertex> vertexes = testVertexes(2000);
+        Set<TestVertex> vs = new HashSet<>(vertexes);
+
+        // Chain of rings, each of which remains strongly connected when any
+        // single edge in it is cut, linked by one-way edges only.
+        int ringSize = 40;
+        Set<TestEdge> es = new HashSet<>();
+        for (int i = 0; i < vertexes.size(); i++) {
+            int ring = i - i % ringSize;
+            TestVertex v = vertexes.get(i);
+            TestVertex next = vertexes.get(ring + (i + 1) % ringSize);
+            TestVertex chord = vertexes.get(ring + (i + 2) % ringSize);
+            es.add(new TestEdge(v, next, 1));
+            es.add(new TestEdge(next, v, 1));
+            es.add(new TestEdge(v, chord, 1));
+            if (i == ring && i + ringSize < vertexes.size()) {
+                es.add(new TestEdge(v, vertexes.get(i + ringSize), 1));
+            }
+        }
+
+        TarjanGraphSearch<TestVertex, TestEdge> gs = new TarjanGraphSearch<>();
+        SCCResult<TestVertex, TestEdge> result =
+                gs.search(new AdjacencyListsGraph<>(vs, es), null);
+        validate(result, vertexes.size() / ringSize);
+
+        List<TestEdge> edges = new ArrayList<>(es);
+        long full = 0;
+        long incremental = 0;
+        for (int i = 0; i < 100; i++) {
+            // Flap a random edge down and back up.
+            TestEdge edge = edges.get(random.nextInt(edges.size()));
+            for (int flap = 0; flap < 2; flap++) {
+                if (!es.remove(edge)) {
+                    es.add(edge);
+                }
+                Graph<TestVertex, TestEdge> g = new AdjacencyListsGraph<>(vs, es);
+                long start = System.nanoTime();
+                SCCResult<TestVertex, TestEdge> expected = gs.search(g, null);
+                full += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                result = gs.search(g, null, result);
+                incremental += System.nanoTime() - start;
+                assertEquals("incorrect cluster count",
+                             expected.clusterCount(), result.clusterCount());
+            }
+        }
+        System.out.println("Full search: " + full / 1000000 + "ms; " +
+                                   "incremental search: " + incremental / 1000000 + "ms");
+    }
+
+    private Set<TestVertex> clusterWith(SCCResult<TestVertex, TestEdge> result,
+                                        TestVertex vertex) {
+        for (Set<TestVertex> cluster : result.clusterVertexes()) {
+            if (cluster.contains(vertex)) {
+                return cluster;
+            }
+        }
+        return null;
+    }
+
+    private List<TestVertex> testVertexes(int count) {
+        List<TestVertex> vertexes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            vertexes.add(new TestVertex("V" + i));
+        }
+        return vertexes;
+    }
+
+    private Set<TestEdge> randomEdges(Random random, List<TestVertex> vertexes, int count) {
+        Set<TestEdge> es = new HashSet<>();
+        while (es.size() < count) {
+            es.add(randomEdge(random, vertexes));
+        }
+        return es;
+    }
+
+    // Random edge; roughly one in ten cannot be traversed.
+    private TestEdge randomEdge(Random random, List<TestVertex> vertexes) {
+        TestVertex src = vertexes.get(random.nextInt(vertexes.size()));
+        TestVertex dst = vertexes.get(random.nextInt(vertexes.size()));
+        return new TestEdge(src, dst, random.nextInt(10) == 0 ? -1 : 1);
+    }
+
+    // Randomly adds or removes a few vertexes and edges.
+    private void mutate(Random random, List<TestVertex> vertexes,
+                        Set<TestVertex> vs, Set<TestEdge> es) {
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            int op = random.nextInt(10);
+            if (op < 4) {
+                List<TestEdge> list = new ArrayList<>(es);
+                if (!list.isEmpty()) {
+                    es.remove(list.get(random.nextInt(list.size())));
+                }
+            } else if (op < 8) {
+                TestEdge edge = randomEdge(random, vertexes);
+                if (vs.contains(edge.src()) && vs.contains(edge.dst())) {
+                    es.add(edge);
+                }
+            } else if (op < 9) {
+                TestVertex vertex = vertexes.get(random.nextInt(vertexes.size()));
+                vs.remove(vertex);
+                es.removeIf(e -> e.src().equals(vertex) || e.dst().equals(vertex));
+            } else {
+                vs.add(vertexes.get(random.nextInt(vertexes.size())));
+            }
+        }
+    }
+
 }
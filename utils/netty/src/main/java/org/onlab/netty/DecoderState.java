@@ -19,12 +19,9 @@ package org.onlab.netty;
  * State transitions a decoder goes through as it is decoding an incoming message.
  */
 public enum DecoderState {
-    READ_MESSAGE_ID,
-    READ_SENDER_IP_VERSION,
-    READ_SENDER_IP,
-    READ_SENDER_PORT,
-    READ_MESSAGE_TYPE_LENGTH,
-    READ_MESSAGE_TYPE,
-    READ_CONTENT_LENGTH,
+    READ_HELLO,
+    READ_FRAME_TYPE,
+    READ_SUBJECT,
+    READ_MESSAGE_HEADER,
     READ_CONTENT
 }
@@ -53,6 +53,7 @@ public final class InternalMessage implements Message {
         return type;
     }
 
+    @Override
     public Endpoint sender() {
         return sender;
     }
@@ -29,6 +29,12 @@ public interface Message {
      */
     public byte[] payload();
 
+    /**
+     * Returns the end point of the sender of this message.
+     * @return sender end point.
+     */
+    public Endpoint sender();
+
     /**
      * Sends a reply back to the sender of this message.
      * @param data payload of the response.
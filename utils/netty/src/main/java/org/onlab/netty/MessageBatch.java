@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.util.List;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Lists;
+
+/**
+ * Group of messages bound for the same connection, which the encoder packs
+ * into a single outbound buffer. The receiving end needs no knowledge of
+ * batches; it simply decodes the individual message frames.
+ */
+final class MessageBatch {
+
+    private final List<InternalMessage> messages = Lists.newArrayList();
+    private int payloadLength;
+
+    /**
+     * Adds a message to the batch.
+     *
+     * @param message message to add
+     */
+    void add(InternalMessage message) {
+        messages.add(message);
+        payloadLength += message.payload().length;
+    }
+
+    /**
+     * Returns the messages in the order they were added.
+     *
+     * @return batched messages
+     */
+    List<InternalMessage> messages() {
+        return messages;
+    }
+
+    /**
+     * Returns the number of messages in the batch.
+     *
+     * @return number of messages
+     */
+    int size() {
+        return messages.size();
+    }
+
+    /**
+     * Returns the combined length of the payloads of all batched messages.
+     *
+     * @return number of payload bytes
+     */
+    int payloadLength() {
+        return payloadLength;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("size", messages.size())
+                .add("payloadLength", payloadLength)
+                .toString();
+    }
+}
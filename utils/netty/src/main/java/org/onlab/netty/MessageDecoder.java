@@ -16,8 +16,13 @@
 package org.onlab.netty;
 
 import static com.google.common.base.Preconditions.checkState;
+import static org.onlab.netty.MessagingProtocol.HELLO;
+import static org.onlab.netty.MessagingProtocol.MESSAGE;
+import static org.onlab.netty.MessagingProtocol.SUBJECT;
+import static org.onlab.netty.MessagingProtocol.VERSION;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
 import io.netty.handler.codec.ReplayingDecoder;
 
 import java.util.List;
@@ -28,9 +33,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
 
 /**
  * Decoder for inbound messages.
+ * <p>
+ * The decoder keeps track of the sender and of the subjects bound on its
+ * connection, so a new instance must be used for each channel.
+ * </p>
  */
 public class MessageDecoder extends ReplayingDecoder<DecoderState> {
 
@@ -38,16 +48,16 @@ public class MessageDecoder extends ReplayingDecoder<DecoderState> {
 
     private final NettyMessagingService messagingService;
 
+    // subjects bound on this connection, indexed by their identifier
+    private final List<String> subjects = Lists.newArrayList();
+    private Endpoint sender;
+
     private long messageId;
-    private Version ipVersion;
-    private IpAddress senderIp;
-    private int senderPort;
-    private int messageTypeLength;
     private String messageType;
     private int contentLength;
 
     public MessageDecoder(NettyMessagingService messagingService) {
-        super(DecoderState.READ_MESSAGE_ID);
+        super(DecoderState.READ_HELLO);
         this.messagingService = messagingService;
     }
 
@@ -58,48 +68,71 @@ public class MessageDecoder extends ReplayingDecoder<DecoderState> {
             List<Object> out) throws Exception {
 
         switch (state()) {
-        case READ_MESSAGE_ID:
+        case READ_HELLO:
+            readHello(buffer);
+            checkpoint(DecoderState.READ_FRAME_TYPE);
+            break;
+        case READ_FRAME_TYPE:
+            byte frameType = buffer.readByte();
+            if (frameType == SUBJECT) {
+                checkpoint(DecoderState.READ_SUBJECT);
+            } else if (frameType == MESSAGE) {
+                checkpoint(DecoderState.READ_MESSAGE_HEADER);
+            } else {
+                throw new CorruptedFrameException("Unexpected frame type " + frameType);
+            }
+            break;
+        case READ_SUBJECT:
+            int subjectId = buffer.readInt();
+            byte[] subjectBytes = new byte[buffer.readInt()];
+            buffer.readBytes(subjectBytes);
+            if (subjectId != subjects.size()) {
+                throw new CorruptedFrameException("Unexpected subject identifier " + subjectId);
+            }
+            subjects.add(new String(subjectBytes, Charsets.UTF_8));
+            checkpoint(DecoderState.READ_FRAME_TYPE);
+            break;
+        case READ_MESSAGE_HEADER:
             messageId = buffer.readLong();
-            checkpoint(DecoderState.READ_SENDER_IP_VERSION);
-        case READ_SENDER_IP_VERSION:
-            ipVersion = buffer.readByte() == 0x0 ? Version.INET : Version.INET6;
-            checkpoint(DecoderState.READ_SENDER_IP);
-        case READ_SENDER_IP:
-            byte[] octects = new byte[IpAddress.byteLength(ipVersion)];
-            buffer.readBytes(octects);
-            senderIp = IpAddress.valueOf(ipVersion, octects);
-            checkpoint(DecoderState.READ_SENDER_PORT);
-        case READ_SENDER_PORT:
-            senderPort = buffer.readInt();
-            checkpoint(DecoderState.READ_MESSAGE_TYPE_LENGTH);
-        case READ_MESSAGE_TYPE_LENGTH:
-            messageTypeLength = buffer.readInt();
-            checkpoint(DecoderState.READ_MESSAGE_TYPE);
-        case READ_MESSAGE_TYPE:
-            byte[] messageTypeBytes = new byte[messageTypeLength];
-            buffer.readBytes(messageTypeBytes);
-            messageType = new String(messageTypeBytes, Charsets.UTF_8);
-            checkpoint(DecoderState.READ_CONTENT_LENGTH);
-        case READ_CONTENT_LENGTH:
+            int messageSubjectId = buffer.readInt();
+            if (messageSubjectId < 0 || messageSubjectId >= subjects.size()) {
+                throw new CorruptedFrameException("Unknown subject identifier " + messageSubjectId);
+            }
+            messageType = subjects.get(messageSubjectId);
             contentLength = buffer.readInt();
             checkpoint(DecoderState.READ_CONTENT);
         case READ_CONTENT:
+            // the payload is copied straight out of the pooled inbound buffer
             byte[] payload = new byte[contentLength];
             buffer.readBytes(payload);
             InternalMessage message = new InternalMessage(
                     messageId,
-                    new Endpoint(senderIp, senderPort),
+                    sender,
                     messageType,
                     payload);
             message.setMessagingService(messagingService);
             out.add(message);
-            checkpoint(DecoderState.READ_MESSAGE_ID);
+            checkpoint(DecoderState.READ_FRAME_TYPE);
             break;
          default:
             checkState(false, "Must not be here");
         }
     }
 
+    private void readHello(ByteBuf buffer) {
+        byte frameType = buffer.readByte();
+        byte version = buffer.readByte();
+        if (frameType != HELLO || version != VERSION) {
+            throw new CorruptedFrameException("Unsupported messaging protocol; expected version "
+                    + VERSION + " hello but got frame type " + frameType + " version " + version);
+        }
+        Version ipVersion = buffer.readByte() == 0x0 ? Version.INET : Version.INET6;
+        byte[] octets = new byte[IpAddress.byteLength(ipVersion)];
+        buffer.readBytes(octets);
+        int senderPort = buffer.readInt();
+        sender = new Endpoint(IpAddress.valueOf(ipVersion, octets), senderPort);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext context, Throwable cause) {
         log.error("Exception inside channel handling pipeline.", cause);
@@ -16,11 +16,11 @@
 package org.onlab.netty;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.IpAddress.Version;
@@ -28,25 +28,93 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+import static org.onlab.netty.MessagingProtocol.HELLO;
+import static org.onlab.netty.MessagingProtocol.MESSAGE;
+import static org.onlab.netty.MessagingProtocol.MESSAGE_HEADER_LENGTH;
+import static org.onlab.netty.MessagingProtocol.SUBJECT;
+import static org.onlab.netty.MessagingProtocol.VERSION;
 
 /**
- * Encode InternalMessage out into a byte buffer.
+ * Encode InternalMessage, or a batch of them, out into a byte buffer.
+ * <p>
+ * The encoder keeps track of the subjects already bound on its connection,
+ * so a new instance must be used for each channel.
+ * </p>
  */
-@Sharable
-public class MessageEncoder extends MessageToByteEncoder<InternalMessage> {
+public class MessageEncoder extends MessageToByteEncoder<Object> {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    private final Map<String, Integer> subjectIds = Maps.newHashMap();
+    private boolean helloSent = false;
+
+    @Override
+    public boolean acceptOutboundMessage(Object message) throws Exception {
+        return message instanceof InternalMessage || message instanceof MessageBatch;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(
+            ChannelHandlerContext context,
+            Object message,
+            boolean preferDirect) throws Exception {
+        // size the pooled buffer for the common case of known subjects
+        int capacity;
+        if (message instanceof MessageBatch) {
+            MessageBatch batch = (MessageBatch) message;
+            capacity = batch.size() * MESSAGE_HEADER_LENGTH + batch.payloadLength();
+        } else {
+            capacity = MESSAGE_HEADER_LENGTH + ((InternalMessage) message).payload().length;
+        }
+        return preferDirect ? context.alloc().ioBuffer(capacity) : context.alloc().heapBuffer(capacity);
+    }
+
     @Override
     protected void encode(
             ChannelHandlerContext context,
-            InternalMessage message,
+            Object message,
             ByteBuf out) throws Exception {
+        if (message instanceof MessageBatch) {
+            for (InternalMessage m : ((MessageBatch) message).messages()) {
+                encode(m, out);
+            }
+        } else {
+            encode((InternalMessage) message, out);
+        }
+    }
+
+    private void encode(InternalMessage message, ByteBuf out) {
+        if (!helloSent) {
+            writeHello(message.sender(), out);
+            helloSent = true;
+        }
+
+        Integer subjectId = subjectIds.get(message.type());
+        if (subjectId == null) {
+            subjectId = subjectIds.size();
+            subjectIds.put(message.type(), subjectId);
+            byte[] messageTypeBytes = message.type().getBytes(Charsets.UTF_8);
 
-        // write message id
+            out.writeByte(SUBJECT);
+            out.writeInt(subjectId);
+            out.writeInt(messageTypeBytes.length);
+            out.writeBytes(messageTypeBytes);
+        }
+
+        byte[] payload = message.payload();
+
+        out.writeByte(MESSAGE);
         out.writeLong(message.id());
+        out.writeInt(subjectId);
+        out.writeInt(payload.length);
+        out.writeBytes(payload);
+    }
 
-        Endpoint sender = message.sender();
+    private void writeHello(Endpoint sender, ByteBuf out) {
+        out.writeByte(HELLO);
+        out.writeByte(VERSION);
 
         IpAddress senderIp = sender.host();
         if (senderIp.version() == Version.INET) {
@@ -58,22 +126,6 @@ public class MessageEncoder extends MessageToByteEncoder<InternalMessage> {
 
         // write sender port
         out.writeInt(sender.port());
-
-        byte[] messageTypeBytes = message.type().getBytes(Charsets.UTF_8);
-
-        // write length of message type
-        out.writeInt(messageTypeBytes.length);
-
-        // write message type bytes
-        out.writeBytes(messageTypeBytes);
-
-        byte[] payload = message.payload();
-
-        // write payload length
-        out.writeInt(payload.length);
-
-        // write payload.
-        out.writeBytes(payload);
     }
 
     @Override
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+/**
+ * Constants of the binary wire protocol spoken between messaging services.
+ * <p>
+ * Each connection starts with a hello frame carrying the protocol version
+ * and the end point of the sender, which applies to every message sent on
+ * that connection. A message subject is sent in full only the first time
+ * it is used on a connection, in a subject frame that binds it to an
+ * integer identifier; message frames refer to the subject by identifier.
+ * </p>
+ */
+final class MessagingProtocol {
+
+    /** Version of the wire protocol. */
+    static final byte VERSION = 2;
+
+    /** Frame type: protocol version and sender end point. */
+    static final byte HELLO = 0x1;
+
+    /** Frame type: binding of a subject to its connection-local identifier. */
+    static final byte SUBJECT = 0x2;
+
+    /** Frame type: message id, subject identifier and payload. */
+    static final byte MESSAGE = 0x3;
+
+    /** Number of bytes in the fixed part of a message frame. */
+    static final int MESSAGE_HEADER_LENGTH = 1 + 8 + 4 + 4;
+
+    // Constants only.
+    private MessagingProtocol() {
+    }
+}
@@ -16,9 +16,9 @@
 package org.onlab.netty;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-
-import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Interface for low level messaging primitives.
@@ -42,7 +42,22 @@ public interface MessagingService {
      * @return a response future
      * @throws IOException when I/O exception of some sort has occurred
      */
-    public ListenableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload) throws IOException;
+    public CompletableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload) throws IOException;
+
+    /**
+     * Sends a message synchronously and waits for a response for at most
+     * the specified time, after which the response future fails with a
+     * {@link java.util.concurrent.TimeoutException}.
+     * @param ep end point to send the message to.
+     * @param type type of message.
+     * @param payload message payload.
+     * @param timeout maximum time to wait for the response
+     * @param unit time unit of the timeout
+     * @return a response future
+     * @throws IOException when I/O exception of some sort has occurred
+     */
+    public CompletableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload,
+                                                    long timeout, TimeUnit unit) throws IOException;
 
     /**
      * Registers a new message handler for message type.
@@ -20,7 +20,6 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
@@ -35,29 +34,28 @@ import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
-import org.apache.commons.pool.KeyedPoolableObjectFactory;
-import org.apache.commons.pool.impl.GenericKeyedObjectPool;
 import org.onlab.packet.IpAddress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
-import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.SettableFuture;
+import static org.onlab.util.Tools.groupedThreads;
+
 
 /**
  * A Netty based implementation of MessagingService.
@@ -69,21 +67,25 @@ public class NettyMessagingService implements MessagingService {
     private final Endpoint localEp;
     private final ConcurrentMap<String, MessageHandler> handlers = new ConcurrentHashMap<>();
     private final AtomicLong messageIdGenerator = new AtomicLong(0);
-    private final Cache<Long, SettableFuture<byte[]>> responseFutures = CacheBuilder.newBuilder()
-            .maximumSize(100000)
-            .expireAfterWrite(10, TimeUnit.SECONDS)
-            .removalListener(new RemovalListener<Long, SettableFuture<byte[]>>() {
-                @Override
-                public void onRemoval(RemovalNotification<Long, SettableFuture<byte[]>> entry) {
-                    if (entry.wasEvicted()) {
-                        entry.getValue().setException(new TimeoutException("Timedout waiting for reply"));
-                    }
-                }
-            })
-            .build();
 
-    private final GenericKeyedObjectPool<Endpoint, Channel> channels
-            = new GenericKeyedObjectPool<Endpoint, Channel>(new OnosCommunicationChannelFactory());
+    // Default time to wait for the reply to a request.
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    // Number of requests that can be outstanding before the pending request
+    // table resorts to its overflow map.
+    private static final int PENDING_REQUEST_SLOTS = 16384;
+
+    private final PendingRequests<Callback> callbacks = new PendingRequests<>(PENDING_REQUEST_SLOTS);
+    private final HashedWheelTimer timeoutTimer =
+            new HashedWheelTimer(groupedThreads("onos/netty", "request-timeout"), 10, TimeUnit.MILLISECONDS);
+
+    // Number of connections kept open to each peer. Messages of a given type
+    // are always sent over the same connection, which preserves their order
+    // and lets the connection refer to the type by its interned identifier.
+    private static final int CHANNELS_PER_PEER = 4;
+
+    private final ConcurrentMap<Endpoint, AtomicReferenceArray<OutboundAggregator>> channels =
+            new ConcurrentHashMap<>();
 
     private EventLoopGroup serverGroup;
     private EventLoopGroup clientGroup;
@@ -125,16 +127,23 @@ public class NettyMessagingService implements MessagingService {
     }
 
     public void activate() throws InterruptedException {
-        channels.setTestOnBorrow(true);
-        channels.setTestOnReturn(true);
         initEventLoopGroup();
         startAcceptingConnections();
     }
 
     public void deactivate() throws Exception {
-        channels.close();
+        channels.values().forEach(pinned -> {
+            for (int i = 0; i < pinned.length(); i++) {
+                OutboundAggregator outbound = pinned.get(i);
+                if (outbound != null) {
+                    outbound.channel().close();
+                }
+            }
+        });
+        channels.clear();
         serverGroup.shutdownGracefully();
         clientGroup.shutdownGracefully();
+        timeoutTimer.stop();
     }
 
     /**
@@ -161,28 +170,68 @@ public class NettyMessagingService implements MessagingService {
             dispatchLocally(message);
             return;
         }
-        Channel channel = null;
-        try {
-            try {
-                channel = channels.borrowObject(ep);
-                channel.eventLoop().execute(new WriteTask(channel, message));
-            } finally {
-                channels.returnObject(ep, channel);
+        getOutbound(ep, message.type()).enqueue(message);
+    }
+
+    // Returns the outbound side of the connection pinned to the given peer
+    // for the given message type, (re)connecting it if needed.
+    private OutboundAggregator getOutbound(Endpoint ep, String type) throws IOException {
+        AtomicReferenceArray<OutboundAggregator> pinned =
+                channels.computeIfAbsent(ep, k -> new AtomicReferenceArray<>(CHANNELS_PER_PEER));
+        int index = Math.floorMod(type.hashCode(), CHANNELS_PER_PEER);
+        OutboundAggregator outbound = pinned.get(index);
+        if (outbound != null && outbound.channel().isActive()) {
+            return outbound;
+        }
+        synchronized (pinned) {
+            outbound = pinned.get(index);
+            if (outbound == null || !outbound.channel().isActive()) {
+                if (outbound != null) {
+                    outbound.channel().close();
+                }
+                outbound = new OutboundAggregator(connect(ep));
+                pinned.set(index, outbound);
             }
-        } catch (IOException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new IOException(e);
+            return outbound;
         }
+    }
 
+    private Channel connect(Endpoint ep) throws IOException {
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        bootstrap.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 32 * 1024);
+        bootstrap.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 8 * 1024);
+        bootstrap.group(clientGroup);
+        // TODO: Make this faster:
+        // http://normanmaurer.me/presentations/2014-facebook-eng-netty/slides.html#37.0
+        bootstrap.channel(clientChannelClass);
+        bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
+        // Writes are already aggregated per connection; don't let Nagle's
+        // algorithm hold back small messages such as replies.
+        bootstrap.option(ChannelOption.TCP_NODELAY, true);
+        bootstrap.handler(new OnosCommunicationChannelInitializer());
+        // Start the client.
+        ChannelFuture f = bootstrap.connect(ep.host().toString(), ep.port()).awaitUninterruptibly();
+        if (!f.isSuccess()) {
+            throw new IOException("Failed to connect to " + ep, f.cause());
+        }
+        return f.channel();
     }
 
     @Override
-    public ListenableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload)
+    public CompletableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload)
             throws IOException {
-        SettableFuture<byte[]> futureResponse = SettableFuture.create();
-        Long messageId = messageIdGenerator.incrementAndGet();
-        responseFutures.put(messageId, futureResponse);
+        return sendAndReceive(ep, type, payload, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> sendAndReceive(Endpoint ep, String type, byte[] payload,
+                                                    long timeout, TimeUnit unit)
+            throws IOException {
+        long messageId = messageIdGenerator.incrementAndGet();
+        Callback callback = new Callback(messageId);
+        callbacks.put(messageId, callback);
+        callback.timeout = timeoutTimer.newTimeout(callback, timeout, unit);
         InternalMessage message = new InternalMessage.Builder(this)
             .withId(messageId)
             .withSender(localEp)
@@ -192,10 +241,11 @@ public class NettyMessagingService implements MessagingService {
         try {
             sendAsync(ep, message);
         } catch (Exception e) {
-            responseFutures.invalidate(messageId);
+            callbacks.remove(messageId);
+            callback.timeout.cancel();
             throw e;
         }
-        return futureResponse;
+        return callback.response;
     }
 
     @Override
@@ -237,80 +287,42 @@ public class NettyMessagingService implements MessagingService {
             .channel(serverChannelClass)
             .childHandler(new OnosCommunicationChannelInitializer())
             .option(ChannelOption.SO_BACKLOG, 128)
-            .childOption(ChannelOption.SO_KEEPALIVE, true);
+            .childOption(ChannelOption.SO_KEEPALIVE, true)
+            .childOption(ChannelOption.TCP_NODELAY, true);
 
         // Bind and start to accept incoming connections.
         b.bind(localEp.port()).sync();
     }
 
-    private class OnosCommunicationChannelFactory
-        implements KeyedPoolableObjectFactory<Endpoint, Channel> {
-
-        @Override
-        public void activateObject(Endpoint endpoint, Channel channel)
-                throws Exception {
-        }
-
-        @Override
-        public void destroyObject(Endpoint ep, Channel channel) throws Exception {
-            channel.close();
-        }
-
-        @Override
-        public Channel makeObject(Endpoint ep) throws Exception {
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
-            bootstrap.option(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 32 * 1024);
-            bootstrap.option(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 8 * 1024);
-            bootstrap.group(clientGroup);
-            // TODO: Make this faster:
-            // http://normanmaurer.me/presentations/2014-facebook-eng-netty/slides.html#37.0
-            bootstrap.channel(clientChannelClass);
-            bootstrap.option(ChannelOption.SO_KEEPALIVE, true);
-            bootstrap.handler(new OnosCommunicationChannelInitializer());
-            // Start the client.
-            ChannelFuture f = bootstrap.connect(ep.host().toString(), ep.port()).sync();
-            return f.channel();
-        }
-
-        @Override
-        public void passivateObject(Endpoint ep, Channel channel)
-                throws Exception {
-        }
-
-        @Override
-        public boolean validateObject(Endpoint ep, Channel channel) {
-            return channel.isOpen();
-        }
-    }
-
     private class OnosCommunicationChannelInitializer extends ChannelInitializer<SocketChannel> {
 
         private final ChannelHandler dispatcher = new InboundMessageDispatcher();
-        private final ChannelHandler encoder = new MessageEncoder();
 
         @Override
         protected void initChannel(SocketChannel channel) throws Exception {
             channel.pipeline()
-                .addLast("encoder", encoder)
+                .addLast("encoder", new MessageEncoder())
                 .addLast("decoder", new MessageDecoder(NettyMessagingService.this))
                 .addLast("handler", dispatcher);
         }
     }
 
-    private static class WriteTask implements Runnable {
+    // Pending request; fails the response once its timeout expires.
+    private final class Callback implements TimerTask {
 
-        private final InternalMessage message;
-        private final Channel channel;
+        private final long messageId;
+        private final CompletableFuture<byte[]> response = new CompletableFuture<>();
+        private volatile Timeout timeout;
 
-        public WriteTask(Channel channel, InternalMessage message) {
-            this.channel = channel;
-            this.message = message;
+        private Callback(long messageId) {
+            this.messageId = messageId;
         }
 
         @Override
-        public void run() {
-            channel.writeAndFlush(message).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        public void run(Timeout expired) {
+            if (callbacks.remove(messageId) != null) {
+                response.completeExceptionally(new TimeoutException("Timedout waiting for reply"));
+            }
         }
     }
 
@@ -332,18 +344,14 @@ public class NettyMessagingService implements MessagingService {
     private void dispatchLocally(InternalMessage message) throws IOException {
         String type = message.type();
         if (InternalMessage.REPLY_MESSAGE_TYPE.equals(type)) {
-            try {
-                SettableFuture<byte[]> futureResponse =
-                    NettyMessagingService.this.responseFutures.getIfPresent(message.id());
-                if (futureResponse != null) {
-                    futureResponse.set(message.payload());
-                } else {
-                    log.warn("Received a reply for message id:[{}]. "
-                            + " from {}. But was unable to locate the"
-                            + " request handle", message.id(), message.sender());
-                }
-            } finally {
-                NettyMessagingService.this.responseFutures.invalidate(message.id());
+            Callback callback = callbacks.remove(message.id());
+            if (callback != null) {
+                callback.timeout.cancel();
+                callback.response.complete(message.payload());
+            } else {
+                log.warn("Received a reply for message id:[{}]. "
+                        + " from {}. But was unable to locate the"
+                        + " request handle", message.id(), message.sender());
             }
             return;
         }
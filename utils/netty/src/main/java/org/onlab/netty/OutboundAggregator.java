@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Aggregates messages sent over a connection so that they are written and
+ * flushed in batches rather than one by one.
+ * <p>
+ * Senders only enqueue; the first message enqueued while no drain is
+ * pending schedules one on the channel's event loop. The drain packs the
+ * queued messages into batches bounded by count and size, and writes and
+ * flushes each batch as a single buffer. Under light load a message
+ * therefore goes out as soon as the event loop gets to it, while bursts
+ * are coalesced into few large writes.
+ * </p>
+ * <p>
+ * A single drain writes a bounded number of batches and then reschedules
+ * itself, so that a busy connection does not starve the other channels
+ * served by the same event loop. Draining stops altogether while the
+ * channel is not writable and resumes once its outbound buffer falls below
+ * the low water mark again.
+ * </p>
+ */
+final class OutboundAggregator extends ChannelInboundHandlerAdapter implements Runnable {
+
+    /** Maximum number of messages packed into one batch. */
+    static final int MAX_BATCH_MESSAGES = 1024;
+
+    /** Payload size beyond which a batch is closed and written out. */
+    static final int MAX_BATCH_BYTES = 64 * 1024;
+
+    /** Maximum number of batches written by one drain. */
+    static final int MAX_DRAIN_BATCHES = 16;
+
+    private final Channel channel;
+    private final Queue<InternalMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    /**
+     * Creates an aggregator writing to the specified channel and registers
+     * it with the channel pipeline to learn about writability changes.
+     *
+     * @param channel connection to write to
+     */
+    OutboundAggregator(Channel channel) {
+        this.channel = channel;
+        channel.pipeline().addLast(this);
+    }
+
+    /**
+     * Returns the connection this aggregator writes to.
+     *
+     * @return channel
+     */
+    Channel channel() {
+        return channel;
+    }
+
+    /**
+     * Queues a message to be written out with the next batch.
+     *
+     * @param message message to send
+     */
+    void enqueue(InternalMessage message) {
+        queue.add(message);
+        schedule();
+    }
+
+    private void schedule() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            channel.eventLoop().execute(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        // Clear the flag first so that a message enqueued while we drain
+        // is either picked up by this pass or schedules another one.
+        drainScheduled.set(false);
+
+        int batches = 0;
+        MessageBatch batch = new MessageBatch();
+        while (batches < MAX_DRAIN_BATCHES && channel.isWritable()) {
+            InternalMessage message = queue.poll();
+            if (message == null) {
+                break;
+            }
+            batch.add(message);
+            if (batch.size() >= MAX_BATCH_MESSAGES || batch.payloadLength() >= MAX_BATCH_BYTES) {
+                write(batch);
+                batches++;
+                batch = new MessageBatch();
+            }
+        }
+        if (batch.size() > 0) {
+            write(batch);
+        }
+
+        if (queue.isEmpty()) {
+            return;
+        }
+        if (channel.isWritable()) {
+            // Let the other channels of the event loop have their turn
+            schedule();
+        } else {
+            // Parked until the channel becomes writable again; enqueuing
+            // meanwhile does not schedule pointless drains.
+            drainScheduled.set(true);
+        }
+    }
+
+    private void write(MessageBatch batch) {
+        channel.writeAndFlush(batch).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext context) throws Exception {
+        if (context.channel().isWritable()) {
+            // Resume a drain parked while the channel was saturated
+            run();
+        }
+        super.channelWritabilityChanged(context);
+    }
+}
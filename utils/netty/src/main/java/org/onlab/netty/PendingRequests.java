@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Lock-free table of requests awaiting a reply, keyed by message id.
+ * <p>
+ * Message ids are handed out sequentially, so they map straight onto the
+ * slots of a fixed-size array with no hashing or boxing involved; entries
+ * are claimed and released with a single compare-and-set. Only when more
+ * requests than there are slots are outstanding does an id find its slot
+ * still taken, in which case the entry spills over into a concurrent map.
+ * </p>
+ *
+ * @param <V> type of the values tracked for pending requests
+ */
+final class PendingRequests<V> {
+
+    private final AtomicReferenceArray<Entry<V>> slots;
+    private final int mask;
+    private final ConcurrentMap<Long, V> overflow = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a table with the specified number of slots.
+     *
+     * @param capacity number of slots; must be a power of two
+     */
+    PendingRequests(int capacity) {
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1,
+                      "Capacity must be a power of two");
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds the value tracked for a new request.
+     *
+     * @param id    request message id; must not be pending already
+     * @param value value to track
+     */
+    void put(long id, V value) {
+        if (!slots.compareAndSet(index(id), null, new Entry<>(id, value))) {
+            overflow.put(id, value);
+        }
+    }
+
+    /**
+     * Removes and returns the value tracked for a request.
+     *
+     * @param id request message id
+     * @return tracked value; null if the request is not pending
+     */
+    V remove(long id) {
+        int index = index(id);
+        Entry<V> entry = slots.get(index);
+        if (entry != null && entry.id == id && slots.compareAndSet(index, entry, null)) {
+            return entry.value;
+        }
+        return overflow.remove(id);
+    }
+
+    private int index(long id) {
+        return (int) id & mask;
+    }
+
+    private static final class Entry<V> {
+        private final long id;
+        private final V value;
+
+        private Entry(long id, V value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the message encoder and decoder.
+ */
+public class MessageCodecTest {
+
+    private static final Endpoint SENDER = new Endpoint(IpAddress.valueOf("10.0.0.1"), 9876);
+
+    private final EmbeddedChannel outbound = new EmbeddedChannel(new MessageEncoder());
+    private final EmbeddedChannel inbound = new EmbeddedChannel(new MessageDecoder(null));
+
+    private InternalMessage message(long id, String type, byte[] payload) {
+        return new InternalMessage(id, SENDER, type, payload);
+    }
+
+    // Encodes the given message and returns the number of bytes written.
+    private int encode(InternalMessage message) {
+        assertTrue(outbound.writeOutbound(message));
+        ByteBuf encoded = (ByteBuf) outbound.readOutbound();
+        int length = encoded.readableBytes();
+        inbound.writeInbound(encoded);
+        return length;
+    }
+
+    @Test
+    public void roundTrip() {
+        encode(message(1, "foo", new byte[]{1, 2, 3}));
+        encode(message(2, "bar", new byte[0]));
+        encode(message(3, "foo", new byte[]{4}));
+
+        InternalMessage m1 = (InternalMessage) inbound.readInbound();
+        assertEquals(1, m1.id());
+        assertEquals("foo", m1.type());
+        assertEquals(SENDER, m1.sender());
+        assertArrayEquals(new byte[]{1, 2, 3}, m1.payload());
+
+        InternalMessage m2 = (InternalMessage) inbound.readInbound();
+        assertEquals(2, m2.id());
+        assertEquals("bar", m2.type());
+        assertEquals(0, m2.payload().length);
+
+        InternalMessage m3 = (InternalMessage) inbound.readInbound();
+        assertEquals(3, m3.id());
+        assertEquals("foo", m3.type());
+        assertArrayEquals(new byte[]{4}, m3.payload());
+
+        assertNull(inbound.readInbound());
+    }
+
+    @Test
+    public void subjectSentOnce() {
+        String type = "a-rather-long-message-subject";
+        int first = encode(message(1, type, new byte[8]));
+        int second = encode(message(2, type, new byte[8]));
+        assertEquals(MessagingProtocol.MESSAGE_HEADER_LENGTH + 8, second);
+        assertTrue(first > second + type.length());
+        assertEquals(2, inbound.inboundMessages().size());
+    }
+
+    @Test
+    public void batch() {
+        MessageBatch batch = new MessageBatch();
+        for (int i = 0; i < 10; i++) {
+            batch.add(message(i, i % 2 == 0 ? "even" : "odd", new byte[]{(byte) i}));
+        }
+        assertTrue(outbound.writeOutbound(batch));
+        ByteBuf encoded = (ByteBuf) outbound.readOutbound();
+        assertNull(outbound.readOutbound());
+        inbound.writeInbound(encoded);
+
+        for (int i = 0; i < 10; i++) {
+            InternalMessage m = (InternalMessage) inbound.readInbound();
+            assertEquals(i, m.id());
+            assertEquals(i % 2 == 0 ? "even" : "odd", m.type());
+            assertArrayEquals(new byte[]{(byte) i}, m.payload());
+        }
+        assertNull(inbound.readInbound());
+    }
+
+    @Test
+    public void partialFrames() {
+        assertTrue(outbound.writeOutbound(message(7, "foo", new byte[]{9, 8, 7, 6})));
+        ByteBuf encoded = (ByteBuf) outbound.readOutbound();
+        while (encoded.readableBytes() > 1) {
+            assertFalse(inbound.writeInbound(encoded.readBytes(1)));
+        }
+        assertTrue(inbound.writeInbound(encoded));
+        InternalMessage m = (InternalMessage) inbound.readInbound();
+        assertEquals(7, m.id());
+        assertArrayEquals(new byte[]{9, 8, 7, 6}, m.payload());
+    }
+
+    @Test
+    public void unsupportedVersion() {
+        ByteBuf garbage = Unpooled.buffer();
+        garbage.writeByte(MessagingProtocol.HELLO);
+        garbage.writeByte(1);
+        garbage.writeZero(16);
+        inbound.writeInbound(garbage);
+        assertFalse(inbound.isOpen());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Throughput and latency benchmark of two NettyMessagingService instances
+ * talking over the loopback interface.
+ */
+public class MessagingThroughputTest {
+
+    private static final int WARMUP_COUNT = 100000;
+    private static final int COUNT = 1000000;
+    private static final int MESSAGE_LENGTH = 128;
+    private static final int MAX_IN_FLIGHT = 1000;
+    private static final int TIMEOUT = 60;
+
+    private NettyMessagingService sender;
+    private NettyMessagingService receiver;
+    private Endpoint receiverEp;
+
+    @Before
+    public void setUp() throws Exception {
+        // Use random ports to prevent conflicts.
+        int port = 9876 + new Random().nextInt(100) * 2;
+        IpAddress ip = IpAddress.valueOf(InetAddress.getLoopbackAddress());
+        sender = new NettyMessagingService(ip, port);
+        receiver = new NettyMessagingService(ip, port + 1);
+        receiverEp = new Endpoint(ip, port + 1);
+        sender.activate();
+        receiver.activate();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sender.deactivate();
+        receiver.deactivate();
+    }
+
+    @Ignore("Benchmark; run manually")
+    @Test
+    public void oneWay() throws Exception {
+        sendAsync(WARMUP_COUNT);
+        sendAsync(COUNT);
+    }
+
+    @Ignore("Benchmark; run manually")
+    @Test
+    public void requestReply() throws Exception {
+        sendAndReceive(WARMUP_COUNT);
+        sendAndReceive(COUNT);
+    }
+
+    // Sends the given number of messages one way and reports the rate at
+    // which they arrive.
+    private void sendAsync(int count) throws Exception {
+        CountDownLatch received = new CountDownLatch(count);
+        receiver.registerHandler("oneway", message -> received.countDown(),
+                                 MoreExecutors.sameThreadExecutor());
+        byte[] payload = new byte[MESSAGE_LENGTH];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            sender.sendAsync(receiverEp, "oneway", payload);
+        }
+        assertTrue("messages did not arrive in time", received.await(TIMEOUT, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(format("One way: %d %d-byte messages; %d mps",
+                                  count, MESSAGE_LENGTH, count * 1000000000L / elapsed));
+    }
+
+    // Sends the given number of requests, keeping a bounded number of them
+    // outstanding, and reports the reply rate and round-trip latencies.
+    private void sendAndReceive(int count) throws Exception {
+        receiver.registerHandler("echo", message -> message.respond(message.payload()),
+                                 Executors.newSingleThreadExecutor());
+        byte[] payload = new byte[MESSAGE_LENGTH];
+        long[] latencies = new long[count];
+        AtomicInteger completed = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(count);
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            CompletableFuture<byte[]> reply = sender.sendAndReceive(receiverEp, "echo", payload);
+            reply.whenComplete((r, e) -> {
+                latencies[completed.getAndIncrement()] = System.nanoTime() - sent;
+                inFlight.release();
+                done.countDown();
+            });
+        }
+        assertTrue("replies did not arrive in time", done.await(TIMEOUT, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.println(format("Request/reply: %d %d-byte messages; %d mps; " +
+                                          "%d us p50 latency; %d us p99 latency",
+                                  count, MESSAGE_LENGTH, count * 1000000000L / elapsed,
+                                  latencies[count / 2] / 1000,
+                                  latencies[(int) (count * 0.99)] / 1000));
+    }
+}
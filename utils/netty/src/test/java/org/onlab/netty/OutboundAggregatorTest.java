@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.onlab.netty.OutboundAggregator.MAX_BATCH_MESSAGES;
+import static org.onlab.netty.OutboundAggregator.MAX_DRAIN_BATCHES;
+
+/**
+ * Tests of the per-connection outbound message aggregator.
+ */
+public class OutboundAggregatorTest {
+
+    private static final Endpoint SENDER = new Endpoint(IpAddress.valueOf("10.0.0.1"), 9876);
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    private final OutboundAggregator aggregator = new OutboundAggregator(channel);
+
+    private void enqueue(int count) {
+        for (int i = 0; i < count; i++) {
+            aggregator.enqueue(new InternalMessage(i, SENDER, "foo", new byte[]{1}));
+        }
+    }
+
+    private int sentMessages() {
+        int count = 0;
+        Object sent;
+        while ((sent = channel.readOutbound()) != null) {
+            if (sent instanceof MessageBatch) {
+                count += ((MessageBatch) sent).size();
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void coalesced() {
+        enqueue(10);
+        channel.runPendingTasks();
+        assertEquals("incorrect batches", 1, channel.outboundMessages().size());
+        assertEquals("incorrect messages", 10, sentMessages());
+    }
+
+    @Test
+    public void drainCapped() {
+        int count = MAX_DRAIN_BATCHES * MAX_BATCH_MESSAGES + 1;
+        enqueue(count);
+
+        // Every batch of a single drain is flushed as soon as it is written
+        aggregator.run();
+        assertEquals("incorrect batches", MAX_DRAIN_BATCHES, channel.outboundMessages().size());
+
+        // The remainder goes out with the rescheduled drain
+        channel.runPendingTasks();
+        assertEquals("incorrect messages", count, sentMessages());
+    }
+
+    @Test
+    public void parkedWhileNotWritable() {
+        channel.config().setWriteBufferLowWaterMark(1);
+        channel.config().setWriteBufferHighWaterMark(2);
+        channel.write(Unpooled.wrappedBuffer(new byte[16]));
+        channel.runPendingTasks();
+        assertFalse("channel should be saturated", channel.isWritable());
+
+        enqueue(10);
+        channel.runPendingTasks();
+        assertEquals("nothing should be sent", 0, channel.outboundMessages().size());
+
+        channel.flush();
+        channel.runPendingTasks();
+        assertTrue("channel should be writable", channel.isWritable());
+        assertEquals("incorrect messages", 10, sentMessages());
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Open Networking Laboratory
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onlab.netty;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the pending request table.
+ */
+public class PendingRequestsTest {
+
+    @Test
+    public void basics() {
+        PendingRequests<String> pending = new PendingRequests<>(4);
+        pending.put(1, "one");
+        pending.put(2, "two");
+        assertEquals("one", pending.remove(1));
+        assertNull(pending.remove(1));
+        assertNull(pending.remove(3));
+        assertEquals("two", pending.remove(2));
+    }
+
+    @Test
+    public void overflow() {
+        PendingRequests<String> pending = new PendingRequests<>(4);
+        for (long id = 0; id < 10; id++) {
+            pending.put(id, "v" + id);
+        }
+        // ids 4 and 8 share a slot with id 0 and must not be confused with it
+        assertEquals("v8", pending.remove(8));
+        assertEquals("v0", pending.remove(0));
+        assertEquals("v4", pending.remove(4));
+        for (long id = 1; id < 10; id++) {
+            if (id != 4 && id != 8) {
+                assertEquals("v" + id, pending.remove(id));
+            }
+        }
+        for (long id = 0; id < 10; id++) {
+            assertNull(pending.remove(id));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badCapacity() {
+        new PendingRequests<String>(10);
+    }
+}
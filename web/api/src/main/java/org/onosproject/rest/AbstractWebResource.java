@@ -15,21 +15,56 @@
  */
 package org.onosproject.rest;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Iterators;
+import com.google.common.io.CountingOutputStream;
+import org.onlab.metrics.MetricsComponent;
+import org.onlab.metrics.MetricsFeature;
+import org.onlab.metrics.MetricsService;
 import org.onlab.rest.BaseResource;
 import org.onosproject.codec.CodecContext;
 import org.onosproject.codec.CodecService;
 import org.onosproject.codec.JsonCodec;
 
+import javax.ws.rs.core.StreamingOutput;
+import java.util.Iterator;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 /**
  * Abstract REST resource.
  */
 public class AbstractWebResource extends BaseResource implements CodecContext {
 
+    /**
+     * Name of the query parameter holding the position of the first item
+     * of a paginated collection.
+     */
+    public static final String CURSOR = "cursor";
+
+    /**
+     * Name of the query parameter holding the maximum number of items
+     * of a paginated collection; zero or less means no limit.
+     */
+    public static final String LIMIT = "limit";
+
+    /**
+     * Name of the field holding the cursor of the next page.
+     */
+    public static final String NEXT = "next";
+
+    private static final String METRICS_COMPONENT = "RestApi";
+    private static final String ENCODE_TIME = "encodeTime";
+    private static final String RESPONSE_BYTES = "responseBytes";
+
+    // Shared by all the codecs invoked while serving a request
+    private final ObjectMapper mapper = new ObjectMapper();
+
     @Override
     public ObjectMapper mapper() {
-        return new ObjectMapper();
+        return mapper;
     }
 
     /**
@@ -60,4 +95,65 @@ public class AbstractWebResource extends BaseResource implements CodecContext {
         return result;
     }
 
+    /**
+     * Returns streaming output which writes the JSON object wrapping the
+     * array encoding of one page of the specified collection of items.
+     * <p>
+     * Items are encoded one at a time straight onto the response stream.
+     * When more items remain past the returned page, the cursor of the next
+     * page is written into the {@value #NEXT} field. Encoding time and
+     * response size are recorded per field as metrics.
+     * </p>
+     *
+     * @param codecClass codec item class
+     * @param field      field holding the array
+     * @param items      collection of items to be encoded into array
+     * @param cursor     number of leading items to skip
+     * @param limit      maximum number of items to encode; zero or less
+     *                   for no limit
+     * @param <T>        item type
+     * @return streaming output
+     */
+    protected <T> StreamingOutput streamArray(Class<T> codecClass, String field,
+                                              Iterable<T> items,
+                                              int cursor, int limit) {
+        JsonCodec<T> codec = codec(codecClass);
+        return output -> {
+            long start = System.nanoTime();
+            CountingOutputStream counter = new CountingOutputStream(output);
+            try (JsonGenerator generator = mapper().getFactory().createGenerator(counter)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart(field);
+
+                Iterator<T> iterator = items.iterator();
+                int position = Math.max(cursor, 0);
+                Iterators.advance(iterator, position);
+                int count = 0;
+                while (iterator.hasNext() && (limit <= 0 || count < limit)) {
+                    codec.encode(iterator.next(), this, generator);
+                    count++;
+                }
+                generator.writeEndArray();
+
+                if (iterator.hasNext()) {
+                    generator.writeNumberField(NEXT, position + count);
+                }
+                generator.writeEndObject();
+            }
+            record(field, System.nanoTime() - start, counter.getCount());
+        };
+    }
+
+    // Records encoding time and response size under the given feature.
+    private void record(String feature, long nanos, long bytes) {
+        MetricsService metricsService = get(MetricsService.class);
+        MetricsComponent component =
+                metricsService.registerComponent(METRICS_COMPONENT);
+        MetricsFeature metricsFeature = component.registerFeature(feature);
+        metricsService.createTimer(component, metricsFeature, ENCODE_TIME)
+                .update(nanos, NANOSECONDS);
+        metricsService.createHistogram(component, metricsFeature, RESPONSE_BYTES)
+                .update(bytes);
+    }
+
 }
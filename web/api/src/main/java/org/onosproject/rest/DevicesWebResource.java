@@ -20,9 +20,13 @@ import org.onosproject.net.Device;
 import org.onosproject.net.Port;
 import org.onosproject.net.device.DeviceService;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.List;
 
@@ -39,9 +43,11 @@ public class DevicesWebResource extends AbstractWebResource {
     public static final String DEVICE_NOT_FOUND = "Device is not found";
 
     @GET
-    public Response getDevices() {
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getDevices(@QueryParam(CURSOR) @DefaultValue("0") int cursor,
+                               @QueryParam(LIMIT) @DefaultValue("0") int limit) {
         Iterable<Device> devices = get(DeviceService.class).getDevices();
-        return ok(encodeArray(Device.class, "devices", devices)).build();
+        return ok(streamArray(Device.class, "devices", devices, cursor, limit)).build();
     }
 
     @GET
@@ -17,6 +17,8 @@ package org.onosproject.rest;
 
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
 import org.onlab.util.ItemNotFoundException;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
@@ -24,10 +26,12 @@ import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.FlowEntry;
 import org.onosproject.net.flow.FlowRuleService;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -44,25 +48,38 @@ public class FlowsWebResource extends AbstractWebResource {
     final ArrayNode flowsNode = root.putArray("flows");
 
     /**
-     * Gets an array containing all the intents in the system.
+     * Gets a page of the array containing all the flows in the system,
+     * optionally restricted to a device or an application.
      *
-     * @return array of all the intents in the system
+     * @param deviceId Id of device whose flows to return; all devices if null
+     * @param appId    Id of application whose flows to return; all if null
+     * @param cursor   position of the first flow to return
+     * @param limit    maximum number of flows to return; no limit if zero
+     * @return array of flows in the system
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getFlows() {
+    public Response getFlows(@QueryParam("device") String deviceId,
+                             @QueryParam("appId") Short appId,
+                             @QueryParam(CURSOR) @DefaultValue("0") int cursor,
+                             @QueryParam(LIMIT) @DefaultValue("0") int limit) {
+        final Iterable<DeviceId> deviceIds = deviceId != null ?
+                ImmutableList.of(DeviceId.deviceId(deviceId)) :
+                FluentIterable.from(get(DeviceService.class).getDevices())
+                        .transform(Device::id);
 
-        final Iterable<Device> devices = get(DeviceService.class).getDevices();
-        for (final Device device : devices) {
-            final Iterable<FlowEntry> deviceEntries = service.getFlowEntries(device.id());
-            if (deviceEntries != null) {
-                for (final FlowEntry entry : deviceEntries) {
-                    flowsNode.add(codec(FlowEntry.class).encode(entry, this));
-                }
-            }
+        FluentIterable<FlowEntry> entries = FluentIterable.from(deviceIds)
+                .transformAndConcat(this::getFlowEntries);
+        if (appId != null) {
+            entries = entries.filter(entry -> entry.appId() == appId);
         }
+        return ok(streamArray(FlowEntry.class, "flows", entries, cursor, limit)).build();
+    }
 
-        return ok(root).build();
+    // Returns the flow entries of the given device, empty if there are none.
+    private Iterable<FlowEntry> getFlowEntries(DeviceId deviceId) {
+        final Iterable<FlowEntry> deviceEntries = service.getFlowEntries(deviceId);
+        return deviceEntries != null ? deviceEntries : ImmutableList.of();
     }
 
     /**
@@ -15,19 +15,24 @@
  */
 package org.onosproject.rest;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.Host;
 import org.onosproject.net.host.HostService;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Iterables;
 
 import static org.onlab.util.Tools.nullIsNotFound;
+import static org.onosproject.net.DeviceId.deviceId;
 import static org.onosproject.net.HostId.hostId;
 
 /**
@@ -40,10 +45,15 @@ public class HostsWebResource extends AbstractWebResource {
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getHosts() {
-        final Iterable<Host> hosts = get(HostService.class).getHosts();
-        final ObjectNode root = encodeArray(Host.class, "hosts", hosts);
-        return ok(root).build();
+    public Response getHosts(@QueryParam("device") String deviceId,
+                             @QueryParam(CURSOR) @DefaultValue("0") int cursor,
+                             @QueryParam(LIMIT) @DefaultValue("0") int limit) {
+        Iterable<Host> hosts = get(HostService.class).getHosts();
+        if (deviceId != null) {
+            final DeviceId device = deviceId(deviceId);
+            hosts = Iterables.filter(hosts, host -> host.location().deviceId().equals(device));
+        }
+        return ok(streamArray(Host.class, "hosts", hosts, cursor, limit)).build();
     }
 
     @GET
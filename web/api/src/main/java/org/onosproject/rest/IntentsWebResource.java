@@ -20,10 +20,12 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -40,6 +42,7 @@ import org.onosproject.net.intent.PointToPointIntent;
 import org.slf4j.Logger;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Iterables;
 
 import static org.onlab.util.Tools.nullIsNotFound;
 import static org.onosproject.net.intent.IntentState.FAILED;
@@ -58,16 +61,24 @@ public class IntentsWebResource extends AbstractWebResource {
     public static final String INTENT_NOT_FOUND = "Intent is not found";
 
     /**
-     * Gets an array containing all the intents in the system.
+     * Gets a page of the array containing all the intents in the system,
+     * optionally restricted to an application.
      *
-     * @return array of all the intents in the system
+     * @param appId  Id of application whose intents to return; all if null
+     * @param cursor position of the first intent to return
+     * @param limit  maximum number of intents to return; no limit if zero
+     * @return array of intents in the system
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getIntents() {
-        final Iterable<Intent> intents = get(IntentService.class).getIntents();
-        final ObjectNode root = encodeArray(Intent.class, "intents", intents);
-        return ok(root).build();
+    public Response getIntents(@QueryParam("appId") Short appId,
+                               @QueryParam(CURSOR) @DefaultValue("0") int cursor,
+                               @QueryParam(LIMIT) @DefaultValue("0") int limit) {
+        Iterable<Intent> intents = get(IntentService.class).getIntents();
+        if (appId != null) {
+            intents = Iterables.filter(intents, intent -> intent.appId().id() == appId);
+        }
+        return ok(streamArray(Intent.class, "intents", intents, cursor, limit)).build();
     }
 
     /**
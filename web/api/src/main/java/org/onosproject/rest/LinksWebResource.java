@@ -20,9 +20,12 @@ import org.onosproject.net.DeviceId;
 import org.onosproject.net.Link;
 import org.onosproject.net.link.LinkService;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import static org.onosproject.net.DeviceId.deviceId;
@@ -38,9 +41,12 @@ public class LinksWebResource extends AbstractWebResource {
     enum Direction { ALL, INGRESS, EGRESS }
 
     @GET
+    @Produces(MediaType.APPLICATION_JSON)
     public Response getLinks(@QueryParam("device") String deviceId,
                              @QueryParam("port") String port,
-                             @QueryParam("direction") String direction) {
+                             @QueryParam("direction") String direction,
+                             @QueryParam(CURSOR) @DefaultValue("0") int cursor,
+                             @QueryParam(LIMIT) @DefaultValue("0") int limit) {
         LinkService service = get(LinkService.class);
         Iterable<Link> links;
 
@@ -53,7 +59,7 @@ public class LinksWebResource extends AbstractWebResource {
         } else {
             links = service.getLinks();
         }
-        return ok(encodeArray(Link.class, "links", links)).build();
+        return ok(streamArray(Link.class, "links", links, cursor, limit)).build();
     }
 
     private Iterable<Link> getConnectPointLinks(ConnectPoint point,
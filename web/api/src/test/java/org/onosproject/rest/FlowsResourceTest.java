@@ -24,6 +24,8 @@ import org.hamcrest.TypeSafeMatcher;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.metrics.MetricsService;
 import org.onlab.osgi.ServiceDirectory;
 import org.onlab.osgi.TestServiceDirectory;
 import org.onlab.packet.MacAddress;
@@ -245,7 +247,8 @@ public class FlowsResourceTest extends ResourceTest {
                 new TestServiceDirectory()
                         .add(FlowRuleService.class, mockFlowService)
                         .add(DeviceService.class, mockDeviceService)
-                        .add(CodecService.class, codecService);
+                        .add(CodecService.class, codecService)
+                        .add(MetricsService.class, new MetricsManager());
 
         BaseResource.setServiceDirectory(testDirectory);
     }
@@ -461,6 +464,56 @@ public class FlowsResourceTest extends ResourceTest {
         assertThat(jsonFlows, hasFlow(flow4));
     }
 
+    /**
+     * Tests paging through the active flows with the cursor and limit.
+     */
+    @Test
+    public void testFlowsPaginated() {
+        setupMockFlows();
+        expect(mockDeviceService.getDevices())
+                .andReturn(ImmutableSet.of(device1, device2)).anyTimes();
+        replay(mockFlowService);
+        replay(mockDeviceService);
+        final WebResource rs = resource();
+
+        String response = rs.path("flows").queryParam("limit", "3").get(String.class);
+        JsonObject result = JsonObject.readFrom(response);
+        assertThat(result.get("flows").asArray().size(), is(3));
+        assertThat(result.get("next").asInt(), is(3));
+
+        response = rs.path("flows").queryParam("cursor", "3")
+                .queryParam("limit", "3").get(String.class);
+        result = JsonObject.readFrom(response);
+        assertThat(result.names(), hasSize(1));
+        assertThat(result.get("flows").asArray().size(), is(1));
+    }
+
+    /**
+     * Tests the result of the rest api GET when flows are filtered by
+     * device and application.
+     */
+    @Test
+    public void testFlowsFiltered() {
+        setupMockFlows();
+        replay(mockFlowService);
+        replay(mockDeviceService);
+        final WebResource rs = resource();
+
+        String response = rs.path("flows").queryParam("device", deviceId1.toString())
+                .queryParam("appId", "2").get(String.class);
+        JsonArray jsonFlows = JsonObject.readFrom(response).get("flows").asArray();
+        assertThat(jsonFlows.size(), is(4));
+        assertThat(jsonFlows, hasFlow(flow1));
+        assertThat(jsonFlows, hasFlow(flow4));
+
+        response = rs.path("flows").queryParam("device", deviceId2.toString())
+                .get(String.class);
+        assertThat(response, is("{\"flows\":[]}"));
+
+        response = rs.path("flows").queryParam("appId", "3").get(String.class);
+        assertThat(response, is("{\"flows\":[]}"));
+    }
+
     /**
      * Tests the result of a rest api GET for a device.
      */
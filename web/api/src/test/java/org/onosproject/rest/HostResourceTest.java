@@ -24,6 +24,8 @@ import org.hamcrest.TypeSafeMatcher;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.metrics.MetricsService;
 import org.onlab.osgi.ServiceDirectory;
 import org.onlab.osgi.TestServiceDirectory;
 import org.onlab.packet.IpAddress;
@@ -80,7 +82,8 @@ public class HostResourceTest extends ResourceTest {
         ServiceDirectory testDirectory =
                 new TestServiceDirectory()
                         .add(HostService.class, mockHostService)
-                        .add(CodecService.class, codecService);
+                        .add(CodecService.class, codecService)
+                        .add(MetricsService.class, new MetricsManager());
 
         BaseResource.setServiceDirectory(testDirectory);
     }
@@ -279,6 +282,36 @@ public class HostResourceTest extends ResourceTest {
         assertThat(hosts, hasHost(host2));
     }
 
+    /**
+     * Tests the result of the rest api GET when hosts are filtered by device.
+     */
+    @Test
+    public void testHostsArrayByDevice() {
+        replay(mockHostService);
+        final ProviderId pid = new ProviderId("of", "foo");
+        final Host host1 =
+                new DefaultHost(pid, HostId.hostId(valueOf(1), vlanId((short) 1)),
+                        valueOf(1), vlanId((short) 1),
+                        new HostLocation(DeviceId.deviceId("1"), portNumber(11), 1),
+                        ImmutableSet.of(IpAddress.valueOf("1111:1111:1111:1::")));
+        final Host host2 =
+                new DefaultHost(pid, HostId.hostId(valueOf(2), vlanId((short) 2)),
+                        valueOf(2), vlanId((short) 2),
+                        new HostLocation(DeviceId.deviceId("2"), portNumber(22), 2),
+                        ImmutableSet.of(IpAddress.valueOf("2222:2222:2222:1::")));
+        hosts.add(host1);
+        hosts.add(host2);
+        WebResource rs = resource();
+        String response = rs.path("hosts").queryParam("device", "2").get(String.class);
+
+        final JsonObject result = JsonObject.readFrom(response);
+        assertThat(result, notNullValue());
+
+        final JsonArray hosts = result.get("hosts").asArray();
+        assertThat(hosts.size(), is(1));
+        assertThat(hosts, hasHost(host2));
+    }
+
     /**
      * Tests fetch of one host by Id.
      */
@@ -24,6 +24,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.onlab.metrics.MetricsManager;
+import org.onlab.metrics.MetricsService;
 import org.onlab.osgi.ServiceDirectory;
 import org.onlab.osgi.TestServiceDirectory;
 import org.onlab.rest.BaseResource;
@@ -238,6 +240,7 @@ public class IntentsResourceTest extends ResourceTest {
                 new TestServiceDirectory()
                         .add(IntentService.class, mockIntentService)
                         .add(CodecService.class, codecService)
+                        .add(MetricsService.class, new MetricsManager())
                         .add(CoreService.class, mockCoreService);
 
         BaseResource.setServiceDirectory(testDirectory);